@@ -0,0 +1,55 @@
+package mwagent.benchmark;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import mwagent.common.Config;
+
+/**
+ * Shared setup for the benchmarks.
+ *
+ * The agent logs through Config's logger on the measured paths, so the benchmarks replace it
+ * with a silent one to measure the code rather than the log handlers.
+ */
+public final class BenchmarkSupport {
+
+	private BenchmarkSupport() {
+	}
+
+	public static void configure() {
+
+		Logger logger = Logger.getLogger("BenchmarkLogger");
+		logger.setUseParentHandlers(false);
+		logger.setLevel(Level.OFF);
+
+		Config config = Config.getConfig();
+		config.setLogger(logger);
+		config.setAgent_id("bench-agent_01");
+		config.setAccess_token("bench-token");
+		config.setSecurityPathTraversalCheck(false);
+
+		Map<String, String> env = new HashMap<>();
+		env.put("LOG_HOME", "/var/log/app");
+		env.put("APP_NAME", "order-service");
+		env.put("INSTANCE", "{{APP_NAME}}_01");
+		env.put("DATE", "20260101");
+		config.setEnv(env);
+
+	}
+
+	/**
+	 * Printable ASCII text of the given size, lines of 100 characters.
+	 */
+	public static String text(int size) {
+
+		StringBuilder sb = new StringBuilder(size);
+		for (int i = 0; i < size; i++) {
+			sb.append(i % 100 == 99 ? '\n' : (char) ('a' + i % 26));
+		}
+		return sb.toString();
+
+	}
+
+}
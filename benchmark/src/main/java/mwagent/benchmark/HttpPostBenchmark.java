@@ -0,0 +1,97 @@
+package mwagent.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sun.net.httpserver.HttpServer;
+
+import mwagent.common.Common;
+import mwagent.common.Config;
+import mwagent.order.Order;
+import mwagent.vo.MwResponseVO;
+
+/**
+ * Common.httpPOST of a result against an in-process stub server on localhost, so that the
+ * numbers cover the client side (connection pool, entity, response parsing) without network.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class HttpPostBenchmark {
+
+	private static final byte[] RESPONSE = "{\"return_code\":1,\"message\":\"ok\"}".getBytes(StandardCharsets.UTF_8);
+
+	@Param({"256", "65536"})
+	public int payloadSize;
+
+	private HttpServer server;
+	private String payload;
+
+	@Setup
+	public void setUp() throws IOException {
+
+		BenchmarkSupport.configure();
+
+		// otherwise Nagle + delayed ACK on the stub adds ~40ms to every response
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext(Order.RESULT_PATH, exchange -> {
+			try (InputStream in = exchange.getRequestBody()) {
+				byte[] buf = new byte[8192];
+				while (in.read(buf) >= 0) {
+					// drain the request body
+				}
+			}
+			exchange.getResponseHeaders().add("Content-Type", "application/json");
+			exchange.sendResponseHeaders(200, RESPONSE.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(RESPONSE);
+			}
+		});
+		server.setExecutor(Executors.newFixedThreadPool(8));
+		server.start();
+
+		Config.getConfig().setServer_url("http://127.0.0.1:" + server.getAddress().getPort());
+		Common.createHttpsClient();
+
+		payload = "{\"agent_id\":\"bench-agent_01\",\"result_text\":\""
+				+ BenchmarkSupport.text(payloadSize).replace("\n", "\\n") + "\"}";
+
+	}
+
+	@TearDown
+	public void tearDown() {
+		Common.closeHttpClients();
+		server.stop(0);
+	}
+
+	@Benchmark
+	public int httpPOST() {
+		MwResponseVO mwrv = Common.httpPOST(Order.RESULT_PATH, Config.getConfig().getAccess_token(), payload);
+		return mwrv.getStatusCode();
+	}
+
+}
@@ -0,0 +1,56 @@
+package mwagent.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import mwagent.metrics.AgentMetrics;
+import mwagent.metrics.LatencyHistogram;
+
+/**
+ * Metric recording on the command / HTTP paths, run with 4 threads to show contention.
+ * Use -prof gc to check that recording does not allocate.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class MetricsBenchmark {
+
+	private LatencyHistogram histogram;
+
+	@Setup
+	public void setUp() {
+		BenchmarkSupport.configure();
+		histogram = AgentMetrics.HTTP_POST_DURATION;
+	}
+
+	@Benchmark
+	public void counterInc() {
+		AgentMetrics.POLLED_COMMANDS.inc();
+	}
+
+	@Benchmark
+	public void histogramRecord() {
+		histogram.recordNanos(1234567);
+	}
+
+	@Benchmark
+	public void labeledHistogramLookupAndRecord() {
+		AgentMetrics.commandExecution("ReadFullPathFile").recordNanos(1234567);
+	}
+
+}
@@ -0,0 +1,99 @@
+package mwagent.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.json.simple.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import mwagent.order.ReadFullPathFile;
+import mwagent.vo.ResultVO;
+
+/**
+ * ReadFullPathFile.execute at several file sizes.
+ *
+ * "changed" reads and returns the content, "unchanged" sends the current hash so that the
+ * order only hashes the file and answers NO CHANGE.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReadFileBenchmark {
+
+	@Param({"4096", "1048576", "16777216", "67108864"})
+	public int fileSize;
+
+	private Path dir;
+	private Path file;
+	private String currentHash;
+
+	@Setup
+	public void setUp() throws IOException {
+
+		BenchmarkSupport.configure();
+
+		dir = Files.createTempDirectory("mwagent-bench");
+		file = dir.resolve("bench.log");
+
+		byte[] line = (BenchmarkSupport.text(99) + "\n").getBytes(StandardCharsets.UTF_8);
+		try (OutputStream out = Files.newOutputStream(file)) {
+			for (int written = 0; written < fileSize; written += line.length) {
+				out.write(line, 0, Math.min(line.length, fileSize - written));
+			}
+		}
+
+		currentHash = read("").getResultHash();
+
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(file);
+		Files.deleteIfExists(dir);
+	}
+
+	@SuppressWarnings("unchecked")
+	private ResultVO read(String resultHash) {
+
+		JSONObject command = new JSONObject();
+		command.put("command_id", "CMD-BENCH");
+		command.put("target_file_name", file.getFileName().toString());
+		command.put("target_file_path", "");
+		command.put("result_hash", resultHash);
+		command.put("additional_params", file.toString());
+
+		ReadFullPathFile order = new ReadFullPathFile(command);
+		order.execute();
+		return order.getResultVo();
+
+	}
+
+	@Benchmark
+	public ResultVO changed() {
+		return read("");
+	}
+
+	@Benchmark
+	public ResultVO unchanged() {
+		return read(currentHash);
+	}
+
+}
@@ -0,0 +1,58 @@
+package mwagent.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import mwagent.common.SecurityValidator;
+
+/**
+ * SecurityValidator checks run for every command parameter and file path.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SecurityValidatorBenchmark {
+
+	private String shortParam;
+	private String longParam;
+	private String basePath;
+	private String userPath;
+
+	@Setup
+	public void setUp() {
+		BenchmarkSupport.configure();
+		shortParam = "-n 100 app.log";
+		longParam = BenchmarkSupport.text(4096).replace('\n', ' ');
+		basePath = System.getProperty("java.io.tmpdir");
+		userPath = "logs/2026/01/app.log";
+	}
+
+	@Benchmark
+	public boolean isValidCommandParamShort() {
+		return SecurityValidator.isValidCommandParam(shortParam);
+	}
+
+	@Benchmark
+	public boolean isValidCommandParamLong() {
+		return SecurityValidator.isValidCommandParam(longParam);
+	}
+
+	@Benchmark
+	public boolean isValidPath() {
+		return SecurityValidator.isValidPath(basePath, userPath);
+	}
+
+}
@@ -0,0 +1,108 @@
+package mwagent.order;
+
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+
+import org.json.simple.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import mwagent.benchmark.BenchmarkSupport;
+import mwagent.vo.ResultVO;
+
+/**
+ * Order helpers run for every command : parameter substitution, result hashing and
+ * result serialization. Lives in mwagent.order to reach the protected methods.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OrderBenchmark {
+
+	@Param({"1024", "1048576"})
+	public int resultSize;
+
+	private BenchOrder order;
+	private ResultVO rv;
+	private String plainText;
+	private String templateText;
+	private String nestedText;
+
+	@Setup
+	@SuppressWarnings("unchecked")
+	public void setUp() {
+
+		BenchmarkSupport.configure();
+
+		JSONObject command = new JSONObject();
+		command.put("command_id", "CMD-BENCH");
+		command.put("repetition_seq", 1L);
+		command.put("target_file_name", "app.log");
+		command.put("target_file_path", "/var/log/app");
+		command.put("result_receiver", Order.SERVER);
+		order = new BenchOrder(command);
+
+		plainText = "/var/log/app/order-service/app.log";
+		templateText = "<<LOG_HOME>>/{{APP_NAME}}/app_<<DATE>>.log";
+		nestedText = "<<LOG_HOME>>/<<INSTANCE>>/app.log";
+
+		rv = new ResultVO();
+		rv.setHostName("bench-host");
+		rv.setTargetFileName("app.log");
+		rv.setTargetFilePath("/var/log/app");
+		rv.setOk(true);
+		rv.setResult(BenchmarkSupport.text(resultSize) + "\"quoted\"\ttab\\");
+		rv.setResultHash("0123456789ABCDEF");
+
+	}
+
+	@Benchmark
+	public String replaceParamPlain() {
+		return order.replaceParam(plainText);
+	}
+
+	@Benchmark
+	public String replaceParamTemplate() {
+		return order.replaceParam(templateText);
+	}
+
+	@Benchmark
+	public String replaceParamNested() {
+		return order.replaceParam(nestedText);
+	}
+
+	@Benchmark
+	public String getHash() throws NoSuchAlgorithmException {
+		return order.getHash(rv.getResult());
+	}
+
+	@Benchmark
+	public String getJsonResult() {
+		return order.getJsonResult(false, rv);
+	}
+
+	static final class BenchOrder extends Order {
+
+		BenchOrder(JSONObject command) {
+			super(command);
+		}
+
+		@Override
+		public int execute() {
+			return 1;
+		}
+	}
+
+}
@@ -0,0 +1,110 @@
+package mwagent.order;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.json.simple.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import mwagent.benchmark.BenchmarkSupport;
+import mwagent.infrastructure.http.JsonEntity;
+import mwagent.vo.ResultVO;
+
+/**
+ * Result serialization : the former json-simple path (JSONObject.toString + getBytes, as
+ * StringEntity did) against the streamed JsonContent written to the HTTP entity or directly
+ * into the Kafka record bytes. Run with -prof gc to compare the allocation per result.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class ResultSerializationBenchmark {
+
+	@Param({"1024", "1048576", "16777216"})
+	public int resultSize;
+
+	private OrderBenchmark.BenchOrder order;
+	private ResultVO rv;
+	private final OutputStream sink = new NullOutputStream();
+
+	@Setup
+	@SuppressWarnings("unchecked")
+	public void setUp() {
+
+		BenchmarkSupport.configure();
+
+		JSONObject command = new JSONObject();
+		command.put("command_id", "CMD-BENCH");
+		command.put("repetition_seq", 1L);
+		command.put("result_receiver", Order.SERVER);
+		order = new OrderBenchmark.BenchOrder(command);
+
+		rv = new ResultVO();
+		rv.setHostName("bench-host");
+		rv.setTargetFileName("script.sh");
+		rv.setTargetFilePath("/opt/scripts");
+		rv.setOk(true);
+		rv.setResult(BenchmarkSupport.text(resultSize) + "\"quoted\"\ttab\\ /path 한글");
+		rv.setResultHash("0123456789ABCDEF");
+
+	}
+
+	@Benchmark
+	@SuppressWarnings("unchecked")
+	public byte[] jsonSimpleBytes() {
+
+		JSONObject jsonObj = new JSONObject();
+		jsonObj.put("agent_id", "bench-agent_01");
+		jsonObj.put("command_id", "CMD-BENCH");
+		jsonObj.put("repetition_seq", "1");
+		jsonObj.put("key_value1", rv.getTargetFileName());
+		jsonObj.put("host_id", rv.getHostName());
+		jsonObj.put("is_normal", rv.isOk());
+		jsonObj.put("key_value2", rv.getTargetFilePath());
+		jsonObj.put("result_text", rv.getResult());
+		jsonObj.put("result_hash", rv.getResultHash());
+		jsonObj.put("aggregation_key", rv.getObjectAggregationKey());
+		return jsonObj.toString().getBytes(StandardCharsets.UTF_8);
+
+	}
+
+	@Benchmark
+	public byte[] streamedKafkaBytes() {
+		return order.jsonResult(rv).toBytes();
+	}
+
+	@Benchmark
+	public OutputStream streamedHttpEntity() throws IOException {
+		JsonEntity entity = new JsonEntity(order.jsonResult(rv));
+		entity.getContentLength();
+		entity.writeTo(sink);
+		return sink;
+	}
+
+	private static final class NullOutputStream extends OutputStream {
+
+		@Override
+		public void write(int b) {
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+		}
+	}
+
+}
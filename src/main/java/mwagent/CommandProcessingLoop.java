@@ -6,10 +6,12 @@ import java.util.logging.Level;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
-import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 
 import mwagent.common.Common;
+import mwagent.common.CommandStreamHandler;
+import mwagent.common.PollingPolicy;
+import mwagent.metrics.AgentMetrics;
 import mwagent.vo.MwResponseVO;
 import mwagent.vo.RawCommandsVO;
 
@@ -33,12 +35,16 @@ public class CommandProcessingLoop {
 	public long execute(){
 
 		RawCommandsVO rcv = new RawCommandsVO();
+		PollingPolicy pollingPolicy = new PollingPolicy();
 
         while (true) {
 
             try {
 
-		    	rcv = fetchPendingCommands();
+		    	long pollStart = System.currentTimeMillis();
+		    	rcv = fetchPendingCommands(pollingPolicy);
+		    	long pollElapsed = System.currentTimeMillis() - pollStart;
+		    	boolean hasCommands = false;
 
 		    	// Access Token Expired
 	    		if(rcv.getReturnCode()==0){
@@ -47,24 +53,15 @@ public class CommandProcessingLoop {
 
 	    		}else if(rcv.getReturnCode()>0){
 
-		    	    for(Object commandObj : rcv.getCommands()){
-
-		    	        JSONObject command_ = (JSONObject) commandObj;
-
-		    	        String command_class  = (String)command_.get("command_class");
-
-		    	        if(command_class==null){
-		    	        	getConfig().getLogger().warning("Command_class not found : "+command_.toJSONString());
-		    	        	continue;
-		    	        }
-
-		    	        OrderCallerThread thread = new OrderCallerThread("mwagent.order."+command_class, command_);
-		    	        executorService.submit(thread);
-		    	    }
+	    			// 명령은 응답을 파싱하는 동안 dispatch 에서 이미 실행됨
+		    	    hasCommands = rcv.getCommandCount() > 0;
 
 	    		}
 
-	    	    Thread.sleep(getConfig().getCommand_check_cycle()*1000);
+	    	    long delayMs = pollingPolicy.nextDelayMs(rcv.getReturnCode(), hasCommands, pollElapsed, rcv.getLongPollTimeout());
+	    	    if(delayMs > 0){
+	    	    	Thread.sleep(delayMs);
+	    	    }
 
 	    	} catch (InterruptedException e) {
 	    		getConfig().getLogger().log(Level.SEVERE, "shutdown by Interrupted : " + e.getMessage(), e);
@@ -78,28 +75,54 @@ public class CommandProcessingLoop {
 
 	}
 
+	/**
+	 * 명령 한 건을 별도 스레드에서 실행
+	 */
+	private void dispatch(JSONObject command_) {
+
+	    String command_class  = (String)command_.get("command_class");
+
+	    if(command_class==null){
+	    	getConfig().getLogger().warning("Command_class not found : "+command_.toJSONString());
+	    	return;
+	    }
+
+	    OrderCallerThread thread = new OrderCallerThread("mwagent.order."+command_class, command_);
+	    executorService.submit(thread);
+
+	}
+
 	/**
 	 * 서버에서 대기 중인 명령 조회
+	 * 응답을 파싱하면서 명령을 하나씩 dispatch 로 전달
 	 *
-	 * @return RawCommandsVO 명령 목록과 상태 코드
+	 * @return RawCommandsVO 명령 건수와 상태 코드
 	 */
-    private RawCommandsVO fetchPendingCommands() {
-
-    	JSONArray commands = new JSONArray();
+    private RawCommandsVO fetchPendingCommands(PollingPolicy pollingPolicy) {
 
     	RawCommandsVO rcv = new RawCommandsVO();
     	rcv.setReturnCode(1);
 
-        String path = getConfig().getGet_command_uri() + "/" + getConfig().getAgent_id();
+    	int socketTimeoutMs = pollingPolicy.getSocketTimeoutMs();
+        String path = pollingPolicy.buildPath(getConfig().getGet_command_uri() + "/" + getConfig().getAgent_id());
 
 		getConfig().getLogger().fine("getCommands : "+path);
-		MwResponseVO mrvo = Common.httpGET(path, getConfig().getAccess_token());
+		CommandStreamHandler handler = new CommandStreamHandler(this::dispatch);
+		long pollStart = System.nanoTime();
+		MwResponseVO mrvo = Common.httpGET(path, getConfig().getAccess_token(), socketTimeoutMs, handler);
+		rcv.setCommandCount(handler.getCommandCount());
+		AgentMetrics.POLL_DURATION.recordSince(pollStart);
+		AgentMetrics.POLLED_COMMANDS.add(handler.getCommandCount());
 
 	    // Access Token Expired
 	    if(mrvo.getStatusCode()==401){
 
 	    	rcv.setReturnCode(0);
 
+	    }else if(mrvo.getStatusCode()>=200 && mrvo.getStatusCode()<300 && mrvo.getResponse()==null){
+
+	    	rcv.setReturnCode(-10);
+
 	    }else if(mrvo.getStatusCode()>=200 && mrvo.getStatusCode()<300){
 
 		    long rtn = (Long)mrvo.getResponse().get("return_code");
@@ -107,11 +130,11 @@ public class CommandProcessingLoop {
 		    if (rtn < 0){
 		    	// Agent 등록 필요 등
 		    	rcv.setReturnCode(rtn);
-		    }else{
-
-		        commands = (JSONArray)mrvo.getResponse().get("data");
-		        rcv.setCommands(commands);
+		    }
 
+		    Object longPollTimeout = mrvo.getResponse().get("long_poll_timeout");
+		    if(longPollTimeout instanceof Long){
+		    	rcv.setLongPollTimeout((Long)longPollTimeout);
 		    }
 
         }else if(mrvo.getStatusCode()<0){
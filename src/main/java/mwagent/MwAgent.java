@@ -6,6 +6,8 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import mwagent.application.ApplicationContext;
+import mwagent.common.Common;
+import mwagent.common.ResultHashCache;
 import mwagent.lifecycle.AgentLifecycleManager;
 
 /**
@@ -69,6 +71,10 @@ public class MwAgent {
                 try {
                     lifecycleManager.stop();
                     ApplicationContext.getInstance().shutdown();
+                    Common.closeHttpClients();
+                    if (getConfig().isResultCacheEnabled()) {
+                        ResultHashCache.getInstance().save();
+                    }
                 } catch (Exception e) {
                     logger.log(Level.SEVERE, "Error during shutdown", e);
                 }
@@ -20,9 +20,14 @@ public class AgentFuncFactory {
 
 			case "say_hello" : return new HelloFunc();
 			case "get_server_stat" : return new JmxStatFunc();
+			case "get_jmx_metrics" : return new JmxMetricsFunc();
 			case "get_ssl_certi" : return new SSLCertiFunc();
 			case "get_ssl_certifile" : return new SSLCertiFileFunc();
+			case "scan_ssl_certi" : return new SSLCertiScanFunc();
 			case "download_n_unzip" : return new  DownloadNUnzipFunc();
+			case "get_http_pool_stat" : return new HttpPoolStatFunc();
+			case "get_executor_stat" : return new ExecutorStatFunc();
+			case "get_kafka_producer_stat" : return new KafkaProducerStatFunc();
 			default:
 		    	try {
 		    		Class<?> agentFunc = Class.forName(functionType);
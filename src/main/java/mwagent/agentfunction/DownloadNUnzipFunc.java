@@ -3,25 +3,16 @@ package mwagent.agentfunction;
 import java.util.ArrayList;
 
 import org.json.simple.JSONObject;
-import java.io.BufferedInputStream;
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
-import java.text.SimpleDateFormat;
-import java.util.Date;
 import static mwagent.common.Config.getConfig;
 
 
 import mwagent.common.Common;
 import mwagent.common.SecurityValidator;
+import mwagent.common.ZipExtractor;
 import mwagent.vo.CommandVO;
+import mwagent.vo.MwResponseVO;
 import mwagent.vo.ResultVO;
 
 /**
@@ -32,6 +23,7 @@ import mwagent.vo.ResultVO;
  * - target_directory: (String, optional) Local directory to save the file. Defaults to ".".
  * - backup_if_exists: (Boolean, optional) Whether to backup existing file. Defaults to true.
  * - extract: (Boolean, optional) Whether to extract if it's a zip. Defaults to true.
+ * - sha256: (String, optional) Expected SHA-256 (hex) of the file.
  * 
  * Example additional_params JSON:
  * {
@@ -47,6 +39,7 @@ public class DownloadNUnzipFunc implements AgentFunc {
 	private String targetDirectory = ".";
 	private Boolean backupIfExists = true;
 	private Boolean extract = true;
+	private String sha256 = null;
 	
 	@Override
 	public ArrayList<ResultVO> exeCommand(CommandVO command) {
@@ -92,8 +85,9 @@ public class DownloadNUnzipFunc implements AgentFunc {
             }
 			
         } catch (IOException e) {
-            e.printStackTrace();
             getConfig().getLogger().severe(e.getMessage());
+            rv.setResult("File download error : " + e.getMessage());
+            return Common.makeOneResultArray(rv, command);
         }
         
 		rv.setOk(true);
@@ -115,6 +109,9 @@ public class DownloadNUnzipFunc implements AgentFunc {
             if(jsonObj.containsKey("extract")){
             	setExtract((Boolean) jsonObj.get("extract"));
             }
+            if(jsonObj.containsKey("sha256")){
+            	setSha256((String) jsonObj.get("sha256"));
+            }
 
         } catch (Exception e) {
             e.printStackTrace();
@@ -131,6 +128,9 @@ public class DownloadNUnzipFunc implements AgentFunc {
      * If a file with the same name already exists, it will be backed up (renamed with .bak)
      * if backupIfExists is true, otherwise it will be overwritten.
      *
+     * The file is fetched by FileDownloader: received into a part file (over several connections
+     * when download.segments is set), resumed on interruption, verified and renamed.
+     *
      * @param presignedUrl   the pre-signed URL to download from
      * @param targetDirectory the path of the local directory to save the file
      * @param backupIfExists  whether to back up the existing file (true) or overwrite it (false)
@@ -139,135 +139,29 @@ public class DownloadNUnzipFunc implements AgentFunc {
      */
     private File downloadFile(String presignedUrl, String targetDirectory, boolean backupIfExists) throws IOException {
 
-    	HttpURLConnection conn = null;
-        BufferedInputStream bis = null;
-        FileOutputStream fos = null;
-
-        try {
-            // 1) Create URL object and open connection
-            URL url = new URL(presignedUrl);
-            conn = (HttpURLConnection) url.openConnection();
-            conn.setRequestMethod("GET");
-            // If needed, set authorization headers here
-            // conn.setRequestProperty("Authorization", "Bearer <TOKEN>");
-
-            int responseCode = conn.getResponseCode();
-            if (responseCode != HttpURLConnection.HTTP_OK) {
-                throw new IOException("Failed to download file. HTTP code: " + responseCode);
+        File dir = new File(targetDirectory);
+        if (!dir.exists()) {
+            if (!dir.mkdirs()) {
+                getConfig().getLogger().warning("Failed to create directories: " + dir.getAbsolutePath());
             }
+        }
 
-            // 2) Handle directory creation
-            File dir = new File(targetDirectory);
-            if (!dir.exists()) {
-                if (!dir.mkdirs()) {
-                    System.err.println("[WARN] Failed to create directories: " + dir.getAbsolutePath());
-                }
-            }
-
-            String disposition = conn.getHeaderField("Content-Disposition");
-            String fileName = getFileNameFromContentDisposition(disposition);
-            if (fileName == null || fileName.trim().isEmpty()) {
-            
-				fileName = "downloaded_file";
-            }
-            // Final file object
-            File outFile = new File(dir, fileName);
-
-            // 3) Back up the existing file if backupIfExists == true
-            if (outFile.exists() && backupIfExists) {
-                String timeStamp = new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date());
-                String backupName = fileName + "_" + timeStamp + ".bak";
-                File backupFile = new File(dir, backupName);
-
-                boolean renamed = outFile.renameTo(backupFile);
-                if (renamed) {
-                    System.out.println("[INFO] Existing file backed up as " + backupFile.getAbsolutePath());
-                } else {
-                    System.err.println("[WARN] Failed to back up the existing file. Overwriting directly...");
-                }
-            }
-
-            // 4) Download the stream to the file
-            bis = new BufferedInputStream(conn.getInputStream());
-            fos = new FileOutputStream(outFile); // Overwrite mode
-
-            byte[] buffer = new byte[4096];
-            int bytesRead;
-            while ((bytesRead = bis.read(buffer)) != -1) {
-                fos.write(buffer, 0, bytesRead);
-            }
-            fos.flush();
-
-            return outFile;
+        MwResponseVO mrvo = Common.newFileDownloader(presignedUrl)
+                .backupExisting(backupIfExists)
+                // presigned URL 은 매번 서명이 달라지므로 query 를 제외하고 cache 한다
+                .cacheIgnoringQuery()
+                .download(presignedUrl, null, dir.getPath(), sha256);
 
-        } finally {
-            // Resource cleanup
-            if (fos != null) {
-                fos.close();
-            }
-            if (bis != null) {
-                bis.close();
-            }
-            if (conn != null) {
-                conn.disconnect();
-            }
+        int responseCode = mrvo.getStatusCode();
+        if (responseCode < 200 || responseCode >= 300) {
+            throw new IOException("Failed to download file. HTTP code: " + responseCode);
         }
+        return new File(dir, mrvo.getFileName());
     }
-	
-    private String getFileNameFromContentDisposition(String disposition) {
-        if (disposition == null) {
-            return null;
-        }
 
-        Pattern pattern = Pattern.compile("filename\\s*=\\s*\"?([^\";]+)\"?");
-        Matcher matcher = pattern.matcher(disposition);
-        if (matcher.find()) {
-            return matcher.group(1);
-        }
-        return null;
-    }
-	
     public static void unzipFile(File zipFile, File destDir) throws IOException {
-
-        if (!destDir.exists()) {
-            destDir.mkdirs();
-        }
-
-        ZipInputStream zis = null;
-        try {
-            zis = new ZipInputStream(new FileInputStream(zipFile));
-            ZipEntry entry;
-            while ((entry = zis.getNextEntry()) != null) {
-                String entryName = entry.getName();
-                File outFile = new File(destDir, entryName);
-
-                if (entry.isDirectory()) {
-                    
-					if (!outFile.exists()) {
-                        outFile.mkdirs();
-                    }
-                } else {
-                    
-					File parentDir = outFile.getParentFile();
-                    if (!parentDir.exists()) {
-                        parentDir.mkdirs();
-                    }
-
-                    try (FileOutputStream fos = new FileOutputStream(outFile)) {
-                        byte[] buffer = new byte[4096];
-                        int len;
-                        while ((len = zis.read(buffer)) != -1) {
-                            fos.write(buffer, 0, len);
-                        }
-                    }
-                }
-                zis.closeEntry();
-            }
-        } finally {
-            if (zis != null) {
-                zis.close();
-            }
-        }
+        // zip slip 검증 후 여러 thread 로 압축 해제
+        ZipExtractor.fromConfig().extract(zipFile.toPath(), destDir.toPath());
     }
     
 	private void setDownloadUrl(String downloadUrl) {
@@ -286,4 +180,8 @@ public class DownloadNUnzipFunc implements AgentFunc {
 		this.extract = extract;
 	}
 
+	private void setSha256(String sha256) {
+		this.sha256 = sha256;
+	}
+
 }
@@ -0,0 +1,37 @@
+package mwagent.agentfunction;
+
+import java.util.ArrayList;
+
+import mwagent.common.Common;
+import mwagent.service.CommandExecutorService;
+import mwagent.vo.CommandVO;
+import mwagent.vo.ResultVO;
+
+/**
+ * Reports command executor queue depth, active workers and queue wait times.
+ * 
+ * Supported additional_params: none
+ * 
+ * Example result:
+ * {"pool_size":8,"queue_depth":3,"queue_depth_high":0,"active":8,"rejected":0,"avg_wait_ms":120,"max_wait_ms":950,...}
+ */
+public class ExecutorStatFunc implements AgentFunc {
+
+	@Override
+	public ArrayList<ResultVO> exeCommand(CommandVO command) {
+
+		ResultVO rv = new ResultVO();
+		CommandExecutorService executor = CommandExecutorService.getActive();
+		
+		if (executor == null) {
+			rv.setOk(false);
+			rv.setResult("CommandExecutor is not running");
+		} else {
+			rv.setOk(true);
+			rv.setResult(executor.getStats().toJSONString());
+		}
+    	return Common.makeOneResultArray(rv, command);
+		
+	}
+
+}
@@ -0,0 +1,29 @@
+package mwagent.agentfunction;
+
+import java.util.ArrayList;
+
+import mwagent.common.Common;
+import mwagent.vo.CommandVO;
+import mwagent.vo.ResultVO;
+
+/**
+ * Reports HTTP connection pool utilization (leased/available/pending/max per pool and route).
+ * 
+ * Supported additional_params: none
+ * 
+ * Example result:
+ * [{"pool":"https","leased":0,"available":2,"pending":0,"max":20,"routes":[...]}]
+ */
+public class HttpPoolStatFunc implements AgentFunc {
+
+	@Override
+	public ArrayList<ResultVO> exeCommand(CommandVO command) {
+
+		ResultVO rv = new ResultVO();
+		rv.setOk(true);
+		rv.setResult(Common.getHttpPoolStats().toJSONString());
+    	return Common.makeOneResultArray(rv, command);
+		
+	}
+
+}
@@ -0,0 +1,246 @@
+package mwagent.agentfunction;
+
+import static mwagent.common.Config.getConfig;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+import javax.management.JMException;
+import javax.management.MBeanServerConnection;
+import javax.management.remote.JMXConnector;
+import javax.naming.CommunicationException;
+import javax.naming.ServiceUnavailableException;
+
+import mwagent.metrics.Counter;
+import mwagent.metrics.MetricsRegistry;
+
+/**
+ * Keeps JMX connections open between agent function calls, one connector per
+ * (jmx_url, user, target). JMX connectors are thread safe, so concurrent calls share it.
+ *
+ * - A connection unused for the health check interval is probed (getMBeanCount) before
+ *   it is handed out, and reopened when the probe fails.
+ * - Connections idle longer than the idle timeout are closed by a background sweep.
+ * - Callers invalidate a connection after an I/O error so that the next call reconnects.
+ *
+ * Queries over the pooled connections can be fanned out on queryExecutor(), which is
+ * bounded by jmx.parallelism.
+ */
+public class JmxConnectionPool {
+
+	/**
+	 * Opens a new connector on a miss.
+	 */
+	public interface Opener {
+		JMXConnector open() throws Exception;
+	}
+
+	private static volatile JmxConnectionPool instance;
+
+	private static final Counter opened = MetricsRegistry.getInstance().counter(
+			"mwagent_jmx_connections_total", "JMX connections", "event", "opened");
+	private static final Counter reused = MetricsRegistry.getInstance().counter(
+			"mwagent_jmx_connections_total", "JMX connections", "event", "reused");
+
+	private final long idleTimeoutMs;
+	private final long healthCheckMs;
+	private final int parallelism;
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+	private volatile ExecutorService queryExecutor;
+
+	public static JmxConnectionPool getInstance() {
+		if (instance == null) {
+			synchronized (JmxConnectionPool.class) {
+				if (instance == null) {
+					JmxConnectionPool pool = new JmxConnectionPool(getConfig().getJmxPoolIdleTimeoutSec() * 1000,
+							getConfig().getJmxPoolHealthCheckSec() * 1000, getConfig().getJmxParallelism());
+					pool.startEvictor();
+					instance = pool;
+				}
+			}
+		}
+		return instance;
+	}
+
+	JmxConnectionPool(long idleTimeoutMs, long healthCheckMs, int parallelism) {
+		this.idleTimeoutMs = idleTimeoutMs;
+		this.healthCheckMs = healthCheckMs;
+		this.parallelism = Math.max(1, parallelism);
+	}
+
+	private void startEvictor() {
+		ScheduledExecutorService evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "JmxPoolEvictor");
+			t.setDaemon(true);
+			return t;
+		});
+		long period = Math.max(1000, idleTimeoutMs / 2);
+		evictor.scheduleWithFixedDelay(this::evictIdle, period, period, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Daemon threads shared by the JMX functions for concurrent MBean queries
+	 */
+	public ExecutorService queryExecutor() {
+		ExecutorService executor = queryExecutor;
+		if (executor == null) {
+			synchronized (this) {
+				executor = queryExecutor;
+				if (executor == null) {
+					AtomicInteger seq = new AtomicInteger();
+					executor = Executors.newFixedThreadPool(parallelism, r -> {
+						Thread t = new Thread(r, "JmxQuery-" + seq.incrementAndGet());
+						t.setDaemon(true);
+						return t;
+					});
+					queryExecutor = executor;
+				}
+			}
+		}
+		return executor;
+	}
+
+	/**
+	 * Whether e, or what it wraps, means that the connection itself is broken and is to be
+	 * invalidated. MBean level errors (unknown MBean, bad ObjectName, reflection) do not affect
+	 * the other callers sharing the connection.
+	 */
+	public static boolean isConnectionFailure(Throwable e) {
+		for (Throwable t = e; t != null; t = t.getCause() != t ? t.getCause() : null) {
+			if (t instanceof JMException) {
+				return false;
+			}
+			if (t instanceof IOException || t instanceof ServiceUnavailableException || t instanceof CommunicationException) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public static String key(String url, String user, String target) {
+		return url + "|" + user + "|" + target;
+	}
+
+	/**
+	 * The pooled connection of (url, user, target), opened with opener when there is none,
+	 * the password changed, or the health check failed.
+	 */
+	public MBeanServerConnection get(String url, String user, String password, String target, Opener opener) throws Exception {
+
+		String key = key(url, user, target);
+		while (true) {
+			Entry e = entries.computeIfAbsent(key, k -> new Entry());
+
+			synchronized (e) {
+				// closed and removed by invalidate / evictIdle before the lock was taken
+				if (entries.get(key) != e) {
+					continue;
+				}
+
+				long now = System.currentTimeMillis();
+
+				if (e.connector != null && !Objects.equals(e.password, password)) {
+					e.close();
+				}
+				if (e.connector != null && now - e.lastCheckedAt >= healthCheckMs) {
+					try {
+						e.connection.getMBeanCount();
+						e.lastCheckedAt = now;
+					} catch (Exception ex) {
+						getConfig().getLogger().info("JMX connection is broken, reconnecting : " + url + " " + target);
+						e.close();
+					}
+				}
+
+				if (e.connector == null) {
+					JMXConnector connector = opener.open();
+					e.connection = connector.getMBeanServerConnection();
+					e.connector = connector;
+					e.password = password;
+					e.lastCheckedAt = now;
+					opened.inc();
+				} else {
+					reused.inc();
+				}
+
+				e.lastUsedAt = now;
+				return e.connection;
+			}
+		}
+	}
+
+	/**
+	 * Close the connection after an error, the next get reconnects
+	 */
+	public void invalidate(String url, String user, String target) {
+		String key = key(url, user, target);
+		Entry e = entries.get(key);
+		if (e != null) {
+			synchronized (e) {
+				e.close();
+				entries.remove(key, e);
+			}
+		}
+	}
+
+	void evictIdle() {
+
+		long now = System.currentTimeMillis();
+		for (Map.Entry<String, Entry> me : entries.entrySet()) {
+			Entry e = me.getValue();
+			synchronized (e) {
+				if (now - e.lastUsedAt > idleTimeoutMs) {
+					getConfig().getLogger().fine("Closing idle JMX connection : " + me.getKey());
+					e.close();
+					entries.remove(me.getKey(), e);
+				}
+			}
+		}
+	}
+
+	public int size() {
+		return entries.size();
+	}
+
+	public void closeAll() {
+		for (String key : entries.keySet()) {
+			Entry e = entries.get(key);
+			if (e != null) {
+				synchronized (e) {
+					e.close();
+					entries.remove(key, e);
+				}
+			}
+		}
+	}
+
+	private static final class Entry {
+
+		private JMXConnector connector;
+		private MBeanServerConnection connection;
+		private String password;
+		private long lastCheckedAt;
+		private long lastUsedAt = System.currentTimeMillis();
+
+		void close() {
+			if (connector != null) {
+				try {
+					connector.close();
+				} catch (IOException e) {
+					getConfig().getLogger().log(Level.FINE, "Failed to close JMX connector", e);
+				}
+			}
+			connector = null;
+			connection = null;
+		}
+	}
+
+}
@@ -0,0 +1,392 @@
+package mwagent.agentfunction;
+
+import static mwagent.common.Config.getConfig;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanServerConnection;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.remote.JMXConnector;
+import javax.management.remote.JMXConnectorFactory;
+import javax.management.remote.JMXServiceURL;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+
+import mwagent.common.Common;
+import mwagent.vo.CommandVO;
+import mwagent.vo.ResultVO;
+
+/**
+ * Collects MBean attributes from a standard JMX service URL.
+ *
+ * Every ObjectName pattern costs one queryNames round trip, and every matching MBean one
+ * getAttributes round trip for all of its attributes; the MBeans are read concurrently
+ * (jmx.parallelism). Connections are kept in JmxConnectionPool between calls.
+ *
+ * Results are delta encoded per collection (jmx_url + queries): only the values changed since
+ * the previous call are sent, with a sequence number. Every full_every-th result, the first one,
+ * and the first after an error carry every value ("full": true), so a receiver that missed a
+ * sequence number resynchronizes at the next full result.
+ *
+ * Numbers, booleans and strings are reported; CompositeData (e.g. HeapMemoryUsage) is flattened
+ * to "Attribute.key". Other types are skipped.
+ *
+ * Supported additional_params (JSON):
+ * - jmx_url: (String) e.g. "service:jmx:rmi:///jndi/rmi://host:9999/jmxrmi"
+ * - jmx_username, jmx_password: (String, optional)
+ * - queries: (Array) {"object_name": pattern, "attributes": [...]}; without attributes every
+ *   readable attribute of the MBean is collected.
+ * - delta: (Boolean, optional) false sends every value each time. Default: true
+ * - full_every: (Number, optional) Default: 10
+ *
+ * Example additional_params:
+ * {"jmx_url": "service:jmx:rmi:///jndi/rmi://127.0.0.1:9999/jmxrmi",
+ *  "queries": [{"object_name": "java.lang:type=Memory", "attributes": ["HeapMemoryUsage"]},
+ *              {"object_name": "java.lang:type=GarbageCollector,name=*", "attributes": ["CollectionCount", "CollectionTime"]}]}
+ *
+ * Example result:
+ * {"seq":12, "full":false, "elapsed_ms":9,
+ *  "mbeans":{"java.lang:type=Memory":{"HeapMemoryUsage.used":52428800}},
+ *  "removed":[], "errors":{}}
+ */
+public class JmxMetricsFunc implements AgentFunc {
+
+	private static final String POOL_TARGET = "-";
+	private static final int DEFAULT_FULL_EVERY = 10;
+
+	// collection key -> values of the previous result, bounded LRU (keys come from the server)
+	private static final Map<String, Snapshot> snapshots = Collections.synchronizedMap(
+			new LinkedHashMap<String, Snapshot>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, Snapshot> eldest) {
+					return size() > Math.max(1, getConfig().getJmxMetricsMaxSnapshots());
+				}
+			});
+
+	private final JmxConnectionPool pool;
+
+	public JmxMetricsFunc() {
+		this(JmxConnectionPool.getInstance());
+	}
+
+	JmxMetricsFunc(JmxConnectionPool pool) {
+		this.pool = pool;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public ArrayList<ResultVO> exeCommand(CommandVO command) throws Exception {
+
+		ResultVO rv = new ResultVO();
+		rv.setOk(false);
+
+		JSONObject params;
+		List<Query> queries;
+		String url;
+		try {
+			params = (JSONObject) new JSONParser().parse(command.getAdditionalParams());
+			url = (String) params.get("jmx_url");
+			if (url == null || url.isEmpty()) {
+				throw new IllegalArgumentException("jmx_url is required");
+			}
+			queries = parseQueries(params);
+		} catch (Exception e) {
+			getConfig().getLogger().warning("get_jmx_metrics params parsing error : " + e.getMessage());
+			rv.setResult("params parsing error");
+			return Common.makeOneResultArray(rv, command);
+		}
+
+		String username = (String) params.get("jmx_username");
+		String password = (String) params.get("jmx_password");
+		boolean delta = !Boolean.FALSE.equals(params.get("delta"));
+		Object fullEveryObj = params.get("full_every");
+		int fullEvery = fullEveryObj instanceof Number ? ((Number) fullEveryObj).intValue() : DEFAULT_FULL_EVERY;
+
+		String collectionKey = url + "|" + username + "|" + ((JSONArray) params.get("queries")).toJSONString();
+		Snapshot snapshot = snapshot(collectionKey);
+
+		long start = System.currentTimeMillis();
+		try {
+			MBeanServerConnection mbs = pool.get(url, username, password, POOL_TARGET,
+					() -> connect(url, username, password));
+
+			Map<String, Object> errors = new LinkedHashMap<>();
+			Map<String, Map<String, Object>> values = collect(mbs, queries, errors);
+
+			JSONObject resultJson = snapshot.encode(values, delta, fullEvery);
+			resultJson.put("errors", new JSONObject(errors));
+			resultJson.put("elapsed_ms", System.currentTimeMillis() - start);
+
+			rv.setResult(resultJson.toJSONString());
+			rv.setOk(true);
+
+		} catch (IOException e) {
+			getConfig().getLogger().log(Level.WARNING, e.getMessage(), e);
+			rv.setResult("jmx connection error : " + url);
+			pool.invalidate(url, username, POOL_TARGET);
+			snapshot.reset();
+		} catch (Exception e) {
+			getConfig().getLogger().log(Level.WARNING, e.getMessage(), e);
+			rv.setResult("jmx error : " + e.getMessage());
+			// MBean level errors leave the connection shared with other calls open
+			if (JmxConnectionPool.isConnectionFailure(e)) {
+				pool.invalidate(url, username, POOL_TARGET);
+				snapshot.reset();
+			}
+		}
+
+		return Common.makeOneResultArray(rv, command);
+	}
+
+	/**
+	 * The snapshot of a collection, a new one (full result next) if unknown or evicted
+	 */
+	static Snapshot snapshot(String collectionKey) {
+		return snapshots.computeIfAbsent(collectionKey, k -> new Snapshot());
+	}
+
+	private static JMXConnector connect(String url, String username, String password) throws IOException {
+		Map<String, Object> env = new HashMap<>();
+		if (username != null) {
+			env.put(JMXConnector.CREDENTIALS, new String[] { username, password });
+		}
+		return JMXConnectorFactory.connect(new JMXServiceURL(url), env);
+	}
+
+	/**
+	 * ObjectName -> flattened attribute values of every MBean matching the queries.
+	 * MBeans that fail individually (e.g. unregistered meanwhile) are reported in errors;
+	 * I/O errors fail the whole collection.
+	 */
+	Map<String, Map<String, Object>> collect(MBeanServerConnection mbs, List<Query> queries, Map<String, Object> errors) throws Exception {
+
+		// 1) one queryNames per pattern
+		List<Callable<Set<ObjectName>>> lookups = new ArrayList<>(queries.size());
+		for (Query q : queries) {
+			lookups.add(() -> q.pattern.isPattern() ? mbs.queryNames(q.pattern, null)
+					: mbs.isRegistered(q.pattern) ? Collections.singleton(q.pattern)
+					: Collections.<ObjectName>emptySet());
+		}
+		List<Set<ObjectName>> names = runAll(lookups);
+
+		// 2) one getAttributes per MBean, in ObjectName order
+		List<ObjectName> targets = new ArrayList<>();
+		List<Callable<Object>> reads = new ArrayList<>();
+		for (int i = 0; i < queries.size(); i++) {
+			Query q = queries.get(i);
+			for (ObjectName name : new TreeSet<>(names.get(i))) {
+				targets.add(name);
+				reads.add(() -> {
+					try {
+						return readAttributes(mbs, name, q.attributes);
+					} catch (IOException e) {
+						throw e;
+					} catch (Exception e) {
+						return e.getClass().getSimpleName() + ": " + e.getMessage();
+					}
+				});
+			}
+		}
+		List<Object> read = runAll(reads);
+
+		// attribute map, or the error message of the MBean
+		Map<String, Map<String, Object>> values = new LinkedHashMap<>();
+		for (int i = 0; i < targets.size(); i++) {
+			String name = targets.get(i).getCanonicalName();
+			Object r = read.get(i);
+			if (r instanceof String) {
+				errors.put(name, r);
+			} else {
+				@SuppressWarnings("unchecked")
+				Map<String, Object> attrs = (Map<String, Object>) r;
+				Map<String, Object> merged = values.get(name);
+				if (merged == null) {
+					values.put(name, attrs);
+				} else {
+					merged.putAll(attrs);
+				}
+			}
+		}
+		return values;
+	}
+
+	private static Map<String, Object> readAttributes(MBeanServerConnection mbs, ObjectName name, String[] attributes) throws Exception {
+
+		String[] attrs = attributes;
+		if (attrs == null) {
+			List<String> readable = new ArrayList<>();
+			for (MBeanAttributeInfo info : mbs.getMBeanInfo(name).getAttributes()) {
+				if (info.isReadable()) {
+					readable.add(info.getName());
+				}
+			}
+			attrs = readable.toArray(new String[0]);
+		}
+
+		Map<String, Object> out = new LinkedHashMap<>();
+		AttributeList list = mbs.getAttributes(name, attrs);
+		for (Attribute a : list.asList()) {
+			flatten(a.getName(), a.getValue(), out);
+		}
+		return out;
+	}
+
+	static void flatten(String key, Object value, Map<String, Object> out) {
+		if (value instanceof Number || value instanceof Boolean || value instanceof String) {
+			out.put(key, value);
+		} else if (value instanceof Character || value instanceof Enum) {
+			out.put(key, value.toString());
+		} else if (value instanceof CompositeData) {
+			CompositeData cd = (CompositeData) value;
+			for (String k : new TreeSet<>(cd.getCompositeType().keySet())) {
+				flatten(key + "." + k, cd.get(k), out);
+			}
+		}
+	}
+
+	/**
+	 * Run the tasks on the pool's query executor, results in task order
+	 */
+	private <T> List<T> runAll(List<Callable<T>> tasks) throws Exception {
+
+		List<T> results = new ArrayList<>(tasks.size());
+		if (tasks.size() <= 1) {
+			for (Callable<T> t : tasks) {
+				results.add(t.call());
+			}
+			return results;
+		}
+
+		List<Future<T>> futures = pool.queryExecutor().invokeAll(tasks);
+		try {
+			for (Future<T> f : futures) {
+				results.add(f.get());
+			}
+		} catch (ExecutionException e) {
+			throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+		}
+		return results;
+	}
+
+	static List<Query> parseQueries(JSONObject params) throws Exception {
+
+		Object queriesObj = params.get("queries");
+		if (!(queriesObj instanceof JSONArray) || ((JSONArray) queriesObj).isEmpty()) {
+			throw new IllegalArgumentException("queries must be a non-empty array");
+		}
+
+		List<Query> queries = new ArrayList<>();
+		for (Object o : (JSONArray) queriesObj) {
+			if (!(o instanceof JSONObject)) {
+				throw new IllegalArgumentException("invalid query : " + o);
+			}
+			JSONObject q = (JSONObject) o;
+			ObjectName pattern = new ObjectName((String) q.get("object_name"));
+			String[] attributes = null;
+			if (q.get("attributes") instanceof JSONArray) {
+				JSONArray a = (JSONArray) q.get("attributes");
+				attributes = new String[a.size()];
+				for (int i = 0; i < a.size(); i++) {
+					attributes[i] = (String) a.get(i);
+				}
+			}
+			queries.add(new Query(pattern, attributes));
+		}
+		return queries;
+	}
+
+	static final class Query {
+
+		final ObjectName pattern;
+		final String[] attributes;
+
+		Query(ObjectName pattern, String[] attributes) {
+			this.pattern = pattern;
+			this.attributes = attributes;
+		}
+	}
+
+	/**
+	 * The values sent so far for one collection
+	 */
+	static final class Snapshot {
+
+		private long seq;
+		private int sinceFull;
+		private Map<String, Map<String, Object>> last;
+
+		synchronized void reset() {
+			last = null;
+		}
+
+		/**
+		 * The result for values, and remember them as the base of the next delta
+		 */
+		@SuppressWarnings("unchecked")
+		synchronized JSONObject encode(Map<String, Map<String, Object>> values, boolean delta, int fullEvery) {
+
+			boolean full = !delta || last == null || fullEvery <= 1 || sinceFull + 1 >= fullEvery;
+
+			JSONObject mbeans = new JSONObject();
+			JSONArray removed = new JSONArray();
+
+			if (full) {
+				for (Map.Entry<String, Map<String, Object>> e : values.entrySet()) {
+					mbeans.put(e.getKey(), new JSONObject(e.getValue()));
+				}
+				sinceFull = 0;
+			} else {
+				for (Map.Entry<String, Map<String, Object>> e : values.entrySet()) {
+					Map<String, Object> prev = last.get(e.getKey());
+					JSONObject changed = new JSONObject();
+					for (Map.Entry<String, Object> a : e.getValue().entrySet()) {
+						if (prev == null || !Objects.equals(prev.get(a.getKey()), a.getValue())) {
+							changed.put(a.getKey(), a.getValue());
+						}
+					}
+					if (!changed.isEmpty()) {
+						mbeans.put(e.getKey(), changed);
+					}
+				}
+				for (String name : last.keySet()) {
+					if (!values.containsKey(name)) {
+						removed.add(name);
+					}
+				}
+				sinceFull++;
+			}
+
+			last = values;
+			seq++;
+
+			JSONObject json = new JSONObject();
+			json.put("seq", seq);
+			json.put("full", full);
+			json.put("mbeans", mbeans);
+			json.put("removed", removed);
+			return json;
+		}
+	}
+
+}
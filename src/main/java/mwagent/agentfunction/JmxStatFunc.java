@@ -1,10 +1,15 @@
 package mwagent.agentfunction;
 
 import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Hashtable;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 
 import javax.management.MBeanServerConnection;
@@ -43,9 +48,27 @@ import mwagent.vo.ResultVO;
  *   "jmx_target": "adminServer",
  *   "jmx_domain": "jeus_domain"
  * }
+ *
+ * 연결은 JmxConnectionPool 에 (jmx_url, jmx_username, jmx_target) 별로 유지되어 재사용되고,
+ * 서버별 getServerState 는 jmx.parallelism 만큼 병렬로 조회한다.
  */
 public class JmxStatFunc implements AgentFunc {
 
+    private static final String DOMAIN_MBEAN_CLASS = "jeus.management.j2ee.J2EEDomainMBean";
+
+    // J2EEDomainMBean 의 reflection 정보는 한 번만 조회
+    private static volatile DomainApi domainApi;
+
+    private final JmxConnectionPool pool;
+
+    public JmxStatFunc() {
+        this(JmxConnectionPool.getInstance());
+    }
+
+    JmxStatFunc(JmxConnectionPool pool) {
+        this.pool = pool;
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     public ArrayList<ResultVO> exeCommand(CommandVO command) throws IOException {
@@ -58,7 +81,6 @@ public class JmxStatFunc implements AgentFunc {
         String jmx_password = "";
         String jmx_target = "";
         String jmx_domain = "";
-        JMXConnector connector = null;
 
         ResultVO rv = new ResultVO();
         rv.setOk(false);
@@ -74,89 +96,161 @@ public class JmxStatFunc implements AgentFunc {
             jmx_domain = (String) jsonObj.get("jmx_domain");
 
         } catch (Exception e) {
-            e.printStackTrace();
             getConfig().getLogger().severe(e.getMessage());
             rv.setResult("params parsing error");
+            return Common.makeOneResultArray(rv, command);
         }
 
-        try {
-            // 1) JEUS 환경 설정
-            Hashtable<String, String> env = new Hashtable<String, String>();
-            env.put(Context.INITIAL_CONTEXT_FACTORY, "jeus.jndi.JNSContextFactory");
-            env.put(Context.PROVIDER_URL, jmx_url);
-            env.put(Context.SECURITY_PRINCIPAL, jmx_username);
-            env.put(Context.SECURITY_CREDENTIALS, jmx_password);
-            
-            InitialContext ctx = new InitialContext(env);
-
-            for (Entry<?, ?> a : ctx.getEnvironment().entrySet()) {
-            	getConfig().getLogger().fine("ctx 2 : " + a.getKey() + ":" + a.getValue());
-            }
+        final String url = jmx_url;
+        final String username = jmx_username;
+        final String password = jmx_password;
+        final String target = jmx_target;
 
-            connector = (JMXConnector) ctx.lookup("mgmt/rmbs/" + jmx_target);
-            MBeanServerConnection mbeanServer = connector.getMBeanServerConnection();
+        try {
+            // 1) pool 에서 연결 획득 (없거나 끊어졌으면 JEUS JNDI 로 새로 연결)
+            MBeanServerConnection mbeanServer = pool.get(url, username, password, target,
+                    () -> lookupConnector(url, username, password, target));
 
             ObjectName objectName = new ObjectName(
                     "JEUS:j2eeType=J2EEDomain,JMXManager=" + jmx_target + ",name=" + jmx_domain);
 
-            // =============================
             // 2) Reflection 으로 J2EEDomainMBean 로딩
             //    (import jeus.management.j2ee.J2EEDomainMBean 제거)
-            // =============================
-            Class<?> domainMBeanClass = Class.forName("jeus.management.j2ee.J2EEDomainMBean");
+            DomainApi api = domainApi();
 
             // 3) Proxy 생성 시, Class<?> 객체 사용
             Object domainMBeanProxy = MBeanServerInvocationHandler.newProxyInstance(
                     mbeanServer,
                     objectName,
-                    domainMBeanClass,
+                    api.mbeanClass,
                     false
             );
 
-            // 4) Reflection으로 메서드 가져오기
-            //    - List<String> getServerListFromDescriptor()
-            //    - String getServerState(String serverName)
-            //    메서드 시그니처를 찾아서 invoke
-            java.lang.reflect.Method getServerListMethod = domainMBeanClass.getMethod("getServerListFromDescriptor");
-            java.lang.reflect.Method getServerStateMethod = domainMBeanClass.getMethod("getServerState", String.class);
-
-            // 5) getServerListFromDescriptor() 호출
-            Object resultObj = getServerListMethod.invoke(domainMBeanProxy);
+            // 4) getServerListFromDescriptor() 호출
+            List<String> servers = (List<String>) api.getServerList.invoke(domainMBeanProxy);
 
-            List<String> servers = (List<String>) resultObj;
+            // 5) getServerState(serverName) 병렬 호출, 결과는 서버 목록 순서대로
+            List<String> states = queryStates(servers, s -> (String) api.getServerState.invoke(domainMBeanProxy, s));
 
             // 6) 결과 JSON 작성
             JSONArray severArray = new JSONArray();
-            
-            for(String s: servers) {
+
+            for (int i = 0; i < servers.size(); i++) {
             	JSONObject serverObj = new JSONObject();
-            	serverObj.put("server_name", s);
+            	serverObj.put("server_name", servers.get(i));
+                serverObj.put("status", states.get(i));
 
-                // getServerState(serverName) 호출
-                String state = (String) getServerStateMethod.invoke(domainMBeanProxy, s);
-                serverObj.put("status", state);
-                
                 severArray.add(serverObj);
             }
-            
+
             String resultJson = severArray.toJSONString();
             rv.setResult(resultJson);
             rv.setObjectAggregationKey(getConfig().getAgent_id() + "__" + jmx_domain);
             rv.setOk(true);
 
-            connector.close();
-
         } catch (javax.naming.ServiceUnavailableException e) {
         	getConfig().getLogger().log(Level.WARNING, e.getMessage(), e);
             rv.setResult("jmx connection error : " + jmx_url);
+            pool.invalidate(url, username, target);
         } catch (Exception e) {
         	getConfig().getLogger().log(Level.WARNING, e.getMessage(), e);
             rv.setResult("jmx error");
-            if (connector != null) {
-                connector.close();
+            // 연결 오류일 때만 다시 연결, MBean 오류로 같은 연결을 쓰는 다른 조회를 끊지 않음
+            if (JmxConnectionPool.isConnectionFailure(e)) {
+                pool.invalidate(url, username, target);
             }
         }
 
         return Common.makeOneResultArray(rv, command);
     }
+
+    /**
+     * JEUS JNDI 에서 JMXConnector 조회
+     */
+    private static JMXConnector lookupConnector(String url, String username, String password, String target) throws Exception {
+
+        Hashtable<String, String> env = new Hashtable<String, String>();
+        env.put(Context.INITIAL_CONTEXT_FACTORY, "jeus.jndi.JNSContextFactory");
+        env.put(Context.PROVIDER_URL, url);
+        env.put(Context.SECURITY_PRINCIPAL, username);
+        env.put(Context.SECURITY_CREDENTIALS, password);
+
+        InitialContext ctx = new InitialContext(env);
+        try {
+            for (Entry<?, ?> a : ctx.getEnvironment().entrySet()) {
+            	getConfig().getLogger().fine("ctx 2 : " + a.getKey() + ":" + a.getValue());
+            }
+            return (JMXConnector) ctx.lookup("mgmt/rmbs/" + target);
+        } finally {
+            ctx.close();
+        }
+    }
+
+    interface StateQuery {
+        String query(String server) throws Exception;
+    }
+
+    /**
+     * 서버별 상태를 JmxConnectionPool 의 query executor 에서 병렬로 조회
+     * 하나라도 실패하면 예외를 그대로 던짐
+     */
+    List<String> queryStates(List<String> servers, StateQuery query) throws Exception {
+
+        List<String> states = new ArrayList<>(servers.size());
+        if (servers.size() <= 1) {
+            for (String s : servers) {
+                states.add(query.query(s));
+            }
+            return states;
+        }
+
+        List<Callable<String>> tasks = new ArrayList<>(servers.size());
+        for (String s : servers) {
+            tasks.add(() -> query.query(s));
+        }
+
+        List<Future<String>> futures = pool.queryExecutor().invokeAll(tasks);
+        try {
+            for (Future<String> f : futures) {
+                states.add(f.get());
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof InvocationTargetException && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            throw cause instanceof Exception ? (Exception) cause : e;
+        }
+        return states;
+    }
+
+    private static DomainApi domainApi() throws ReflectiveOperationException {
+        DomainApi api = domainApi;
+        if (api == null) {
+            Class<?> domainMBeanClass = Class.forName(DOMAIN_MBEAN_CLASS);
+            api = new DomainApi(domainMBeanClass,
+                    domainMBeanClass.getMethod("getServerListFromDescriptor"),
+                    domainMBeanClass.getMethod("getServerState", String.class));
+            domainApi = api;
+        }
+        return api;
+    }
+
+    /**
+     * J2EEDomainMBean 의 Class 와 사용하는 Method
+     * - List<String> getServerListFromDescriptor()
+     * - String getServerState(String serverName)
+     */
+    private static final class DomainApi {
+
+        private final Class<?> mbeanClass;
+        private final Method getServerList;
+        private final Method getServerState;
+
+        DomainApi(Class<?> mbeanClass, Method getServerList, Method getServerState) {
+            this.mbeanClass = mbeanClass;
+            this.getServerList = getServerList;
+            this.getServerState = getServerState;
+        }
+    }
 }
@@ -0,0 +1,30 @@
+package mwagent.agentfunction;
+
+import java.util.ArrayList;
+
+import mwagent.common.Common;
+import mwagent.kafka.MwProducer;
+import mwagent.vo.CommandVO;
+import mwagent.vo.ResultVO;
+
+/**
+ * Reports Kafka producer counters per topic (sent/failed/fallback/bytes/latency).
+ * 
+ * Supported additional_params: none
+ * 
+ * Example result:
+ * [{"topic":"t_results","sent":120,"failed":0,"fallback":0,"dropped":0,"bytes":52311,"avg_latency_ms":12,"max_latency_ms":80}]
+ */
+public class KafkaProducerStatFunc implements AgentFunc {
+
+	@Override
+	public ArrayList<ResultVO> exeCommand(CommandVO command) {
+
+		ResultVO rv = new ResultVO();
+		rv.setOk(true);
+		rv.setResult(MwProducer.getStats().toJSONString());
+    	return Common.makeOneResultArray(rv, command);
+		
+	}
+
+}
@@ -5,13 +5,16 @@ import java.io.ByteArrayInputStream;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Paths;
 import java.security.cert.CertificateException;
 import java.security.cert.CertificateFactory;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.logging.Level;
 
+import mwagent.common.CertificateCache;
 import mwagent.common.Common;
 import mwagent.vo.CommandVO;
 import mwagent.vo.ResultVO;
@@ -33,16 +36,55 @@ public class SSLCertiFileFunc  implements AgentFunc {
 
 		String param = command.getAdditionalParams();
 		
+    	ResultVO rv = new ResultVO();
+    	rv.setOk(false);
+    	
+		try {
+			
+			// cert_cache.enabled 이면 파일이 바뀌지 않은 경우 (수정 시각, 크기) 다시 읽지 않음
+			X509Certificate cer = getConfig().isCertCacheEnabled()
+					? CertificateCache.getInstance().file(Paths.get(param), () -> readCertificate(param))
+					: readCertificate(param);
+			
+	    	StringBuilder json = new StringBuilder();
+	        
+	            
+			json.append("{");
+			json.append("\"certifile\":\"" + Common.escape(param) + "\",");
+			json.append("\"notafter\":\""+cer.getNotAfter().toString()+"\",");
+			json.append("\"notbefore\":\""+cer.getNotBefore().toString()+"\",");
+			json.append("\"serial\":\""+String.format("%032X", cer.getSerialNumber())+"\",");
+			json.append("\"issuer\":\""+cer.getIssuerDN().getName()+"\",");
+	        json.append("\"subject\":\""+cer.getSubjectDN().getName()+"\"");
+	        json.append("}");
+	        rv.setResult(json.toString());
+	        rv.setOk(true);
+		}
+        catch (CertificateException e){
+        	getConfig().getLogger().log(Level.WARNING, e.getMessage(), e);
+        	rv.setResult("CertificateException occured");
+        }
+        catch (FileNotFoundException e){
+        	getConfig().getLogger().log(Level.WARNING, e.getMessage(), e);
+        	rv.setResult("FileNotFoundException occured");
+        }        
+		
+		return Common.makeOneResultArray(rv, command);
+		
+	}
+
+	/**
+	 * PEM 파일은 첫 번째 인증서, 그 외는 DER 로 읽음
+	 */
+	X509Certificate readCertificate(String param) throws IOException, CertificateException {
+
         InputStream is = null;
 		BufferedReader br = null;
 
 		String line;
 		String result = "";
 		boolean is_get = false;
-		
-    	ResultVO rv = new ResultVO();
-    	rv.setOk(false);
-    	
+
 		try {
 			
 			String ext = "";
@@ -73,30 +115,8 @@ public class SSLCertiFileFunc  implements AgentFunc {
 			}
 			
 			CertificateFactory fact = CertificateFactory.getInstance("X.509");
-			X509Certificate cer = (X509Certificate) fact.generateCertificate(is);	
-			
-	    	StringBuilder json = new StringBuilder();
-	        
-	            
-			json.append("{");
-			json.append("\"certifile\":\"" + Common.escape(param) + "\",");
-			json.append("\"notafter\":\""+cer.getNotAfter().toString()+"\",");
-			json.append("\"notbefore\":\""+cer.getNotBefore().toString()+"\",");
-			json.append("\"serial\":\""+String.format("%032X", cer.getSerialNumber())+"\",");
-			json.append("\"issuer\":\""+cer.getIssuerDN().getName()+"\",");
-	        json.append("\"subject\":\""+cer.getSubjectDN().getName()+"\"");
-	        json.append("}");
-	        rv.setResult(json.toString());
-	        rv.setOk(true);
+			return (X509Certificate) fact.generateCertificate(is);	
 		}
-        catch (CertificateException e){
-        	getConfig().getLogger().log(Level.WARNING, e.getMessage(), e);
-        	rv.setResult("CertificateException occured");
-        }
-        catch (FileNotFoundException e){
-        	getConfig().getLogger().log(Level.WARNING, e.getMessage(), e);
-        	rv.setResult("FileNotFoundException occured");
-        }        
         finally {
             if (is != null) {
             	is.close();
@@ -105,9 +125,6 @@ public class SSLCertiFileFunc  implements AgentFunc {
             	br.close();
             }
         }
-		
-		return Common.makeOneResultArray(rv, command);
-		
 	}
 
 }
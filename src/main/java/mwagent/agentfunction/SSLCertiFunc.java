@@ -21,6 +21,7 @@ import javax.net.ssl.X509TrustManager;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 
+import mwagent.common.CertificateCache;
 import mwagent.common.Common;
 import mwagent.vo.CommandVO;
 import mwagent.vo.ResultVO;
@@ -59,7 +60,7 @@ public class SSLCertiFunc implements AgentFunc {
 	
 	}
 	
-	@SuppressWarnings("unchecked")	
+	@SuppressWarnings("unchecked")
 	public ResultVO printValidCerts(String domain, X509Certificate[] certs) {
 		
 
@@ -88,7 +89,20 @@ public class SSLCertiFunc implements AgentFunc {
         
 		JSONObject resultJson = new JSONObject();
 		resultJson.put("domain", domain);
+		resultJson.put("certs", toJsonArray(certs));
 		
+		ResultVO rv = new ResultVO();
+
+		rv.setResult(resultJson.toJSONString());
+		rv.setOk(true);
+
+        return rv;
+        
+	}
+
+	@SuppressWarnings("unchecked")
+	static JSONArray toJsonArray(X509Certificate[] certs) {
+
 		JSONArray certsArray = new JSONArray();
 		
 		int i = 0;
@@ -106,16 +120,7 @@ public class SSLCertiFunc implements AgentFunc {
 			certsArray.add(certObj);
 			
 		}
-		
-		resultJson.put("certs", certsArray);
-		
-		ResultVO rv = new ResultVO();
-
-		rv.setResult(resultJson.toJSONString());
-		rv.setOk(true);
-
-        return rv;
-        
+		return certsArray;
 	}
 
 	public String[] getDomainNPort(String param) {
@@ -138,7 +143,7 @@ public class SSLCertiFunc implements AgentFunc {
 	}
 	
 	// AIX java1.8 u144 의 기본 security 가 TLSv1.2 를 지원하지 않아서 외부 Security Provider 를 추가함
-	private void addSecurityProvider(){
+	private static void addSecurityProvider(){
 		
 		if(getConfig().getOs().equals("AIX")){
 			
@@ -161,72 +166,120 @@ public class SSLCertiFunc implements AgentFunc {
 	
 	public X509Certificate[] checkSSLCertificate(String domain, String ip, int port) {
 		
-		List<X509Certificate> validCerts = new ArrayList<>();
-		
 		try{
 			
-			addSecurityProvider();
+			return certificates(domain, ip, port, getConfig().getSslScanConnectTimeoutMs(), getConfig().getSslScanReadTimeoutMs());
 			
-			// added 2025.11.07
-			TrustManager[] trustAllCerts = new TrustManager[] {
-					new X509TrustManager(){
-						public X509Certificate[] getAcceptedIssuers(){
-							return null;
-						}
-						public void checkClientTrusted(X509Certificate[] certs, String authType){}
-						public void checkServerTrusted(X509Certificate[] certs, String authType){}
-					}
-			};
+		} catch (Exception e){
+			getConfig().getLogger().log(Level.SEVERE, "Failed to check SSL certificate: " + e.getMessage(), e);
+			return new X509Certificate[0];
+		}
+		
+	}
 
-			SSLContext context = SSLContext.getInstance("TLSv1.2");
-			// commented 2025.11.07 
-			//context.init(null, null, null);
-			
-			// added 2025.11.07
-			context.init(null, trustAllCerts, new java.security.SecureRandom());
+	/**
+	 * cert_cache.enabled 이면 TTL 동안 같은 endpoint 의 인증서를 handshake 없이 재사용
+	 */
+	X509Certificate[] certificates(String domain, String ip, int port, int connectTimeoutMs, int readTimeoutMs) throws Exception {
+		
+		if (!getConfig().isCertCacheEnabled()) {
+			return fetchCertificates(domain, ip, port, connectTimeoutMs, readTimeoutMs);
+		}
+		return CertificateCache.getInstance().endpoint(domain, ip, port,
+				() -> fetchCertificates(domain, ip, port, connectTimeoutMs, readTimeoutMs));
+	}
 
-			SSLSocketFactory factory = context.getSocketFactory();
+	/**
+	 * ip:port 에 접속해 domain 을 SNI 로 handshake 하고, domain 에 해당하는 인증서를 반환
+	 *
+	 * @param connectTimeoutMs 접속 제한 시간
+	 * @param readTimeoutMs handshake 응답 제한 시간
+	 */
+	X509Certificate[] fetchCertificates(String domain, String ip, int port, int connectTimeoutMs, int readTimeoutMs) throws Exception {
+		
+		List<X509Certificate> validCerts = new ArrayList<>();
+		
+		SSLSocketFactory factory = getTrustAllContext().getSocketFactory();
+		
+		try(SSLSocket socket = (SSLSocket) factory.createSocket()){
 			
-			try(SSLSocket socket = (SSLSocket) factory.createSocket()){
-				
-				socket.connect(new InetSocketAddress(ip, port));
-				SSLParameters sslParams = socket.getSSLParameters();
-				
-				// 1) SNIHostName(domain) 설정
+			socket.connect(new InetSocketAddress(ip, port), connectTimeoutMs);
+			socket.setSoTimeout(readTimeoutMs);
+			SSLParameters sslParams = socket.getSSLParameters();
+			
+			// 1) SNIHostName(domain) 설정, IP 주소는 SNI 로 보낼 수 없음
+			if (isSniName(domain)) {
 				sslParams.setServerNames(
 					java.util.Collections.singletonList(
 						new javax.net.ssl.SNIHostName(domain)
 					)
 				);
-				//sslParams.setEndpointIdentificationAlgorithm("HTTPS");
-				socket.setSSLParameters(sslParams);
-				socket.startHandshake();
+			}
+			//sslParams.setEndpointIdentificationAlgorithm("HTTPS");
+			socket.setSSLParameters(sslParams);
+			socket.startHandshake();
+			
+			SSLSession session = socket.getSession();
+			Certificate[] certificates = session.getPeerCertificates();
+			
+			for(Certificate certificate : certificates ){
 				
-				SSLSession session = socket.getSession();
-				Certificate[] certificates = session.getPeerCertificates();
 				
-				for(Certificate certificate : certificates ){
+				if (certificate instanceof X509Certificate) {
+					
+					X509Certificate cert = (X509Certificate) certificate;
 					
+					if (isCertificateValidForDomain(cert, domain))validCerts.add(cert);
 					
-					if (certificate instanceof X509Certificate) {
-						
-						X509Certificate cert = (X509Certificate) certificate;
-						
-						if (isCertificateValidForDomain(cert, domain))validCerts.add(cert);
-						
-					}
 				}
 			}
-			
-		} catch (Exception e){
-			e.printStackTrace();
-			getConfig().getLogger().log(Level.SEVERE, "Failed to check SSL certificate: " + e.getMessage(), e);
-			return new X509Certificate[0];
 		}
 		
 		return validCerts.toArray(new X509Certificate[0]);
 		
 	}
+
+	private static boolean isSniName(String domain) {
+		return domain != null && !domain.isEmpty() && !domain.equals("*")
+				&& !domain.contains(":") && !domain.matches("[0-9.]+");
+	}
+
+	private static volatile SSLContext trustAllContext;
+
+	/**
+	 * 인증서 조회용 SSLContext (모든 인증서 신뢰), 한 번만 생성해서 재사용
+	 */
+	static SSLContext getTrustAllContext() throws Exception {
+		
+		if (trustAllContext == null) {
+			synchronized (SSLCertiFunc.class) {
+				if (trustAllContext == null) {
+					
+					addSecurityProvider();
+					
+					// added 2025.11.07
+					TrustManager[] trustAllCerts = new TrustManager[] {
+							new X509TrustManager(){
+								public X509Certificate[] getAcceptedIssuers(){
+									return null;
+								}
+								public void checkClientTrusted(X509Certificate[] certs, String authType){}
+								public void checkServerTrusted(X509Certificate[] certs, String authType){}
+							}
+					};
+
+					SSLContext context = SSLContext.getInstance("TLSv1.2");
+					// commented 2025.11.07 
+					//context.init(null, null, null);
+					
+					// added 2025.11.07
+					context.init(null, trustAllCerts, new java.security.SecureRandom());
+					trustAllContext = context;
+				}
+			}
+		}
+		return trustAllContext;
+	}
 	
 	private boolean isCertificateValidForDomain(X509Certificate cert, String domain) {
     	
@@ -0,0 +1,216 @@
+package mwagent.agentfunction;
+
+import static mwagent.common.Config.getConfig;
+
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+
+import mwagent.common.Common;
+import mwagent.vo.CommandVO;
+import mwagent.vo.ResultVO;
+
+/**
+ * Checks the SSL certificates of many endpoints in one command.
+ *
+ * Handshakes run concurrently on a bounded pool, each with a connect and a read timeout, and
+ * the whole scan has a deadline. One result is returned with an entry per target, in the
+ * order given, holding either the certificates or the error.
+ *
+ * Supported additional_params (JSON):
+ * - targets: (Array) "domain", "domain:port", or {"host": ..., "port": ..., "sni": ...}.
+ *   host is the address connected to, sni the name sent and matched against the certificates.
+ * - connect_host: (String, optional) address connected to for targets without a host,
+ *   e.g. "127.0.0.1" to check through a local proxy like get_ssl_certi. Default: the domain.
+ * - parallelism, connect_timeout_ms, read_timeout_ms: (Number, optional) override ssl_scan.*
+ *
+ * Example additional_params:
+ * {"targets": ["example.com", "api.example.com:8443", {"host": "10.0.0.5", "port": 443, "sni": "www.example.com"}],
+ *  "connect_timeout_ms": 2000}
+ *
+ * Example result:
+ * {"total":3, "ok":2, "failed":1, "elapsed_ms":812, "results":[
+ *   {"target":"example.com:443", "host":"example.com", "port":443, "sni":"example.com", "certs":[...]},
+ *   {"target":"10.0.0.5:443", ..., "error":"SocketTimeoutException: Read timed out"}, ...]}
+ */
+public class SSLCertiScanFunc implements AgentFunc {
+
+	private final SSLCertiFunc certiFunc = new SSLCertiFunc();
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public ArrayList<ResultVO> exeCommand(CommandVO command) throws Exception {
+
+		ResultVO rv = new ResultVO();
+		rv.setOk(false);
+
+		JSONObject params;
+		List<Target> targets;
+		try {
+			params = (JSONObject) new JSONParser().parse(command.getAdditionalParams());
+			targets = parseTargets(params);
+		} catch (Exception e) {
+			getConfig().getLogger().warning("scan_ssl_certi params parsing error : " + e.getMessage());
+			rv.setResult("params parsing error");
+			return Common.makeOneResultArray(rv, command);
+		}
+
+		int parallelism = intParam(params, "parallelism", getConfig().getSslScanParallelism());
+		int connectTimeoutMs = intParam(params, "connect_timeout_ms", getConfig().getSslScanConnectTimeoutMs());
+		int readTimeoutMs = intParam(params, "read_timeout_ms", getConfig().getSslScanReadTimeoutMs());
+
+		long start = System.currentTimeMillis();
+		JSONArray results = scan(targets, Math.max(1, parallelism), connectTimeoutMs, readTimeoutMs);
+
+		int ok = 0;
+		for (Object o : results) {
+			if (!((JSONObject) o).containsKey("error")) {
+				ok++;
+			}
+		}
+
+		JSONObject resultJson = new JSONObject();
+		resultJson.put("total", targets.size());
+		resultJson.put("ok", ok);
+		resultJson.put("failed", targets.size() - ok);
+		resultJson.put("elapsed_ms", System.currentTimeMillis() - start);
+		resultJson.put("results", results);
+
+		getConfig().getLogger().info("scan_ssl_certi : " + ok + "/" + targets.size() + " targets ok in " + resultJson.get("elapsed_ms") + "ms");
+
+		rv.setResult(resultJson.toJSONString());
+		rv.setOk(true);
+		return Common.makeOneResultArray(rv, command);
+	}
+
+	/**
+	 * Handshake with every target, at most parallelism at a time.
+	 * Targets not finished before the deadline are reported with a timeout error.
+	 */
+	@SuppressWarnings("unchecked")
+	JSONArray scan(List<Target> targets, int parallelism, int connectTimeoutMs, int readTimeoutMs) throws InterruptedException {
+
+		JSONArray results = new JSONArray();
+		if (targets.isEmpty()) {
+			return results;
+		}
+
+		int threads = Math.min(parallelism, targets.size());
+		AtomicInteger seq = new AtomicInteger();
+		ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+			Thread t = new Thread(r, "SSLScan-" + seq.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+
+		// every round of handshakes may take the full connect + read timeout, plus name lookups
+		long rounds = (targets.size() + threads - 1) / threads;
+		long deadlineMs = rounds * ((long) connectTimeoutMs + readTimeoutMs) + connectTimeoutMs;
+
+		List<Callable<X509Certificate[]>> tasks = new ArrayList<>(targets.size());
+		for (Target t : targets) {
+			tasks.add(() -> certiFunc.certificates(t.sni, t.host, t.port, connectTimeoutMs, readTimeoutMs));
+		}
+
+		try {
+			List<Future<X509Certificate[]>> futures = pool.invokeAll(tasks, deadlineMs, TimeUnit.MILLISECONDS);
+			for (int i = 0; i < targets.size(); i++) {
+				results.add(toJson(targets.get(i), futures.get(i)));
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+		return results;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static JSONObject toJson(Target t, Future<X509Certificate[]> f) throws InterruptedException {
+
+		JSONObject json = new JSONObject();
+		json.put("target", t.host + ":" + t.port);
+		json.put("host", t.host);
+		json.put("port", t.port);
+		json.put("sni", t.sni);
+
+		try {
+			json.put("certs", SSLCertiFunc.toJsonArray(f.get()));
+		} catch (CancellationException e) {
+			json.put("error", "Timeout");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause() != null ? e.getCause() : e;
+			json.put("error", cause.getClass().getSimpleName() + ": " + cause.getMessage());
+		}
+		return json;
+	}
+
+	static List<Target> parseTargets(JSONObject params) {
+
+		Object targetsObj = params.get("targets");
+		if (!(targetsObj instanceof JSONArray)) {
+			throw new IllegalArgumentException("targets must be an array");
+		}
+		String connectHost = (String) params.get("connect_host");
+
+		List<Target> targets = new ArrayList<>();
+		for (Object o : (JSONArray) targetsObj) {
+
+			if (o instanceof String) {
+				String s = ((String) o).trim();
+				int colon = s.lastIndexOf(':');
+				String domain = colon > 0 ? s.substring(0, colon) : s;
+				int port = colon > 0 ? Integer.parseInt(s.substring(colon + 1)) : 443;
+				targets.add(new Target(connectHost != null ? connectHost : domain, port, domain));
+
+			} else if (o instanceof JSONObject) {
+				JSONObject t = (JSONObject) o;
+				String sni = (String) t.get("sni");
+				String host = (String) t.get("host");
+				if (host == null) {
+					host = connectHost != null ? connectHost : sni;
+				}
+				if (host == null) {
+					throw new IllegalArgumentException("target without host and sni : " + t.toJSONString());
+				}
+				Object portObj = t.get("port");
+				int port = portObj instanceof Number ? ((Number) portObj).intValue()
+						: portObj != null ? Integer.parseInt(portObj.toString()) : 443;
+				targets.add(new Target(host, port, sni != null ? sni : host));
+
+			} else {
+				throw new IllegalArgumentException("invalid target : " + o);
+			}
+		}
+		return targets;
+	}
+
+	private static int intParam(JSONObject params, String key, int defaultValue) {
+		Object v = params.get(key);
+		return v instanceof Number ? ((Number) v).intValue() : defaultValue;
+	}
+
+	static final class Target {
+
+		final String host;
+		final int port;
+		final String sni;
+
+		Target(String host, int port, String sni) {
+			this.host = host;
+			this.port = port;
+			this.sni = sni;
+		}
+	}
+
+}
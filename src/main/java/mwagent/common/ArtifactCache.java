@@ -0,0 +1,372 @@
+package mwagent.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Agent local store of downloaded artifacts, so that deploying the same file again (re-runs,
+ * several instances on one host) is a local link or copy instead of a network transfer.
+ *
+ * - Blobs are kept by content : blobs/<sha256[0:2]>/<sha256>. A download whose SHA-256 is
+ *   known beforehand is served without any request.
+ * - An index maps each URL to the blob last downloaded from it with its ETag / Last-Modified,
+ *   which FileDownloader sends as a conditional request : 304 serves the blob.
+ * - Blobs are copied into the target directory, or hard linked when enabled and on the same
+ *   file system. A linked file shares its permissions with the blob, detach() gives it a copy
+ *   of its own before a chmod. The size and mtime of a blob are recorded when it is added, and
+ *   a blob that no longer matches (e.g. a linked file modified in place) is dropped instead of
+ *   served.
+ * - When the blobs exceed the size cap the least recently used are evicted.
+ *
+ * The index (a properties file) is re-read and written under a file lock on every operation,
+ * so several agents on one host may share the directory.
+ */
+public class ArtifactCache {
+
+	private static final String BLOB = "blob.";
+	private static final String URL = "url.";
+
+	private static volatile ArtifactCache instance;
+
+	private final Path dir;
+	private final Path indexFile;
+	private final Path lockFile;
+	private final long maxBytes;
+	private final boolean hardlink;
+	private final Logger logger;
+
+	public static ArtifactCache getInstance() {
+		if (instance == null) {
+			synchronized (ArtifactCache.class) {
+				if (instance == null) {
+					Config config = Config.getConfig();
+					instance = new ArtifactCache(Paths.get(config.getArtifactCacheDir()), config.getArtifactCacheMaxBytes(),
+							config.isArtifactCacheHardlink());
+				}
+			}
+		}
+		return instance;
+	}
+
+	/**
+	 * @param maxBytes total size of the blobs to keep, 0 or less : unlimited
+	 * @param hardlink link blobs into target directories where possible instead of copying
+	 */
+	public ArtifactCache(Path dir, long maxBytes, boolean hardlink) {
+		this.dir = dir;
+		this.indexFile = dir.resolve("index.properties");
+		this.lockFile = dir.resolve("index.lock");
+		this.maxBytes = maxBytes;
+		this.hardlink = hardlink;
+		this.logger = Config.getConfig().getLogger();
+	}
+
+	/**
+	 * What was last downloaded from a URL, null if unknown or its blob is gone
+	 */
+	public synchronized Entry lookup(String url) {
+		try {
+			return locked(index -> {
+				Entry e = Entry.parse(index.getProperty(URL + url));
+				return e != null && intact(index, e.getSha256()) ? e : null;
+			});
+		} catch (IOException e) {
+			logger.log(Level.WARNING, "Artifact cache lookup failed : " + url, e);
+			return null;
+		}
+	}
+
+	public synchronized boolean contains(String sha256) {
+		try {
+			return locked(index -> intact(index, sha256.toLowerCase()));
+		} catch (IOException e) {
+			logger.log(Level.WARNING, "Artifact cache lookup failed : " + sha256, e);
+			return false;
+		}
+	}
+
+	/**
+	 * The cached file of sha256 to be read (e.g. served to peers), null if not cached
+	 */
+	public synchronized Path get(String sha256) {
+		String sha = sha256.toLowerCase();
+		try {
+			return locked(index -> intact(index, sha) ? blob(sha) : null);
+		} catch (IOException e) {
+			logger.log(Level.WARNING, "Artifact cache lookup failed : " + sha, e);
+			return null;
+		}
+	}
+
+	/**
+	 * Link or copy the blob to target (replaced if it exists)
+	 *
+	 * @return false when the blob is not in the cache
+	 */
+	public synchronized boolean materialize(String sha256, Path target) {
+		String sha = sha256.toLowerCase();
+		try {
+			return locked(index -> {
+				if (!intact(index, sha)) {
+					return false;
+				}
+				Files.deleteIfExists(target);
+				Path blob = blob(sha);
+				if (!hardlink || !link(target, blob)) {
+					Files.copy(blob, target);
+				}
+				String[] v = index.getProperty(BLOB + sha).split("\\|");
+				index.setProperty(BLOB + sha, v[0] + "|" + v[1] + "|" + System.currentTimeMillis());
+				return true;
+			});
+		} catch (IOException e) {
+			logger.log(Level.WARNING, "Artifact cache materialize failed : " + sha, e);
+			return false;
+		}
+	}
+
+	/**
+	 * Record a file just downloaded from url, adding its content if not cached yet
+	 */
+	public synchronized void put(String url, Entry entry, Path file) {
+		String sha = entry.getSha256();
+		try {
+			locked(index -> {
+				if (!intact(index, sha)) {
+					Path blob = blob(sha);
+					Files.createDirectories(blob.getParent());
+					Path tmp = blob.resolveSibling(sha + ".tmp");
+					Files.deleteIfExists(tmp);
+					if (!hardlink || !link(tmp, file)) {
+						Files.copy(file, tmp);
+					}
+					FileDownloader.moveAtomically(tmp, blob);
+					index.setProperty(BLOB + sha, Files.size(blob) + "|" + Files.getLastModifiedTime(blob).toMillis()
+							+ "|" + System.currentTimeMillis());
+					logger.info("Artifact cached : " + sha + " (" + Files.size(blob) + " bytes) from " + url);
+				}
+				index.setProperty(URL + url, entry.format());
+				evict(index, sha);
+				return null;
+			});
+		} catch (IOException e) {
+			logger.log(Level.WARNING, "Artifact cache put failed : " + url, e);
+		}
+	}
+
+	/**
+	 * Total size of the cached blobs
+	 */
+	public synchronized long totalBytes() {
+		try {
+			return locked(index -> {
+				long total = 0;
+				for (String key : index.stringPropertyNames()) {
+					if (key.startsWith(BLOB)) {
+						total += Long.parseLong(index.getProperty(key).split("\\|")[0]);
+					}
+				}
+				return total;
+			});
+		} catch (IOException e) {
+			return 0;
+		}
+	}
+
+	private Path blob(String sha) {
+		return dir.resolve("blobs").resolve(sha.substring(0, 2)).resolve(sha);
+	}
+
+	/**
+	 * Whether the blob is present as it was added, dropping it from the index otherwise
+	 */
+	private boolean intact(Properties index, String sha) throws IOException {
+		String value = index.getProperty(BLOB + sha);
+		if (value == null) {
+			return false;
+		}
+		Path blob = blob(sha);
+		String[] v = value.split("\\|");
+		if (Files.exists(blob) && Files.size(blob) == Long.parseLong(v[0])
+				&& Files.getLastModifiedTime(blob).toMillis() == Long.parseLong(v[1])) {
+			return true;
+		}
+		logger.warning("Artifact cache blob missing or modified, dropped : " + sha);
+		remove(index, sha);
+		return false;
+	}
+
+	private void evict(Properties index, String keep) throws IOException {
+		if (maxBytes <= 0) {
+			return;
+		}
+		long total = 0;
+		List<String[]> blobs = new ArrayList<>();
+		for (String key : index.stringPropertyNames()) {
+			if (key.startsWith(BLOB)) {
+				String[] v = index.getProperty(key).split("\\|");
+				total += Long.parseLong(v[0]);
+				blobs.add(new String[] { key.substring(BLOB.length()), v[0], v[2] });
+			}
+		}
+		// least recently used first
+		blobs.sort((a, b) -> Long.compare(Long.parseLong(a[2]), Long.parseLong(b[2])));
+		for (String[] b : blobs) {
+			if (total <= maxBytes) {
+				break;
+			}
+			if (b[0].equals(keep)) {
+				continue;
+			}
+			remove(index, b[0]);
+			total -= Long.parseLong(b[1]);
+			logger.info("Artifact cache evicted : " + b[0] + " (" + b[1] + " bytes)");
+		}
+	}
+
+	private void remove(Properties index, String sha) throws IOException {
+		index.remove(BLOB + sha);
+		Files.deleteIfExists(blob(sha));
+		for (Map.Entry<Object, Object> e : new ArrayList<>(index.entrySet())) {
+			Entry u = e.getKey().toString().startsWith(URL) ? Entry.parse(e.getValue().toString()) : null;
+			if (u != null && u.getSha256().equals(sha)) {
+				index.remove(e.getKey());
+			}
+		}
+	}
+
+	/**
+	 * Replace a hard linked file (e.g. deployed from the cache) by a copy of its own, so that
+	 * changing it in place (chmod) does not change the blob and the other deployments
+	 *
+	 * @return true when the file was linked and has been replaced
+	 */
+	public static boolean detach(Path file) throws IOException {
+		if (linkCount(file) <= 1) {
+			return false;
+		}
+		Path tmp = file.resolveSibling("." + file.getFileName() + ".detach");
+		Files.copy(file, tmp, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+		FileDownloader.moveAtomically(tmp, file);
+		return true;
+	}
+
+	/**
+	 * Number of hard links of file, 0 if it does not exist, 1 where unknown
+	 */
+	static int linkCount(Path file) {
+		try {
+			return Files.exists(file) ? (Integer) Files.getAttribute(file, "unix:nlink") : 0;
+		} catch (IOException | UnsupportedOperationException | IllegalArgumentException e) {
+			return 1;
+		}
+	}
+
+	private static boolean link(Path link, Path existing) {
+		try {
+			Files.createLink(link, existing);
+			return true;
+		} catch (UnsupportedOperationException | IOException e) {
+			// another file system, or no hard links on it
+			return false;
+		}
+	}
+
+	private interface IndexOp<T> {
+		T apply(Properties index) throws IOException;
+	}
+
+	/**
+	 * Run op on the current index under the lock, saving it if op changed it
+	 */
+	private <T> T locked(IndexOp<T> op) throws IOException {
+		Files.createDirectories(dir);
+		try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+			FileLock lock = channel.lock();
+			try {
+				Properties index = new Properties();
+				if (Files.exists(indexFile)) {
+					try (InputStream in = Files.newInputStream(indexFile)) {
+						index.load(in);
+					}
+				}
+				Properties before = (Properties) index.clone();
+				T result = op.apply(index);
+				if (!index.equals(before)) {
+					// write to a temp file and move so that a crash never leaves a half written index
+					Path tmp = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+					try (OutputStream out = Files.newOutputStream(tmp)) {
+						index.store(out, "artifact cache (blob.<sha256>=size|mtime|accessed, url.<url>=sha256|etag|last_modified|filename)");
+					}
+					Files.move(tmp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				}
+				return result;
+			} finally {
+				lock.release();
+			}
+		}
+	}
+
+	public static final class Entry {
+
+		private final String sha256;
+		private final String etag;
+		private final String lastModified;
+		private final String filename;
+
+		public Entry(String sha256, String etag, String lastModified, String filename) {
+			this.sha256 = sha256.toLowerCase();
+			this.etag = etag;
+			this.lastModified = lastModified;
+			this.filename = filename;
+		}
+
+		public String getSha256() {
+			return sha256;
+		}
+
+		/**
+		 * Strong ETag, null if none
+		 */
+		public String getEtag() {
+			return etag;
+		}
+
+		public String getLastModified() {
+			return lastModified;
+		}
+
+		public String getFilename() {
+			return filename;
+		}
+
+		String format() {
+			return sha256 + "|" + (etag == null ? "" : etag) + "|" + (lastModified == null ? "" : lastModified) + "|" + filename;
+		}
+
+		static Entry parse(String value) {
+			if (value == null) {
+				return null;
+			}
+			String[] v = value.split("\\|", 4);
+			if (v.length < 4 || v[0].isEmpty()) {
+				return null;
+			}
+			return new Entry(v[0], v[1].isEmpty() ? null : v[1], v[2].isEmpty() ? null : v[2], v[3]);
+		}
+	}
+}
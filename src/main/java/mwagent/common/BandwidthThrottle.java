@@ -0,0 +1,82 @@
+package mwagent.common;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket limiting the bytes per second of every download of the agent together,
+ * so that artifact transfers do not saturate the NIC of a production server.
+ *
+ * Callers take the bytes they have just received; once the bucket (one second worth of
+ * bytes) is exhausted they sleep until the rate is met again.
+ */
+public class BandwidthThrottle {
+
+	private static volatile BandwidthThrottle instance;
+
+	private final long bytesPerSec;
+	private final LongSupplier nanoClock;
+	private long available;
+	private long refilledAt;
+
+	public static BandwidthThrottle getInstance() {
+		if (instance == null) {
+			synchronized (BandwidthThrottle.class) {
+				if (instance == null) {
+					instance = new BandwidthThrottle(Config.getConfig().getDownloadMaxBytesPerSec());
+				}
+			}
+		}
+		return instance;
+	}
+
+	/**
+	 * @param bytesPerSec 0 or less : unlimited
+	 */
+	public BandwidthThrottle(long bytesPerSec) {
+		this(bytesPerSec, System::nanoTime);
+	}
+
+	/**
+	 * Constructor for tests, with the time source
+	 */
+	BandwidthThrottle(long bytesPerSec, LongSupplier nanoClock) {
+		this.bytesPerSec = bytesPerSec;
+		this.nanoClock = nanoClock;
+		this.available = bytesPerSec;
+		this.refilledAt = nanoClock.getAsLong();
+	}
+
+	public boolean isUnlimited() {
+		return bytesPerSec <= 0;
+	}
+
+	/**
+	 * Account for bytes received, sleeping while the rate is exceeded
+	 */
+	public void acquire(long bytes) throws InterruptedException {
+
+		if (bytesPerSec <= 0) {
+			return;
+		}
+
+		long waitNanos;
+		synchronized (this) {
+			long now = nanoClock.getAsLong();
+			// in double : elapsed nanos * bytes per sec overflows a long after a long idle period
+			double refill = (now - refilledAt) / 1e9 * bytesPerSec;
+			if (refill >= 1) {
+				available = (long) Math.min(bytesPerSec, available + refill);
+				refilledAt = now;
+			}
+			// may go negative : later callers wait for this debt as well
+			available -= bytes;
+			if (available >= 0) {
+				return;
+			}
+			waitNanos = (long) (-available * 1e9 / bytesPerSec);
+		}
+		TimeUnit.NANOSECONDS.sleep(waitNanos);
+	}
+
+}
@@ -0,0 +1,174 @@
+package mwagent.common;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.cert.X509Certificate;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import mwagent.metrics.Counter;
+import mwagent.metrics.MetricsRegistry;
+
+/**
+ * Caches inspected certificates so that repeated checks of unchanged endpoints and files
+ * skip the handshake / parsing.
+ *
+ * - Endpoints are keyed by sni@host:port and reused until the TTL expires; the refresh
+ *   handshake then usually resumes the TLS session of the shared SSLContext.
+ * - Files are keyed by path and revalidated on every use by a stat: a changed modification
+ *   time or size reloads the file, otherwise the parsed certificate is reused within the TTL.
+ * - Bounded LRU; failures are not cached.
+ */
+public class CertificateCache {
+
+	/**
+	 * Loads the certificates on a miss.
+	 */
+	public interface Loader<T> {
+		T load() throws Exception;
+	}
+
+	private static volatile CertificateCache instance;
+
+	private static final Counter hits = MetricsRegistry.getInstance().counter(
+			"mwagent_cert_cache_total", "Certificate cache lookups", "result", "hit");
+	private static final Counter misses = MetricsRegistry.getInstance().counter(
+			"mwagent_cert_cache_total", "Certificate cache lookups", "result", "miss");
+
+	private final int maxEntries;
+	private final long ttlMs;
+	private final LinkedHashMap<String, Entry> cache;
+
+	public static CertificateCache getInstance() {
+		if (instance == null) {
+			synchronized (CertificateCache.class) {
+				if (instance == null) {
+					Config config = Config.getConfig();
+					instance = new CertificateCache(config.getCertCacheMaxEntries(), config.getCertCacheTtlSec() * 1000);
+				}
+			}
+		}
+		return instance;
+	}
+
+	public CertificateCache(int maxEntries, long ttlMs) {
+		this.maxEntries = maxEntries;
+		this.ttlMs = ttlMs;
+		this.cache = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+				return size() > CertificateCache.this.maxEntries;
+			}
+		};
+	}
+
+	/**
+	 * Certificates of an endpoint, loaded when absent or older than the TTL
+	 */
+	public X509Certificate[] endpoint(String sni, String host, int port, Loader<X509Certificate[]> loader) throws Exception {
+
+		String key = sni + "@" + host + ":" + port;
+		Entry e = get(key);
+		if (e != null && !isExpired(e)) {
+			hits.inc();
+			return (X509Certificate[]) e.value;
+		}
+
+		misses.inc();
+		X509Certificate[] certs = loader.load();
+		Entry loaded = new Entry(certs, 0, 0, certs.length > 0 ? fingerprint(certs[0]) : "");
+		if (e != null && !e.fingerprint.equals(loaded.fingerprint)) {
+			Config.getConfig().getLogger().info("Certificate changed : " + key + " " + e.fingerprint + " -> " + loaded.fingerprint);
+		}
+		put(key, loaded);
+		return certs;
+	}
+
+	/**
+	 * Certificate of a file, loaded when absent, older than the TTL, or the file changed
+	 */
+	public X509Certificate file(Path path, Loader<X509Certificate> loader) throws Exception {
+
+		String key = "file:" + path.toAbsolutePath().normalize();
+		BasicFileAttributes attrs = stat(path);
+		long mtime = attrs != null ? attrs.lastModifiedTime().toMillis() : -1;
+		long size = attrs != null ? attrs.size() : -1;
+
+		Entry e = get(key);
+		if (e != null && !isExpired(e) && e.mtime == mtime && e.size == size && attrs != null) {
+			hits.inc();
+			return (X509Certificate) e.value;
+		}
+
+		misses.inc();
+		X509Certificate cert = loader.load();
+		put(key, new Entry(cert, mtime, size, fingerprint(cert)));
+		return cert;
+	}
+
+	public synchronized int size() {
+		return cache.size();
+	}
+
+	public synchronized void clear() {
+		cache.clear();
+	}
+
+	private synchronized Entry get(String key) {
+		return cache.get(key);
+	}
+
+	private synchronized void put(String key, Entry e) {
+		cache.put(key, e);
+	}
+
+	private boolean isExpired(Entry e) {
+		return System.currentTimeMillis() - e.loadedAt > ttlMs;
+	}
+
+	private static BasicFileAttributes stat(Path path) {
+		try {
+			return Files.readAttributes(path, BasicFileAttributes.class);
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * SHA-256 of the DER encoding, hex
+	 */
+	public static String fingerprint(X509Certificate cert) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(cert.getEncoded());
+			StringBuilder sb = new StringBuilder(digest.length * 2);
+			for (byte b : digest) {
+				sb.append(String.format("%02X", b));
+			}
+			return sb.toString();
+		} catch (Exception e) {
+			return "";
+		}
+	}
+
+	private static final class Entry {
+
+		private final Object value;
+		private final long mtime;
+		private final long size;
+		private final String fingerprint;
+		private final long loadedAt = System.currentTimeMillis();
+
+		Entry(Object value, long mtime, long size, String fingerprint) {
+			this.value = value;
+			this.mtime = mtime;
+			this.size = size;
+			this.fingerprint = fingerprint;
+		}
+	}
+
+}
@@ -0,0 +1,165 @@
+package mwagent.common;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.Consumer;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.ContentHandler;
+
+/**
+ * Incremental handler for the command poll response
+ * {@code {"return_code":1, "data":[{command}, ...], "long_poll_timeout":30}}.
+ *
+ * Each element of the top-level "data" array is handed to the sink as soon as it has been
+ * parsed and is not kept afterwards, so a large batch of commands is never held in memory
+ * as a whole. The other top-level fields are collected into getResponse().
+ *
+ * A negative return_code that precedes "data" stops the delivery of commands.
+ */
+public class CommandStreamHandler implements ContentHandler {
+
+	static final String DATA_KEY = "data";
+
+	private final Consumer<JSONObject> sink;
+	private final Deque<Object> stack = new ArrayDeque<>();
+	private final Deque<String> keys = new ArrayDeque<>();
+
+	private JSONObject response;
+	private JSONArray dataArray;
+	private int commandCount = 0;
+	private int skippedCount = 0;
+
+	public CommandStreamHandler(Consumer<JSONObject> sink) {
+		this.sink = sink;
+	}
+
+	/**
+	 * Top-level fields of the response, without "data"
+	 */
+	public JSONObject getResponse() {
+		return response;
+	}
+
+	/**
+	 * Commands handed to the sink
+	 */
+	public int getCommandCount() {
+		return commandCount;
+	}
+
+	/**
+	 * Elements of "data" that were not delivered (not an object, or negative return_code)
+	 */
+	public int getSkippedCount() {
+		return skippedCount;
+	}
+
+	@Override
+	public void startJSON() {
+		stack.clear();
+		keys.clear();
+		response = null;
+		dataArray = null;
+		commandCount = 0;
+		skippedCount = 0;
+	}
+
+	@Override
+	public void endJSON() {
+	}
+
+	@Override
+	public boolean startObject() {
+		stack.push(new JSONObject());
+		return true;
+	}
+
+	@Override
+	public boolean endObject() {
+		completeValue(stack.pop());
+		return true;
+	}
+
+	@Override
+	public boolean startObjectEntry(String key) {
+		keys.push(key);
+		return true;
+	}
+
+	@Override
+	public boolean endObjectEntry() {
+		keys.pop();
+		return true;
+	}
+
+	@Override
+	public boolean startArray() {
+		if (stack.size() == 1 && stack.peek() instanceof JSONObject && DATA_KEY.equals(keys.peek())) {
+			dataArray = new JSONArray();
+			stack.push(dataArray);
+		} else {
+			stack.push(new JSONArray());
+		}
+		return true;
+	}
+
+	@Override
+	public boolean endArray() {
+		Object array = stack.pop();
+		if (array != dataArray) {
+			completeValue(array);
+		}
+		return true;
+	}
+
+	@Override
+	public boolean primitive(Object value) {
+		if (!stack.isEmpty()) {
+			completeValue(value);
+		}
+		return true;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void completeValue(Object value) {
+
+		if (stack.isEmpty()) {
+			if (value instanceof JSONObject) {
+				response = (JSONObject) value;
+			}
+			return;
+		}
+
+		Object parent = stack.peek();
+
+		if (parent == dataArray) {
+			deliver(value);
+		} else if (parent instanceof JSONArray) {
+			((JSONArray) parent).add(value);
+		} else {
+			((JSONObject) parent).put(keys.peek(), value);
+		}
+	}
+
+	private void deliver(Object value) {
+
+		if (!(value instanceof JSONObject) || isErrorResponse()) {
+			skippedCount++;
+			return;
+		}
+
+		commandCount++;
+		if (sink != null) {
+			sink.accept((JSONObject) value);
+		}
+	}
+
+	private boolean isErrorResponse() {
+		JSONObject root = (JSONObject) stack.peekLast();
+		Object rtn = root.get("return_code");
+		return rtn instanceof Long && (Long) rtn < 0;
+	}
+
+}
@@ -1,15 +1,19 @@
 package mwagent.common;
 
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
+import java.io.FilterReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.security.KeyManagementException;
 import java.security.KeyStore;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.security.Security;
 import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 
 import javax.net.ssl.SSLContext;
@@ -18,29 +22,33 @@ import org.apache.http.HttpEntity;
 import org.apache.http.HttpHeaders;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.conn.ssl.NoopHostnameVerifier;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.ssl.SSLContexts;
+import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
-import org.apache.http.impl.client.HttpClients;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.util.EntityUtils;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
 
+import mwagent.infrastructure.http.HttpConnectionPool;
+import mwagent.metrics.AgentMetrics;
 import mwagent.vo.CommandVO;
 import mwagent.vo.MwResponseVO;
 import mwagent.vo.ResultVO;
 
 public class Common {
 
-	private static CloseableHttpClient httpClient = null;
-	private static CloseableHttpClient httpsClient = null;
-	private static CloseableHttpClient mtlsHttpClient = null;
+	private static HttpConnectionPool httpPool = null;
+	private static HttpConnectionPool httpsPool = null;
+	private static HttpConnectionPool mtlsPool = null;
 	private static Config config = Config.getConfig();
 
 	/**
@@ -66,18 +74,60 @@ public class Common {
 		return rv;
 	}
 
-	private static CloseableHttpClient getHttpClient(String url){
+	private static synchronized CloseableHttpClient getHttpClient(String url){
 		
-		if(httpsClient==null || httpClient==null)createHttpsClient();
+		if(httpsPool==null || httpPool==null)createHttpsClient();
 		
 		if (url.toLowerCase().startsWith("https")) {
-			return httpsClient;
+			return httpsPool.getClient();
 		}else{
-			return httpClient;
+			return httpPool.getClient();
 		}		    	
 	}
+
+	private static HttpConnectionPool createPool(String name, SSLConnectionSocketFactory sslSocketFactory){
+		return new HttpConnectionPool(name, sslSocketFactory,
+				config.getHttpPoolMaxTotal(),
+				config.getHttpPoolMaxPerRoute(),
+				config.getHttpPoolIdleTimeout(),
+				config.getHttpPoolValidateAfterInactivity(),
+				config.getHttpConnectTimeout(),
+				config.getHttpPoolLeaseTimeout());
+	}
+
+	private static void closePool(HttpConnectionPool pool){
+		if(pool == null) return;
+		try {
+			pool.close();
+		} catch (IOException e) {
+			config.getLogger().log(Level.WARNING, "Failed to close HTTP pool : " + pool.getName(), e);
+		}
+	}
+
+	/**
+	 * HTTP 연결 풀 사용 현황 (http, https, mtls)
+	 */
+	@SuppressWarnings("unchecked")
+	public static synchronized JSONArray getHttpPoolStats(){
+		JSONArray stats = new JSONArray();
+		for(HttpConnectionPool pool : new HttpConnectionPool[]{httpPool, httpsPool, mtlsPool}){
+			if(pool != null){
+				stats.add(pool.getStatsJson());
+			}
+		}
+		return stats;
+	}
+
+	public static synchronized void closeHttpClients(){
+		closePool(httpPool);
+		closePool(httpsPool);
+		closePool(mtlsPool);
+		httpPool = null;
+		httpsPool = null;
+		mtlsPool = null;
+	}
 	
-    public static void createHttpsClient() {
+    public static synchronized void createHttpsClient() {
     	
     	// 0. TLSv1.2 용 Security Provider 선택
     	if(config.getOs().equalsIgnoreCase("AIX")){
@@ -102,17 +152,17 @@ public class Common {
 	    				NoopHostnameVerifier.INSTANCE // 호스트네임 검증 비활성화
 	    			);
 	    	
-	    // 3. CloseableHttpClient 생성: 커스텀 SSL socket factory 사용
-	    httpsClient = HttpClients.custom()
-	                .setSSLSocketFactory(sslScoketFactory)
-	                .build();
+	    // 3. 연결 풀 생성: 커스텀 SSL socket factory 사용, 기존 풀은 정리
+	    closePool(httpsPool);
+	    httpsPool = createPool("https", sslScoketFactory);
 	    
 	    // 4. http
-	    httpClient = HttpClients.createDefault();
+	    closePool(httpPool);
+	    httpPool = createPool("http", null);
 
     }
 
-    public static void createMtlsClient() {
+    public static synchronized void createMtlsClient() {
 
     	if (!config.isUseMtls()) {
     		config.getLogger().info("mTLS is disabled, skipping mTLS client creation");
@@ -147,9 +197,8 @@ public class Common {
     				NoopHostnameVerifier.INSTANCE
     		);
 
-    		mtlsHttpClient = HttpClients.custom()
-    				.setSSLSocketFactory(sslSocketFactory)
-    				.build();
+    		closePool(mtlsPool);
+    		mtlsPool = createPool("mtls", sslSocketFactory);
 
     		config.getLogger().info("mTLS client created successfully");
 
@@ -160,10 +209,18 @@ public class Common {
     }
 
     public static MwResponseVO httpPOST(String path, String token, String data) {
+    	return httpPOST(path, token, new StringEntity(data, ContentType.APPLICATION_JSON));
+    }
+
+    /**
+     * POST a request entity, e.g. a JsonEntity streamed straight to the connection.
+     */
+    public static MwResponseVO httpPOST(String path, String token, HttpEntity requestEntity) {
     	
     	MwResponseVO mrvo = new MwResponseVO();
     	
     	String url = config.getServer_url() + path;
+    	long start = System.nanoTime();
 
         try {
 			
@@ -172,10 +229,12 @@ public class Common {
 			HttpPost request = new HttpPost(url);
 			request.addHeader(HttpHeaders.CONTENT_TYPE, "application/json");
 			request.addHeader(HttpHeaders.AUTHORIZATION, "Bearer "+token);
-	        request.setEntity(new StringEntity(data));
+	        request.setEntity(requestEntity);
 
 			HttpResponse response = httpClient.execute(request);
             HttpEntity entity = response.getEntity();
+            // chunked (unknown length) entities report -1
+            AgentMetrics.HTTP_SENT_BYTES.add(Math.max(0, requestEntity.getContentLength()));
             
             mrvo.setStatusCode(response.getStatusLine().getStatusCode());
             
@@ -192,7 +251,7 @@ public class Common {
                 
                 try {
                 	jsonObj = (JSONObject) jsonPar.parse(value);
-                    config.getLogger().info("HTTP POST response from " + url + ": " + value);
+                    logResponse("POST", url, value, value.length());
                 }catch(ParseException e){
                 	config.getLogger().warning("JSON Parsing Error  data : "+value);
                 } 
@@ -204,11 +263,14 @@ public class Common {
         } catch(IOException e){
         	config.getLogger().warning("HTTP execution failed" + " : " + url);
         	mrvo.setStatusCode(-104);
+        	AgentMetrics.HTTP_FAILURES.inc();
         }catch(Exception e){
         	config.getLogger().log(Level.WARNING, e.getMessage(), e);
         	mrvo.setStatusCode(-105);
+        	AgentMetrics.HTTP_FAILURES.inc();
         }
         
+        AgentMetrics.HTTP_POST_DURATION.recordSince(start);
         return mrvo;
 
     }
@@ -270,10 +332,31 @@ public class Common {
     }
 
     public static MwResponseVO httpGET(String path, String token) {
+    	return httpGET(path, token, 0);
+    }
+
+    /**
+     * HTTP GET with a per-request socket timeout (for long-poll requests held by the server)
+     *
+     * @param socketTimeoutMs read timeout in milliseconds, 0 to keep the client default
+     */
+    public static MwResponseVO httpGET(String path, String token, int socketTimeoutMs) {
+    	return httpGET(path, token, socketTimeoutMs, null);
+    }
+
+    /**
+     * HTTP GET of the command list. With a handler, a 2xx response body is parsed incrementally
+     * and each command is handed to the handler's sink as soon as it is parsed, the body is
+     * never held as a whole (see CommandStreamHandler).
+     *
+     * @param handler incremental handler, null to parse the whole body into the response
+     */
+    public static MwResponseVO httpGET(String path, String token, int socketTimeoutMs, CommandStreamHandler handler) {
     	
     	MwResponseVO mrvo = new MwResponseVO();
     	
     	String url = config.getServer_url() + path;
+    	long start = System.nanoTime();
     	
         try {
 			
@@ -282,6 +365,13 @@ public class Common {
         	HttpGet request = new HttpGet(url);
             request.addHeader(HttpHeaders.CONTENT_TYPE, "application/json");
 			request.addHeader(HttpHeaders.AUTHORIZATION, "Bearer "+token);
+			if (socketTimeoutMs > 0) {
+				request.setConfig(RequestConfig.custom()
+						.setConnectTimeout(config.getHttpConnectTimeout())
+						.setConnectionRequestTimeout(config.getHttpPoolLeaseTimeout())
+						.setSocketTimeout(socketTimeoutMs)
+						.build());
+			}
 
 			HttpResponse response = httpClient.execute(request);
             HttpEntity entity = response.getEntity();
@@ -292,7 +382,11 @@ public class Common {
                 config.getLogger().warning("Authentication failed (401) for URL: " + url);
             }
 
-            if (entity != null) {
+            if (entity != null && handler != null && mrvo.getStatusCode() >= 200 && mrvo.getStatusCode() < 300) {
+
+            	mrvo.setResponse(parseStreaming(url, entity, handler));
+
+            } else if (entity != null) {
             	
             	String value = EntityUtils.toString(entity);
     			
@@ -301,9 +395,9 @@ public class Common {
                 
                 try {
                 	jsonObj = (JSONObject) jsonPar.parse(value);
-                    config.getLogger().info("HTTP GET response from " + url + ": " + value);
+                    logResponse("GET", url, value, value.length());
                 }catch(ParseException e){
-                	config.getLogger().warning("JSON Parsing Error  data : "+value);
+                	config.getLogger().warning("JSON Parsing Error  data : "+abbreviate(value, value.length()));
                 } 
                 
                 mrvo.setResponse(jsonObj);
@@ -313,86 +407,146 @@ public class Common {
         } catch(IOException e){
         	config.getLogger().warning("HTTP execution failed" + " : " + url);
         	mrvo.setStatusCode(-110);
+        	AgentMetrics.HTTP_FAILURES.inc();
         }catch(Exception e){
         	config.getLogger().log(Level.WARNING, e.getMessage(), e);
         	mrvo.setStatusCode(-111);
+        	AgentMetrics.HTTP_FAILURES.inc();
         }
         
+        AgentMetrics.HTTP_GET_DURATION.recordSince(start);
         return mrvo;
         
     }
 
-    public static MwResponseVO httpFileDownload(String uri, String token, String file_location) {
-    	
-    	MwResponseVO mrvo = new MwResponseVO();
-    	
-    	String fullname = "";
-    	
-        try {
+    private static JSONObject parseStreaming(String url, HttpEntity entity, CommandStreamHandler handler) throws IOException {
 
-        	HttpClient httpClient = getHttpClient(uri);
+    	Charset charset = ContentType.getOrDefault(entity).getCharset();
+    	if (charset == null) {
+    		charset = StandardCharsets.UTF_8;
+    	}
 
-        	HttpGet request = new HttpGet(uri);
-            request.addHeader(HttpHeaders.CONTENT_TYPE, "application/json");
-			if (token != null && !token.isEmpty()) {
-				request.addHeader(HttpHeaders.AUTHORIZATION, "Bearer "+token);
-			}
+    	try (HeadCapturingReader reader = new HeadCapturingReader(
+    			new InputStreamReader(entity.getContent(), charset), config.getHttpResponseLogMaxChars())) {
+
+    		try {
+    			new JSONParser().parse(reader, handler);
+    		} catch (ParseException e) {
+    			config.getLogger().warning("JSON Parsing Error  data : " + abbreviate(reader.head(), reader.total())
+    					+ " (" + handler.getCommandCount() + " commands parsed)");
+    			return null;
+    		}
+
+    		logResponse("GET", url, reader.head(), reader.total());
+    		if (handler.getSkippedCount() > 0) {
+    			config.getLogger().warning("Skipped " + handler.getSkippedCount() + " command entries from " + url);
+    		}
+    		return handler.getResponse();
+    	}
+    }
 
-			HttpResponse response = httpClient.execute(request);
-            HttpEntity entity = response.getEntity();
-            
-            int returnCode = response.getStatusLine().getStatusCode();
-            
-            mrvo.setStatusCode(returnCode);
-            config.getLogger().fine("File Download status code  " + returnCode);	
-            
-            if (returnCode >= 200 && returnCode < 300 && entity != null) {            	
-            	
-				String filename = "downloaded_file";
-				org.apache.http.Header contentDisposition = response.getFirstHeader("Content-Disposition");
-				if (contentDisposition != null) {
-					String name = contentDisposition.getValue();
-					filename = name.replaceFirst("(?i)^.*filename=\"?([^\"]+)\"?.*$", "$1");
-					config.getLogger().info("Filename from Content-Disposition: " + filename);
-				} else {
-					// Extract from URL if possible
-					try {
-						String path = new java.net.URI(uri).getPath();
-						if (path != null && path.contains("/")) {
-							String lastPart = path.substring(path.lastIndexOf('/') + 1);
-							if (!lastPart.isEmpty()) {
-								filename = lastPart;
-							}
-						}
-					} catch (Exception e) {
-						// Fallback to default
-					}
-					config.getLogger().info("Filename from URL/Fallback: " + filename);
-				}
+    private static final AtomicLong loggedResponses = new AtomicLong();
 
-				fullname = file_location + filename;
-				FileOutputStream fos = new FileOutputStream(fullname);
-				entity.writeTo(fos);
-				fos.close();
-                
-				mrvo.setFileName(filename);
-				mrvo.setFileLocation(file_location);
-                
-            }
-            
-		}catch(FileNotFoundException e){
-			config.getLogger().log(Level.WARNING, e.getMessage(), e);
-        	mrvo.setStatusCode(-101);
-        } catch(IOException e){
-        	config.getLogger().log(Level.WARNING, e.getMessage(), e);
-        	mrvo.setStatusCode(-100);
-        } catch(Exception e){
-        	config.getLogger().log(Level.WARNING, e.getMessage(), e);
-        	mrvo.setStatusCode(-102);
-        }
-        
-        return mrvo;
-        
+    /**
+     * Log a response body, at most http.response_log.max_chars characters.
+     * Only every http.response_log.sample_rate-th response is logged at INFO, the others at FINE.
+     */
+    static void logResponse(String method, String url, String body, long totalChars) {
+
+    	int sampleRate = Math.max(1, config.getHttpResponseLogSampleRate());
+    	Level level = loggedResponses.getAndIncrement() % sampleRate == 0 ? Level.INFO : Level.FINE;
+
+    	if (config.getLogger().isLoggable(level)) {
+    		config.getLogger().log(level, "HTTP " + method + " response from " + url + ": " + abbreviate(body, totalChars));
+    	}
+    }
+
+    static String abbreviate(String body, long totalChars) {
+
+    	int maxChars = config.getHttpResponseLogMaxChars();
+    	if (maxChars <= 0 || (totalChars <= maxChars && body.length() <= maxChars)) {
+    		return body;
+    	}
+    	return body.substring(0, Math.min(maxChars, body.length())) + "...(" + totalChars + " chars)";
+    }
+
+    /**
+     * Keeps the first characters read (for logging) and counts the rest.
+     */
+    private static final class HeadCapturingReader extends FilterReader {
+
+    	private final StringBuilder head;
+    	private final int maxChars;
+    	private long total = 0;
+
+    	HeadCapturingReader(Reader in, int maxChars) {
+    		super(in);
+    		this.maxChars = Math.max(0, maxChars);
+    		this.head = new StringBuilder(Math.min(this.maxChars, 4096));
+    	}
+
+    	@Override
+    	public int read() throws IOException {
+    		int c = super.read();
+    		if (c >= 0) {
+    			if (head.length() < maxChars) {
+    				head.append((char) c);
+    			}
+    			total++;
+    		}
+    		return c;
+    	}
+
+    	@Override
+    	public int read(char[] cbuf, int off, int len) throws IOException {
+    		int n = super.read(cbuf, off, len);
+    		if (n > 0) {
+    			int keep = Math.min(n, maxChars - head.length());
+    			if (keep > 0) {
+    				head.append(cbuf, off, keep);
+    			}
+    			total += n;
+    		}
+    		return n;
+    	}
+
+    	String head() {
+    		return head.toString();
+    	}
+
+    	long total() {
+    		return total;
+    	}
+    }
+
+    public static MwResponseVO httpFileDownload(String uri, String token, String file_location) {
+    	return httpFileDownload(uri, token, file_location, null);
+    }
+
+    /**
+     * 임시 파일로 받아 검증 후 rename, 끊기면 Range 요청으로 이어 받음 (FileDownloader)
+     *
+     * @param sha256 기대하는 SHA-256 (hex), null 이면 서버가 보낸 값으로 검증
+     */
+    public static MwResponseVO httpFileDownload(String uri, String token, String file_location, String sha256) {
+    	return newFileDownloader(uri).download(uri, token, file_location, sha256);
+    }
+
+    /**
+     * 설정 (재시도, 분할 다운로드, 대역폭 제한, artifact cache, P2P) 이 적용된 FileDownloader
+     */
+    public static FileDownloader newFileDownloader(String uri) {
+    	FileDownloader downloader = new FileDownloader(getHttpClient(uri), config.getDownloadMaxRetries(), config.getDownloadRetryBackoffMs())
+    			.segmented(config.getDownloadSegments(), config.getDownloadSegmentMinBytes())
+    			.readTimeout(config.getDownloadReadTimeoutMs())
+    			.throttle(BandwidthThrottle.getInstance())
+    			.cache(config.isArtifactCacheEnabled() ? ArtifactCache.getInstance() : null);
+    	// peer 는 artifact cache 의 파일을 제공하므로 cache 를 함께 사용
+    	if (config.isP2pEnabled() && config.isArtifactCacheEnabled() && !config.getP2pPeers().isEmpty()) {
+    		downloader.peers(getHttpClient("http://"), config.getP2pPeers(), config.getP2pSecret(), config.getP2pConnections(),
+    				config.getP2pTimeoutMs());
+    	}
+    	return downloader;
     }
 
 	public static long updateRefreshToken(){
@@ -511,9 +665,18 @@ public class Common {
             }
         }
 
-        return rtn;
+        return countRenewal(rtn);
     }
 
+	private static int countRenewal(int rtn) {
+		if (rtn == 1) {
+			AgentMetrics.TOKEN_RENEWALS.inc();
+		} else {
+			AgentMetrics.TOKEN_RENEWAL_FAILURES.inc();
+		}
+		return rtn;
+	}
+
 	/**
 	 * Cascading token renewal strategy:
 	 * 1. Try refresh_token grant first
@@ -566,7 +729,7 @@ public class Common {
 			return -1;
 		}
 
-		if (mtlsHttpClient == null) {
+		if (mtlsPool == null) {
 			config.getLogger().warning("mTLS client not initialized, creating now...");
 			try {
 				createMtlsClient();
@@ -594,7 +757,7 @@ public class Common {
 			String body = "grant_type=client_credentials";
 			request.setEntity(new StringEntity(body));
 
-			HttpResponse response = mtlsHttpClient.execute(request);
+			HttpResponse response = mtlsPool.getClient().execute(request);
 			HttpEntity entity = response.getEntity();
 
 			int statusCode = response.getStatusLine().getStatusCode();
@@ -610,7 +773,7 @@ public class Common {
 					jsonObj = (JSONObject) jsonPar.parse(value);
 				} catch (ParseException e) {
 					config.getLogger().warning("JSON Parsing Error data: " + value);
-					return -3;
+					return countRenewal(-3);
 				}
 
 				if (jsonObj != null) {
@@ -628,6 +791,7 @@ public class Common {
 				}
 
 			} else {
+				EntityUtils.consumeQuietly(entity);
 				config.getLogger().severe("OAuth2 token request failed with status: " + statusCode);
 				rtn = -5;
 			}
@@ -640,7 +804,7 @@ public class Common {
 			rtn = -7;
 		}
 
-		return rtn;
+		return countRenewal(rtn);
 	}
 
     public static String escape(String raw) {
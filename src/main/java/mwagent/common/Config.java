@@ -4,7 +4,10 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.logging.FileHandler;
@@ -47,6 +50,119 @@ public final class Config implements ConfigurationProvider {
 	private boolean security_command_injection_check = false;
 	private boolean security_path_traversal_check = true;
 
+	// HTTP Connection Pool Configuration
+	private int http_pool_max_total = 20;
+	private int http_pool_max_per_route = 10;
+	private int http_pool_idle_timeout = 30;
+	private int http_pool_validate_after_inactivity = 2000;
+	private int http_connect_timeout = 10000;
+	private int http_pool_lease_timeout = 30000;
+	private int http_response_log_max_chars = 1024;
+	private int http_response_log_sample_rate = 10;
+
+	// Result Batch Configuration
+	private boolean result_batch_enabled = false;
+	private String result_batch_uri = "/api/v1/command/results";
+	private int result_batch_max_size = 50;
+	private int result_batch_max_bytes = 1024*1024;
+	private long result_batch_linger_ms = 500;
+	private int result_batch_max_in_flight_bytes = 8*1024*1024;
+	private int result_batch_max_retries = 3;
+
+	// Long-poll Command Fetch Configuration
+	private boolean long_poll_enabled = false;
+	private long long_poll_timeout = 30;
+
+	// ReadFile Configuration
+	private long read_file_max_result_bytes = 10*1024*1024;
+	private String tail_offset_file = "tail_offsets.properties";
+
+	// Process execution Configuration (ExeText / ExeScript)
+	private long exec_timeout_sec = 0;
+	private int exec_max_output_bytes = 1024*1024;
+	private int exec_stream_chunk_bytes = 64*1024;
+	private long exec_stream_interval_ms = 2000;
+	private String exec_stream_uri = "/api/v1/command/result/chunk";
+	private int exec_stream_max_queued_chunks = 16;
+
+	// File download
+	private int download_max_retries = 3;
+	private long download_retry_backoff_ms = 1000;
+	private int download_segments = 1;
+	private long download_segment_min_bytes = 8*1024*1024;
+	private long download_max_bytes_per_sec = 0;
+	private int download_read_timeout_ms = 60000;
+
+	// Artifact cache
+	private boolean artifact_cache_enabled = false;
+	private String artifact_cache_dir = "artifact_cache";
+	private long artifact_cache_max_bytes = 10L*1024*1024*1024;
+	private boolean artifact_cache_hardlink = false;
+
+	// Zip extraction
+	private int unzip_parallelism = 0;
+	private int unzip_buffer_bytes = 256*1024;
+
+	// P2P artifact distribution
+	private boolean p2p_enabled = false;
+	private String p2p_bind_address = "0.0.0.0";
+	private int p2p_port = 9465;
+	private List<String> p2p_peers = new ArrayList<String>();
+	private String p2p_secret = "";
+	private long p2p_auth_window_sec = 300;
+	private int p2p_max_uploads = 4;
+	private long p2p_max_upload_bytes_per_sec = 0;
+	private int p2p_connections = 4;
+	private int p2p_timeout_ms = 10000;
+
+	// SSL certificate check
+	private int ssl_scan_parallelism = 16;
+	private int ssl_scan_connect_timeout_ms = 3000;
+	private int ssl_scan_read_timeout_ms = 5000;
+
+	// Certificate cache
+	private boolean cert_cache_enabled = false;
+	private long cert_cache_ttl_sec = 3600;
+	private int cert_cache_max_entries = 1000;
+
+	// JMX
+	private long jmx_pool_idle_timeout_sec = 300;
+	private long jmx_pool_health_check_sec = 30;
+	private int jmx_parallelism = 8;
+	private int jmx_metrics_max_snapshots = 256;
+
+	// Metrics
+	private boolean metrics_http_enabled = false;
+	private String metrics_http_bind_address = "127.0.0.1";
+	private int metrics_http_port = 9464;
+	private boolean metrics_attach_to_results = false;
+	private long metrics_attach_interval_sec = 60;
+
+	// Result Hash Cache Configuration
+	private boolean result_cache_enabled = false;
+	private int result_cache_max_entries = 10000;
+	private long result_cache_max_age_sec = 3600;
+	private String result_cache_file = "";
+
+	// Kafka Consumer Configuration
+	private int kafka_consumer_max_poll_records = 100;
+
+	// Kafka Producer Configuration
+	private int kafka_producer_linger_ms = 20;
+	private int kafka_producer_batch_size = 64*1024;
+	private String kafka_producer_compression_type = "lz4";
+	private boolean kafka_producer_idempotence = true;
+	private long kafka_producer_buffer_memory = 16*1024*1024;
+	private long kafka_producer_max_block_ms = 5000;
+	private int kafka_producer_delivery_timeout_ms = 120000;
+
+	// Command Executor Configuration
+	private int command_executor_pool_size = 8;
+	private int command_executor_queue_capacity = 100;
+	private long command_executor_aging_ms = 30000;
+	private Map<String, String> command_executor_priorities = new HashMap<>();
+	private Map<String, Integer> command_executor_class_limits = new HashMap<>();
+
 	private Logger logger;
 	
 	private String os = "";	
@@ -194,6 +310,521 @@ public final class Config implements ConfigurationProvider {
 		this.security_path_traversal_check = security_path_traversal_check;
 	}
 
+	// HTTP Connection Pool getters/setters
+	public int getHttpPoolMaxTotal() {
+		return http_pool_max_total;
+	}
+	public void setHttpPoolMaxTotal(int http_pool_max_total) {
+		this.http_pool_max_total = http_pool_max_total;
+	}
+	public int getHttpPoolMaxPerRoute() {
+		return http_pool_max_per_route;
+	}
+	public void setHttpPoolMaxPerRoute(int http_pool_max_per_route) {
+		this.http_pool_max_per_route = http_pool_max_per_route;
+	}
+	public int getHttpPoolIdleTimeout() {
+		return http_pool_idle_timeout;
+	}
+	public void setHttpPoolIdleTimeout(int http_pool_idle_timeout) {
+		this.http_pool_idle_timeout = http_pool_idle_timeout;
+	}
+	public int getHttpPoolValidateAfterInactivity() {
+		return http_pool_validate_after_inactivity;
+	}
+	public void setHttpPoolValidateAfterInactivity(int http_pool_validate_after_inactivity) {
+		this.http_pool_validate_after_inactivity = http_pool_validate_after_inactivity;
+	}
+	public int getHttpConnectTimeout() {
+		return http_connect_timeout;
+	}
+	public void setHttpConnectTimeout(int http_connect_timeout) {
+		this.http_connect_timeout = http_connect_timeout;
+	}
+	public int getHttpPoolLeaseTimeout() {
+		return http_pool_lease_timeout;
+	}
+	public void setHttpPoolLeaseTimeout(int http_pool_lease_timeout) {
+		this.http_pool_lease_timeout = http_pool_lease_timeout;
+	}
+	public int getHttpResponseLogMaxChars() {
+		return http_response_log_max_chars;
+	}
+	public void setHttpResponseLogMaxChars(int http_response_log_max_chars) {
+		this.http_response_log_max_chars = http_response_log_max_chars;
+	}
+	public int getHttpResponseLogSampleRate() {
+		return http_response_log_sample_rate;
+	}
+	public void setHttpResponseLogSampleRate(int http_response_log_sample_rate) {
+		this.http_response_log_sample_rate = http_response_log_sample_rate;
+	}
+
+	// Result Batch getters/setters
+	public boolean isResultBatchEnabled() {
+		return result_batch_enabled;
+	}
+	public void setResultBatchEnabled(boolean result_batch_enabled) {
+		this.result_batch_enabled = result_batch_enabled;
+	}
+	public String getResultBatchUri() {
+		return result_batch_uri;
+	}
+	public void setResultBatchUri(String result_batch_uri) {
+		this.result_batch_uri = result_batch_uri;
+	}
+	public int getResultBatchMaxSize() {
+		return result_batch_max_size;
+	}
+	public void setResultBatchMaxSize(int result_batch_max_size) {
+		this.result_batch_max_size = result_batch_max_size;
+	}
+	public int getResultBatchMaxBytes() {
+		return result_batch_max_bytes;
+	}
+	public void setResultBatchMaxBytes(int result_batch_max_bytes) {
+		this.result_batch_max_bytes = result_batch_max_bytes;
+	}
+	public long getResultBatchLingerMs() {
+		return result_batch_linger_ms;
+	}
+	public void setResultBatchLingerMs(long result_batch_linger_ms) {
+		this.result_batch_linger_ms = result_batch_linger_ms;
+	}
+	public int getResultBatchMaxInFlightBytes() {
+		return result_batch_max_in_flight_bytes;
+	}
+	public void setResultBatchMaxInFlightBytes(int result_batch_max_in_flight_bytes) {
+		this.result_batch_max_in_flight_bytes = result_batch_max_in_flight_bytes;
+	}
+	public int getResultBatchMaxRetries() {
+		return result_batch_max_retries;
+	}
+	public void setResultBatchMaxRetries(int result_batch_max_retries) {
+		this.result_batch_max_retries = result_batch_max_retries;
+	}
+
+	// Long-poll getters/setters
+	public boolean isLongPollEnabled() {
+		return long_poll_enabled;
+	}
+	public void setLongPollEnabled(boolean long_poll_enabled) {
+		this.long_poll_enabled = long_poll_enabled;
+	}
+	public long getLongPollTimeout() {
+		return long_poll_timeout;
+	}
+	public void setLongPollTimeout(long long_poll_timeout) {
+		this.long_poll_timeout = long_poll_timeout;
+	}
+
+	// ReadFile getters/setters
+	public long getReadFileMaxResultBytes() {
+		return read_file_max_result_bytes;
+	}
+	public void setReadFileMaxResultBytes(long read_file_max_result_bytes) {
+		this.read_file_max_result_bytes = read_file_max_result_bytes;
+	}
+
+	public String getTailOffsetFile() {
+		return tail_offset_file;
+	}
+	public void setTailOffsetFile(String tail_offset_file) {
+		this.tail_offset_file = tail_offset_file;
+	}
+
+	// Process execution getters/setters
+	public long getExecTimeoutSec() {
+		return exec_timeout_sec;
+	}
+	public void setExecTimeoutSec(long exec_timeout_sec) {
+		this.exec_timeout_sec = exec_timeout_sec;
+	}
+	public int getExecMaxOutputBytes() {
+		return exec_max_output_bytes;
+	}
+	public void setExecMaxOutputBytes(int exec_max_output_bytes) {
+		this.exec_max_output_bytes = exec_max_output_bytes;
+	}
+	public int getExecStreamChunkBytes() {
+		return exec_stream_chunk_bytes;
+	}
+	public void setExecStreamChunkBytes(int exec_stream_chunk_bytes) {
+		this.exec_stream_chunk_bytes = exec_stream_chunk_bytes;
+	}
+	public long getExecStreamIntervalMs() {
+		return exec_stream_interval_ms;
+	}
+	public void setExecStreamIntervalMs(long exec_stream_interval_ms) {
+		this.exec_stream_interval_ms = exec_stream_interval_ms;
+	}
+	public String getExecStreamUri() {
+		return exec_stream_uri;
+	}
+	public void setExecStreamUri(String exec_stream_uri) {
+		this.exec_stream_uri = exec_stream_uri;
+	}
+	public int getExecStreamMaxQueuedChunks() {
+		return exec_stream_max_queued_chunks;
+	}
+	public void setExecStreamMaxQueuedChunks(int exec_stream_max_queued_chunks) {
+		this.exec_stream_max_queued_chunks = exec_stream_max_queued_chunks;
+	}
+
+	// File download getters/setters
+	public int getDownloadMaxRetries() {
+		return download_max_retries;
+	}
+	public void setDownloadMaxRetries(int download_max_retries) {
+		this.download_max_retries = download_max_retries;
+	}
+	public long getDownloadRetryBackoffMs() {
+		return download_retry_backoff_ms;
+	}
+	public void setDownloadRetryBackoffMs(long download_retry_backoff_ms) {
+		this.download_retry_backoff_ms = download_retry_backoff_ms;
+	}
+	public int getDownloadSegments() {
+		return download_segments;
+	}
+	public void setDownloadSegments(int download_segments) {
+		this.download_segments = download_segments;
+	}
+	public long getDownloadSegmentMinBytes() {
+		return download_segment_min_bytes;
+	}
+	public void setDownloadSegmentMinBytes(long download_segment_min_bytes) {
+		this.download_segment_min_bytes = download_segment_min_bytes;
+	}
+	public long getDownloadMaxBytesPerSec() {
+		return download_max_bytes_per_sec;
+	}
+	public void setDownloadMaxBytesPerSec(long download_max_bytes_per_sec) {
+		this.download_max_bytes_per_sec = download_max_bytes_per_sec;
+	}
+	public int getDownloadReadTimeoutMs() {
+		return download_read_timeout_ms;
+	}
+	public void setDownloadReadTimeoutMs(int download_read_timeout_ms) {
+		this.download_read_timeout_ms = download_read_timeout_ms;
+	}
+
+	// Artifact cache getters/setters
+	public boolean isArtifactCacheEnabled() {
+		return artifact_cache_enabled;
+	}
+	public void setArtifactCacheEnabled(boolean artifact_cache_enabled) {
+		this.artifact_cache_enabled = artifact_cache_enabled;
+	}
+	public String getArtifactCacheDir() {
+		return artifact_cache_dir;
+	}
+	public void setArtifactCacheDir(String artifact_cache_dir) {
+		this.artifact_cache_dir = artifact_cache_dir;
+	}
+	public long getArtifactCacheMaxBytes() {
+		return artifact_cache_max_bytes;
+	}
+	public void setArtifactCacheMaxBytes(long artifact_cache_max_bytes) {
+		this.artifact_cache_max_bytes = artifact_cache_max_bytes;
+	}
+	public boolean isArtifactCacheHardlink() {
+		return artifact_cache_hardlink;
+	}
+	public void setArtifactCacheHardlink(boolean artifact_cache_hardlink) {
+		this.artifact_cache_hardlink = artifact_cache_hardlink;
+	}
+
+	// Zip extraction getters/setters
+	public int getUnzipParallelism() {
+		return unzip_parallelism;
+	}
+	public void setUnzipParallelism(int unzip_parallelism) {
+		this.unzip_parallelism = unzip_parallelism;
+	}
+	public int getUnzipBufferBytes() {
+		return unzip_buffer_bytes;
+	}
+	public void setUnzipBufferBytes(int unzip_buffer_bytes) {
+		this.unzip_buffer_bytes = unzip_buffer_bytes;
+	}
+
+	// P2P artifact distribution getters/setters
+	public boolean isP2pEnabled() {
+		return p2p_enabled;
+	}
+	public void setP2pEnabled(boolean p2p_enabled) {
+		this.p2p_enabled = p2p_enabled;
+	}
+	public String getP2pBindAddress() {
+		return p2p_bind_address;
+	}
+	public void setP2pBindAddress(String p2p_bind_address) {
+		this.p2p_bind_address = p2p_bind_address;
+	}
+	public int getP2pPort() {
+		return p2p_port;
+	}
+	public void setP2pPort(int p2p_port) {
+		this.p2p_port = p2p_port;
+	}
+	public List<String> getP2pPeers() {
+		return p2p_peers;
+	}
+	public void setP2pPeers(List<String> p2p_peers) {
+		this.p2p_peers = p2p_peers;
+	}
+	public String getP2pSecret() {
+		return p2p_secret;
+	}
+	public void setP2pSecret(String p2p_secret) {
+		this.p2p_secret = p2p_secret;
+	}
+	public long getP2pAuthWindowSec() {
+		return p2p_auth_window_sec;
+	}
+	public void setP2pAuthWindowSec(long p2p_auth_window_sec) {
+		this.p2p_auth_window_sec = p2p_auth_window_sec;
+	}
+	public int getP2pMaxUploads() {
+		return p2p_max_uploads;
+	}
+	public void setP2pMaxUploads(int p2p_max_uploads) {
+		this.p2p_max_uploads = p2p_max_uploads;
+	}
+	public long getP2pMaxUploadBytesPerSec() {
+		return p2p_max_upload_bytes_per_sec;
+	}
+	public void setP2pMaxUploadBytesPerSec(long p2p_max_upload_bytes_per_sec) {
+		this.p2p_max_upload_bytes_per_sec = p2p_max_upload_bytes_per_sec;
+	}
+	public int getP2pConnections() {
+		return p2p_connections;
+	}
+	public void setP2pConnections(int p2p_connections) {
+		this.p2p_connections = p2p_connections;
+	}
+	public int getP2pTimeoutMs() {
+		return p2p_timeout_ms;
+	}
+	public void setP2pTimeoutMs(int p2p_timeout_ms) {
+		this.p2p_timeout_ms = p2p_timeout_ms;
+	}
+
+	// SSL certificate check getters/setters
+	public int getSslScanParallelism() {
+		return ssl_scan_parallelism;
+	}
+	public void setSslScanParallelism(int ssl_scan_parallelism) {
+		this.ssl_scan_parallelism = ssl_scan_parallelism;
+	}
+	public int getSslScanConnectTimeoutMs() {
+		return ssl_scan_connect_timeout_ms;
+	}
+	public void setSslScanConnectTimeoutMs(int ssl_scan_connect_timeout_ms) {
+		this.ssl_scan_connect_timeout_ms = ssl_scan_connect_timeout_ms;
+	}
+	public int getSslScanReadTimeoutMs() {
+		return ssl_scan_read_timeout_ms;
+	}
+	public void setSslScanReadTimeoutMs(int ssl_scan_read_timeout_ms) {
+		this.ssl_scan_read_timeout_ms = ssl_scan_read_timeout_ms;
+	}
+
+	// Certificate cache getters/setters
+	public boolean isCertCacheEnabled() {
+		return cert_cache_enabled;
+	}
+	public void setCertCacheEnabled(boolean cert_cache_enabled) {
+		this.cert_cache_enabled = cert_cache_enabled;
+	}
+	public long getCertCacheTtlSec() {
+		return cert_cache_ttl_sec;
+	}
+	public void setCertCacheTtlSec(long cert_cache_ttl_sec) {
+		this.cert_cache_ttl_sec = cert_cache_ttl_sec;
+	}
+	public int getCertCacheMaxEntries() {
+		return cert_cache_max_entries;
+	}
+	public void setCertCacheMaxEntries(int cert_cache_max_entries) {
+		this.cert_cache_max_entries = cert_cache_max_entries;
+	}
+
+	// JMX getters/setters
+	public long getJmxPoolIdleTimeoutSec() {
+		return jmx_pool_idle_timeout_sec;
+	}
+	public void setJmxPoolIdleTimeoutSec(long jmx_pool_idle_timeout_sec) {
+		this.jmx_pool_idle_timeout_sec = jmx_pool_idle_timeout_sec;
+	}
+	public long getJmxPoolHealthCheckSec() {
+		return jmx_pool_health_check_sec;
+	}
+	public void setJmxPoolHealthCheckSec(long jmx_pool_health_check_sec) {
+		this.jmx_pool_health_check_sec = jmx_pool_health_check_sec;
+	}
+	public int getJmxParallelism() {
+		return jmx_parallelism;
+	}
+	public void setJmxParallelism(int jmx_parallelism) {
+		this.jmx_parallelism = jmx_parallelism;
+	}
+	public int getJmxMetricsMaxSnapshots() {
+		return jmx_metrics_max_snapshots;
+	}
+	public void setJmxMetricsMaxSnapshots(int jmx_metrics_max_snapshots) {
+		this.jmx_metrics_max_snapshots = jmx_metrics_max_snapshots;
+	}
+
+	// Metrics getters/setters
+	public boolean isMetricsHttpEnabled() {
+		return metrics_http_enabled;
+	}
+	public void setMetricsHttpEnabled(boolean metrics_http_enabled) {
+		this.metrics_http_enabled = metrics_http_enabled;
+	}
+	public String getMetricsHttpBindAddress() {
+		return metrics_http_bind_address;
+	}
+	public void setMetricsHttpBindAddress(String metrics_http_bind_address) {
+		this.metrics_http_bind_address = metrics_http_bind_address;
+	}
+	public int getMetricsHttpPort() {
+		return metrics_http_port;
+	}
+	public void setMetricsHttpPort(int metrics_http_port) {
+		this.metrics_http_port = metrics_http_port;
+	}
+	public boolean isMetricsAttachToResults() {
+		return metrics_attach_to_results;
+	}
+	public void setMetricsAttachToResults(boolean metrics_attach_to_results) {
+		this.metrics_attach_to_results = metrics_attach_to_results;
+	}
+	public long getMetricsAttachIntervalSec() {
+		return metrics_attach_interval_sec;
+	}
+	public void setMetricsAttachIntervalSec(long metrics_attach_interval_sec) {
+		this.metrics_attach_interval_sec = metrics_attach_interval_sec;
+	}
+
+	// Result Hash Cache getters/setters
+	public boolean isResultCacheEnabled() {
+		return result_cache_enabled;
+	}
+	public void setResultCacheEnabled(boolean result_cache_enabled) {
+		this.result_cache_enabled = result_cache_enabled;
+	}
+	public int getResultCacheMaxEntries() {
+		return result_cache_max_entries;
+	}
+	public void setResultCacheMaxEntries(int result_cache_max_entries) {
+		this.result_cache_max_entries = result_cache_max_entries;
+	}
+	public long getResultCacheMaxAgeSec() {
+		return result_cache_max_age_sec;
+	}
+	public void setResultCacheMaxAgeSec(long result_cache_max_age_sec) {
+		this.result_cache_max_age_sec = result_cache_max_age_sec;
+	}
+	public String getResultCacheFile() {
+		return result_cache_file;
+	}
+	public void setResultCacheFile(String result_cache_file) {
+		this.result_cache_file = result_cache_file;
+	}
+
+	// Kafka Consumer getters/setters
+	public int getKafkaConsumerMaxPollRecords() {
+		return kafka_consumer_max_poll_records;
+	}
+	public void setKafkaConsumerMaxPollRecords(int kafka_consumer_max_poll_records) {
+		this.kafka_consumer_max_poll_records = kafka_consumer_max_poll_records;
+	}
+
+	// Kafka Producer getters/setters
+	public int getKafkaProducerLingerMs() {
+		return kafka_producer_linger_ms;
+	}
+	public void setKafkaProducerLingerMs(int kafka_producer_linger_ms) {
+		this.kafka_producer_linger_ms = kafka_producer_linger_ms;
+	}
+	public int getKafkaProducerBatchSize() {
+		return kafka_producer_batch_size;
+	}
+	public void setKafkaProducerBatchSize(int kafka_producer_batch_size) {
+		this.kafka_producer_batch_size = kafka_producer_batch_size;
+	}
+	public String getKafkaProducerCompressionType() {
+		return kafka_producer_compression_type;
+	}
+	public void setKafkaProducerCompressionType(String kafka_producer_compression_type) {
+		this.kafka_producer_compression_type = kafka_producer_compression_type;
+	}
+	public boolean isKafkaProducerIdempotence() {
+		return kafka_producer_idempotence;
+	}
+	public void setKafkaProducerIdempotence(boolean kafka_producer_idempotence) {
+		this.kafka_producer_idempotence = kafka_producer_idempotence;
+	}
+	public long getKafkaProducerBufferMemory() {
+		return kafka_producer_buffer_memory;
+	}
+	public void setKafkaProducerBufferMemory(long kafka_producer_buffer_memory) {
+		this.kafka_producer_buffer_memory = kafka_producer_buffer_memory;
+	}
+	public long getKafkaProducerMaxBlockMs() {
+		return kafka_producer_max_block_ms;
+	}
+	public void setKafkaProducerMaxBlockMs(long kafka_producer_max_block_ms) {
+		this.kafka_producer_max_block_ms = kafka_producer_max_block_ms;
+	}
+	public int getKafkaProducerDeliveryTimeoutMs() {
+		return kafka_producer_delivery_timeout_ms;
+	}
+	public void setKafkaProducerDeliveryTimeoutMs(int kafka_producer_delivery_timeout_ms) {
+		this.kafka_producer_delivery_timeout_ms = kafka_producer_delivery_timeout_ms;
+	}
+
+	// Command Executor getters/setters
+	public int getCommandExecutorPoolSize() {
+		return command_executor_pool_size;
+	}
+	public void setCommandExecutorPoolSize(int command_executor_pool_size) {
+		this.command_executor_pool_size = command_executor_pool_size;
+	}
+	public int getCommandExecutorQueueCapacity() {
+		return command_executor_queue_capacity;
+	}
+	public void setCommandExecutorQueueCapacity(int command_executor_queue_capacity) {
+		this.command_executor_queue_capacity = command_executor_queue_capacity;
+	}
+	public long getCommandExecutorAgingMs() {
+		return command_executor_aging_ms;
+	}
+	public void setCommandExecutorAgingMs(long command_executor_aging_ms) {
+		this.command_executor_aging_ms = command_executor_aging_ms;
+	}
+	/**
+	 * command_class -> priority lane (HIGH/NORMAL/LOW)
+	 */
+	public Map<String, String> getCommandExecutorPriorities() {
+		return command_executor_priorities;
+	}
+	public void setCommandExecutorPriorities(Map<String, String> command_executor_priorities) {
+		this.command_executor_priorities = command_executor_priorities;
+	}
+	/**
+	 * command_class -> max concurrent executions (0: unlimited)
+	 */
+	public Map<String, Integer> getCommandExecutorClassLimits() {
+		return command_executor_class_limits;
+	}
+	public void setCommandExecutorClassLimits(Map<String, Integer> command_executor_class_limits) {
+		this.command_executor_class_limits = command_executor_class_limits;
+	}
+
     public long setConfig() {
 
 		Properties prop = new Properties();
@@ -251,6 +882,130 @@ public final class Config implements ConfigurationProvider {
 			setSecurityCommandInjectionCheck(Boolean.parseBoolean(prop.getProperty("security.command_injection_check", "false")));
 			setSecurityPathTraversalCheck(Boolean.parseBoolean(prop.getProperty("security.path_traversal_check", "true")));
 
+			// HTTP Connection Pool Configuration
+			setHttpPoolMaxTotal(Integer.parseInt(prop.getProperty("http.pool.max_total", "20")));
+			setHttpPoolMaxPerRoute(Integer.parseInt(prop.getProperty("http.pool.max_per_route", "10")));
+			setHttpPoolIdleTimeout(Integer.parseInt(prop.getProperty("http.pool.idle_timeout_sec", "30")));
+			setHttpPoolValidateAfterInactivity(Integer.parseInt(prop.getProperty("http.pool.validate_after_inactivity_ms", "2000")));
+			setHttpConnectTimeout(Integer.parseInt(prop.getProperty("http.connect_timeout_ms", "10000")));
+			setHttpPoolLeaseTimeout(Integer.parseInt(prop.getProperty("http.pool.lease_timeout_ms", "30000")));
+			setHttpResponseLogMaxChars(Integer.parseInt(prop.getProperty("http.response_log.max_chars", "1024")));
+			setHttpResponseLogSampleRate(Integer.parseInt(prop.getProperty("http.response_log.sample_rate", "10")));
+
+			// Result Batch Configuration (default: OFF)
+			setResultBatchEnabled(Boolean.parseBoolean(prop.getProperty("result_batch.enabled", "false")));
+			setResultBatchUri(prop.getProperty("result_batch.uri", "/api/v1/command/results"));
+			setResultBatchMaxSize(Integer.parseInt(prop.getProperty("result_batch.max_size", "50")));
+			setResultBatchMaxBytes(Integer.parseInt(prop.getProperty("result_batch.max_bytes", "1048576")));
+			setResultBatchLingerMs(Long.parseLong(prop.getProperty("result_batch.linger_ms", "500")));
+			setResultBatchMaxInFlightBytes(Integer.parseInt(prop.getProperty("result_batch.max_in_flight_bytes", "8388608")));
+			setResultBatchMaxRetries(Integer.parseInt(prop.getProperty("result_batch.max_retries", "3")));
+
+			// Long-poll Command Fetch Configuration (default: OFF)
+			setLongPollEnabled(Boolean.parseBoolean(prop.getProperty("long_poll.enabled", "false")));
+			setLongPollTimeout(Long.parseLong(prop.getProperty("long_poll.timeout_sec", "30")));
+
+			// ReadFile Configuration (0: unlimited)
+			setReadFileMaxResultBytes(Long.parseLong(prop.getProperty("read_file.max_result_bytes", "10485760")));
+			setTailOffsetFile(prop.getProperty("read_file.tail_offset_file", "tail_offsets.properties"));
+
+			// Process execution Configuration (timeout 0: unlimited)
+			setExecTimeoutSec(Long.parseLong(prop.getProperty("exec.timeout_sec", "0")));
+			setExecMaxOutputBytes(Integer.parseInt(prop.getProperty("exec.max_output_bytes", "1048576")));
+			setExecStreamChunkBytes(Integer.parseInt(prop.getProperty("exec.stream.chunk_bytes", "65536")));
+			setExecStreamIntervalMs(Long.parseLong(prop.getProperty("exec.stream.interval_ms", "2000")));
+			setExecStreamUri(prop.getProperty("exec.stream.uri", "/api/v1/command/result/chunk"));
+			setExecStreamMaxQueuedChunks(Integer.parseInt(prop.getProperty("exec.stream.max_queued_chunks", "16")));
+
+			// File Download Configuration
+			setDownloadMaxRetries(Integer.parseInt(prop.getProperty("download.max_retries", "3")));
+			setDownloadRetryBackoffMs(Long.parseLong(prop.getProperty("download.retry_backoff_ms", "1000")));
+			setDownloadSegments(Integer.parseInt(prop.getProperty("download.segments", "1")));
+			setDownloadSegmentMinBytes(Long.parseLong(prop.getProperty("download.segment_min_bytes", "8388608")));
+			setDownloadMaxBytesPerSec(Long.parseLong(prop.getProperty("download.max_bytes_per_sec", "0")));
+			setDownloadReadTimeoutMs(Integer.parseInt(prop.getProperty("download.read_timeout_ms", "60000")));
+
+			// Artifact Cache Configuration
+			setArtifactCacheEnabled(Boolean.parseBoolean(prop.getProperty("artifact_cache.enabled", "false")));
+			setArtifactCacheDir(prop.getProperty("artifact_cache.dir", "artifact_cache"));
+			setArtifactCacheMaxBytes(Long.parseLong(prop.getProperty("artifact_cache.max_bytes", "10737418240")));
+			setArtifactCacheHardlink(Boolean.parseBoolean(prop.getProperty("artifact_cache.hardlink", "false")));
+
+			// Zip Extraction Configuration
+			setUnzipParallelism(Integer.parseInt(prop.getProperty("unzip.parallelism", "0")));
+			setUnzipBufferBytes(Integer.parseInt(prop.getProperty("unzip.buffer_bytes", "262144")));
+
+			// P2P Artifact Distribution Configuration
+			setP2pEnabled(Boolean.parseBoolean(prop.getProperty("p2p.enabled", "false")));
+			setP2pBindAddress(prop.getProperty("p2p.bind_address", "0.0.0.0"));
+			setP2pPort(Integer.parseInt(prop.getProperty("p2p.port", "9465")));
+			List<String> peers = new ArrayList<String>();
+			for (String peer : prop.getProperty("p2p.peers", "").split(",")) {
+				if (!peer.trim().isEmpty()) {
+					peers.add(peer.trim());
+				}
+			}
+			setP2pPeers(peers);
+			setP2pSecret(prop.getProperty("p2p.secret", ""));
+			setP2pAuthWindowSec(Long.parseLong(prop.getProperty("p2p.auth_window_sec", "300")));
+			setP2pMaxUploads(Integer.parseInt(prop.getProperty("p2p.max_uploads", "4")));
+			setP2pMaxUploadBytesPerSec(Long.parseLong(prop.getProperty("p2p.max_upload_bytes_per_sec", "0")));
+			setP2pConnections(Integer.parseInt(prop.getProperty("p2p.connections", "4")));
+			setP2pTimeoutMs(Integer.parseInt(prop.getProperty("p2p.timeout_ms", "10000")));
+
+			// SSL certificate check Configuration
+			setSslScanParallelism(Integer.parseInt(prop.getProperty("ssl_scan.parallelism", "16")));
+			setSslScanConnectTimeoutMs(Integer.parseInt(prop.getProperty("ssl_scan.connect_timeout_ms", "3000")));
+			setSslScanReadTimeoutMs(Integer.parseInt(prop.getProperty("ssl_scan.read_timeout_ms", "5000")));
+
+			// Certificate Cache Configuration (default: OFF)
+			setCertCacheEnabled(Boolean.parseBoolean(prop.getProperty("cert_cache.enabled", "false")));
+			setCertCacheTtlSec(Long.parseLong(prop.getProperty("cert_cache.ttl_sec", "3600")));
+			setCertCacheMaxEntries(Integer.parseInt(prop.getProperty("cert_cache.max_entries", "1000")));
+
+			// JMX Configuration
+			setJmxPoolIdleTimeoutSec(Long.parseLong(prop.getProperty("jmx.pool.idle_timeout_sec", "300")));
+			setJmxPoolHealthCheckSec(Long.parseLong(prop.getProperty("jmx.pool.health_check_sec", "30")));
+			setJmxParallelism(Integer.parseInt(prop.getProperty("jmx.parallelism", "8")));
+			setJmxMetricsMaxSnapshots(Integer.parseInt(prop.getProperty("jmx.metrics.max_snapshots", "256")));
+
+			// Metrics Configuration (default: OFF)
+			setMetricsHttpEnabled(Boolean.parseBoolean(prop.getProperty("metrics.http.enabled", "false")));
+			setMetricsHttpBindAddress(prop.getProperty("metrics.http.bind_address", "127.0.0.1"));
+			setMetricsHttpPort(Integer.parseInt(prop.getProperty("metrics.http.port", "9464")));
+			setMetricsAttachToResults(Boolean.parseBoolean(prop.getProperty("metrics.attach_to_results", "false")));
+			setMetricsAttachIntervalSec(Long.parseLong(prop.getProperty("metrics.attach_interval_sec", "60")));
+
+			// Result Hash Cache Configuration (default: OFF)
+			setResultCacheEnabled(Boolean.parseBoolean(prop.getProperty("result_cache.enabled", "false")));
+			setResultCacheMaxEntries(Integer.parseInt(prop.getProperty("result_cache.max_entries", "10000")));
+			setResultCacheMaxAgeSec(Long.parseLong(prop.getProperty("result_cache.max_age_sec", "3600")));
+			setResultCacheFile(prop.getProperty("result_cache.file", ""));
+
+			// Kafka Consumer Configuration
+			setKafkaConsumerMaxPollRecords(Integer.parseInt(prop.getProperty("kafka.consumer.max_poll_records", "100")));
+
+			// Kafka Producer Configuration
+			setKafkaProducerLingerMs(Integer.parseInt(prop.getProperty("kafka.producer.linger_ms", "20")));
+			setKafkaProducerBatchSize(Integer.parseInt(prop.getProperty("kafka.producer.batch_size", "65536")));
+			setKafkaProducerCompressionType(prop.getProperty("kafka.producer.compression_type", "lz4"));
+			setKafkaProducerIdempotence(Boolean.parseBoolean(prop.getProperty("kafka.producer.idempotence", "true")));
+			setKafkaProducerBufferMemory(Long.parseLong(prop.getProperty("kafka.producer.buffer_memory", "16777216")));
+			setKafkaProducerMaxBlockMs(Long.parseLong(prop.getProperty("kafka.producer.max_block_ms", "5000")));
+			setKafkaProducerDeliveryTimeoutMs(Integer.parseInt(prop.getProperty("kafka.producer.delivery_timeout_ms", "120000")));
+
+			// Command Executor Configuration
+			setCommandExecutorPoolSize(Integer.parseInt(prop.getProperty("command_executor.pool_size", "8")));
+			setCommandExecutorQueueCapacity(Integer.parseInt(prop.getProperty("command_executor.queue_capacity", "100")));
+			setCommandExecutorAgingMs(Long.parseLong(prop.getProperty("command_executor.aging_ms", "30000")));
+			for (String name : prop.stringPropertyNames()) {
+				if (name.startsWith("command_executor.priority.")) {
+					getCommandExecutorPriorities().put(name.substring("command_executor.priority.".length()), prop.getProperty(name).trim().toUpperCase());
+				} else if (name.startsWith("command_executor.max_concurrent.")) {
+					getCommandExecutorClassLimits().put(name.substring("command_executor.max_concurrent.".length()), Integer.parseInt(prop.getProperty(name).trim()));
+				}
+			}
+
 			// Reconfigure logger with settings from properties file
 			Logger logger = getLogger();
 			logger.setLevel(Level.parse(log_level));
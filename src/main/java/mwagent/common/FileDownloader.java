@@ -0,0 +1,592 @@
+package mwagent.common;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.SimpleDateFormat;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.util.EntityUtils;
+
+import mwagent.metrics.AgentMetrics;
+import mwagent.vo.MwResponseVO;
+
+/**
+ * Downloads a file into a directory without ever exposing a partial file under its final name.
+ *
+ * - The body is written to a hidden part file (.<id>.part, id derived from the URL) in the
+ *   target directory and atomically renamed once complete and verified.
+ * - A sidecar (.<id>.part.meta) keeps the validator (ETag / Last-Modified) and file name, so
+ *   an interrupted download resumes with a Range + If-Range request, both on the next retry
+ *   and on the next download of the same URL after an agent restart. A server that ignores
+ *   the range (200) or a changed file restarts the download from zero.
+ * - SHA-256 is computed while streaming and compared with the expected digest: the caller's,
+ *   or else the server's X-Checksum-Sha256 (hex) or Digest: SHA-256= (base64) header.
+ *   A mismatch deletes the part file.
+ *
+ * Large files from servers supporting ranges are fetched over several connections at once when
+ * segmented() is set (see SegmentedDownloader), and every received byte goes through the
+ * throttle, the agent wide BandwidthThrottle by default. With peers() the chunks of a file whose
+ * SHA-256 is known are asked from other agents first; when such a file does not match its
+ * SHA-256 it is downloaded again from the server alone.
+ *
+ * With an ArtifactCache a file whose SHA-256 is given and cached is not requested at all, and
+ * a URL downloaded before is requested conditionally (If-None-Match / If-Modified-Since) : on
+ * 304 the cached file is linked or copied into place. Downloaded files are added to the cache.
+ *
+ * Status codes besides the HTTP status: -100 I/O error after the retries, -101 directory not
+ * found, -102 other errors, -103 checksum mismatch.
+ */
+public class FileDownloader {
+
+	public static final int IO_ERROR = -100;
+	public static final int NOT_FOUND = -101;
+	public static final int ERROR = -102;
+	public static final int CHECKSUM_MISMATCH = -103;
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final HttpClient client;
+	private final int maxRetries;
+	private final long retryBackoffMs;
+	private final Logger logger;
+
+	private int maxSegments = 1;
+	private long minSegmentBytes;
+	private BandwidthThrottle throttle = new BandwidthThrottle(0);
+	private boolean backupExisting;
+	private ArtifactCache cache;
+	private boolean cacheIgnoresQuery;
+	private HttpClient peerClient;
+	private List<String> peers = Collections.emptyList();
+	private String peerSecret;
+	private int peerConnections;
+	private int peerTimeoutMs;
+	private RequestConfig requestConfig;
+
+	public FileDownloader(HttpClient client, int maxRetries, long retryBackoffMs) {
+		this.client = client;
+		this.maxRetries = Math.max(0, maxRetries);
+		this.retryBackoffMs = retryBackoffMs;
+		this.logger = Config.getConfig().getLogger();
+	}
+
+	/**
+	 * Fetch files of at least 2 * minSegmentBytes over up to maxSegments connections
+	 */
+	public FileDownloader segmented(int maxSegments, long minSegmentBytes) {
+		this.maxSegments = maxSegments;
+		this.minSegmentBytes = minSegmentBytes;
+		return this;
+	}
+
+	/**
+	 * Fail a request receiving nothing for timeoutMs instead of waiting on a dropped connection,
+	 * so that it is retried / resumed; 0 or less : the client's
+	 */
+	public FileDownloader readTimeout(int timeoutMs) {
+		Config config = Config.getConfig();
+		this.requestConfig = timeoutMs > 0 ? RequestConfig.custom()
+				.setConnectTimeout(config.getHttpConnectTimeout())
+				.setConnectionRequestTimeout(config.getHttpPoolLeaseTimeout())
+				.setSocketTimeout(timeoutMs)
+				.build() : null;
+		return this;
+	}
+
+	public FileDownloader throttle(BandwidthThrottle throttle) {
+		this.throttle = throttle;
+		return this;
+	}
+
+	/**
+	 * Rename an existing file of the same name to <name>_<yyyyMMdd_HHmmss>.bak instead of replacing it
+	 */
+	public FileDownloader backupExisting(boolean backupExisting) {
+		this.backupExisting = backupExisting;
+		return this;
+	}
+
+	/**
+	 * Serve repeated downloads from cache, null for none
+	 */
+	public FileDownloader cache(ArtifactCache cache) {
+		this.cache = cache;
+		return this;
+	}
+
+	/**
+	 * Key the cache by the URL without its query, for presigned URLs signed anew on every request
+	 */
+	public FileDownloader cacheIgnoringQuery() {
+		this.cacheIgnoresQuery = true;
+		return this;
+	}
+
+	/**
+	 * Fetch large files of known SHA-256 from other agents (host:port) first
+	 *
+	 * @param connections connections to use at least, even when segmented() is not set
+	 * @param timeoutMs connect and read timeout of the peer requests, 0 or less : the client's
+	 */
+	public FileDownloader peers(HttpClient peerClient, List<String> peers, String peerSecret, int connections, int timeoutMs) {
+		this.peerClient = peerClient;
+		this.peers = peers;
+		this.peerSecret = peerSecret;
+		this.peerConnections = connections;
+		this.peerTimeoutMs = timeoutMs;
+		return this;
+	}
+
+	/**
+	 * Download uri into fileLocation (a directory, with trailing separator or not)
+	 *
+	 * @param expectedSha256 hex digest the file must have, null to use the server's if any
+	 */
+	public MwResponseVO download(String uri, String token, String fileLocation, String expectedSha256) {
+
+		MwResponseVO mrvo = new MwResponseVO();
+
+		try {
+			Path dir = Paths.get(fileLocation);
+			if (!Files.isDirectory(dir)) {
+				throw new FileNotFoundException("Directory not found : " + fileLocation);
+			}
+
+			String id = partId(uri);
+			Path part = dir.resolve("." + id + ".part");
+			Path meta = dir.resolve("." + id + ".part.meta");
+
+			if (cache != null) {
+				MwResponseVO cached = fromCache(uri, token, part, meta, expectedSha256, fileLocation, mrvo);
+				if (cached != null) {
+					AgentMetrics.ARTIFACT_CACHE_HITS.inc();
+					return cached;
+				}
+				AgentMetrics.ARTIFACT_CACHE_MISSES.inc();
+			}
+
+			// a sequential download in progress is continued as it is
+			int segments = peers.isEmpty() ? maxSegments : Math.max(maxSegments, peerConnections);
+			if (segments > 1 && !Files.exists(part)) {
+				Path segPart = dir.resolve("." + id + ".seg");
+				Path segMeta = dir.resolve("." + id + ".seg.meta");
+				SegmentedDownloader.Result r = new SegmentedDownloader(client, segments, minSegmentBytes, maxRetries,
+						retryBackoffMs, throttle).requestConfig(requestConfig).peers(peerClient, peers, peerSecret, peerTimeoutMs)
+						.download(uri, token, expectedSha256, segPart, segMeta);
+				if (r != null && r.fromPeers && !r.sha256.equalsIgnoreCase(expectedSha256 != null ? expectedSha256 : r.serverSha256)) {
+					// a peer served wrong bytes : start over without peers
+					logger.warning("Checksum mismatch of a file received from peers, downloading again from the server : " + uri);
+					deletePart(r.part, r.meta);
+					r = maxSegments > 1 ? new SegmentedDownloader(client, maxSegments, minSegmentBytes, maxRetries,
+							retryBackoffMs, throttle).requestConfig(requestConfig).download(uri, token, expectedSha256, segPart, segMeta) : null;
+				}
+				if (r != null) {
+					mrvo.setStatusCode(206);
+					return complete(r.part, r.meta, r.filename, r.sha256,
+							expectedSha256 != null ? expectedSha256 : r.serverSha256, r.etag, r.lastModified, uri, fileLocation, mrvo);
+				}
+			}
+
+			for (int attempt = 0;; attempt++) {
+				try {
+					return attempt(uri, token, fileLocation, part, meta, expectedSha256, mrvo);
+				} catch (IOException e) {
+					if (attempt >= maxRetries) {
+						throw e;
+					}
+					logger.warning("File download interrupted (" + e.getMessage() + "), retry " + (attempt + 1) + "/" + maxRetries
+							+ " from " + (Files.exists(part) ? Files.size(part) : 0) + " bytes : " + uri);
+					Thread.sleep(retryBackoffMs * (attempt + 1));
+				}
+			}
+
+		} catch (FileNotFoundException e) {
+			logger.log(Level.WARNING, e.getMessage(), e);
+			mrvo.setStatusCode(NOT_FOUND);
+		} catch (IOException e) {
+			logger.log(Level.WARNING, e.getMessage(), e);
+			mrvo.setStatusCode(IO_ERROR);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			mrvo.setStatusCode(ERROR);
+		} catch (Exception e) {
+			logger.log(Level.WARNING, e.getMessage(), e);
+			mrvo.setStatusCode(ERROR);
+		}
+		return mrvo;
+	}
+
+	private MwResponseVO attempt(String uri, String token, String fileLocation, Path part, Path meta,
+			String expectedSha256, MwResponseVO mrvo) throws IOException, NoSuchAlgorithmException, InterruptedException {
+
+		Properties state = loadMeta(meta, uri);
+		String validator = state.getProperty("etag", state.getProperty("last_modified"));
+
+		long offset = 0;
+		if (Files.exists(part)) {
+			// without a validator the part file may belong to an older version of the file
+			if (validator != null || expectedSha256 != null) {
+				offset = Files.size(part);
+			} else {
+				Files.delete(part);
+			}
+		}
+
+		HttpGet request = new HttpGet(uri);
+		request.addHeader(HttpHeaders.CONTENT_TYPE, "application/json");
+		if (token != null && !token.isEmpty()) {
+			request.addHeader(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+		}
+		if (requestConfig != null) {
+			request.setConfig(requestConfig);
+		}
+		if (offset > 0) {
+			request.addHeader(HttpHeaders.RANGE, "bytes=" + offset + "-");
+			if (validator != null) {
+				request.addHeader(HttpHeaders.IF_RANGE, validator);
+			}
+		}
+
+		HttpResponse response = client.execute(request);
+		HttpEntity entity = response.getEntity();
+		int returnCode = response.getStatusLine().getStatusCode();
+		mrvo.setStatusCode(returnCode);
+		logger.fine("File Download status code  " + returnCode);
+
+		if (returnCode == 416 && offset > 0) {
+			// the part file is not a prefix of the current file
+			EntityUtils.consumeQuietly(entity);
+			deletePart(part, meta);
+			throw new IOException("Range not satisfiable, restarting download");
+		}
+		if (returnCode < 200 || returnCode >= 300 || entity == null) {
+			// release the pooled connection
+			EntityUtils.consumeQuietly(entity);
+			return mrvo;
+		}
+
+		boolean resume = offset > 0 && returnCode == 206 && rangeStart(response) == offset;
+		if (offset > 0) {
+			if (resume) {
+				logger.info("Resuming file download at " + offset + " bytes : " + uri);
+				AgentMetrics.DOWNLOAD_RESUMES.inc();
+			} else {
+				logger.info("Server sent the whole file, restarting download : " + uri);
+			}
+		}
+
+		String filename = filename(response, uri, state.getProperty("filename"));
+		if (expectedSha256 == null) {
+			expectedSha256 = serverSha256(response);
+		}
+		saveMeta(meta, uri, response, filename);
+		String etag = etag(response);
+		Header lastModified = response.getFirstHeader(HttpHeaders.LAST_MODIFIED);
+
+		MessageDigest md = MessageDigest.getInstance("SHA-256");
+		byte[] buffer = new byte[BUFFER_SIZE];
+		if (resume) {
+			try (InputStream in = Files.newInputStream(part)) {
+				int n;
+				while ((n = in.read(buffer)) != -1) {
+					md.update(buffer, 0, n);
+				}
+			}
+		}
+
+		try (InputStream in = entity.getContent();
+			 OutputStream out = Files.newOutputStream(part, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					 resume ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING)) {
+			int n;
+			while ((n = in.read(buffer)) != -1) {
+				out.write(buffer, 0, n);
+				md.update(buffer, 0, n);
+				AgentMetrics.DOWNLOAD_BYTES.add(n);
+				throttle.acquire(n);
+			}
+		}
+
+		return complete(part, meta, filename, hex(md.digest()), expectedSha256, etag,
+				lastModified != null ? lastModified.getValue() : null, uri, fileLocation, mrvo);
+	}
+
+	/**
+	 * Put the cached file in place when it is known to be the one requested, null otherwise
+	 */
+	private MwResponseVO fromCache(String uri, String token, Path part, Path meta, String expectedSha256,
+			String fileLocation, MwResponseVO mrvo) throws IOException {
+
+		String key = cacheKey(uri);
+		ArtifactCache.Entry entry = cache.lookup(key);
+
+		if (expectedSha256 != null && cache.contains(expectedSha256)) {
+			if (entry == null || !entry.getSha256().equalsIgnoreCase(expectedSha256)) {
+				// the same content downloaded from another URL
+				entry = new ArtifactCache.Entry(expectedSha256, null, null,
+						entry != null ? entry.getFilename() : filename(null, uri, null));
+			}
+		} else if (entry == null || (entry.getEtag() == null && entry.getLastModified() == null)
+				|| (expectedSha256 != null && !expectedSha256.equalsIgnoreCase(entry.getSha256()))
+				|| !notModified(uri, token, entry)) {
+			return null;
+		}
+
+		// a download of an older version in progress is of no use any more
+		deletePart(part, meta);
+		if (!cache.materialize(entry.getSha256(), part)) {
+			return null;
+		}
+		logger.info("File served from artifact cache (sha256:" + entry.getSha256() + ") : " + uri);
+		mrvo.setStatusCode(200);
+		mrvo.setCached(true);
+		return complete(part, meta, entry.getFilename(), entry.getSha256(), expectedSha256, entry.getEtag(),
+				entry.getLastModified(), uri, fileLocation, mrvo);
+	}
+
+	/**
+	 * Ask whether the cached version is still current, one byte is received when it is not
+	 */
+	private boolean notModified(String uri, String token, ArtifactCache.Entry entry) {
+
+		HttpGet request = new HttpGet(uri);
+		if (token != null && !token.isEmpty()) {
+			request.addHeader(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+		}
+		request.addHeader(HttpHeaders.RANGE, "bytes=0-0");
+		if (requestConfig != null) {
+			request.setConfig(requestConfig);
+		}
+		if (entry.getEtag() != null) {
+			request.addHeader(HttpHeaders.IF_NONE_MATCH, entry.getEtag());
+		}
+		if (entry.getLastModified() != null) {
+			request.addHeader(HttpHeaders.IF_MODIFIED_SINCE, entry.getLastModified());
+		}
+		try {
+			HttpResponse response = client.execute(request);
+			if (response.getStatusLine().getStatusCode() == 304) {
+				EntityUtils.consumeQuietly(response.getEntity());
+				return true;
+			}
+			// a server ignoring the range may be sending the whole file
+			request.abort();
+			return false;
+		} catch (IOException e) {
+			logger.warning("Artifact cache revalidation failed (" + e.getMessage() + ") : " + uri);
+			return false;
+		}
+	}
+
+	private String cacheKey(String uri) {
+		int query = uri.indexOf('?');
+		return cacheIgnoresQuery && query >= 0 ? uri.substring(0, query) : uri;
+	}
+
+	/**
+	 * Verify the received part file and move it to its final name
+	 */
+	private MwResponseVO complete(Path part, Path meta, String filename, String sha256, String expectedSha256,
+			String etag, String lastModified, String uri, String fileLocation, MwResponseVO mrvo) throws IOException {
+
+		if (expectedSha256 != null && !expectedSha256.equalsIgnoreCase(sha256)) {
+			logger.severe("File download checksum mismatch : " + uri + " expected " + expectedSha256 + " but " + sha256);
+			deletePart(part, meta);
+			mrvo.setStatusCode(CHECKSUM_MISMATCH);
+			return mrvo;
+		}
+
+		Path target = part.resolveSibling(filename);
+		if (backupExisting && Files.exists(target)) {
+			String timeStamp = new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date());
+			Path backup = target.resolveSibling(filename + "_" + timeStamp + ".bak");
+			Files.move(target, backup, StandardCopyOption.REPLACE_EXISTING);
+			logger.info("Existing file backed up as " + backup);
+		}
+		moveAtomically(part, target);
+		// rename() leaves both names when they are links to the same file, e.g. a cached file deployed again
+		Files.deleteIfExists(part);
+		Files.deleteIfExists(meta);
+
+		if (cache != null) {
+			cache.put(cacheKey(uri), new ArtifactCache.Entry(sha256, etag, lastModified, filename), target);
+		}
+
+		mrvo.setFileName(filename);
+		mrvo.setFileLocation(fileLocation);
+		mrvo.setSha256(sha256);
+		return mrvo;
+	}
+
+	/**
+	 * Replace target with source, atomically where the file system supports it
+	 */
+	public static void moveAtomically(Path source, Path target) throws IOException {
+		try {
+			Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * File name from Content-Disposition, else the last segment of the URL path
+	 */
+	static String filename(HttpResponse response, String uri, String fallback) {
+
+		Header contentDisposition = response != null ? response.getFirstHeader("Content-Disposition") : null;
+		if (contentDisposition != null) {
+			String filename = contentDisposition.getValue().replaceFirst("(?i)^.*filename=\"?([^\"]+)\"?.*$", "$1");
+			// never leave the target directory
+			filename = filename.substring(Math.max(filename.lastIndexOf('/'), filename.lastIndexOf('\\')) + 1);
+			Config.getConfig().getLogger().info("Filename from Content-Disposition: " + filename);
+			return filename;
+		}
+
+		String filename = fallback != null ? fallback : "downloaded_file";
+		try {
+			String path = new URI(uri).getPath();
+			if (path != null && path.contains("/")) {
+				String lastPart = path.substring(path.lastIndexOf('/') + 1);
+				if (!lastPart.isEmpty()) {
+					filename = lastPart;
+				}
+			}
+		} catch (Exception e) {
+			// Fallback to default
+		}
+		Config.getConfig().getLogger().info("Filename from URL/Fallback: " + filename);
+		return filename;
+	}
+
+	/**
+	 * Expected SHA-256 (hex) sent by the server, null if none
+	 */
+	static String serverSha256(HttpResponse response) {
+
+		Header checksum = response.getFirstHeader("X-Checksum-Sha256");
+		if (checksum != null && !checksum.getValue().trim().isEmpty()) {
+			return checksum.getValue().trim();
+		}
+
+		// RFC 3230 instance digest : Digest: SHA-256=<base64>[, MD5=...]
+		Header digest = response.getFirstHeader("Digest");
+		if (digest != null) {
+			for (String d : digest.getValue().split(",")) {
+				String s = d.trim();
+				if (s.regionMatches(true, 0, "SHA-256=", 0, 8)) {
+					return hex(Base64.getDecoder().decode(s.substring(8)));
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * First byte position of a Content-Range: bytes <start>-<end>/<total>, -1 if absent
+	 */
+	static long rangeStart(HttpResponse response) {
+		Header range = response.getFirstHeader(HttpHeaders.CONTENT_RANGE);
+		if (range == null) {
+			return -1;
+		}
+		String v = range.getValue().trim();
+		try {
+			int from = v.indexOf(' ') + 1;
+			return Long.parseLong(v.substring(from, v.indexOf('-', from)).trim());
+		} catch (RuntimeException e) {
+			return -1;
+		}
+	}
+
+	private static Properties loadMeta(Path meta, String uri) {
+		Properties p = new Properties();
+		if (Files.exists(meta)) {
+			try (Reader r = Files.newBufferedReader(meta, StandardCharsets.UTF_8)) {
+				p.load(r);
+			} catch (IOException e) {
+				p.clear();
+			}
+		}
+		// a hash collision of the part id, or a truncated sidecar
+		if (!uri.equals(p.getProperty("url"))) {
+			p.clear();
+		}
+		return p;
+	}
+
+	private static void saveMeta(Path meta, String uri, HttpResponse response, String filename) throws IOException {
+		Properties p = new Properties();
+		p.setProperty("url", uri);
+		p.setProperty("filename", filename);
+		String etag = etag(response);
+		if (etag != null) {
+			p.setProperty("etag", etag);
+		}
+		Header lastModified = response.getFirstHeader(HttpHeaders.LAST_MODIFIED);
+		if (lastModified != null) {
+			p.setProperty("last_modified", lastModified.getValue());
+		}
+		try (Writer w = Files.newBufferedWriter(meta, StandardCharsets.UTF_8)) {
+			p.store(w, null);
+		}
+	}
+
+	/**
+	 * Strong ETag, null if none : a weak ETag can not be used with If-Range
+	 */
+	static String etag(HttpResponse response) {
+		Header etag = response.getFirstHeader(HttpHeaders.ETAG);
+		return etag != null && !etag.getValue().startsWith("W/") ? etag.getValue() : null;
+	}
+
+	private static void deletePart(Path part, Path meta) throws IOException {
+		Files.deleteIfExists(part);
+		Files.deleteIfExists(meta);
+	}
+
+	static String partId(String uri) {
+		try {
+			return hex(MessageDigest.getInstance("SHA-256").digest(uri.getBytes(StandardCharsets.UTF_8))).substring(0, 16);
+		} catch (NoSuchAlgorithmException e) {
+			return Integer.toHexString(uri.hashCode());
+		}
+	}
+
+	public static String hex(byte[] bytes) {
+		char[] digits = "0123456789abcdef".toCharArray();
+		char[] out = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; i++) {
+			out[i * 2] = digits[(bytes[i] >> 4) & 0xF];
+			out[i * 2 + 1] = digits[bytes[i] & 0xF];
+		}
+		return new String(out);
+	}
+
+}
@@ -0,0 +1,114 @@
+package mwagent.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+import java.util.logging.Level;
+
+/**
+ * Remembers how far each tailed file has been read (byte offset + file identity).
+ * The table is saved to a properties file on every update so that tailing resumes
+ * after an agent restart instead of re-sending the whole file.
+ */
+public class FileOffsetStore {
+
+	private static volatile FileOffsetStore instance;
+
+	private final Path storeFile;
+	private final Properties table = new Properties();
+
+	public static FileOffsetStore getInstance() {
+		if (instance == null) {
+			synchronized (FileOffsetStore.class) {
+				if (instance == null) {
+					instance = new FileOffsetStore(Paths.get(Config.getConfig().getTailOffsetFile()));
+				}
+			}
+		}
+		return instance;
+	}
+
+	public FileOffsetStore(Path storeFile) {
+		this.storeFile = storeFile;
+		load();
+	}
+
+	/**
+	 * @return saved position, null if the key has never been read
+	 */
+	public synchronized Entry get(String key) {
+		String value = table.getProperty(key);
+		if (value == null) {
+			return null;
+		}
+		int sep = value.indexOf('|');
+		try {
+			long offset = Long.parseLong(sep < 0 ? value : value.substring(0, sep));
+			String fileKey = sep < 0 ? "" : value.substring(sep + 1);
+			return new Entry(offset, fileKey);
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	public synchronized void put(String key, Entry entry) {
+		String value = entry.getOffset() + "|" + entry.getFileKey();
+		if (!value.equals(table.setProperty(key, value))) {
+			save();
+		}
+	}
+
+	public synchronized void remove(String key) {
+		if (table.remove(key) != null) {
+			save();
+		}
+	}
+
+	private void load() {
+		if (!Files.exists(storeFile)) {
+			return;
+		}
+		try (InputStream in = Files.newInputStream(storeFile)) {
+			table.load(in);
+		} catch (IOException e) {
+			Config.getConfig().getLogger().log(Level.WARNING, "Failed to load tail offsets : " + storeFile, e);
+		}
+	}
+
+	private void save() {
+		// write to a temp file and move so that a crash never leaves a half written table
+		Path tmp = storeFile.resolveSibling(storeFile.getFileName() + ".tmp");
+		try {
+			try (OutputStream out = Files.newOutputStream(tmp)) {
+				table.store(out, "tail offsets (offset|file key)");
+			}
+			Files.move(tmp, storeFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			Config.getConfig().getLogger().log(Level.WARNING, "Failed to save tail offsets : " + storeFile, e);
+		}
+	}
+
+	public static final class Entry {
+
+		private final long offset;
+		private final String fileKey;
+
+		public Entry(long offset, String fileKey) {
+			this.offset = offset;
+			this.fileKey = fileKey == null ? "" : fileKey;
+		}
+
+		public long getOffset() {
+			return offset;
+		}
+
+		public String getFileKey() {
+			return fileKey;
+		}
+	}
+}
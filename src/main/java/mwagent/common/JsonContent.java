@@ -0,0 +1,98 @@
+package mwagent.common;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+
+/**
+ * A JSON document that is written on demand instead of being held as a String.
+ * writeTo may be called several times (length calculation, retries) and must write the
+ * same content each time.
+ */
+@FunctionalInterface
+public interface JsonContent {
+
+	void writeTo(JsonStreamWriter writer) throws IOException;
+
+	/**
+	 * UTF-8 size of the document, computed by writing it to a counting stream.
+	 */
+	default long byteLength() {
+		CountingOutputStream counter = new CountingOutputStream();
+		write(counter);
+		return counter.count;
+	}
+
+	/**
+	 * UTF-8 bytes of the document in an exactly sized array.
+	 */
+	default byte[] toBytes() {
+		long length = byteLength();
+		if (length > Integer.MAX_VALUE - 8) {
+			throw new IllegalStateException("JSON document too large : " + length);
+		}
+		FixedOutputStream out = new FixedOutputStream(new byte[(int) length]);
+		write(out);
+		return out.buf;
+	}
+
+	default String toJsonString() {
+		StringWriter sw = new StringWriter();
+		try {
+			JsonStreamWriter writer = new JsonStreamWriter(sw);
+			writeTo(writer);
+			writer.flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return sw.toString();
+	}
+
+	default void write(OutputStream out) {
+		try {
+			JsonStreamWriter writer = JsonStreamWriter.of(out);
+			writeTo(writer);
+			writer.flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	final class CountingOutputStream extends OutputStream {
+
+		private long count = 0;
+
+		@Override
+		public void write(int b) {
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			count += len;
+		}
+	}
+
+	final class FixedOutputStream extends OutputStream {
+
+		private final byte[] buf;
+		private int pos = 0;
+
+		FixedOutputStream(byte[] buf) {
+			this.buf = buf;
+		}
+
+		@Override
+		public void write(int b) {
+			buf[pos++] = (byte) b;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			System.arraycopy(b, off, buf, pos, len);
+			pos += len;
+		}
+	}
+
+}
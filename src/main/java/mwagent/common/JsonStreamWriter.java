@@ -0,0 +1,167 @@
+package mwagent.common;
+
+import java.io.BufferedWriter;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes a flat JSON object field by field, escaping string values on the fly, or an array
+ * of such documents.
+ *
+ * Large values (e.g. result_text) are written straight to the underlying stream instead of
+ * being escaped into an intermediate String first. Escaping follows json-simple's
+ * JSONValue.escape so the output is interchangeable with JSONObject.toString().
+ */
+public final class JsonStreamWriter implements Flushable {
+
+	private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+	private static final int BUFFER_SIZE = 8192;
+
+	private final Writer out;
+	private boolean firstField = true;
+	private boolean firstElement = true;
+
+	public JsonStreamWriter(Writer out) {
+		this.out = out;
+	}
+
+	/**
+	 * UTF-8 writer over a stream, call flush() when done.
+	 */
+	public static JsonStreamWriter of(OutputStream out) {
+		return new JsonStreamWriter(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), BUFFER_SIZE));
+	}
+
+	public JsonStreamWriter beginObject() throws IOException {
+		out.write('{');
+		firstField = true;
+		return this;
+	}
+
+	public JsonStreamWriter endObject() throws IOException {
+		out.write('}');
+		return this;
+	}
+
+	public JsonStreamWriter beginArray() throws IOException {
+		out.write('[');
+		firstElement = true;
+		return this;
+	}
+
+	/**
+	 * Array element, a document written by value (arrays do not nest)
+	 */
+	public JsonStreamWriter element(JsonContent value) throws IOException {
+		if (!firstElement) {
+			out.write(',');
+		}
+		firstElement = false;
+		value.writeTo(this);
+		return this;
+	}
+
+	public JsonStreamWriter endArray() throws IOException {
+		out.write(']');
+		return this;
+	}
+
+	public JsonStreamWriter field(String name, String value) throws IOException {
+		name(name);
+		if (value == null) {
+			out.write("null");
+		} else {
+			out.write('"');
+			escape(value, out);
+			out.write('"');
+		}
+		return this;
+	}
+
+	public JsonStreamWriter field(String name, boolean value) throws IOException {
+		name(name);
+		out.write(value ? "true" : "false");
+		return this;
+	}
+
+	public JsonStreamWriter field(String name, long value) throws IOException {
+		name(name);
+		out.write(Long.toString(value));
+		return this;
+	}
+
+	/**
+	 * Field whose value is already serialized JSON, written as is
+	 */
+	public JsonStreamWriter rawField(String name, String json) throws IOException {
+		name(name);
+		out.write(json);
+		return this;
+	}
+
+	private void name(String name) throws IOException {
+		if (!firstField) {
+			out.write(',');
+		}
+		firstField = false;
+		out.write('"');
+		escape(name, out);
+		out.write("\":");
+	}
+
+	@Override
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	/**
+	 * Escape s into out, runs of characters that need no escaping are written at once.
+	 */
+	public static void escape(String s, Writer out) throws IOException {
+
+		int len = s.length();
+		int runStart = 0;
+
+		for (int i = 0; i < len; i++) {
+
+			char ch = s.charAt(i);
+			String replacement;
+
+			switch (ch) {
+				case '"':  replacement = "\\\""; break;
+				case '\\': replacement = "\\\\"; break;
+				case '\b': replacement = "\\b"; break;
+				case '\f': replacement = "\\f"; break;
+				case '\n': replacement = "\\n"; break;
+				case '\r': replacement = "\\r"; break;
+				case '\t': replacement = "\\t"; break;
+				case '/':  replacement = "\\/"; break;
+				default:
+					if (ch <= '\u001F' || (ch >= '\u007F' && ch <= '\u009F') || (ch >= '\u2000' && ch <= '\u20FF')) {
+						replacement = unicodeEscape(ch);
+					} else {
+						continue;
+					}
+			}
+
+			if (i > runStart) {
+				out.write(s, runStart, i - runStart);
+			}
+			out.write(replacement);
+			runStart = i + 1;
+		}
+
+		if (len > runStart) {
+			out.write(s, runStart, len - runStart);
+		}
+	}
+
+	private static String unicodeEscape(char ch) {
+		return new String(new char[] {'\\', 'u', HEX[(ch >> 12) & 0xF], HEX[(ch >> 8) & 0xF], HEX[(ch >> 4) & 0xF], HEX[ch & 0xF]});
+	}
+
+}
@@ -0,0 +1,182 @@
+package mwagent.common;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Placeholder substitution for command parameters : {@code <<KEY>>} and {@code {{KEY}}}
+ * are replaced by the value of KEY in the agent environment (Config.getEnv()).
+ *
+ * - Each distinct template is parsed once into literal / key tokens and cached.
+ * - Values that contain placeholders themselves are expanded as well; a key that refers back
+ *   to itself (directly or through other keys) is detected and replaced by an empty string.
+ * - Unknown keys are replaced by an empty string.
+ * - Rendering appends into a per-thread StringBuilder that is reused between calls.
+ */
+public final class ParamTemplate {
+
+	// Cached templates, the cache is cleared when it grows beyond this
+	static final int MAX_CACHED_TEMPLATES = 1024;
+	// Builders that grew beyond this are not kept for reuse
+	static final int MAX_REUSED_BUILDER = 64 * 1024;
+
+	private static final Map<String, ParamTemplate> cache = new ConcurrentHashMap<>();
+	private static final ThreadLocal<StringBuilder> builders = ThreadLocal.withInitial(() -> new StringBuilder(256));
+
+	// literals[i] precedes keys[i], the last literal follows the last key
+	private final String[] literals;
+	private final String[] keys;
+
+	private ParamTemplate(String[] literals, String[] keys) {
+		this.literals = literals;
+		this.keys = keys;
+	}
+
+	/**
+	 * Replace the placeholders in text.
+	 *
+	 * @return the text itself when it has no placeholder
+	 */
+	public static String render(String text, Map<String, String> env) {
+
+		if (!hasPlaceholder(text)) {
+			return text;
+		}
+
+		StringBuilder sb = builders.get();
+		sb.setLength(0);
+		compile(text).renderTo(sb, env, null);
+		String result = sb.toString();
+
+		if (sb.capacity() > MAX_REUSED_BUILDER) {
+			builders.remove();
+		}
+		return result;
+	}
+
+	static boolean hasPlaceholder(String text) {
+		return text != null && (text.indexOf("<<") >= 0 || text.indexOf("{{") >= 0);
+	}
+
+	static ParamTemplate compile(String text) {
+
+		ParamTemplate template = cache.get(text);
+		if (template == null) {
+			template = parse(text);
+			if (cache.size() >= MAX_CACHED_TEMPLATES) {
+				cache.clear();
+			}
+			cache.put(text, template);
+		}
+		return template;
+	}
+
+	static int getCacheSize() {
+		return cache.size();
+	}
+
+	static void clearCache() {
+		cache.clear();
+	}
+
+	/**
+	 * Split text into tokens, matching the leftmost {@code <<..>>} or {@code {{..}}}
+	 * whose key does not span a line.
+	 */
+	private static ParamTemplate parse(String text) {
+
+		List<String> literals = new ArrayList<>();
+		List<String> keys = new ArrayList<>();
+
+		int literalStart = 0;
+		int i = 0;
+		int len = text.length();
+
+		while (i < len - 1) {
+
+			int end = -1;
+			if (text.startsWith("<<", i)) {
+				end = closingIndex(text, i + 2, ">>");
+			} else if (text.startsWith("{{", i)) {
+				end = closingIndex(text, i + 2, "}}");
+			}
+
+			if (end < 0) {
+				i++;
+				continue;
+			}
+
+			literals.add(text.substring(literalStart, i));
+			keys.add(text.substring(i + 2, end));
+			i = end + 2;
+			literalStart = i;
+		}
+		literals.add(text.substring(literalStart));
+
+		return new ParamTemplate(literals.toArray(new String[0]), keys.toArray(new String[0]));
+	}
+
+	private static int closingIndex(String text, int from, String closing) {
+
+		int end = text.indexOf(closing, from);
+		if (end < 0) {
+			return -1;
+		}
+		for (int j = from; j < end; j++) {
+			if (isLineTerminator(text.charAt(j))) {
+				return -1;
+			}
+		}
+		return end;
+	}
+
+	private static boolean isLineTerminator(char c) {
+		return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+	}
+
+	private void renderTo(StringBuilder sb, Map<String, String> env, Set<String> resolving) {
+
+		Logger logger = Config.getConfig().getLogger();
+
+		for (int i = 0; i < keys.length; i++) {
+
+			sb.append(literals[i]);
+
+			String key = keys[i];
+			String val = env.get(key);
+
+			if (val == null) {
+				val = "";
+			}
+
+			if (logger != null && logger.isLoggable(Level.FINE)) {
+				logger.fine("Param in order :" + key + " => " + val);
+			}
+
+			if (!hasPlaceholder(val)) {
+				sb.append(val);
+				continue;
+			}
+
+			if (resolving == null) {
+				resolving = new HashSet<>();
+			}
+			if (!resolving.add(key)) {
+				if (logger != null) {
+					logger.warning("Circular param reference : " + key + " in " + resolving);
+				}
+				continue;
+			}
+			compile(val).renderTo(sb, env, resolving);
+			resolving.remove(key);
+		}
+		sb.append(literals[keys.length]);
+	}
+
+}
@@ -0,0 +1,66 @@
+package mwagent.common;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Authentication of artifact requests between agents (X-Peer-Auth header).
+ *
+ * The header is <epoch seconds>:<hex HMAC-SHA256 of "<sha256>:<epoch seconds>"> keyed with the
+ * secret shared by the agents, so the secret never crosses the network and a captured header
+ * only grants the same artifact within the time window.
+ */
+public final class PeerAuth {
+
+	public static final String HEADER = "X-Peer-Auth";
+
+	private PeerAuth() {
+	}
+
+	public static String sign(String secret, String sha256, long epochSec) {
+		return epochSec + ":" + hmac(secret, sha256.toLowerCase() + ":" + epochSec);
+	}
+
+	public static String sign(String secret, String sha256) {
+		return sign(secret, sha256, System.currentTimeMillis() / 1000);
+	}
+
+	/**
+	 * @param windowSec allowed clock difference between the agents
+	 */
+	public static boolean verify(String secret, String sha256, String header, long nowSec, long windowSec) {
+		if (secret == null || secret.isEmpty() || header == null) {
+			return false;
+		}
+		int sep = header.indexOf(':');
+		if (sep <= 0) {
+			return false;
+		}
+		long epochSec;
+		try {
+			epochSec = Long.parseLong(header.substring(0, sep));
+		} catch (NumberFormatException e) {
+			return false;
+		}
+		if (Math.abs(nowSec - epochSec) > windowSec) {
+			return false;
+		}
+		byte[] expected = sign(secret, sha256, epochSec).getBytes(StandardCharsets.US_ASCII);
+		// constant time : do not leak how much of the MAC matched
+		return MessageDigest.isEqual(expected, header.getBytes(StandardCharsets.US_ASCII));
+	}
+
+	private static String hmac(String secret, String data) {
+		try {
+			Mac mac = Mac.getInstance("HmacSHA256");
+			mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+			return FileDownloader.hex(mac.doFinal(data.getBytes(StandardCharsets.UTF_8)));
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,153 @@
+package mwagent.common;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.logging.Logger;
+
+/**
+ * Decides how the agent polls the server for commands.
+ *
+ * Interval mode: sleep command_check_cycle seconds between polls (legacy behavior).
+ * Long-poll mode: the request carries "?wait=N" and the server holds it until commands
+ * arrive or N seconds elapse, so the next poll is issued immediately.
+ *
+ * - The server may change N through "long_poll_timeout" in the poll response.
+ * - If the server keeps answering early without commands it does not support long-poll,
+ *   so the agent falls back to interval polling and probes again later.
+ * - Failed polls reconnect with jittered exponential backoff capped at the interval.
+ */
+public class PollingPolicy {
+
+	// Early empty responses before falling back to interval polling
+	static final int MAX_EARLY_RETURNS = 3;
+	// Interval polls before probing long-poll again
+	static final int FALLBACK_POLLS = 10;
+	// Extra socket timeout on top of the requested wait
+	static final long SOCKET_TIMEOUT_MARGIN_MS = 15000;
+	// Upper bound of the random delay between consecutive long-polls
+	static final long RECONNECT_JITTER_MS = 250;
+
+	private final Logger logger;
+	private final boolean longPollEnabled;
+	private final long intervalMs;
+	private final long maxWaitSec;
+	private long waitSec;
+
+	private int consecutiveErrors = 0;
+	private int earlyReturns = 0;
+	private int fallbackPollsLeft = 0;
+	private boolean lastRequestLongPoll = false;
+
+	public PollingPolicy() {
+		this(Config.getConfig().isLongPollEnabled(),
+			 Config.getConfig().getCommand_check_cycle() * 1000,
+			 Config.getConfig().getLongPollTimeout(),
+			 Config.getConfig().getLogger());
+	}
+
+	public PollingPolicy(boolean longPollEnabled, long intervalMs, long waitSec, Logger logger) {
+		this.longPollEnabled = longPollEnabled;
+		this.intervalMs = intervalMs;
+		this.waitSec = waitSec;
+		this.maxWaitSec = waitSec * 4;
+		this.logger = logger;
+	}
+
+	/**
+	 * Whether the next poll is a long-poll request.
+	 */
+	public boolean isLongPolling() {
+		return longPollEnabled && fallbackPollsLeft == 0;
+	}
+
+	/**
+	 * Build the poll path for the next request.
+	 */
+	public String buildPath(String path) {
+		lastRequestLongPoll = isLongPolling();
+		if (!lastRequestLongPoll) {
+			return path;
+		}
+		return path + (path.contains("?") ? "&" : "?") + "wait=" + waitSec;
+	}
+
+	/**
+	 * Socket timeout for the next request, 0 to keep the client default.
+	 */
+	public int getSocketTimeoutMs() {
+		if (!isLongPolling()) {
+			return 0;
+		}
+		return (int) (waitSec * 1000 + SOCKET_TIMEOUT_MARGIN_MS);
+	}
+
+	public long getWaitSec() {
+		return waitSec;
+	}
+
+	/**
+	 * Compute the delay before the next poll.
+	 *
+	 * @param returnCode poll return code (0: token expired, negative: error)
+	 * @param hasCommands whether the poll returned at least one command
+	 * @param elapsedMs how long the poll request took
+	 * @param serverTimeoutSec "long_poll_timeout" from the response, 0 if absent
+	 * @return delay in milliseconds
+	 */
+	public long nextDelayMs(long returnCode, boolean hasCommands, long elapsedMs, long serverTimeoutSec) {
+
+		if (returnCode <= 0) {
+			if (!longPollEnabled) {
+				return intervalMs;
+			}
+			consecutiveErrors++;
+			long backoff = Math.min(intervalMs, 1000L << Math.min(consecutiveErrors - 1, 16));
+			return jitter(backoff / 2, backoff);
+		}
+
+		consecutiveErrors = 0;
+
+		if (!longPollEnabled) {
+			return intervalMs;
+		}
+
+		if (!lastRequestLongPoll) {
+			fallbackPollsLeft--;
+			if (fallbackPollsLeft == 0) {
+				logger.info("Probing long-poll command fetch again");
+			}
+			return intervalMs;
+		}
+
+		boolean held = serverTimeoutSec > 0 || elapsedMs >= waitSec * 1000 / 2;
+
+		if (serverTimeoutSec > 0 && serverTimeoutSec <= maxWaitSec) {
+			waitSec = serverTimeoutSec;
+		}
+
+		if (held) {
+			earlyReturns = 0;
+			return jitter(0, RECONNECT_JITTER_MS);
+		}
+
+		if (hasCommands) {
+			// Commands may still be queued on the server, fetch again right away
+			return 0;
+		}
+
+		earlyReturns++;
+		if (earlyReturns >= MAX_EARLY_RETURNS) {
+			logger.warning("Server does not hold long-poll requests, falling back to interval polling");
+			earlyReturns = 0;
+			fallbackPollsLeft = FALLBACK_POLLS;
+		}
+		return intervalMs;
+	}
+
+	private long jitter(long min, long max) {
+		if (max <= min) {
+			return min;
+		}
+		return ThreadLocalRandom.current().nextLong(min, max + 1);
+	}
+
+}
@@ -0,0 +1,440 @@
+package mwagent.common;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.stream.Stream;
+
+/**
+ * Runs an external process for ExeText / ExeScript.
+ *
+ * - stdout and stderr are drained concurrently, so a process writing a lot to either pipe
+ *   cannot block on a full pipe buffer.
+ * - The process gets a wall-clock timeout; on timeout (or interrupt) the whole process tree
+ *   is killed, not only the direct child.
+ * - Captured output is capped per stream, keeping the head and the tail of the output.
+ * - Reports exit code, duration, timeout and truncation.
+ * - An OutputListener sees all output as it is produced (e.g. to stream partial results).
+ */
+public class ProcessRunner {
+
+	// How long to wait for the drain threads after the process ended
+	static final long DRAIN_JOIN_MS = 2000;
+	static final String ERROR_PREFIX = "ERROR: ";
+
+	// How often OutputListener.onTick is called while the process runs
+	static final long TICK_MS = 200;
+
+	private final long timeoutMs;
+	private final int maxOutputBytes;
+
+	/**
+	 * Receives the process output while it runs.
+	 */
+	public interface OutputListener {
+
+		/**
+		 * Called from the drain threads with every block read; may block to slow the process down.
+		 */
+		void onOutput(boolean stderr, byte[] b, int off, int len) throws InterruptedException;
+
+		/**
+		 * Called periodically from the thread that runs the process.
+		 */
+		void onTick();
+	}
+
+	public ProcessRunner() {
+		this(Config.getConfig().getExecTimeoutSec() * 1000L, Config.getConfig().getExecMaxOutputBytes());
+	}
+
+	/**
+	 * @param timeoutMs wall-clock timeout, 0 or negative for none
+	 * @param maxOutputBytes captured bytes per stream (head + tail)
+	 */
+	public ProcessRunner(long timeoutMs, int maxOutputBytes) {
+		this.timeoutMs = timeoutMs;
+		this.maxOutputBytes = maxOutputBytes;
+	}
+
+	public Result run(ProcessBuilder pb) throws IOException, InterruptedException {
+		return run(pb, null);
+	}
+
+	public Result run(ProcessBuilder pb, OutputListener listener) throws IOException, InterruptedException {
+
+		long start = System.nanoTime();
+		Process proc = pb.start();
+		proc.getOutputStream().close();
+
+		BoundedOutput stdout = new BoundedOutput(maxOutputBytes);
+		BoundedOutput stderr = new BoundedOutput(maxOutputBytes);
+		Thread outDrain = drain(proc.getInputStream(), stdout, false, listener, "ProcessStdout");
+		Thread errDrain = pb.redirectErrorStream() ? null : drain(proc.getErrorStream(), stderr, true, listener, "ProcessStderr");
+
+		boolean timedOut = false;
+		try {
+			long deadline = timeoutMs > 0 ? start + TimeUnit.MILLISECONDS.toNanos(timeoutMs) : Long.MAX_VALUE;
+			long slice = listener != null ? TICK_MS : Long.MAX_VALUE;
+
+			while (true) {
+				long remainingMs = timeoutMs > 0 ? TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()) : Long.MAX_VALUE;
+				if (remainingMs <= 0) {
+					timedOut = true;
+					break;
+				}
+				if (proc.waitFor(Math.min(slice, remainingMs), TimeUnit.MILLISECONDS)) {
+					break;
+				}
+				if (listener != null) {
+					listener.onTick();
+				}
+			}
+
+			if (timedOut) {
+				Config.getConfig().getLogger().warning("Process timed out after " + timeoutMs + "ms, killing process tree : " + pb.command());
+				killTree(proc);
+				proc.waitFor(DRAIN_JOIN_MS, TimeUnit.MILLISECONDS);
+			}
+		} catch (InterruptedException e) {
+			killTree(proc);
+			throw e;
+		}
+
+		// a grandchild that survived may keep the pipes open, do not wait for it forever
+		joinDrain(outDrain, proc.getInputStream());
+		if (errDrain != null) {
+			joinDrain(errDrain, proc.getErrorStream());
+		}
+
+		long durationMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		int exitCode = proc.isAlive() ? -1 : proc.exitValue();
+
+		return new Result(exitCode, timedOut, durationMs, stdout, stderr);
+	}
+
+	private static Thread drain(InputStream in, BoundedOutput out, boolean isStderr, OutputListener listener, String name) {
+		Thread t = new Thread(() -> {
+			byte[] buf = new byte[8192];
+			int n;
+			try {
+				while ((n = in.read(buf)) >= 0) {
+					out.write(buf, 0, n);
+					if (listener != null) {
+						listener.onOutput(isStderr, buf, 0, n);
+					}
+				}
+			} catch (IOException e) {
+				// stream closed after kill / join timeout
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}, name);
+		t.setDaemon(true);
+		t.start();
+		return t;
+	}
+
+	private static void joinDrain(Thread t, InputStream in) throws InterruptedException {
+		t.join(DRAIN_JOIN_MS);
+		if (t.isAlive()) {
+			try {
+				in.close();
+			} catch (IOException e) {
+				// ignore
+			}
+			t.join(DRAIN_JOIN_MS);
+		}
+	}
+
+	/**
+	 * Kill the process and its descendants.
+	 * ProcessHandle (Java 9+) is used when available, otherwise the descendants found with ps
+	 * (taskkill /T on Windows) are killed by pid.
+	 */
+	static void killTree(Process proc) {
+
+		try {
+			Class<?> handleClass = Class.forName("java.lang.ProcessHandle");
+			Object handle = Process.class.getMethod("toHandle").invoke(proc);
+			Method destroy = handleClass.getMethod("destroyForcibly");
+			@SuppressWarnings("unchecked")
+			Stream<Object> descendants = (Stream<Object>) handleClass.getMethod("descendants").invoke(handle);
+			descendants.forEach(child -> {
+				try {
+					destroy.invoke(child);
+				} catch (Exception e) {
+					// already gone
+				}
+			});
+		} catch (ClassNotFoundException | NoSuchMethodException e) {
+			killDescendantsByPid(pidOf(proc));
+		} catch (Exception e) {
+			Config.getConfig().getLogger().log(Level.WARNING, "Failed to kill child processes", e);
+		}
+
+		proc.destroyForcibly();
+	}
+
+	static void killDescendantsByPid(long pid) {
+
+		if (pid <= 0) {
+			return;
+		}
+
+		try {
+			if (System.getProperty("os.name").toLowerCase().contains("windows")) {
+				exec("taskkill", "/T", "/F", "/PID", Long.toString(pid));
+				return;
+			}
+			// pkill -P only reaches the direct children, grandchildren (e.g. a java started by an
+			// install script) would keep running and hold the pipes
+			List<Long> pids = descendants(pid, exec("ps", "-e", "-o", "pid=,ppid="));
+			if (!pids.isEmpty()) {
+				List<String> cmd = new ArrayList<>();
+				cmd.add("kill");
+				cmd.add("-KILL");
+				for (Long p : pids) {
+					cmd.add(p.toString());
+				}
+				exec(cmd.toArray(new String[0]));
+			}
+		} catch (Exception e) {
+			Config.getConfig().getLogger().log(Level.WARNING, "Failed to kill child processes of " + pid, e);
+		}
+	}
+
+	/**
+	 * Descendants of pid in a "pid ppid" per line listing, parents before their children
+	 */
+	static List<Long> descendants(long pid, String psOutput) {
+
+		Map<Long, List<Long>> children = new HashMap<>();
+		for (String line : psOutput.split("\n")) {
+			String[] f = line.trim().split("\\s+");
+			if (f.length < 2) {
+				continue;
+			}
+			try {
+				children.computeIfAbsent(Long.parseLong(f[1]), k -> new ArrayList<>()).add(Long.parseLong(f[0]));
+			} catch (NumberFormatException e) {
+				// header or garbage
+			}
+		}
+
+		List<Long> result = new ArrayList<>();
+		Deque<Long> todo = new ArrayDeque<>(Collections.singleton(pid));
+		while (!todo.isEmpty()) {
+			for (Long child : children.getOrDefault(todo.poll(), Collections.<Long>emptyList())) {
+				if (child != pid && !result.contains(child)) {
+					result.add(child);
+					todo.add(child);
+				}
+			}
+		}
+		return result;
+	}
+
+	private static String exec(String... cmd) throws IOException, InterruptedException {
+		Process p = new ProcessBuilder(cmd).redirectErrorStream(true).start();
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (InputStream in = p.getInputStream()) {
+			byte[] buf = new byte[8192];
+			int n;
+			while ((n = in.read(buf)) >= 0) {
+				out.write(buf, 0, n);
+			}
+		}
+		p.waitFor(5, TimeUnit.SECONDS);
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	private static long pidOf(Process proc) {
+		try {
+			Field f = proc.getClass().getDeclaredField("pid");
+			f.setAccessible(true);
+			return f.getLong(proc);
+		} catch (Exception e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Outcome of a process run.
+	 */
+	public static final class Result {
+
+		private final int exitCode;
+		private final boolean timedOut;
+		private final long durationMs;
+		private final BoundedOutput stdout;
+		private final BoundedOutput stderr;
+
+		Result(int exitCode, boolean timedOut, long durationMs, BoundedOutput stdout, BoundedOutput stderr) {
+			this.exitCode = exitCode;
+			this.timedOut = timedOut;
+			this.durationMs = durationMs;
+			this.stdout = stdout;
+			this.stderr = stderr;
+		}
+
+		public int getExitCode() {
+			return exitCode;
+		}
+
+		public boolean isTimedOut() {
+			return timedOut;
+		}
+
+		public long getDurationMs() {
+			return durationMs;
+		}
+
+		public String getStdout() {
+			return stdout.toString();
+		}
+
+		public String getStderr() {
+			return stderr.toString();
+		}
+
+		public boolean isTruncated() {
+			return stdout.isTruncated() || stderr.isTruncated();
+		}
+
+		/**
+		 * Bytes written by the process to stdout and stderr
+		 */
+		public long getTotalBytes() {
+			return stdout.getTotal() + stderr.getTotal();
+		}
+
+		/**
+		 * stdout followed by the stderr lines prefixed with "ERROR: "
+		 */
+		public String getOutput() {
+
+			String err = getStderr();
+			if (err.isEmpty()) {
+				return getStdout();
+			}
+
+			StringBuilder sb = new StringBuilder(getStdout());
+			String ls = System.getProperty("line.separator");
+			for (String line : err.split("\r?\n")) {
+				sb.append(ERROR_PREFIX).append(line).append(ls);
+			}
+			return sb.toString();
+		}
+	}
+
+	/**
+	 * Keeps the first and the last maxBytes/2 bytes written.
+	 */
+	static final class BoundedOutput {
+
+		private final int headMax;
+		private final int tailMax;
+		// buffers are allocated as output arrives
+		private byte[] head = new byte[0];
+		private byte[] tail = null;
+		private int headLen = 0;
+		// next write position in the tail ring buffer
+		private int tailPos = 0;
+		private long tailWritten = 0;
+		private long total = 0;
+
+		BoundedOutput(int maxBytes) {
+			this.headMax = Math.max(1, maxBytes / 2);
+			this.tailMax = Math.max(1, maxBytes - headMax);
+		}
+
+		synchronized void write(byte[] b, int off, int len) {
+
+			total += len;
+
+			int toHead = Math.min(len, headMax - headLen);
+			if (toHead > 0) {
+				if (headLen + toHead > head.length) {
+					head = Arrays.copyOf(head, Math.min(headMax, Math.max(headLen + toHead, head.length * 2)));
+				}
+				System.arraycopy(b, off, head, headLen, toHead);
+				headLen += toHead;
+				off += toHead;
+				len -= toHead;
+			}
+
+			if (len == 0) {
+				return;
+			}
+			if (tail == null) {
+				tail = new byte[tailMax];
+			}
+
+			// only the last tail.length bytes can survive
+			if (len > tail.length) {
+				off += len - tail.length;
+				tailWritten += len - tail.length;
+				len = tail.length;
+			}
+			while (len > 0) {
+				int n = Math.min(len, tail.length - tailPos);
+				System.arraycopy(b, off, tail, tailPos, n);
+				tailPos = (tailPos + n) % tail.length;
+				tailWritten += n;
+				off += n;
+				len -= n;
+			}
+		}
+
+		synchronized long getTotal() {
+			return total;
+		}
+
+		synchronized boolean isTruncated() {
+			return tailWritten > tailMax;
+		}
+
+		@Override
+		public synchronized String toString() {
+
+			if (tail == null) {
+				return new String(head, 0, headLen, StandardCharsets.UTF_8);
+			}
+
+			int tailLen = (int) Math.min(tailWritten, tail.length);
+			int start = (tailPos - tailLen + tail.length) % tail.length;
+
+			if (!isTruncated()) {
+				byte[] all = new byte[headLen + tailLen];
+				System.arraycopy(head, 0, all, 0, headLen);
+				System.arraycopy(tail, 0, all, headLen, tailLen);
+				return new String(all, StandardCharsets.UTF_8);
+			}
+
+			byte[] last = new byte[tailLen];
+			int n = tail.length - start;
+			System.arraycopy(tail, start, last, 0, n);
+			System.arraycopy(tail, 0, last, n, tailLen - n);
+
+			String ls = System.getProperty("line.separator");
+			return new String(head, 0, headLen, StandardCharsets.UTF_8)
+					+ ls + "... [" + (total - headLen - tailLen) + " bytes omitted] ..." + ls
+					+ new String(last, StandardCharsets.UTF_8);
+		}
+	}
+
+}
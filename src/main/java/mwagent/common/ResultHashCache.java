@@ -0,0 +1,169 @@
+package mwagent.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.logging.Level;
+
+/**
+ * Remembers the hash of the last result sent for each (command_id, key_value1, key_value2).
+ * A result whose hash equals the remembered one can be replaced by a "NO CHANGE" marker.
+ *
+ * - Bounded LRU; the least recently used key is dropped when max entries is exceeded.
+ * - An entry older than max age is not trusted, so the full result is re-sent periodically.
+ * - Optionally persisted to a properties file (throttled, and on shutdown through save()).
+ */
+public class ResultHashCache {
+
+	private static final long SAVE_INTERVAL_MS = 60000;
+
+	private static volatile ResultHashCache instance;
+
+	private final int maxEntries;
+	private final long maxAgeMs;
+	private final Path storeFile;
+	private final LinkedHashMap<String, Entry> cache;
+	private boolean dirty = false;
+	private long lastSavedAt = System.currentTimeMillis();
+
+	public static ResultHashCache getInstance() {
+		if (instance == null) {
+			synchronized (ResultHashCache.class) {
+				if (instance == null) {
+					Config config = Config.getConfig();
+					String file = config.getResultCacheFile();
+					instance = new ResultHashCache(config.getResultCacheMaxEntries(),
+							config.getResultCacheMaxAgeSec() * 1000,
+							file == null || file.isEmpty() ? null : Paths.get(file));
+				}
+			}
+		}
+		return instance;
+	}
+
+	/**
+	 * @param storeFile file to persist the cache, null for memory only
+	 */
+	public ResultHashCache(int maxEntries, long maxAgeMs, Path storeFile) {
+		this.maxEntries = maxEntries;
+		this.maxAgeMs = maxAgeMs;
+		this.storeFile = storeFile;
+		this.cache = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+				return size() > ResultHashCache.this.maxEntries;
+			}
+		};
+		load();
+	}
+
+	public static String key(String commandId, String keyValue1, String keyValue2) {
+		return commandId + "|" + keyValue1 + "|" + keyValue2;
+	}
+
+	/**
+	 * Check whether the result was already sent with the same hash.
+	 * Nothing is remembered here : call recordSent() once the server confirmed the result.
+	 *
+	 * @return true if the same hash was sent within max age
+	 */
+	public synchronized boolean isUnchanged(String key, String hash) {
+		Entry entry = cache.get(key);
+		return entry != null && entry.hash.equals(hash) && System.currentTimeMillis() - entry.sentAt < maxAgeMs;
+	}
+
+	/**
+	 * Remember the hash as the last one delivered for the key.
+	 */
+	public synchronized void recordSent(String key, String hash) {
+		long now = System.currentTimeMillis();
+		cache.put(key, new Entry(hash, now));
+		dirty = true;
+		if (storeFile != null && now - lastSavedAt >= SAVE_INTERVAL_MS) {
+			save();
+		}
+	}
+
+	/**
+	 * Forget the key, so that the next result is sent in full.
+	 */
+	public synchronized void invalidate(String key) {
+		if (cache.remove(key) != null) {
+			dirty = true;
+		}
+	}
+
+	public synchronized int size() {
+		return cache.size();
+	}
+
+	/**
+	 * Write the cache to the store file if it changed since the last save.
+	 */
+	public synchronized void save() {
+		lastSavedAt = System.currentTimeMillis();
+		if (storeFile == null || !dirty) {
+			return;
+		}
+
+		Properties table = new Properties();
+		for (Map.Entry<String, Entry> e : cache.entrySet()) {
+			table.setProperty(e.getKey(), e.getValue().hash + "|" + e.getValue().sentAt);
+		}
+
+		Path tmp = storeFile.resolveSibling(storeFile.getFileName() + ".tmp");
+		try {
+			try (OutputStream out = Files.newOutputStream(tmp)) {
+				table.store(out, "result hash cache (hash|sent at)");
+			}
+			Files.move(tmp, storeFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			dirty = false;
+		} catch (IOException e) {
+			Config.getConfig().getLogger().log(Level.WARNING, "Failed to save result hash cache : " + storeFile, e);
+		}
+	}
+
+	private void load() {
+		if (storeFile == null || !Files.exists(storeFile)) {
+			return;
+		}
+
+		Properties table = new Properties();
+		try (InputStream in = Files.newInputStream(storeFile)) {
+			table.load(in);
+		} catch (IOException e) {
+			Config.getConfig().getLogger().log(Level.WARNING, "Failed to load result hash cache : " + storeFile, e);
+			return;
+		}
+
+		for (String key : table.stringPropertyNames()) {
+			String value = table.getProperty(key);
+			int sep = value.lastIndexOf('|');
+			try {
+				cache.put(key, new Entry(value.substring(0, sep), Long.parseLong(value.substring(sep + 1))));
+			} catch (RuntimeException e) {
+				// skip malformed entry
+			}
+		}
+	}
+
+	private static final class Entry {
+
+		private final String hash;
+		private final long sentAt;
+
+		Entry(String hash, long sentAt) {
+			this.hash = hash;
+			this.sentAt = sentAt;
+		}
+	}
+}
@@ -0,0 +1,536 @@
+package mwagent.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.util.EntityUtils;
+
+import mwagent.metrics.AgentMetrics;
+
+/**
+ * Fetches a large file as concurrent Range requests into a preallocated part file.
+ *
+ * - A one byte Range probe learns the size, validator and name. A server answering 200
+ *   (no range support) or a file smaller than two segments is left to the sequential path.
+ * - The file is cut into chunks, a few per connection, that the connections take from a shared
+ *   queue, so faster connections fetch more chunks. The number of connections grows with the
+ *   file size up to maxSegments, and shrinks when the server answers 429 / 503.
+ * - Every chunk is written with positional FileChannel writes and retried from where it
+ *   stopped. Finished chunks are recorded in the sidecar so that a later download of the same
+ *   URL (same validator and size) fetches only the missing ones.
+ * - Received bytes go through the shared BandwidthThrottle.
+ * - With peers (other agents running PeerArtifactService) and a known SHA-256, every chunk is
+ *   asked from the peers first, each connection starting with another peer, and from the server
+ *   only when no peer delivers it. A peer that fails or stalls (timeout) is not asked again
+ *   during the download, a busy one (503) is skipped for that chunk. The file is verified as a
+ *   whole afterwards by the caller, Result.fromPeers telling whether peers contributed to it.
+ *
+ * The SHA-256 is computed by reading the completed file once, the chunks arriving out of order.
+ */
+class SegmentedDownloader {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final int CHUNKS_PER_SEGMENT = 4;
+
+	static final class Result {
+		final Path part;
+		final Path meta;
+		final String filename;
+		final String sha256;
+		final String serverSha256;
+		final String etag;
+		final String lastModified;
+		// some chunks were received from peers
+		final boolean fromPeers;
+
+		Result(Path part, Path meta, String filename, String sha256, String serverSha256, String etag, String lastModified,
+				boolean fromPeers) {
+			this.part = part;
+			this.meta = meta;
+			this.filename = filename;
+			this.sha256 = sha256;
+			this.serverSha256 = serverSha256;
+			this.etag = etag;
+			this.lastModified = lastModified;
+			this.fromPeers = fromPeers;
+		}
+	}
+
+	/**
+	 * The server is limiting connections, retry the chunk on another one
+	 */
+	private static final class BusyException extends IOException {
+		private static final long serialVersionUID = 1L;
+
+		BusyException(int status) {
+			super("Server busy : " + status);
+		}
+	}
+
+	private final HttpClient client;
+	private final int maxSegments;
+	private final long minSegmentBytes;
+	private final int retries;
+	private final long retryBackoffMs;
+	private final BandwidthThrottle throttle;
+	private final Logger logger;
+
+	private HttpClient peerClient;
+	private List<String> peers = Collections.emptyList();
+	private String peerSecret;
+	private RequestConfig peerRequestConfig;
+	private RequestConfig requestConfig;
+
+	/**
+	 * Where chunks are requested, the server or a peer
+	 */
+	private static final class Source {
+		final HttpClient client;
+		final String uri;
+		final String token;
+		final String validator;
+		// content key and secret of a peer request, null for the server
+		final String sha256;
+		final String peerSecret;
+		final int retries;
+		// timeouts of the requests, null for the client's
+		final RequestConfig requestConfig;
+
+		Source(HttpClient client, String uri, String token, String validator, String sha256, String peerSecret, int retries,
+				RequestConfig requestConfig) {
+			this.client = client;
+			this.uri = uri;
+			this.token = token;
+			this.validator = validator;
+			this.sha256 = sha256;
+			this.peerSecret = peerSecret;
+			this.retries = retries;
+			this.requestConfig = requestConfig;
+		}
+	}
+
+	SegmentedDownloader(HttpClient client, int maxSegments, long minSegmentBytes, int retries, long retryBackoffMs,
+			BandwidthThrottle throttle) {
+		this.client = client;
+		this.maxSegments = maxSegments;
+		this.minSegmentBytes = Math.max(1, minSegmentBytes);
+		this.retries = retries;
+		this.retryBackoffMs = retryBackoffMs;
+		this.throttle = throttle;
+		this.logger = Config.getConfig().getLogger();
+	}
+
+	/**
+	 * Timeouts of the requests to the server, null for the client's
+	 */
+	SegmentedDownloader requestConfig(RequestConfig requestConfig) {
+		this.requestConfig = requestConfig;
+		return this;
+	}
+
+	/**
+	 * Ask these agents (host:port) for chunks first when the SHA-256 of the file is known
+	 *
+	 * @param timeoutMs connect and read timeout of the peer requests, 0 or less : the client's
+	 */
+	SegmentedDownloader peers(HttpClient peerClient, List<String> peers, String peerSecret, int timeoutMs) {
+		this.peerClient = peerClient;
+		this.peers = peers;
+		this.peerSecret = peerSecret;
+		this.peerRequestConfig = timeoutMs > 0 ? RequestConfig.custom()
+				.setConnectTimeout(timeoutMs)
+				.setConnectionRequestTimeout(timeoutMs)
+				.setSocketTimeout(timeoutMs)
+				.build() : null;
+		return this;
+	}
+
+	/**
+	 * Download into part, null when the file is to be downloaded sequentially
+	 *
+	 * @param expectedSha256 content key for the peers, else the server's checksum header is used
+	 */
+	Result download(String uri, String token, String expectedSha256, Path part, Path meta) throws IOException, InterruptedException {
+
+		HttpGet probe = request(uri, token, 0, 0, null);
+		if (requestConfig != null) {
+			probe.setConfig(requestConfig);
+		}
+		HttpResponse response = client.execute(probe);
+		int status = response.getStatusLine().getStatusCode();
+		long total = status == 206 ? total(response) : -1;
+		if (status != 206 || total < 2 * minSegmentBytes) {
+			// do not read a whole file just to learn that it is small
+			probe.abort();
+			return null;
+		}
+		String etag = FileDownloader.etag(response);
+		Header lastModified = response.getFirstHeader(HttpHeaders.LAST_MODIFIED);
+		String validator = etag != null ? etag : lastModified != null ? lastModified.getValue() : null;
+		String filename = FileDownloader.filename(response, uri, null);
+		String serverSha256 = FileDownloader.serverSha256(response);
+		EntityUtils.consumeQuietly(response.getEntity());
+
+		int segments = (int) Math.min(maxSegments, total / minSegmentBytes);
+		long chunkSize = Math.max(minSegmentBytes, (total + segments * CHUNKS_PER_SEGMENT - 1) / (segments * CHUNKS_PER_SEGMENT));
+		int chunks = (int) ((total + chunkSize - 1) / chunkSize);
+
+		// chunks finished by an earlier download of the same file
+		char[] done = loadDone(meta, uri, validator, total, chunkSize, chunks);
+		if (done == null || !Files.exists(part)) {
+			done = new char[chunks];
+			Arrays.fill(done, '0');
+			Files.deleteIfExists(part);
+		}
+
+		ConcurrentLinkedDeque<Integer> pending = new ConcurrentLinkedDeque<>();
+		for (int i = 0; i < chunks; i++) {
+			if (done[i] != '1') {
+				pending.add(i);
+			}
+		}
+		if (pending.size() < chunks) {
+			logger.info("Resuming segmented download, " + (chunks - pending.size()) + "/" + chunks + " chunks done : " + uri);
+			AgentMetrics.DOWNLOAD_RESUMES.inc();
+		}
+		logger.info("Segmented download : " + total + " bytes, " + chunks + " chunks of " + chunkSize
+				+ " bytes over " + segments + " connections : " + uri);
+
+		Progress progress = new Progress(meta, uri, validator, total, chunkSize, filename, done);
+		progress.save();
+
+		try (FileChannel channel = FileChannel.open(part, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE)) {
+
+			if (channel.size() != total) {
+				channel.truncate(total);
+				// preallocate : extend to the full size once instead of growing with every chunk
+				channel.write(ByteBuffer.wrap(new byte[1]), total - 1);
+			}
+
+			Source origin = new Source(client, uri, token, validator, null, null, retries, requestConfig);
+			List<Source> peerSources = new ArrayList<>();
+			String sha256 = expectedSha256 != null ? expectedSha256 : serverSha256;
+			if (sha256 != null && peerClient != null) {
+				for (String peer : peers) {
+					peerSources.add(new Source(peerClient, "http://" + peer + "/p2p/artifacts/" + sha256.toLowerCase(), null, null,
+							sha256, peerSecret, 0, peerRequestConfig));
+				}
+			}
+
+			AtomicBoolean fromPeers = new AtomicBoolean();
+			fetchAll(origin, peerSources, fromPeers, total, chunkSize, channel, pending, progress,
+					Math.min(segments, pending.size()));
+			channel.force(false);
+
+			return new Result(part, meta, filename, sha256(channel, total), serverSha256, etag,
+					lastModified != null ? lastModified.getValue() : null, fromPeers.get());
+		}
+	}
+
+	private void fetchAll(Source origin, List<Source> peerSources, AtomicBoolean fromPeers, long total, long chunkSize,
+			FileChannel channel, ConcurrentLinkedDeque<Integer> pending, Progress progress, int connections)
+			throws IOException, InterruptedException {
+
+		if (connections == 0) {
+			return;
+		}
+
+		AtomicInteger active = new AtomicInteger(connections);
+		// a chunk that failed for good stops the other connections
+		AtomicBoolean failed = new AtomicBoolean();
+		AtomicInteger seq = new AtomicInteger();
+		ExecutorService pool = Executors.newFixedThreadPool(connections, r -> {
+			Thread t = new Thread(r, "Download-" + seq.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+
+		Set<Source> failedPeers = ConcurrentHashMap.newKeySet();
+
+		List<Future<Void>> futures = new ArrayList<>(connections);
+		try {
+			for (int i = 0; i < connections; i++) {
+				int connection = i;
+				futures.add(pool.submit(() -> {
+					Integer chunk;
+					int busy = 0;
+					while (!failed.get() && (chunk = pending.poll()) != null) {
+						long start = chunk * chunkSize;
+						long end = Math.min(total, start + chunkSize) - 1;
+						try {
+							if (fetchFromPeers(connection, peerSources, failedPeers, start, end, channel)) {
+								fromPeers.set(true);
+							} else {
+								fetchChunk(origin, start, end, channel);
+							}
+						} catch (BusyException e) {
+							pending.addFirst(chunk);
+							// one connection less, unless it is the last one
+							int n = active.get();
+							if (n > 1 && active.compareAndSet(n, n - 1)) {
+								logger.info("Server is busy, segmented download continues with " + (n - 1) + " connections");
+								return null;
+							}
+							if (++busy > retries) {
+								failed.set(true);
+								throw e;
+							}
+							Thread.sleep(retryBackoffMs * busy);
+							continue;
+						} catch (Exception e) {
+							failed.set(true);
+							throw e;
+						}
+						busy = 0;
+						progress.done(chunk);
+					}
+					return null;
+				}));
+			}
+
+			for (Future<Void> f : futures) {
+				f.get();
+			}
+
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			throw new IOException(cause);
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Fetch bytes start..end from a peer, false when none of them delivered
+	 */
+	private boolean fetchFromPeers(int connection, List<Source> peerSources, Set<Source> failedPeers, long start, long end,
+			FileChannel channel) throws InterruptedException {
+
+		for (int i = 0; i < peerSources.size(); i++) {
+			Source peer = peerSources.get((connection + i) % peerSources.size());
+			if (failedPeers.contains(peer)) {
+				continue;
+			}
+			try {
+				fetchChunk(peer, start, end, channel);
+				AgentMetrics.P2P_RECEIVED_BYTES.add(end - start + 1);
+				return true;
+			} catch (BusyException e) {
+				// at its upload limit, the next peer or the server
+			} catch (IOException | IllegalStateException e) {
+				if (failedPeers.add(peer)) {
+					logger.info("Peer not used any more for this download (" + e.getMessage() + ") : " + peer.uri);
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Fetch bytes start..end (inclusive), retrying from the first missing byte
+	 */
+	private void fetchChunk(Source source, long start, long end, FileChannel channel)
+			throws IOException, InterruptedException {
+
+		long pos = start;
+		ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+		for (int attempt = 0;; attempt++) {
+			HttpGet request = request(source, pos, end);
+			try {
+				HttpResponse response = source.client.execute(request);
+				int status = response.getStatusLine().getStatusCode();
+				HttpEntity entity = response.getEntity();
+
+				if (status == 429 || status == 503) {
+					EntityUtils.consumeQuietly(entity);
+					throw new BusyException(status);
+				}
+				if (status != 206 || entity == null || FileDownloader.rangeStart(response) != pos) {
+					// 200 : the file changed (If-Range) or the range was ignored
+					request.abort();
+					throw new IllegalStateException("Unexpected response to a range request : " + status);
+				}
+
+				try (InputStream in = entity.getContent()) {
+					int n;
+					while (pos <= end && (n = in.read(buffer.array(), 0, (int) Math.min(BUFFER_SIZE, end - pos + 1))) != -1) {
+						// Buffer casts keep the Java 8 method signatures
+						((Buffer) buffer).clear();
+						((Buffer) buffer).limit(n);
+						while (buffer.hasRemaining()) {
+							pos += channel.write(buffer, pos);
+						}
+						AgentMetrics.DOWNLOAD_BYTES.add(n);
+						throttle.acquire(n);
+					}
+				}
+				if (pos > end) {
+					return;
+				}
+				throw new IOException("Segment ended at " + pos + " of " + start + "-" + end);
+
+			} catch (BusyException e) {
+				throw e;
+			} catch (IOException e) {
+				if (attempt >= source.retries) {
+					throw e;
+				}
+				logger.fine("Segment " + start + "-" + end + " interrupted at " + pos + " (" + e.getMessage() + "), retrying");
+				Thread.sleep(retryBackoffMs * (attempt + 1));
+			}
+		}
+	}
+
+	private static HttpGet request(String uri, String token, long start, long end, String validator) {
+		HttpGet request = new HttpGet(uri);
+		if (token != null && !token.isEmpty()) {
+			request.addHeader(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+		}
+		request.addHeader(HttpHeaders.RANGE, "bytes=" + start + "-" + end);
+		if (validator != null) {
+			request.addHeader(HttpHeaders.IF_RANGE, validator);
+		}
+		return request;
+	}
+
+	private static HttpGet request(Source source, long start, long end) {
+		HttpGet request = request(source.uri, source.token, start, end, source.validator);
+		if (source.requestConfig != null) {
+			request.setConfig(source.requestConfig);
+		}
+		if (source.peerSecret != null) {
+			// signed per request : a long download outlives the time window
+			request.addHeader(PeerAuth.HEADER, PeerAuth.sign(source.peerSecret, source.sha256));
+		}
+		return request;
+	}
+
+	/**
+	 * Total length of a Content-Range: bytes <start>-<end>/<total>, -1 if unknown
+	 */
+	static long total(HttpResponse response) {
+		Header range = response.getFirstHeader(HttpHeaders.CONTENT_RANGE);
+		if (range == null) {
+			return -1;
+		}
+		String v = range.getValue();
+		try {
+			return Long.parseLong(v.substring(v.lastIndexOf('/') + 1).trim());
+		} catch (RuntimeException e) {
+			return -1;
+		}
+	}
+
+	private static String sha256(FileChannel channel, long total) throws IOException {
+		try {
+			MessageDigest md = MessageDigest.getInstance("SHA-256");
+			ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+			long pos = 0;
+			while (pos < total) {
+				((Buffer) buffer).clear();
+				int n = channel.read(buffer, pos);
+				if (n < 0) {
+					break;
+				}
+				((Buffer) buffer).flip();
+				md.update(buffer);
+				pos += n;
+			}
+			return FileDownloader.hex(md.digest());
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException(e);
+		}
+	}
+
+	private static char[] loadDone(Path meta, String uri, String validator, long total, long chunkSize, int chunks) {
+		if (validator == null || !Files.exists(meta)) {
+			return null;
+		}
+		Properties p = new Properties();
+		try (Reader r = Files.newBufferedReader(meta, StandardCharsets.UTF_8)) {
+			p.load(r);
+		} catch (IOException e) {
+			return null;
+		}
+		String done = p.getProperty("done", "");
+		if (!uri.equals(p.getProperty("url")) || !validator.equals(p.getProperty("validator"))
+				|| !String.valueOf(total).equals(p.getProperty("total"))
+				|| !String.valueOf(chunkSize).equals(p.getProperty("chunk_size")) || done.length() != chunks) {
+			return null;
+		}
+		return done.toCharArray();
+	}
+
+	/**
+	 * Finished chunks, persisted in the sidecar as a string of 0 / 1
+	 */
+	private static final class Progress {
+
+		private final Path meta;
+		private final Properties props = new Properties();
+		private final char[] done;
+
+		Progress(Path meta, String uri, String validator, long total, long chunkSize, String filename, char[] done) {
+			this.meta = meta;
+			this.done = done;
+			props.setProperty("url", uri);
+			props.setProperty("total", String.valueOf(total));
+			props.setProperty("chunk_size", String.valueOf(chunkSize));
+			props.setProperty("filename", filename);
+			if (validator != null) {
+				props.setProperty("validator", validator);
+			}
+		}
+
+		synchronized void done(int chunk) throws IOException {
+			done[chunk] = '1';
+			save();
+		}
+
+		synchronized void save() throws IOException {
+			props.setProperty("done", new String(done));
+			try (Writer w = Files.newBufferedWriter(meta, StandardCharsets.UTF_8)) {
+				props.store(w, null);
+			}
+		}
+	}
+
+}
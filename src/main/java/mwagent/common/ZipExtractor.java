@@ -0,0 +1,193 @@
+package mwagent.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Extracts a zip archive using the random access of ZipFile instead of one ZipInputStream pass.
+ *
+ * - Every entry name is checked against the destination before anything is written : an
+ *   archive with an absolute name or one escaping with ".." (zip slip) is rejected as a whole.
+ * - Directories are created first, then the files are inflated by several threads at once,
+ *   largest first, each reading with a large buffer of its own and writing through a FileChannel.
+ * - Archives with few files are extracted by the calling thread.
+ * - The first failure cancels the remaining entries and is thrown.
+ */
+public class ZipExtractor {
+
+	private static final int MIN_PARALLEL_FILES = 16;
+
+	private final int parallelism;
+	private final int bufferBytes;
+
+	public static ZipExtractor fromConfig() {
+		Config config = Config.getConfig();
+		return new ZipExtractor(config.getUnzipParallelism(), config.getUnzipBufferBytes());
+	}
+
+	/**
+	 * @param parallelism threads inflating files, 0 or less : one per processor
+	 */
+	public ZipExtractor(int parallelism, int bufferBytes) {
+		this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+		this.bufferBytes = Math.max(8 * 1024, bufferBytes);
+	}
+
+	public Result extract(Path zip, Path destDir) throws IOException {
+
+		Path dest = destDir.toAbsolutePath().normalize();
+		Files.createDirectories(dest);
+
+		try (ZipFile zipFile = new ZipFile(zip.toFile())) {
+
+			Set<Path> dirs = new HashSet<>();
+			List<ZipEntry> files = new ArrayList<>();
+			Enumeration<? extends ZipEntry> entries = zipFile.entries();
+			while (entries.hasMoreElements()) {
+				ZipEntry entry = entries.nextElement();
+				Path target = target(dest, entry.getName());
+				if (entry.isDirectory()) {
+					dirs.add(target);
+				} else {
+					files.add(entry);
+					dirs.add(target.getParent());
+				}
+			}
+			for (Path dir : dirs) {
+				Files.createDirectories(dir);
+			}
+
+			files.sort((a, b) -> Long.compare(b.getSize(), a.getSize()));
+			AtomicLong bytes = new AtomicLong();
+			int threads = Math.min(parallelism, files.size() / MIN_PARALLEL_FILES);
+
+			if (threads <= 1) {
+				byte[] buffer = new byte[bufferBytes];
+				for (ZipEntry entry : files) {
+					bytes.addAndGet(write(zipFile, entry, target(dest, entry.getName()), buffer));
+				}
+			} else {
+				extractParallel(zipFile, files, dest, threads, bytes);
+			}
+
+			Config.getConfig().getLogger().info("Extracted " + files.size() + " files (" + bytes.get() + " bytes) of "
+					+ zip.getFileName() + " into " + dest + (threads > 1 ? " with " + threads + " threads" : ""));
+			return new Result(files.size(), dirs.size(), bytes.get());
+		}
+	}
+
+	private void extractParallel(ZipFile zipFile, List<ZipEntry> files, Path dest, int threads, AtomicLong bytes)
+			throws IOException {
+
+		AtomicInteger seq = new AtomicInteger();
+		ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+			Thread t = new Thread(r, "Unzip-" + seq.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+		ThreadLocal<byte[]> buffers = ThreadLocal.withInitial(() -> new byte[bufferBytes]);
+
+		try {
+			List<Future<?>> futures = new ArrayList<>(files.size());
+			for (ZipEntry entry : files) {
+				futures.add(pool.submit(() -> {
+					bytes.addAndGet(write(zipFile, entry, target(dest, entry.getName()), buffers.get()));
+					return null;
+				}));
+			}
+			for (Future<?> f : futures) {
+				f.get();
+			}
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			throw new IOException("Zip extraction failed : " + cause, cause);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Zip extraction interrupted", e);
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	private static long write(ZipFile zipFile, ZipEntry entry, Path target, byte[] buffer) throws IOException {
+		// a file hard linked from the artifact cache is replaced, not written through
+		if (ArtifactCache.linkCount(target) > 1) {
+			Files.delete(target);
+		}
+		long total = 0;
+		try (InputStream in = zipFile.getInputStream(entry);
+			 FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					 StandardOpenOption.TRUNCATE_EXISTING)) {
+			int n;
+			while ((n = in.read(buffer)) != -1) {
+				ByteBuffer bb = ByteBuffer.wrap(buffer, 0, n);
+				while (bb.hasRemaining()) {
+					out.write(bb);
+				}
+				total += n;
+			}
+		}
+		return total;
+	}
+
+	/**
+	 * Destination of an entry, which must stay inside dest
+	 */
+	static Path target(Path dest, String name) throws IOException {
+		String normalized = name.replace('\\', '/');
+		if (normalized.startsWith("/") || normalized.matches("^[A-Za-z]:.*")) {
+			throw new IOException("Zip entry with an absolute path : " + name);
+		}
+		Path target = dest.resolve(normalized).normalize();
+		if (!target.startsWith(dest) || target.equals(dest) && !normalized.endsWith("/") && !normalized.isEmpty()) {
+			throw new IOException("Zip entry outside of the target directory : " + name);
+		}
+		return target;
+	}
+
+	public static final class Result {
+
+		private final int files;
+		private final int directories;
+		private final long bytes;
+
+		Result(int files, int directories, long bytes) {
+			this.files = files;
+			this.directories = directories;
+			this.bytes = bytes;
+		}
+
+		public int getFiles() {
+			return files;
+		}
+
+		public int getDirectories() {
+			return directories;
+		}
+
+		public long getBytes() {
+			return bytes;
+		}
+	}
+}
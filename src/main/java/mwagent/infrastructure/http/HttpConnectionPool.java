@@ -0,0 +1,111 @@
+package mwagent.infrastructure.http;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+/**
+ * Pooled, keep-alive HTTP transport built on PoolingHttpClientConnectionManager.
+ * Idle and expired connections are closed by the client's background evictor thread.
+ * Connection state tracking is disabled so that mTLS connections are reused as well,
+ * and TLS sessions are resumed through the shared SSLContext session cache.
+ */
+public class HttpConnectionPool {
+
+    private final String name;
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient client;
+
+    public HttpConnectionPool(String name, SSLConnectionSocketFactory sslSocketFactory,
+                              int maxTotal, int maxPerRoute, int idleTimeoutSeconds,
+                              int validateAfterInactivityMs, int connectTimeoutMs, int leaseTimeoutMs) {
+        this.name = name;
+
+        Registry<ConnectionSocketFactory> registry = RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                .register("https", sslSocketFactory != null ? sslSocketFactory : SSLConnectionSocketFactory.getSocketFactory())
+                .build();
+
+        connectionManager = new PoolingHttpClientConnectionManager(registry);
+        connectionManager.setMaxTotal(maxTotal);
+        connectionManager.setDefaultMaxPerRoute(maxPerRoute);
+        connectionManager.setValidateAfterInactivity(validateAfterInactivityMs);
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(connectTimeoutMs)
+                .setConnectionRequestTimeout(leaseTimeoutMs)
+                .build();
+
+        client = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .disableConnectionState()
+                .evictExpiredConnections()
+                .evictIdleConnections(idleTimeoutSeconds, TimeUnit.SECONDS)
+                .build();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public CloseableHttpClient getClient() {
+        return client;
+    }
+
+    /**
+     * Get utilization of the whole pool.
+     */
+    public PoolStats getTotalStats() {
+        return connectionManager.getTotalStats();
+    }
+
+    /**
+     * Get pool utilization as JSON, totals first and then per route.
+     */
+    @SuppressWarnings("unchecked")
+    public JSONObject getStatsJson() {
+        JSONObject json = toJson(connectionManager.getTotalStats());
+        json.put("pool", name);
+
+        JSONArray routes = new JSONArray();
+        for (HttpRoute route : connectionManager.getRoutes()) {
+            JSONObject routeJson = toJson(connectionManager.getStats(route));
+            routeJson.put("route", route.getTargetHost().toURI());
+            routes.add(routeJson);
+        }
+        json.put("routes", routes);
+
+        return json;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static JSONObject toJson(PoolStats stats) {
+        JSONObject json = new JSONObject();
+        json.put("leased", stats.getLeased());
+        json.put("available", stats.getAvailable());
+        json.put("pending", stats.getPending());
+        json.put("max", stats.getMax());
+        return json;
+    }
+
+    /**
+     * Close all pooled connections and stop the evictor thread.
+     */
+    public void close() throws IOException {
+        client.close();
+    }
+}
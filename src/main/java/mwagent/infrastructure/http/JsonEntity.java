@@ -0,0 +1,60 @@
+package mwagent.infrastructure.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+
+import mwagent.common.JsonContent;
+import mwagent.common.JsonStreamWriter;
+
+/**
+ * Request entity that streams a JsonContent to the connection.
+ *
+ * The length is computed by a counting pass so the request keeps a Content-Length header
+ * (no chunked encoding), and the document is never materialized as a String or byte array.
+ */
+public class JsonEntity extends AbstractHttpEntity {
+
+	private final JsonContent content;
+	private long length = -1;
+
+	public JsonEntity(JsonContent content) {
+		this.content = content;
+		setContentType(ContentType.APPLICATION_JSON.toString());
+	}
+
+	@Override
+	public boolean isRepeatable() {
+		return true;
+	}
+
+	@Override
+	public long getContentLength() {
+		if (length < 0) {
+			length = content.byteLength();
+		}
+		return length;
+	}
+
+	@Override
+	public InputStream getContent() throws IOException {
+		return new ByteArrayInputStream(content.toBytes());
+	}
+
+	@Override
+	public void writeTo(OutputStream out) throws IOException {
+		JsonStreamWriter writer = JsonStreamWriter.of(out);
+		content.writeTo(writer);
+		writer.flush();
+	}
+
+	@Override
+	public boolean isStreaming() {
+		return false;
+	}
+
+}
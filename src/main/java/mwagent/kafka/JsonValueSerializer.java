@@ -0,0 +1,26 @@
+package mwagent.kafka;
+
+import java.nio.charset.StandardCharsets;
+
+import org.apache.kafka.common.serialization.Serializer;
+
+import mwagent.common.JsonContent;
+
+/**
+ * Kafka value serializer for String messages and streamed JsonContent results.
+ * JsonContent is written directly into the record's byte array.
+ */
+public class JsonValueSerializer implements Serializer<Object> {
+
+	@Override
+	public byte[] serialize(String topic, Object data) {
+		if (data == null) {
+			return null;
+		}
+		if (data instanceof JsonContent) {
+			return ((JsonContent) data).toBytes();
+		}
+		return data.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+}
@@ -1,87 +1,265 @@
 package mwagent.kafka;
 
 import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 
 import org.apache.commons.codec.binary.StringUtils;
 import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRebalanceListener;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecords;
 import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.json.simple.JSONObject;
 import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
 
 import mwagent.OrderCallerThread;
+import mwagent.service.CommandExecutorService;
 import static mwagent.common.Config.getConfig;
 
+/**
+ * Consumes commands from Kafka.
+ *
+ * With a CommandExecutorService, records are handed to the bounded executor and their offsets
+ * are committed only after the order finished (contiguous completed offsets per partition).
+ * When the executor queue is full, or the executor is not running, the partitions are paused
+ * and the remaining records are kept until there is room again.
+ *
+ * Without an executor (legacy), every record starts its own OrderCallerThread.
+ */
 public class MwConsumerThread extends Thread {
-	
+
     private String brokerAddress;
     private String topic;
     private static final String FIN_MESSAGE = "FIN";
-    private boolean stopRequested = false;
+    private static final Duration POLL_TIMEOUT = Duration.ofSeconds(3);
+    private static final Duration PAUSED_POLL_TIMEOUT = Duration.ofMillis(200);
+    private volatile boolean stopRequested = false;
+    private final CommandExecutorService commandExecutor;
+
+    private final Map<TopicPartition, PartitionOffsetTracker> trackers = new ConcurrentHashMap<>();
+    private final ArrayDeque<ConsumerRecord<String, String>> pending = new ArrayDeque<>();
 
     public MwConsumerThread(String brokerAddress, String topic) {
+        this(brokerAddress, topic, null);
+    }
+
+    public MwConsumerThread(String brokerAddress, String topic, CommandExecutorService commandExecutor) {
         this.brokerAddress = brokerAddress;
         this.topic = topic;
+        this.commandExecutor = commandExecutor;
     }
-    
+
     @Override
-    public void run() {	    	
-    	
-    	executeOrderFromKafka();
+    public void run() {
+
+    	if (commandExecutor != null) {
+    		executeOrderWithExecutor();
+    	} else {
+    		executeOrderFromKafka();
+    	}
     	getConfig().getLogger().info("MwConsumerThread exit.");
-		
+
     }
-    
+
     public void stop_thread() {
     	stopRequested = true;
     }
-    
-    private void executeOrderFromKafka(){
-    	
+
+    private Properties consumerProperties(boolean autoCommit) {
+
     	Properties prop = new Properties();
     	prop.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, brokerAddress);
     	//prop.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
-    	prop.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "true");
-    	prop.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());    	
+    	prop.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, Boolean.toString(autoCommit));
+    	prop.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
     	prop.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, StringDeserializer.class.getName());
     	prop.put(ConsumerConfig.GROUP_ID_CONFIG, "g_"+getConfig().getAgent_id());
-    	
-    	KafkaConsumer<String, String> consumer = new KafkaConsumer<>(prop);
+    	prop.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, getConfig().getKafkaConsumerMaxPollRecords());
+    	return prop;
+
+    }
+
+    private void executeOrderWithExecutor(){
+
+    	KafkaConsumer<String, String> consumer = new KafkaConsumer<>(consumerProperties(false));
+    	consumer.subscribe(Collections.singletonList(topic), new ConsumerRebalanceListener() {
+
+    		@Override
+    		public void onPartitionsRevoked(Collection<TopicPartition> partitions) {
+    			commitCompleted(consumer, true);
+    			for (TopicPartition tp : partitions) {
+    				trackers.remove(tp);
+    			}
+    			pending.removeIf(rec -> partitions.contains(new TopicPartition(rec.topic(), rec.partition())));
+    		}
+
+    		@Override
+    		public void onPartitionsAssigned(Collection<TopicPartition> partitions) {
+    			// records are redelivered from the committed offset
+    		}
+    	});
+
+    	boolean finReceived = false;
+
+    	try{
+
+    		while (!finReceived && !stopRequested && !isInterrupted()) {
+
+    			ConsumerRecords<String, String> recs = consumer.poll(pending.isEmpty() ? POLL_TIMEOUT : PAUSED_POLL_TIMEOUT);
+
+    			for (ConsumerRecord<String, String> rec : recs){
+    				pending.add(rec);
+    			}
+
+    			finReceived = dispatchPending();
+
+    			// backpressure : stop fetching while records are waiting for the executor
+    			if (!pending.isEmpty()) {
+    				if (consumer.paused().isEmpty()) {
+    					getConfig().getLogger().info("Command queue is full, pausing Kafka consumer (pending=" + pending.size() + ")");
+    				}
+    				consumer.pause(consumer.assignment());
+    			} else if (!consumer.paused().isEmpty()) {
+    				getConfig().getLogger().info("Resuming Kafka consumer");
+    				consumer.resume(consumer.paused());
+    			}
+
+    			commitCompleted(consumer, false);
+    		}
+
+    	}catch(Exception e){
+    		getConfig().getLogger().log(Level.SEVERE, e.getMessage(), e);
+    	}finally{
+    		// clear the interrupt from KafkaService.stop() so that the final commit can complete
+    		boolean interrupted = Thread.interrupted();
+    		try {
+    			commitCompleted(consumer, true);
+    		} catch (Exception e) {
+    			getConfig().getLogger().log(Level.WARNING, "Failed to commit Kafka offsets on close", e);
+    		}
+    		consumer.close();
+    		if (interrupted) {
+    			interrupt();
+    		}
+    	}
+
+    }
+
+    /**
+     * Hand pending records to the executor while it has room.
+     *
+     * @return true if the FIN message was received
+     */
+    private boolean dispatchPending() {
+
+    	while (!pending.isEmpty()) {
+
+    		if (!commandExecutor.isRunning() || commandExecutor.getRemainingCapacity() <= 0) {
+    			return false;
+    		}
+
+    		ConsumerRecord<String, String> rec = pending.poll();
+    		TopicPartition tp = new TopicPartition(rec.topic(), rec.partition());
+    		PartitionOffsetTracker tracker = trackers.computeIfAbsent(tp, k -> new PartitionOffsetTracker());
+    		long offset = rec.offset();
+    		tracker.track(offset);
+
+    		String message = rec.value();
+
+    		if (StringUtils.equals(message, FIN_MESSAGE)) {
+    			tracker.markDone(offset);
+    			return true;
+    		}
+
+    		try {
+    			JSONObject command_ = (JSONObject) new JSONParser().parse(message);
+    			commandExecutor.executeCommand(command_, () -> tracker.markDone(offset));
+    			getConfig().getLogger().info("Order called by Kafka :"+ Long.toString(offset) + " key : "+ rec.key() + "_" + message);
+
+    		} catch (ParseException | ClassCastException e) {
+    			// a malformed record would be redelivered forever, skip it
+    			getConfig().getLogger().log(Level.WARNING, "Skipping malformed Kafka command at offset " + offset + " : " + message, e);
+    			tracker.markDone(offset);
+
+    		} catch (IllegalStateException e) {
+    			// executor stopped meanwhile, leave the record uncommitted so that it is redelivered
+    			getConfig().getLogger().warning("CommandExecutor is not running, Kafka command at offset " + offset + " is kept pending");
+    			pending.addFirst(rec);
+    			return false;
+    		}
+    	}
+
+    	return false;
+    }
+
+    private void commitCompleted(KafkaConsumer<String, String> consumer, boolean sync) {
+
+    	Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>();
+    	for (Map.Entry<TopicPartition, PartitionOffsetTracker> e : trackers.entrySet()) {
+    		long next = e.getValue().pollCommittable();
+    		if (next >= 0) {
+    			offsets.put(e.getKey(), new OffsetAndMetadata(next));
+    		}
+    	}
+
+    	if (offsets.isEmpty()) {
+    		return;
+    	}
+
+    	if (sync) {
+    		consumer.commitSync(offsets);
+    	} else {
+    		consumer.commitAsync(offsets, (committed, exception) -> {
+    			if (exception != null) {
+    				getConfig().getLogger().log(Level.WARNING, "Kafka offset commit failed : " + committed, exception);
+    			}
+    		});
+    	}
+    }
+
+    private void executeOrderFromKafka(){
+
+    	KafkaConsumer<String, String> consumer = new KafkaConsumer<>(consumerProperties(true));
     	consumer.subscribe(Collections.singletonList(topic));
-    	
+
     	String message = null;
-    	
+
     	try{
-    		
+
     		do {
-    			
-    			ConsumerRecords<String, String> recs = consumer.poll(Duration.ofSeconds(3));
-    			
+
+    			ConsumerRecords<String, String> recs = consumer.poll(POLL_TIMEOUT);
+
     			for (ConsumerRecord<String, String> rec : recs){
-    				
+
     				message = rec.value();
     				consumer.commitAsync();
-    				
+
     				JSONObject command_ =  (JSONObject) new JSONParser().parse(message);
  	    		   	String command_class  = (String)command_.get("command_class");
- 	    		    
+
  	    		    OrderCallerThread thread = new OrderCallerThread("mwagent.order."+command_class, command_);
 
  	    		    thread.setDaemon(true);
- 	    		    thread.start();	    		   
- 	    		   
+ 	    		    thread.start();
+
  	    		   getConfig().getLogger().info("Order called by Kafka :"+ Long.toString(rec.offset()) + " key : "+ rec.key() + "_" + message);
-    				
+
     			}
-    			
+
     		}while (!StringUtils.equals(message, FIN_MESSAGE) && !stopRequested);
-    		
+
     	}catch(ParseException e){
     		getConfig().getLogger().log(Level.SEVERE, e.getMessage(), e);
     	}catch(Exception e){
@@ -89,7 +267,7 @@ public class MwConsumerThread extends Thread {
     	}finally{
     		consumer.close();
     	}
-    	
+
     }
 
 }
@@ -2,50 +2,236 @@ package mwagent.kafka;
 
 import static mwagent.common.Config.getConfig;
 
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 import java.util.logging.Level;
 
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.common.serialization.StringSerializer;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
 
+import mwagent.common.Config;
+import mwagent.common.JsonContent;
+import mwagent.metrics.AgentMetrics;
+
+/**
+ * Kafka producer for command results.
+ *
+ * - Batching (linger.ms / batch.size), compression and idempotence are configurable.
+ * - buffer.memory bounds the unsent records; a full buffer blocks send at most max.block.ms.
+ * - A failed delivery runs the caller's fallback (e.g. the HTTP result path) on a separate
+ *   thread, never on the producer I/O thread. When the fallback queue is full the record is
+ *   dropped, which is logged, counted and reported as a failed delivery.
+ * - The caller may be told the outcome of the delivery (acknowledged or failed).
+ * - Per topic sent / failed / bytes / latency counters.
+ * - Values are String messages or JsonContent results, which are serialized straight into
+ *   the record bytes (JsonValueSerializer).
+ */
 public final class MwProducer {
 
+	private static final int FALLBACK_QUEUE_SIZE = 1000;
+
 	private static MwProducer instance;
-	private static KafkaProducer<String, String> producer = null;
+	private static KafkaProducer<String, Object> producer = null;
+	private static final Map<String, TopicStats> topicStats = new ConcurrentHashMap<>();
+	private static ExecutorService fallbackExecutor;
 
 	private MwProducer() {
-		
-		System.out.println("MwProducer !!" + getConfig().getKafka_broker_address());
-		
-    	Properties prop = new Properties();
-    	prop.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, getConfig().getKafka_broker_address());
-    	prop.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());    	
-    	prop.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
-    	
-    	producer = new KafkaProducer<>(prop);
-    	
+
+		Config config = getConfig();
+		config.getLogger().info("MwProducer : " + config.getKafka_broker_address());
+
+		producer = new KafkaProducer<>(buildProperties(config));
+
+		fallbackExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<>(FALLBACK_QUEUE_SIZE), r -> {
+					Thread t = new Thread(r, "KafkaFallback");
+					t.setDaemon(true);
+					return t;
+				});
+
+	}
+
+	static Properties buildProperties(Config config) {
+
+		Properties prop = new Properties();
+		prop.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, config.getKafka_broker_address());
+		prop.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class.getName());
+		prop.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonValueSerializer.class.getName());
+		prop.put(ProducerConfig.LINGER_MS_CONFIG, Integer.toString(config.getKafkaProducerLingerMs()));
+		prop.put(ProducerConfig.BATCH_SIZE_CONFIG, Integer.toString(config.getKafkaProducerBatchSize()));
+		prop.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, config.getKafkaProducerCompressionType());
+		prop.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, Boolean.toString(config.isKafkaProducerIdempotence()));
+		prop.put(ProducerConfig.ACKS_CONFIG, config.isKafkaProducerIdempotence() ? "all" : "1");
+		prop.put(ProducerConfig.BUFFER_MEMORY_CONFIG, Long.toString(config.getKafkaProducerBufferMemory()));
+		prop.put(ProducerConfig.MAX_BLOCK_MS_CONFIG, Long.toString(config.getKafkaProducerMaxBlockMs()));
+		prop.put(ProducerConfig.DELIVERY_TIMEOUT_MS_CONFIG, Integer.toString(config.getKafkaProducerDeliveryTimeoutMs()));
+		// delivery.timeout.ms must be >= linger.ms + request.timeout.ms
+		prop.put(ProducerConfig.REQUEST_TIMEOUT_MS_CONFIG,
+				Integer.toString(Math.min(30000, config.getKafkaProducerDeliveryTimeoutMs() - config.getKafkaProducerLingerMs())));
+		return prop;
+
 	}
 
 	public static int sendMessage(String topic, String key, String message){
+		return sendMessage(topic, key, message, null);
+	}
+
+	/**
+	 * Send a message asynchronously.
+	 *
+	 * @param fallback run when the message cannot be delivered (may be null)
+	 * @return 1 if handed to the producer, -1 if it failed immediately
+	 */
+	public static int sendMessage(String topic, String key, String message, Runnable fallback){
+		return send(topic, key, message, fallback, null);
+	}
 
-		ProducerRecord<String, String> rec = new ProducerRecord<>(topic, key, message);
+	/**
+	 * Send a JSON result asynchronously, the document is written directly into the record.
+	 *
+	 * @param fallback run when the message cannot be delivered (may be null)
+	 * @return 1 if handed to the producer, -1 if it failed immediately
+	 */
+	public static int sendMessage(String topic, String key, JsonContent message, Runnable fallback){
+		return send(topic, key, message, fallback, null);
+	}
+
+	/**
+	 * Send a JSON result asynchronously and report whether the broker acknowledged it.
+	 *
+	 * @param delivered accepts true once acknowledged, false when the delivery failed and there
+	 *        is no fallback or the fallback could not be run; a fallback that runs reports the
+	 *        outcome itself. Called on the producer I/O thread, so it must not block (may be null)
+	 */
+	public static int sendMessage(String topic, String key, JsonContent message, Runnable fallback,
+			Consumer<Boolean> delivered){
+		return send(topic, key, message, fallback, delivered);
+	}
+
+	private static int send(String topic, String key, Object message, Runnable fallback, Consumer<Boolean> delivered){
+
+		TopicStats stats = topicStats.computeIfAbsent(topic, t -> new TopicStats());
+		long startNanos = System.nanoTime();
+
+		ProducerRecord<String, Object> rec = new ProducerRecord<>(topic, key, message);
 		try{
 
+			if (producer == null) {
+				throw new IllegalStateException("Kafka producer is not initialized");
+			}
+
 			producer.send(rec, (metadata, exception) -> {
 				if (exception != null){
-					
+					stats.failed.increment();
+					AgentMetrics.KAFKA_FAILURES.inc();
+					getConfig().getLogger().log(Level.WARNING, String.format("Kafka delivery failed topic:%s key:%s", topic, key), exception);
+					runFallback(topic, fallback, delivered);
+				} else {
+					stats.sent.increment();
+					stats.bytes.add(Math.max(0, metadata.serializedValueSize()));
+					stats.recordLatency(System.nanoTime() - startNanos);
+					AgentMetrics.KAFKA_SENT_BYTES.add(Math.max(0, metadata.serializedValueSize()));
+					AgentMetrics.KAFKA_SEND_DURATION.recordSince(startNanos);
+					report(delivered, true);
 				}
 			});
 		}catch (Exception e){
-			getConfig().getLogger().warning(String.format("Kafka producing error topic:%s key:%s message:%s",topic,key,message));
+			stats.failed.increment();
+			AgentMetrics.KAFKA_FAILURES.inc();
+			getConfig().getLogger().warning(String.format("Kafka producing error topic:%s key:%s message:%s",topic,key,
+					message instanceof JsonContent ? "(json result)" : message));
 			getConfig().getLogger().log(Level.WARNING, e.getMessage(), e);
+			runFallback(topic, fallback, delivered);
+			return -1;
 		}
 		return 1;
 	}
-	
-	public static KafkaProducer<String, String> getProducer() {
+
+	private static void report(Consumer<Boolean> delivered, boolean ok) {
+		if (delivered == null) {
+			return;
+		}
+		try {
+			delivered.accept(ok);
+		} catch (RuntimeException e) {
+			getConfig().getLogger().log(Level.WARNING, "Kafka delivery callback failed", e);
+		}
+	}
+
+	/**
+	 * Hand a failed record to its fallback, or report the failure when there is none
+	 */
+	private static void runFallback(String topic, Runnable fallback, Consumer<Boolean> delivered) {
+
+		if (fallback == null) {
+			report(delivered, false);
+			return;
+		}
+
+		TopicStats stats = topicStats.computeIfAbsent(topic, t -> new TopicStats());
+		ExecutorService executor = fallbackExecutor;
+		try {
+			if (executor == null || executor.isShutdown()) {
+				fallback.run();
+			} else {
+				executor.execute(fallback);
+			}
+			stats.fallback.increment();
+		} catch (RejectedExecutionException e) {
+			stats.dropped.increment();
+			AgentMetrics.KAFKA_DROPPED.inc();
+			getConfig().getLogger().severe("Kafka fallback queue full (" + FALLBACK_QUEUE_SIZE + "), result dropped topic:" + topic);
+			report(delivered, false);
+		} catch (Exception e) {
+			getConfig().getLogger().log(Level.WARNING, "Kafka fallback failed topic:" + topic, e);
+			report(delivered, false);
+		}
+	}
+
+	/**
+	 * Replace the fallback executor (for tests)
+	 */
+	static void setFallbackExecutor(ExecutorService executor) {
+		fallbackExecutor = executor;
+	}
+
+	/**
+	 * Per topic producer counters.
+	 */
+	@SuppressWarnings("unchecked")
+	public static JSONArray getStats() {
+
+		JSONArray arr = new JSONArray();
+		for (Map.Entry<String, TopicStats> e : topicStats.entrySet()) {
+			TopicStats s = e.getValue();
+			long sent = s.sent.sum();
+			JSONObject json = new JSONObject();
+			json.put("topic", e.getKey());
+			json.put("sent", sent);
+			json.put("failed", s.failed.sum());
+			json.put("fallback", s.fallback.sum());
+			json.put("dropped", s.dropped.sum());
+			json.put("bytes", s.bytes.sum());
+			json.put("avg_latency_ms", sent > 0 ? s.latencyMicros.sum() / sent / 1000 : 0);
+			json.put("max_latency_ms", s.maxLatencyMicros / 1000);
+			arr.add(json);
+		}
+		return arr;
+	}
+
+	public static KafkaProducer<String, Object> getProducer() {
 		return producer;
 	}
 
@@ -74,6 +260,38 @@ public final class MwProducer {
 				getConfig().getLogger().log(Level.WARNING, "Error closing Kafka producer", e);
 			}
 		}
+		if (fallbackExecutor != null) {
+			// run the fallbacks of deliveries that failed while flushing
+			fallbackExecutor.shutdown();
+			try {
+				fallbackExecutor.awaitTermination(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	private static final class TopicStats {
+
+		private final LongAdder sent = new LongAdder();
+		private final LongAdder failed = new LongAdder();
+		private final LongAdder fallback = new LongAdder();
+		private final LongAdder dropped = new LongAdder();
+		private final LongAdder bytes = new LongAdder();
+		private final LongAdder latencyMicros = new LongAdder();
+		private volatile long maxLatencyMicros = 0;
+
+		private void recordLatency(long nanos) {
+			long micros = nanos / 1000;
+			latencyMicros.add(micros);
+			if (micros > maxLatencyMicros) {
+				synchronized (this) {
+					if (micros > maxLatencyMicros) {
+						maxLatencyMicros = micros;
+					}
+				}
+			}
+		}
 	}
 
 }
@@ -0,0 +1,47 @@
+package mwagent.kafka;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Tracks records of one partition that were handed to the executor.
+ * Only the contiguous run of completed offsets from the oldest tracked one may be committed,
+ * so a crash never skips a record that has not finished yet.
+ */
+public class PartitionOffsetTracker {
+
+	// offset -> completed
+	private final TreeMap<Long, Boolean> inFlight = new TreeMap<>();
+
+	public synchronized void track(long offset) {
+		inFlight.put(offset, Boolean.FALSE);
+	}
+
+	public synchronized void markDone(long offset) {
+		if (inFlight.containsKey(offset)) {
+			inFlight.put(offset, Boolean.TRUE);
+		}
+	}
+
+	/**
+	 * Remove the contiguous completed offsets at the head.
+	 *
+	 * @return offset to commit (last completed + 1), -1 if nothing new completed
+	 */
+	public synchronized long pollCommittable() {
+		long next = -1;
+		Map.Entry<Long, Boolean> first;
+		while ((first = inFlight.firstEntry()) != null && first.getValue()) {
+			inFlight.pollFirstEntry();
+			next = first.getKey() + 1;
+		}
+		return next;
+	}
+
+	/**
+	 * Number of tracked records not committed yet.
+	 */
+	public synchronized int size() {
+		return inFlight.size();
+	}
+}
@@ -10,8 +10,14 @@ import org.json.simple.JSONObject;
 
 import mwagent.PreWork;
 import mwagent.common.Common;
+import mwagent.common.CommandStreamHandler;
+import mwagent.common.PollingPolicy;
+import mwagent.metrics.AgentMetrics;
 import mwagent.service.CommandExecutorService;
 import mwagent.service.KafkaService;
+import mwagent.service.MetricsHttpService;
+import mwagent.service.PeerArtifactService;
+import mwagent.service.ResultBatchService;
 import mwagent.service.registration.BootstrapService;
 import mwagent.vo.MwResponseVO;
 import mwagent.vo.RawCommandsVO;
@@ -82,16 +88,49 @@ public class AgentLifecycleManager implements AgentLifecycle {
             logger.info("Phase 2: Initialization - Processing BOOT commands");
             processBootCommands(bootCommands.getCommands());
 
+            // Metrics endpoint, 시작에 실패해도 Agent 는 계속 실행
+            if (getConfig().isMetricsHttpEnabled()) {
+                MetricsHttpService metricsService = new MetricsHttpService();
+                try {
+                    metricsService.start();
+                    shutdownHandler.registerService(metricsService);
+                } catch (Exception e) {
+                    logger.log(Level.WARNING, "Metrics endpoint disabled", e);
+                }
+            }
+
+            // 다른 Agent 에 artifact 제공, 시작에 실패해도 Agent 는 계속 실행
+            if (getConfig().isP2pEnabled() && getConfig().isArtifactCacheEnabled()) {
+                PeerArtifactService peerService = new PeerArtifactService();
+                try {
+                    peerService.start();
+                    shutdownHandler.registerService(peerService);
+                } catch (Exception e) {
+                    logger.log(Level.WARNING, "Peer artifact endpoint disabled", e);
+                }
+            } else if (getConfig().isP2pEnabled()) {
+                logger.warning("p2p.enabled requires artifact_cache.enabled, peer artifact endpoint disabled");
+            }
+
+            // Start Result Batch and Command Executor before Kafka so that consumed commands run right away.
+            // Shutdown is LIFO by registration: executor drains first, then result batch, then Kafka.
+            if (getConfig().isResultBatchEnabled()) {
+                ResultBatchService.getInstance().start();
+            }
+            commandExecutor.start();
+
             // Start Kafka Service
             if (kafkaService.isConfigured()) {
+                kafkaService.setCommandExecutor(commandExecutor);
                 kafkaService.start();
                 shutdownHandler.registerService(kafkaService);
             } else {
                 logger.info("Kafka not configured, skipping Kafka service");
             }
 
-            // Start Command Executor
-            commandExecutor.start();
+            if (getConfig().isResultBatchEnabled()) {
+                shutdownHandler.registerService(ResultBatchService.getInstance());
+            }
             shutdownHandler.registerService(commandExecutor);
 
             // Phase 3: Runtime (MainWork 로직)
@@ -204,10 +243,17 @@ public class AgentLifecycleManager implements AgentLifecycle {
     private void runtimeLoop() {
         logger.info("Runtime loop started");
 
+        PollingPolicy pollingPolicy = new PollingPolicy();
+        if (pollingPolicy.isLongPolling()) {
+            logger.info("Long-poll command fetch enabled (wait=" + pollingPolicy.getWaitSec() + "s)");
+        }
+
         while (running) {
             try {
                 // Poll commands from server
-                RawCommandsVO rcv = pollCommands();
+                long pollStart = System.currentTimeMillis();
+                RawCommandsVO rcv = pollCommands(pollingPolicy);
+                long pollElapsed = System.currentTimeMillis() - pollStart;
 
                 // Handle token expiration - use cascading fallback strategy
                 if (rcv.getReturnCode() == 0) {
@@ -223,16 +269,14 @@ public class AgentLifecycleManager implements AgentLifecycle {
                     continue;
                 }
 
-                // Execute commands
-                if (rcv.getReturnCode() > 0 && rcv.getCommands() != null) {
-                    for (Object commandObj : rcv.getCommands()) {
-                        JSONObject command = (JSONObject) commandObj;
-                        commandExecutor.executeCommand(command);
-                    }
-                }
+                // Commands were handed to the executor while the response was parsed
+                boolean hasCommands = rcv.getReturnCode() > 0 && rcv.getCommandCount() > 0;
 
-                // Sleep before next poll
-                Thread.sleep(getConfig().getCommand_check_cycle() * 1000);
+                // Sleep before next poll (interval, long-poll re-poll or reconnect backoff)
+                long delayMs = pollingPolicy.nextDelayMs(rcv.getReturnCode(), hasCommands, pollElapsed, rcv.getLongPollTimeout());
+                if (delayMs > 0) {
+                    Thread.sleep(delayMs);
+                }
 
             } catch (InterruptedException e) {
                 logger.info("Runtime loop interrupted");
@@ -250,27 +294,41 @@ public class AgentLifecycleManager implements AgentLifecycle {
     /**
      * 서버에서 명령 조회 (MainWork.fetchPendingCommands() 로직)
      */
-    private RawCommandsVO pollCommands() {
+    private RawCommandsVO pollCommands(PollingPolicy pollingPolicy) {
         RawCommandsVO rcv = new RawCommandsVO();
         rcv.setReturnCode(1);
 
-        String path = getConfig().getGet_command_uri() + "/" + getConfig().getAgent_id();
+        int socketTimeoutMs = pollingPolicy.getSocketTimeoutMs();
+        String path = pollingPolicy.buildPath(getConfig().getGet_command_uri() + "/" + getConfig().getAgent_id());
         logger.fine("Polling commands: " + path);
 
-        MwResponseVO mrvo = Common.httpGET(path, getConfig().getAccess_token());
+        // 응답을 파싱하면서 명령을 하나씩 executor 로 전달
+        CommandStreamHandler handler = new CommandStreamHandler(commandExecutor::executeCommand);
+        long pollStart = System.nanoTime();
+        MwResponseVO mrvo = Common.httpGET(path, getConfig().getAccess_token(), socketTimeoutMs, handler);
+        rcv.setCommandCount(handler.getCommandCount());
+        AgentMetrics.POLL_DURATION.recordSince(pollStart);
+        AgentMetrics.POLLED_COMMANDS.add(handler.getCommandCount());
 
         // Access Token Expired
         if (mrvo.getStatusCode() == 401) {
             rcv.setReturnCode(0);
 
         } else if (mrvo.getStatusCode() >= 200 && mrvo.getStatusCode() < 300) {
+            if (mrvo.getResponse() == null) {
+                rcv.setReturnCode(-10);
+                return rcv;
+            }
+
             long rtn = (Long) mrvo.getResponse().get("return_code");
 
             if (rtn < 0) {
                 rcv.setReturnCode(rtn);
-            } else {
-                JSONArray commands = (JSONArray) mrvo.getResponse().get("data");
-                rcv.setCommands(commands);
+            }
+
+            Object longPollTimeout = mrvo.getResponse().get("long_poll_timeout");
+            if (longPollTimeout instanceof Long) {
+                rcv.setLongPollTimeout((Long) longPollTimeout);
             }
 
         } else if (mrvo.getStatusCode() < 0) {
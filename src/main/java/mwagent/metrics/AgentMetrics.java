@@ -0,0 +1,64 @@
+package mwagent.metrics;
+
+/**
+ * The metrics recorded by the agent, in one place so that names stay consistent.
+ */
+public final class AgentMetrics {
+
+	private static final MetricsRegistry registry = MetricsRegistry.getInstance();
+
+	public static final LatencyHistogram POLL_DURATION = registry.histogram(
+			"mwagent_poll_duration_seconds", "Command poll round trip, including long-poll wait");
+	public static final Counter POLLED_COMMANDS = registry.counter(
+			"mwagent_polled_commands_total", "Commands received by polling");
+
+	public static final LatencyHistogram HTTP_GET_DURATION = registry.histogram(
+			"mwagent_http_request_duration_seconds", "HTTP request duration", "method", "GET");
+	public static final LatencyHistogram HTTP_POST_DURATION = registry.histogram(
+			"mwagent_http_request_duration_seconds", "HTTP request duration", "method", "POST");
+	public static final Counter HTTP_SENT_BYTES = registry.counter(
+			"mwagent_http_sent_bytes_total", "HTTP request body bytes sent");
+	public static final Counter HTTP_FAILURES = registry.counter(
+			"mwagent_http_failures_total", "HTTP requests without a response");
+
+	public static final LatencyHistogram KAFKA_SEND_DURATION = registry.histogram(
+			"mwagent_kafka_send_duration_seconds", "Kafka record send to acknowledgement");
+	public static final Counter KAFKA_SENT_BYTES = registry.counter(
+			"mwagent_kafka_sent_bytes_total", "Kafka record value bytes acknowledged");
+	public static final Counter KAFKA_FAILURES = registry.counter(
+			"mwagent_kafka_failures_total", "Kafka records not delivered");
+	public static final Counter KAFKA_DROPPED = registry.counter(
+			"mwagent_kafka_dropped_total", "Failed Kafka records dropped, the fallback queue being full");
+
+	public static final Counter DOWNLOAD_BYTES = registry.counter(
+			"mwagent_download_bytes_total", "File download bytes received");
+	public static final Counter DOWNLOAD_RESUMES = registry.counter(
+			"mwagent_download_resumes_total", "File downloads resumed with a Range request");
+	public static final Counter P2P_RECEIVED_BYTES = registry.counter(
+			"mwagent_p2p_received_bytes_total", "File download bytes received from peer agents");
+	public static final Counter P2P_SENT_BYTES = registry.counter(
+			"mwagent_p2p_sent_bytes_total", "Artifact bytes served to peer agents");
+	public static final Counter ARTIFACT_CACHE_HITS = registry.counter(
+			"mwagent_artifact_cache_total", "File downloads looked up in the artifact cache", "result", "hit");
+	public static final Counter ARTIFACT_CACHE_MISSES = registry.counter(
+			"mwagent_artifact_cache_total", "File downloads looked up in the artifact cache", "result", "miss");
+
+	public static final Counter TOKEN_RENEWALS = registry.counter(
+			"mwagent_token_renewals_total", "Access token renewals", "result", "success");
+	public static final Counter TOKEN_RENEWAL_FAILURES = registry.counter(
+			"mwagent_token_renewals_total", "Access token renewals", "result", "failure");
+
+	private AgentMetrics() {
+	}
+
+	public static LatencyHistogram commandQueueWait(String commandClass) {
+		return registry.histogram("mwagent_command_queue_wait_seconds", "Time a command waited in the executor queue",
+				"command_class", commandClass);
+	}
+
+	public static LatencyHistogram commandExecution(String commandClass) {
+		return registry.histogram("mwagent_command_execution_seconds", "Command execution time",
+				"command_class", commandClass);
+	}
+
+}
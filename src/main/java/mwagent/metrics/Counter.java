@@ -0,0 +1,29 @@
+package mwagent.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Monotonic counter, striped so that concurrent increments do not contend.
+ */
+public final class Counter {
+
+	private final LongAdder value = new LongAdder();
+
+	Counter() {
+	}
+
+	public void inc() {
+		value.increment();
+	}
+
+	public void add(long n) {
+		if (n > 0) {
+			value.add(n);
+		}
+	}
+
+	public long get() {
+		return value.sum();
+	}
+
+}
@@ -0,0 +1,213 @@
+package mwagent.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import org.json.simple.JSONObject;
+
+/**
+ * Agent wide metrics : counters, latency histograms and gauges, each optionally with one label.
+ *
+ * Looking up an existing metric is two map reads and does not allocate, so call sites may
+ * look metrics up on every use (e.g. per command_class); metrics without a label are best
+ * kept in a static field.
+ *
+ * Exposed in the Prometheus text format (histograms as summaries, 1.0 quantile = max) and as a
+ * compact JSON snapshot.
+ */
+public final class MetricsRegistry {
+
+	static final double[] QUANTILES = {0.5, 0.9, 0.99};
+
+	private static final MetricsRegistry instance = new MetricsRegistry();
+
+	// sorted by name for a stable exposition
+	private final Map<String, Family> families = new ConcurrentSkipListMap<>();
+	private final AtomicLong lastSnapshotAt = new AtomicLong();
+
+	public static MetricsRegistry getInstance() {
+		return instance;
+	}
+
+	MetricsRegistry() {
+	}
+
+	public Counter counter(String name, String help) {
+		return counter(name, help, null, null);
+	}
+
+	public Counter counter(String name, String help, String labelName, String labelValue) {
+		return (Counter) family(name, help, Type.COUNTER, labelName).child(labelValue);
+	}
+
+	public LatencyHistogram histogram(String name, String help) {
+		return histogram(name, help, null, null);
+	}
+
+	public LatencyHistogram histogram(String name, String help, String labelName, String labelValue) {
+		return (LatencyHistogram) family(name, help, Type.HISTOGRAM, labelName).child(labelValue);
+	}
+
+	/**
+	 * Register (or replace) a gauge read at exposition time
+	 */
+	public void gauge(String name, String help, LongSupplier supplier) {
+		family(name, help, Type.GAUGE, null).children.put("", supplier);
+	}
+
+	private Family family(String name, String help, Type type, String labelName) {
+
+		Family f = families.get(name);
+		if (f == null) {
+			f = families.computeIfAbsent(name, n -> new Family(n, help, type, labelName));
+		}
+		if (f.type != type) {
+			throw new IllegalArgumentException("Metric " + name + " is a " + f.type + ", not a " + type);
+		}
+		return f;
+	}
+
+	/**
+	 * Prometheus text exposition format 0.0.4
+	 */
+	public void writePrometheus(Writer out) throws IOException {
+
+		for (Family f : families.values()) {
+
+			out.write("# HELP " + f.name + " " + f.help + "\n");
+			out.write("# TYPE " + f.name + " " + f.type.prometheusType + "\n");
+
+			for (Map.Entry<String, Object> e : new TreeMap<>(f.children).entrySet()) {
+
+				String labels = f.labelName == null ? "" : f.labelName + "=\"" + escapeLabel(e.getKey()) + "\"";
+				Object m = e.getValue();
+
+				if (m instanceof Counter) {
+					sample(out, f.name, labels, Long.toString(((Counter) m).get()));
+				} else if (m instanceof LongSupplier) {
+					sample(out, f.name, labels, Long.toString(((LongSupplier) m).getAsLong()));
+				} else {
+					LatencyHistogram h = (LatencyHistogram) m;
+					String sep = labels.isEmpty() ? "" : labels + ",";
+					for (double q : QUANTILES) {
+						sample(out, f.name, sep + "quantile=\"" + q + "\"", seconds(h.quantileMicros(q)));
+					}
+					// the maximum as the 1.0 quantile, exact
+					sample(out, f.name, sep + "quantile=\"1.0\"", seconds(h.getMaxMicros()));
+					sample(out, f.name + "_sum", labels, seconds(h.getSumMicros()));
+					sample(out, f.name + "_count", labels, Long.toString(h.getCount()));
+				}
+			}
+		}
+	}
+
+	private static void sample(Writer out, String name, String labels, String value) throws IOException {
+		out.write(name);
+		if (!labels.isEmpty()) {
+			out.write('{');
+			out.write(labels);
+			out.write('}');
+		}
+		out.write(' ');
+		out.write(value);
+		out.write('\n');
+	}
+
+	private static String seconds(long micros) {
+		return Double.toString(LatencyHistogram.toSeconds(micros));
+	}
+
+	private static String escapeLabel(String value) {
+		return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+
+	/**
+	 * Compact snapshot : counters and gauges as values, histograms as
+	 * {count, p50_ms, p99_ms, max_ms}; labeled metrics are keyed "name{value}".
+	 */
+	@SuppressWarnings("unchecked")
+	public JSONObject snapshot() {
+
+		JSONObject json = new JSONObject();
+		for (Family f : families.values()) {
+			for (Map.Entry<String, Object> e : f.children.entrySet()) {
+
+				String key = f.labelName == null ? f.name : f.name + "{" + e.getKey() + "}";
+				Object m = e.getValue();
+
+				if (m instanceof Counter) {
+					json.put(key, ((Counter) m).get());
+				} else if (m instanceof LongSupplier) {
+					json.put(key, ((LongSupplier) m).getAsLong());
+				} else {
+					LatencyHistogram h = (LatencyHistogram) m;
+					JSONObject hj = new JSONObject();
+					hj.put("count", h.getCount());
+					hj.put("p50_ms", h.quantileMicros(0.5) / 1000);
+					hj.put("p99_ms", h.quantileMicros(0.99) / 1000);
+					hj.put("max_ms", h.getMaxMicros() / 1000);
+					json.put(key, hj);
+				}
+			}
+		}
+		return json;
+	}
+
+	/**
+	 * Snapshot at most once per intervalMs across all callers
+	 *
+	 * @return null when the last snapshot is more recent
+	 */
+	public JSONObject snapshotIfDue(long intervalMs) {
+
+		long now = System.currentTimeMillis();
+		long last = lastSnapshotAt.get();
+		if (now - last < intervalMs || !lastSnapshotAt.compareAndSet(last, now)) {
+			return null;
+		}
+		return snapshot();
+	}
+
+	private enum Type {
+		COUNTER("counter"), HISTOGRAM("summary"), GAUGE("gauge");
+
+		private final String prometheusType;
+
+		Type(String prometheusType) {
+			this.prometheusType = prometheusType;
+		}
+	}
+
+	private static final class Family {
+
+		private final String name;
+		private final String help;
+		private final Type type;
+		private final String labelName;
+		private final Map<String, Object> children = new ConcurrentHashMap<>();
+
+		Family(String name, String help, Type type, String labelName) {
+			this.name = name;
+			this.help = help;
+			this.type = type;
+			this.labelName = labelName;
+		}
+
+		Object child(String labelValue) {
+
+			String key = labelValue == null ? "" : labelValue;
+			Object m = children.get(key);
+			if (m == null) {
+				m = children.computeIfAbsent(key, k -> type == Type.COUNTER ? new Counter() : new LatencyHistogram());
+			}
+			return m;
+		}
+	}
+
+}
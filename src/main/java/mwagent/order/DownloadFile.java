@@ -3,20 +3,21 @@ package mwagent.order;
 import static mwagent.common.Config.getConfig;
 
 import java.io.File;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.logging.Level;
 
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
 
 import org.json.simple.JSONObject;
 
+import mwagent.common.ArtifactCache;
 import mwagent.common.Common;
+import mwagent.common.FileDownloader;
 import mwagent.common.SecurityValidator;
+import mwagent.common.ZipExtractor;
 import mwagent.vo.MwResponseVO;
 import mwagent.vo.ResultVO;
 
@@ -32,6 +33,11 @@ import mwagent.vo.ResultVO;
  * - exe_filename: (String) Optional filename to execute after download/extract. On Windows, ".sh" is auto-replaced with ".bat".
  * - exe_params: (String) Optional parameters for the execution.
  * - download_url: (String) Optional external URL to download the file from.
+ * - sha256: (String) Optional expected SHA-256 (hex) of the file. Without it the server's
+ *   X-Checksum-Sha256 / Digest header is used when present.
+ *
+ * The file is received into a hidden part file and renamed when complete and verified;
+ * an interrupted download resumes with a Range request (see FileDownloader).
  * 
  * Sample additional_params JSON:
  * {
@@ -41,7 +47,8 @@ import mwagent.vo.ResultVO;
  *   "chmod": "755",
  *   "exe_filename": "install.sh",
  *   "exe_params": "-v",
- *   "download_url": "https://example.com/file.zip"
+ *   "download_url": "https://example.com/file.zip",
+ *   "sha256": "9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08"
  * }
  */
 public class DownloadFile extends Order {
@@ -156,6 +163,7 @@ public class DownloadFile extends Order {
 		String exeFilename = null;
 		String exeParams = "";
 		String downloadUrl = null;
+		String sha256 = null;
 		if (commandVo.getAdditionalParamsJson() != null) {
 			Object exeFileObj = commandVo.getAdditionalParamsJson().get("exe_filename");
 			if (exeFileObj instanceof String) {
@@ -169,6 +177,10 @@ public class DownloadFile extends Order {
 			if (urlObj instanceof String) {
 				downloadUrl = (String) urlObj;
 			}
+			Object shaObj = commandVo.getAdditionalParamsJson().get("sha256");
+			if (shaObj instanceof String && !((String) shaObj).isEmpty()) {
+				sha256 = (String) shaObj;
+			}
 		}
 
 		File existingFile = new File(file_location + targetFileName);
@@ -197,14 +209,18 @@ public class DownloadFile extends Order {
 			token = getConfig().getAccess_token();
 		}
 
-        MwResponseVO mwrv = Common.httpFileDownload(url, token, file_location);
+        MwResponseVO mwrv = Common.httpFileDownload(url, token, file_location, sha256);
 
 		rv.setTargetFilePath(file_location);
 
 		int rtn_code = mwrv.getStatusCode();
 		getConfig().getLogger().fine("file download response code :"+Integer.toString(rtn_code));
 
-		if(rtn_code < 200 || rtn_code >= 300){
+		if(rtn_code == FileDownloader.CHECKSUM_MISMATCH){
+
+			rv.setResult("file download checksum mismatch");
+
+		}else if(rtn_code < 200 || rtn_code >= 300){
 
 			rv.setResult("file download request error :["+Integer.toString(rtn_code)+"]");
 
@@ -220,6 +236,11 @@ public class DownloadFile extends Order {
 
 	        }else{
 
+	        	// 압축 해제된 파일은 ZipExtractor 가 새로 쓰므로 cache 와 link 될 수 있는 것은 받은 파일뿐
+	        	if(fileName.endsWith(".sh") || chmod != null){
+	        		detachFromCache(Paths.get(file_location + fileName));
+	        	}
+
 	        	if(fileName.endsWith(".sh")){
 	    			File f = new File(file_location + fileName);
 	    			f.setExecutable(true, true);
@@ -251,6 +272,12 @@ public class DownloadFile extends Order {
 				rv.setOk(true);
 				rv.setTargetFileName(fileName);
 				rv.setResult("File download is completed");
+				if (mwrv.getSha256() != null) {
+					rv.setResult(rv.getResult() + " (sha256:" + mwrv.getSha256() + ")");
+				}
+				if (mwrv.isCached()) {
+					rv.setResult(rv.getResult() + " from artifact cache");
+				}
 
 				// After all tasks, if exe_filename is provided, execute it
 				if (exeFilename != null && !exeFilename.isEmpty()) {
@@ -303,35 +330,24 @@ public class DownloadFile extends Order {
     }
 
 	private void unzipFile(File zipFile, File destDir) throws IOException {
-		if (!destDir.exists()) {
-			destDir.mkdirs();
-		}
+		// zip slip 검증 후 여러 thread 로 압축 해제
+		ZipExtractor.fromConfig().extract(zipFile.toPath(), destDir.toPath());
+	}
 
-		try (ZipInputStream zis = new ZipInputStream(new FileInputStream(zipFile))) {
-			ZipEntry entry;
-			while ((entry = zis.getNextEntry()) != null) {
-				// Normalize path for Windows compatibility
-				String entryName = entry.getName().replace('/', File.separatorChar);
-				File outFile = new File(destDir, entryName);
-				if (entry.isDirectory()) {
-					if (!outFile.exists()) {
-						outFile.mkdirs();
-					}
-				} else {
-					File parentDir = outFile.getParentFile();
-					if (!parentDir.exists()) {
-						parentDir.mkdirs();
-					}
-					try (FileOutputStream fos = new FileOutputStream(outFile)) {
-						byte[] buffer = new byte[4096];
-						int len;
-						while ((len = zis.read(buffer)) != -1) {
-							fos.write(buffer, 0, len);
-						}
-					}
-				}
-				zis.closeEntry();
+	/**
+	 * artifact cache 에서 hard link 로 배포된 파일을 권한 변경 전에 복사본으로 교체
+	 * (cache 의 파일과 같은 파일을 link 한 다른 배포본의 권한이 함께 바뀌지 않도록)
+	 */
+	private void detachFromCache(Path file) {
+		if (!getConfig().isArtifactCacheEnabled() || !getConfig().isArtifactCacheHardlink()) {
+			return;
+		}
+		try {
+			if (ArtifactCache.detach(file)) {
+				getConfig().getLogger().fine("Hard link to the artifact cache replaced by a copy : " + file);
 			}
+		} catch (IOException e) {
+			getConfig().getLogger().log(Level.WARNING, "Failed to detach the file from the artifact cache : " + file, e);
 		}
 	}
 
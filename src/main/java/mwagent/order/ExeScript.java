@@ -2,15 +2,14 @@ package mwagent.order;
 
 import static mwagent.common.Config.getConfig;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
 import java.util.logging.Level;
 
 import org.json.simple.JSONObject;
+import mwagent.common.ProcessRunner;
 import mwagent.common.SecurityValidator;
 import mwagent.vo.ResultVO;
 
@@ -118,23 +117,15 @@ public class ExeScript extends Order {
     	try {
 
     		ProcessBuilder pb = new ProcessBuilder(commands);
-    		Process proc = pb.start();
+    		ProcessRunner.Result pr = runProcess(pb, rv);
 
-    		BufferedReader in = new BufferedReader(new InputStreamReader(proc.getInputStream(), "UTF8"));
-
-    		String line = null;
-    		String ls = System.getProperty("line.separator");
-    		StringBuilder sb = new StringBuilder();
-
-    		while((line=in.readLine())!=null){
-    			sb.append(line);
-    			sb.append(ls);
+    		result = pr.getOutput();
+    		if (pr.isTimedOut()) {
+    			result += "Error:Timeout - killed after " + pr.getDurationMs() + "ms";
     		}
 
-    		result = sb.toString();
-        	rv.setOk(true);
-        	getConfig().getLogger().info("ExeScript result : "+result);
-    		in.close();
+        	rv.setOk(!pr.isTimedOut());
+        	getConfig().getLogger().info("ExeScript exit code : " + pr.getExitCode() + ", duration : " + pr.getDurationMs() + "ms, output bytes : " + pr.getTotalBytes());
 
     	}catch(UnsupportedEncodingException e){
 
@@ -151,6 +142,12 @@ public class ExeScript extends Order {
     		getConfig().getLogger().log(Level.WARNING, e.getMessage(), e);
     		result = "Error:IOException";
 
+    	}catch(InterruptedException e){
+
+    		getConfig().getLogger().log(Level.WARNING, e.getMessage(), e);
+    		Thread.currentThread().interrupt();
+    		result = "Error:InterruptedException";
+
     	}
 
     	rv.setResult(result);
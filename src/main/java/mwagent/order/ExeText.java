@@ -2,16 +2,15 @@ package mwagent.order;
 
 import static mwagent.common.Config.getConfig;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
 import java.io.FileWriter;
 import java.util.logging.Level;
 import java.util.UUID;
 import org.json.simple.JSONObject;
+import mwagent.common.ProcessRunner;
 import mwagent.vo.ResultVO;
 
 /**
@@ -101,44 +100,17 @@ public class ExeText extends Order {
             System.arraycopy(executeCommand, 0, commandArray, 0, executeCommand.length);
             commandArray[executeCommand.length] = tempScriptFile.getAbsolutePath();
             
-            // Execute the temporary script
+            // Execute the temporary script (stdout/stderr drained concurrently, with timeout)
             ProcessBuilder pb = new ProcessBuilder(commandArray);
-            Process proc = pb.start();
+            ProcessRunner.Result pr = runProcess(pb, rv);
             
-            // Capture standard output
-            BufferedReader stdInput = new BufferedReader(new InputStreamReader(proc.getInputStream(), "UTF8"));
-            
-            // Capture error output
-            BufferedReader stdError = new BufferedReader(new InputStreamReader(proc.getErrorStream(), "UTF8"));
-            
-            String line;
-            StringBuilder sb = new StringBuilder();
-            String ls = System.getProperty("line.separator");
-            
-            // Read standard output
-            while ((line = stdInput.readLine()) != null) {
-                sb.append(line);
-                sb.append(ls);
+            result = pr.getOutput();
+            if (pr.isTimedOut()) {
+                result += "Error:Timeout - killed after " + pr.getDurationMs() + "ms";
             }
             
-            // Read error output
-            while ((line = stdError.readLine()) != null) {
-                sb.append("ERROR: ");
-                sb.append(line);
-                sb.append(ls);
-            }
-            
-            // Wait for process to complete and get exit code
-            int exitCode = proc.waitFor();
-            result = sb.toString();
-            sb.append("Exit Code: ").append(exitCode).append(ls);
-            
-            rv.setOk(exitCode == 0);
-            getConfig().getLogger().info("ExeText result: " + result);
-            
-            // Clean up
-            stdInput.close();
-            stdError.close();
+            rv.setOk(pr.getExitCode() == 0 && !pr.isTimedOut());
+            getConfig().getLogger().info("ExeText exit code: " + pr.getExitCode() + ", duration: " + pr.getDurationMs() + "ms, output bytes: " + pr.getTotalBytes());
             
         } catch (UnsupportedEncodingException e) {
         	getConfig().getLogger().log(Level.WARNING, e.getMessage(), e);
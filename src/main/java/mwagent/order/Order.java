@@ -7,13 +7,20 @@ import java.nio.charset.Charset;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.function.Consumer;
+import java.util.logging.Level;
 
 import org.json.simple.JSONObject;
 
 import mwagent.common.Common;
+import mwagent.common.JsonContent;
+import mwagent.common.ParamTemplate;
+import mwagent.common.ProcessRunner;
+import mwagent.common.ResultHashCache;
+import mwagent.infrastructure.http.JsonEntity;
 import mwagent.kafka.MwProducer;
+import mwagent.metrics.MetricsRegistry;
+import mwagent.service.ResultBatchService;
 import mwagent.vo.CommandVO;
 import mwagent.vo.MwResponseVO;
 import mwagent.vo.ResultVO;
@@ -23,6 +30,9 @@ public abstract class Order {
 	public static String KAFKA = "KAFKA";
 	public static String SERVER = "SERVER";
 	public static String SERVER_N_KAFKA = "SERVER_N_KAFKA";
+	public static String RESULT_PATH = "/api/v1/command/result";
+	public static String STREAM_OUTPUT = "stream_output";
+	public static String NO_CHANGE = "NO CHANGE";
 
 	CommandVO commandVo = new CommandVO();	
 	ResultVO resultVo = new ResultVO();	
@@ -46,12 +56,119 @@ public abstract class Order {
 
 		if(!resultVo.getResult().equals("")){
 			getConfig().getLogger().fine("resultVo : "+resultVo.toString());
-			sendResult(resultVo);
+			sendResult(resultVo, applyResultCache(resultVo));
 		}
 		
 		for(ResultVO rv : resultVos){
 			getConfig().getLogger().fine("resultVo Array : "+rv.toString());
-			sendResult(rv);
+			sendResult(rv, applyResultCache(rv));
+		}
+	}
+
+	/**
+	 * Whether identical results of this order may be replaced by NO_CHANGE.
+	 * Orders returning deltas (e.g. TailFullPathFile) must return false.
+	 */
+	protected boolean isResultCacheable() {
+		return true;
+	}
+
+	/**
+	 * Replace the result by NO_CHANGE when the same result was already sent
+	 * for (command_id, key_value1, key_value2).
+	 * A result_hash given by the server that differs from it means the server does not hold
+	 * that result, so the full result is sent.
+	 *
+	 * @return callback recording the hash once the full result is delivered, null if nothing to record
+	 */
+	protected Consumer<Boolean> applyResultCache(ResultVO rv) {
+
+		if (!getConfig().isResultCacheEnabled() || !isResultCacheable() || !rv.isOk() || NO_CHANGE.equals(rv.getResult())) {
+			return null;
+		}
+
+		try {
+			String hash = rv.getResultHash();
+			if (hash == null || hash.isEmpty()) {
+				hash = getHash(rv.getResult());
+				rv.setResultHash(hash);
+			}
+
+			String key = ResultHashCache.key(commandVo.getCommandId(), rv.getTargetFileName(), rv.getTargetFilePath());
+			String serverHash = commandVo.getResultHash();
+			boolean serverHasIt = serverHash == null || serverHash.isEmpty() || serverHash.equalsIgnoreCase(hash);
+
+			if (serverHasIt && ResultHashCache.getInstance().isUnchanged(key, hash)) {
+				getConfig().getLogger().fine("Result unchanged : " + key);
+				rv.setResult(NO_CHANGE);
+				rv.setTruncated(false);
+				return null;
+			}
+
+			return new CacheRecorder(key, hash, receiverCount());
+
+		} catch (NoSuchAlgorithmException e) {
+			getConfig().getLogger().log(Level.WARNING, e.getMessage(), e);
+			return null;
+		}
+	}
+
+	/**
+	 * 결과를 모든 수신처가 받은 경우에만 hash 를 기록, 한 곳이라도 실패하면 삭제
+	 */
+	private static class CacheRecorder implements Consumer<Boolean> {
+
+		private final String key;
+		private final String hash;
+		private int remaining;
+		private boolean failed = false;
+
+		CacheRecorder(String key, String hash, int receivers) {
+			this.key = key;
+			this.hash = hash;
+			this.remaining = receivers;
+		}
+
+		@Override
+		public synchronized void accept(Boolean ok) {
+			if (!ok) {
+				failed = true;
+				ResultHashCache.getInstance().invalidate(key);
+			} else if (--remaining == 0 && !failed) {
+				ResultHashCache.getInstance().recordSent(key, hash);
+			}
+		}
+	}
+
+	/**
+	 * 결과를 모든 수신처가 받은 경우에만 action 실행, sendResult 의 delivered 로 전달
+	 */
+	protected Consumer<Boolean> whenDelivered(Runnable action) {
+		return new AllDelivered(action, receiverCount());
+	}
+
+	private int receiverCount() {
+		return commandVo.getResultReceiver().equals(SERVER_N_KAFKA) ? 2 : 1;
+	}
+
+	private static class AllDelivered implements Consumer<Boolean> {
+
+		private final Runnable action;
+		private int remaining;
+		private boolean failed = false;
+
+		AllDelivered(Runnable action, int receivers) {
+			this.action = action;
+			this.remaining = receivers;
+		}
+
+		@Override
+		public synchronized void accept(Boolean ok) {
+			if (!ok) {
+				failed = true;
+			} else if (--remaining == 0 && !failed) {
+				action.run();
+			}
 		}
 	}
 
@@ -92,6 +209,14 @@ public abstract class Order {
 		Object targetObj = command.get("target_object");
 		commandVo.setTargetObject(targetObj != null ? targetObj.toString() : "");
 
+		Object timeoutObj = command.get("timeout_sec");
+		if (timeoutObj instanceof Number) {
+			commandVo.setTimeoutSec(((Number) timeoutObj).longValue());
+		}
+
+		Object streamObj = command.get(STREAM_OUTPUT);
+		commandVo.setStreamOutput(Boolean.TRUE.equals(streamObj) || "true".equalsIgnoreCase(String.valueOf(streamObj)));
+
 		commandVo.setHostName(getConfig().getHostName());
 
 	}
@@ -101,111 +226,228 @@ public abstract class Order {
 			return text;
 		}
 
-		// Support both <<keyword>> and {{keyword}}
-		Pattern pattern = Pattern.compile("<<(.*?)>>|\\{\\{(.*?)\\}\\}");
-		Matcher matcher = pattern.matcher(text);
-		StringBuffer sb = new StringBuffer();
-		boolean found = false;
+		// Support both <<keyword>> and {{keyword}}, nested placeholders in values are expanded too
+		return ParamTemplate.render(text, getConfig().getEnv());
+	}
 
-		while (matcher.find()) {
-			found = true;
-			String key = (matcher.group(1) != null) ? matcher.group(1) : matcher.group(2);
-			String val = getConfig().getEnv().get(key);
-			
-			if (val == null) {
-				val = ""; 
-			}
-			
-			getConfig().getLogger().fine("Param in order :" + key + " => " + val);
-			matcher.appendReplacement(sb, Matcher.quoteReplacement(val));
+	/**
+	 * 외부 프로세스 실행 (stdout/stderr 동시 수집, 타임아웃 시 프로세스 트리 종료)
+	 * 결과의 exit code, 실행 시간, 잘림 여부를 rv 에 기록
+	 * stream_output 명령은 실행 중 출력을 순번이 붙은 부분 결과로 전송
+	 */
+	protected ProcessRunner.Result runProcess(ProcessBuilder pb, ResultVO rv) throws IOException, InterruptedException {
+
+		long timeoutSec = commandVo.getTimeoutSec() > 0 ? commandVo.getTimeoutSec() : getConfig().getExecTimeoutSec();
+		ProcessRunner runner = new ProcessRunner(timeoutSec * 1000, getConfig().getExecMaxOutputBytes());
+
+		ProcessRunner.Result pr;
+		if (commandVo.isStreamOutput()) {
+			ResultStreamer streamer = new ResultStreamer(getConfig().getExecStreamChunkBytes(), getConfig().getExecStreamIntervalMs(),
+					getConfig().getExecStreamMaxQueuedChunks(), (seq, stream, text) -> sendChunk(rv, seq, stream, text));
+			pr = runner.run(pb, streamer);
+			rv.setChunkCount(streamer.finish());
+		} else {
+			pr = runner.run(pb);
 		}
-		matcher.appendTail(sb);
 
-		if (found) {
-			// Recursive call to handle nested placeholders or values containing placeholders
-			return replaceParam(sb.toString());
+		rv.setExitCode(pr.getExitCode());
+		rv.setDurationMs(pr.getDurationMs());
+		rv.setTimedOut(pr.isTimedOut());
+		if (pr.isTruncated()) {
+			rv.setTruncated(true);
+			rv.setOriginalSize(pr.getTotalBytes());
 		}
-
-		return sb.toString();
+		return pr;
 	}
 
 	protected String getHash(String content) throws NoSuchAlgorithmException {
 
 		MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
 		messageDigest.update(content.getBytes(Charset.forName("UTF-8")));
-		byte[] byteHash = messageDigest.digest();
+		return toHex(messageDigest.digest());
+
+	}
+
+	private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+	protected static String toHex(byte[] bytes) {
 
-		StringBuilder sb = new StringBuilder();
-		for (byte b : byteHash) {
-			sb.append(String.format("%02X", b));
+		char[] chars = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; i++) {
+			chars[i * 2] = HEX[(bytes[i] >> 4) & 0x0F];
+			chars[i * 2 + 1] = HEX[bytes[i] & 0x0F];
 		}
 
-		return sb.toString();
+		return new String(chars);
 
 	}
 
 	protected int sendResult(ResultVO rv) throws IOException {
+		return sendResult(rv, null);
+	}
+
+	/**
+	 * @param delivered 수신처별 전송 결과 통보 (서버 확인 : true, 실패 : false), null 가능
+	 */
+	protected int sendResult(ResultVO rv, Consumer<Boolean> delivered) throws IOException {
 
 		int rtn = 0;
 		getConfig().getLogger().fine("sendResult commandVo : " + commandVo.toString());
 		if (commandVo.getResultReceiver().equals(SERVER) || commandVo.getResultReceiver().equals(SERVER_N_KAFKA)) {
-			rtn = send2Server(rv);
+			rtn = send2Server(rv, delivered);
 		}
 
 		if (commandVo.getResultReceiver().equals(KAFKA) || commandVo.getResultReceiver().equals(SERVER_N_KAFKA)) {
-			rtn = send2Kafka(commandVo.getTargetObject(), rv);
+			rtn = send2Kafka(commandVo.getTargetObject(), rv, delivered);
 		}
 
 		return rtn;
 
 	}
 
-	private int send2Kafka(String topic, ResultVO rv) throws IOException {
+	/**
+	 * 부분 결과 전송. 순서 보장을 위해 batch 전송을 거치지 않음
+	 *
+	 * @return 서버가 부분 결과를 받지 않는 경우 false
+	 */
+	boolean sendChunk(ResultVO rv, long seq, String stream, String text) {
+
+		JsonContent chunk = jsonChunk(rv, seq, stream, text);
+		String receiver = commandVo.getResultReceiver();
+
+		if (receiver.equals(KAFKA) || receiver.equals(SERVER_N_KAFKA)) {
+			// 같은 key 의 record 는 같은 partition 에 순서대로 기록됨
+			MwProducer.sendMessage(commandVo.getTargetObject(), getConfig().getAgent_id(), chunk, null);
+			if (receiver.equals(KAFKA)) {
+				return true;
+			}
+		}
 
-		String js = getJsonResult(true, rv);
+		MwResponseVO mwrv = Common.httpPOST(getConfig().getExecStreamUri(), getConfig().getAccess_token(), new JsonEntity(chunk));
+		if (mwrv.getStatusCode() == 404 || mwrv.getStatusCode() == 405) {
+			return false;
+		}
+		if (mwrv.getResponse() == null) {
+			getConfig().getLogger().warning("sendPOST chunk Error : " + seq);
+		}
+		return true;
+	}
 
-		MwProducer.sendMessage(topic, getConfig().getAgent_id(), js);
+	/**
+	 * metrics.attach_to_results 설정 시 metrics.attach_interval_sec 마다 한 결과에 agent metric 첨부
+	 */
+	private static String agentMetrics() {
 
-		return 1;
+		if (!getConfig().isMetricsAttachToResults()) {
+			return null;
+		}
+		JSONObject snapshot = MetricsRegistry.getInstance().snapshotIfDue(getConfig().getMetricsAttachIntervalSec() * 1000);
+		return snapshot != null ? snapshot.toJSONString() : null;
+	}
 
+	JsonContent jsonChunk(ResultVO rv, long seq, String stream, String text) {
+
+		String agentId = getConfig().getAgent_id();
+		String commandId = commandVo.getCommandId();
+		String repetitionSeq = Long.toString(commandVo.getRepetitionSeq());
+
+		return w -> w.beginObject()
+				.field("agent_id", agentId)
+				.field("command_id", commandId)
+				.field("repetition_seq", repetitionSeq)
+				.field("key_value1", rv.getTargetFileName())
+				.field("host_id", rv.getHostName())
+				.field("key_value2", rv.getTargetFilePath())
+				.field("chunk_seq", seq)
+				.field("stream", stream)
+				.field("is_final", false)
+				.field("result_text", text)
+				.endObject();
 	}
 
-	private int send2Server(ResultVO rv) {
+	private int send2Kafka(String topic, ResultVO rv, Consumer<Boolean> delivered) throws IOException {
+
+		// Kafka 로만 보내는 결과는 전송 실패 시 서버로 전송 (전송 결과는 서버 전송이 통보)
+		boolean kafkaOnly = commandVo.getResultReceiver().equals(KAFKA);
+		Runnable fallback = kafkaOnly ? () -> send2Server(rv, delivered) : null;
+
+		// 결과 JSON 은 record 의 byte 배열에 직접 기록
+		return MwProducer.sendMessage(topic, getConfig().getAgent_id(), jsonResult(rv), fallback, delivered);
+
+	}
 
-		String path = "/api/v1/command/result";
-		String data = getJsonResult(false, rv);
+	private int send2Server(ResultVO rv, Consumer<Boolean> delivered) {
+
+		// 결과 batch 전송이 활성화된 경우 batch 대기열로 전달
+		ResultBatchService batchService = ResultBatchService.getInstance();
+		if (batchService.isRunning()) {
+			batchService.submit(jsonResult(rv), delivered);
+			return 1;
+		}
 		
-		MwResponseVO mwrv = Common.httpPOST(path, getConfig().getAccess_token(), data);
+		// 결과 JSON 을 문자열로 만들지 않고 HTTP 요청 본문에 직접 기록
+		MwResponseVO mwrv = Common.httpPOST(RESULT_PATH, getConfig().getAccess_token(), new JsonEntity(jsonResult(rv)));
 
 		if (mwrv.getResponse() != null) {
-			getConfig().getLogger().fine("sendPOST result:" + mwrv.getResponse().get("message").toString());
+			getConfig().getLogger().fine("sendPOST result:" + mwrv.getResponse().get("message"));
 		} else {			
 			getConfig().getLogger().warning("sendPOST Error");			
 		}
 
+		if (delivered != null) {
+			delivered.accept(mwrv.getStatusCode() >= 200 && mwrv.getStatusCode() < 300);
+		}
 		return 1;
 
 	}
 
-	@SuppressWarnings("unchecked")
-	private String getJsonResult(boolean is4Kafka, ResultVO rv) {
+	String getJsonResult(boolean is4Kafka, ResultVO rv) {
 
-		JSONObject jsonObj = new JSONObject();
-		
-		getConfig().getLogger().info("Agent_id : " + getConfig().getAgent_id());
-		
-		jsonObj.put("agent_id", getConfig().getAgent_id());
-		jsonObj.put("command_id", commandVo.getCommandId());
-		jsonObj.put("repetition_seq", Long.toString(commandVo.getRepetitionSeq()));
-		jsonObj.put("key_value1", rv.getTargetFileName());
-		jsonObj.put("host_id", rv.getHostName());
-		jsonObj.put("is_normal", rv.isOk());
-		jsonObj.put("key_value2", rv.getTargetFilePath());
-		jsonObj.put("result_text", rv.getResult());
-		jsonObj.put("result_hash", rv.getResultHash());
-		jsonObj.put("aggregation_key", rv.getObjectAggregationKey());
-		
-		return jsonObj.toString();
+		return jsonResult(rv).toJsonString();
+	}
+
+	/**
+	 * 결과 JSON. result_text 는 기록하는 시점에 escape 되어 스트림으로 바로 쓰여짐
+	 */
+	JsonContent jsonResult(ResultVO rv) {
+
+		String agentId = getConfig().getAgent_id();
+		getConfig().getLogger().info("Agent_id : " + agentId);
+
+		String commandId = commandVo.getCommandId();
+		String repetitionSeq = Long.toString(commandVo.getRepetitionSeq());
+		String metrics = agentMetrics();
+
+		return w -> {
+			w.beginObject()
+				.field("agent_id", agentId)
+				.field("command_id", commandId)
+				.field("repetition_seq", repetitionSeq)
+				.field("key_value1", rv.getTargetFileName())
+				.field("host_id", rv.getHostName())
+				.field("is_normal", rv.isOk())
+				.field("key_value2", rv.getTargetFilePath())
+				.field("result_hash", rv.getResultHash())
+				.field("aggregation_key", rv.getObjectAggregationKey());
+			if (rv.isTruncated()) {
+				w.field("truncated", true)
+				 .field("original_size", rv.getOriginalSize());
+			}
+			if (rv.getExitCode() != null) {
+				w.field("exit_code", rv.getExitCode())
+				 .field("duration_ms", rv.getDurationMs())
+				 .field("timed_out", rv.isTimedOut());
+			}
+			if (rv.getChunkCount() >= 0) {
+				w.field("chunk_count", rv.getChunkCount())
+				 .field("is_final", true);
+			}
+			if (metrics != null) {
+				w.rawField("agent_metrics", metrics);
+			}
+			w.field("result_text", rv.getResult())
+			 .endObject();
+		};
 		/*
 		StringBuilder js = new StringBuilder();
 		System.out.println("Agent_id : " + getConfig().getAgent_id());
@@ -44,4 +44,37 @@ public final class OrderCaller {
     	return 1;
     }
 
+	/**
+	 * Report an order that was not executed (e.g. rejected by the executor) as a failed result,
+	 * so that the server does not wait for it.
+	 */
+	public static int rejectOrder(String orderedClass, JSONObject command, String reason){
+
+    	try {
+
+    		Class<?> order = Class.forName(orderedClass);
+    		Constructor<?> orderConstructor = order.getConstructor(JSONObject.class);
+    		Order orderObj = (Order)orderConstructor.newInstance(command);
+
+    		orderObj.resultVo.setOk(false);
+    		orderObj.resultVo.setHostName(orderObj.commandVo.getHostName());
+    		orderObj.resultVo.setTargetFileName(orderObj.commandVo.getTargetFileName());
+    		orderObj.resultVo.setTargetFilePath(orderObj.commandVo.getTargetFilePath());
+    		orderObj.resultVo.setResult(reason);
+
+    		orderObj.sendResults();
+
+    		getConfig().getLogger().warning("Order rejected. orderedClass : "+orderedClass+", reason : "+reason);
+
+    	}catch (ClassNotFoundException e) {
+    		getConfig().getLogger().log(Level.WARNING, e.getMessage(), e);
+    		return -2;
+    	}catch (Exception e) {
+    		getConfig().getLogger().log(Level.WARNING, e.getMessage(), e);
+    		return -3;
+    	}
+
+    	return 1;
+    }
+
 }
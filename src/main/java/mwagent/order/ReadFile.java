@@ -2,13 +2,16 @@ package mwagent.order;
 
 import static mwagent.common.Config.getConfig;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.logging.Level;
 
@@ -18,6 +21,12 @@ import mwagent.vo.ResultVO;
 
 public abstract class ReadFile extends Order {
 
+	private static final int BUFFER_SIZE = 64 * 1024;
+	// Files at least this large are hashed through memory-mapped chunks
+	private static final long MMAP_THRESHOLD = 16L * 1024 * 1024;
+	private static final long MMAP_CHUNK = 64L * 1024 * 1024;
+	private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
 	public ReadFile(JSONObject command) {
 		super(command);
 	}
@@ -35,6 +44,14 @@ public abstract class ReadFile extends Order {
 		return 1;
 	}
 
+    /**
+     * 파일 내용을 읽어 결과를 생성합니다.
+     *
+     * - 파일을 FileChannel 로 streaming 하면서 SHA-256 을 계산 (큰 파일은 memory-mapped)
+     * - result_hash 가 일치하면 내용을 메모리에 올리지 않고 "NO CHANGE" 반환
+     * - 결과는 read_file.max_result_bytes 까지만 포함, 초과 시 truncated / original_size 표시
+     * - hash 는 잘리지 않은 파일 전체 byte 기준
+     */
     private ResultVO getContent(String file_full_name) {
     	
     	String result = "";
@@ -47,40 +64,50 @@ public abstract class ReadFile extends Order {
 		rv.setTargetFilePath(commandVo.getTargetFilePath());
 		rv.setTargetFileName(getFileName());
     	
-    	File f = new File(file_full_name);
     	try {
     		
-    		BufferedReader in = new BufferedReader(
-    			new InputStreamReader(
-    					new FileInputStream(f), "UTF8"));
-    		StringBuilder sb = new StringBuilder();
-    		String line = null;
-    		String ls = System.getProperty("line.separator");
-    		
-    		while((line=in.readLine())!=null){
-    			sb.append(line);
-    			sb.append(ls);
+    		if (file_full_name == null) {
+    			throw new FileNotFoundException("File name is not available");
     		}
     		
-    		result = sb.toString();
-    		
-    		result_hash = getHash(result);
-			
-    		//Hash값이 존재하는 경우 이전 결과와 동일한지 Check 
-    		if(!commandVo.getResultHash().isEmpty()){
-    			if(commandVo.getResultHash().equals(result_hash)){
-    				result = "NO CHANGE";
+    		try (FileChannel channel = FileChannel.open(Paths.get(file_full_name), StandardOpenOption.READ)) {
+    			
+    			long size = channel.size();
+    			long maxBytes = getConfig().getReadFileMaxResultBytes();
+    			int headLimit = (int) Math.min(maxBytes > 0 ? Math.min(size, maxBytes) : size, MAX_ARRAY_SIZE);
+    			
+    			// 이전 hash 가 없으면 변경 여부와 관계없이 내용이 필요하므로 hash 계산 중에 함께 복사
+    			boolean hasPrevHash = !commandVo.getResultHash().isEmpty();
+    			byte[] head = hasPrevHash ? null : new byte[headLimit];
+    			
+    			MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+    			int copied = hashChannel(channel, size, messageDigest, head);
+    			result_hash = toHex(messageDigest.digest());
+    			
+    			//Hash값이 존재하는 경우 이전 결과와 동일한지 Check 
+    			if (hasPrevHash && commandVo.getResultHash().equals(result_hash)) {
+    				result = NO_CHANGE;
+    			} else {
+    				// 그 사이 파일이 줄었으면 (rotate, truncate) 실제로 읽은 만큼만
+    				int len = copied;
+    				if (head == null) {
+    					head = new byte[headLimit];
+    					len = readFully(channel, head, 0);
+    				}
+    				if (size > headLimit) {
+    					len = utf8Boundary(head, len);
+    					rv.setTruncated(true);
+    					rv.setOriginalSize(size);
+    					getConfig().getLogger().info("Result truncated : " + file_full_name + " (" + size + " bytes)");
+    				}
+    				result = new String(head, 0, len, StandardCharsets.UTF_8);
     			}
     		}
     		
     		getConfig().getLogger().fine(result);
-    		in.close();
     		rv.setOk(true);
     		
-    	}catch(UnsupportedEncodingException e){
-    		getConfig().getLogger().log(Level.WARNING, e.getMessage(), e);    		
-    		result = "Error:UnsupportedEncodingException";
-    	}catch(FileNotFoundException e){
+    	}catch(FileNotFoundException | NoSuchFileException e){
     		getConfig().getLogger().log(Level.WARNING, e.getMessage(), e);    		
     		result = "Error:FileNotFoundException";
     	}catch(IOException e){
@@ -98,6 +125,87 @@ public abstract class ReadFile extends Order {
     	
     }
     
+    /**
+     * 파일의 처음 size byte (파일 끝까지) 를 messageDigest 에 반영
+     * 
+     * @param head null 이 아니면 앞부분을 head.length 만큼 복사
+     * @return head 에 복사한 byte 수
+     */
+    protected int hashChannel(FileChannel channel, long size, MessageDigest messageDigest, byte[] head) throws IOException {
+    	
+    	int copied = 0;
+    	if (size >= MMAP_THRESHOLD) {
+    		for (long pos = 0; pos < size; pos += MMAP_CHUNK) {
+    			MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(MMAP_CHUNK, size - pos));
+    			if (head != null && pos < head.length) {
+    				int n = (int) Math.min(mapped.remaining(), head.length - pos);
+    				mapped.duplicate().get(head, (int) pos, n);
+    				copied = (int) pos + n;
+    			}
+    			messageDigest.update(mapped);
+    		}
+    	} else {
+    		ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+    		long pos = 0;
+    		while (pos < size) {
+    			buffer.clear();
+    			buffer.limit((int) Math.min(BUFFER_SIZE, size - pos));
+    			int n = channel.read(buffer, pos);
+    			if (n < 0) {
+    				break;
+    			}
+    			if (head != null && pos < head.length) {
+    				int c = (int) Math.min(n, head.length - pos);
+    				System.arraycopy(buffer.array(), 0, head, (int) pos, c);
+    				copied = (int) pos + c;
+    			}
+    			messageDigest.update(buffer.array(), 0, n);
+    			pos += n;
+    		}
+    	}
+    	
+    	return copied;
+    }
+    
+    /**
+     * position 부터 dest 를 채울 때까지 읽음 (파일 끝이면 중단)
+     * 
+     * @return 읽은 byte 수
+     */
+    protected static int readFully(FileChannel channel, byte[] dest, long position) throws IOException {
+    	int off = 0;
+    	while (off < dest.length) {
+    		int n = channel.read(ByteBuffer.wrap(dest, off, dest.length - off), position + off);
+    		if (n < 0) {
+    			break;
+    		}
+    		off += n;
+    	}
+    	return off;
+    }
+    
+    /**
+     * 잘린 위치가 UTF-8 문자 중간이면 문자 시작 위치로 당김
+     */
+    static int utf8Boundary(byte[] bytes, int len) {
+    	if (len <= 0 || len > bytes.length) {
+    		return len;
+    	}
+    	int i = len;
+    	// continuation byte (10xxxxxx) 는 최대 3개
+    	while (i > 0 && len - i < 4 && (bytes[i - 1] & 0xC0) == 0x80) {
+    		i--;
+    	}
+    	if (i > 0) {
+    		int lead = bytes[i - 1] & 0xFF;
+    		int need = lead >= 0xF0 ? 4 : lead >= 0xE0 ? 3 : lead >= 0xC0 ? 2 : 1;
+    		if (len - (i - 1) < need) {
+    			return i - 1;
+    		}
+    	}
+    	return len;
+    }
+    
 	protected abstract String getFileFullName();
 	
 	protected abstract String getFileName();	
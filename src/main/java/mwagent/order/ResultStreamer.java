@@ -0,0 +1,239 @@
+package mwagent.order;
+
+import static mwagent.common.Config.getConfig;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import mwagent.common.ProcessRunner;
+
+/**
+ * Ships the output of a running process as ordered partial results.
+ *
+ * - stdout and stderr are buffered separately, at most chunkBytes each.
+ * - A chunk is shipped when a buffer is full, or on a tick when intervalMs passed since the
+ *   last chunk, so slow output still shows up regularly.
+ * - Chunks are numbered 1..N across both streams in the order they are shipped.
+ * - Chunks are handed to a bounded queue and sent by a thread of their own, so neither the
+ *   drain threads nor the wait loop ever block on the network. When a slow receiver lets the
+ *   queue fill up, streaming stops rather than dropping chunks in the middle.
+ * - Chunks end on a UTF-8 character boundary, the rest of a split character is kept for the
+ *   next chunk.
+ * - When the sender reports that chunks are not accepted, streaming stops; the final result
+ *   is sent regardless.
+ * - finish() waits for the queued chunks a few intervals at most : a chunk request that hangs
+ *   is abandoned so that the final result is still sent.
+ */
+final class ResultStreamer implements ProcessRunner.OutputListener {
+
+	static final String STDOUT = "stdout";
+	static final String STDERR = "stderr";
+
+	private static final Chunk END = new Chunk(0, null, null);
+
+	// how long finish() waits for the sender, in intervals, and at least
+	static final int FINISH_WAIT_INTERVALS = 5;
+	static final long MIN_FINISH_WAIT_MS = 2000;
+
+	/**
+	 * Delivers one chunk.
+	 */
+	interface ChunkSender {
+
+		/**
+		 * @return false when the receiver does not accept chunks, no more chunks are sent then
+		 */
+		boolean send(long seq, String stream, String text);
+	}
+
+	private final int chunkBytes;
+	private final long intervalMs;
+	private final ChunkSender sender;
+	private final BlockingQueue<Chunk> queue;
+
+	private final Pending stdout = new Pending(STDOUT);
+	private final Pending stderr = new Pending(STDERR);
+
+	private long seq = 0;
+	private long lastSentAt = System.currentTimeMillis();
+	private volatile boolean stopped = false;
+	// last chunk handed to the sender
+	private volatile long sent = 0;
+	private Thread senderThread;
+
+	/**
+	 * @param maxQueuedChunks chunks waiting to be sent before streaming stops
+	 */
+	ResultStreamer(int chunkBytes, long intervalMs, int maxQueuedChunks, ChunkSender sender) {
+		this.chunkBytes = Math.max(4, chunkBytes);
+		this.intervalMs = intervalMs;
+		this.sender = sender;
+		this.queue = new ArrayBlockingQueue<>(Math.max(1, maxQueuedChunks));
+	}
+
+	@Override
+	public synchronized void onOutput(boolean isStderr, byte[] b, int off, int len) {
+
+		if (stopped) {
+			return;
+		}
+
+		Pending p = isStderr ? stderr : stdout;
+		while (len > 0 && !stopped) {
+			int n = p.append(b, off, len);
+			off += n;
+			len -= n;
+			if (p.size == chunkBytes) {
+				ship(p, false);
+			}
+		}
+	}
+
+	@Override
+	public synchronized void onTick() {
+
+		if (stopped || System.currentTimeMillis() - lastSentAt < intervalMs) {
+			return;
+		}
+		ship(stdout, false);
+		ship(stderr, false);
+	}
+
+	/**
+	 * Ship what is left after the process ended and wait until the queued chunks are sent,
+	 * giving up on them when the sender does not finish in time.
+	 *
+	 * @return number of chunks handed to the sender
+	 */
+	long finish() throws InterruptedException {
+
+		Thread thread;
+		synchronized (this) {
+			ship(stdout, true);
+			ship(stderr, true);
+			thread = senderThread;
+		}
+		if (thread != null) {
+			long deadline = System.currentTimeMillis() + Math.max(MIN_FINISH_WAIT_MS, FINISH_WAIT_INTERVALS * intervalMs);
+			long remaining;
+			while (thread.isAlive() && (remaining = deadline - System.currentTimeMillis()) > 0
+					&& !queue.offer(END, Math.min(100, remaining), TimeUnit.MILLISECONDS)) {
+				// the sender is still busy with a full queue
+			}
+			thread.join(Math.max(1, deadline - System.currentTimeMillis()));
+			if (thread.isAlive()) {
+				getConfig().getLogger().warning("Result chunk receiver not responding, " + queue.size()
+						+ " queued chunks dropped after chunk " + sent);
+				stopped = true;
+				queue.clear();
+				thread.interrupt();
+			}
+		}
+		return sent;
+	}
+
+	boolean isStopped() {
+		return stopped;
+	}
+
+	private void ship(Pending p, boolean last) {
+
+		if (stopped || p.size == 0) {
+			return;
+		}
+
+		// a split character is completed by the next block, unless there is none
+		int n = last ? p.size : ReadFile.utf8Boundary(p.buf, p.size);
+		if (n == 0) {
+			return;
+		}
+
+		String text = new String(p.buf, 0, n, StandardCharsets.UTF_8);
+		p.consume(n);
+		lastSentAt = System.currentTimeMillis();
+
+		if (senderThread == null) {
+			senderThread = new Thread(this::sendLoop, "ResultStreamSender");
+			senderThread.setDaemon(true);
+			senderThread.start();
+		}
+		if (queue.offer(new Chunk(seq + 1, p.stream, text))) {
+			seq++;
+		} else {
+			getConfig().getLogger().warning("Result chunk receiver too slow (" + queue.size()
+					+ " chunks queued), streaming stopped after chunk " + seq);
+			stopped = true;
+		}
+	}
+
+	private void sendLoop() {
+
+		try {
+			Chunk c;
+			while ((c = queue.take()) != END) {
+				sent = c.seq;
+				boolean accepted;
+				try {
+					accepted = sender.send(c.seq, c.stream, c.text);
+					if (!accepted) {
+						getConfig().getLogger().warning("Result chunks are not accepted, streaming stopped after chunk " + c.seq);
+					}
+				} catch (RuntimeException e) {
+					getConfig().getLogger().log(Level.WARNING, "Result chunk " + c.seq + " failed, streaming stopped", e);
+					accepted = false;
+				}
+				if (!accepted) {
+					stopped = true;
+					queue.clear();
+					return;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static final class Chunk {
+
+		final long seq;
+		final String stream;
+		final String text;
+
+		Chunk(long seq, String stream, String text) {
+			this.seq = seq;
+			this.stream = stream;
+			this.text = text;
+		}
+	}
+
+	private final class Pending {
+
+		final String stream;
+		// allocated on the first output of the stream
+		byte[] buf;
+		int size = 0;
+
+		Pending(String stream) {
+			this.stream = stream;
+		}
+
+		int append(byte[] b, int off, int len) {
+			if (buf == null) {
+				buf = new byte[chunkBytes];
+			}
+			int n = Math.min(len, chunkBytes - size);
+			System.arraycopy(b, off, buf, size, n);
+			size += n;
+			return n;
+		}
+
+		void consume(int n) {
+			System.arraycopy(buf, n, buf, 0, size - n);
+			size -= n;
+		}
+	}
+
+}
@@ -0,0 +1,201 @@
+package mwagent.order;
+
+import static mwagent.common.Config.getConfig;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.logging.Level;
+
+import org.json.simple.JSONObject;
+
+import mwagent.common.FileOffsetStore;
+import mwagent.vo.ResultVO;
+
+/**
+ * Returns only the bytes appended to a file since the previous read (like tail -f).
+ * The path rules are the same as ReadFullPathFile.
+ * 
+ * - The read offset and file identity (inode) are remembered per command_id and path,
+ *   and persisted in read_file.tail_offset_file across agent restarts.
+ * - The new offset is saved only when every receiver confirmed the result, so a failed send
+ *   (or a restart before delivery) returns the same bytes again instead of losing them.
+ * - The first read returns only the last read_file.max_result_bytes of the file.
+ * - A rotated (different inode) or truncated (smaller than the offset) file is read from the start.
+ * - When more data is pending than read_file.max_result_bytes, the result is cut at the last
+ *   line break, marked truncated, and the rest is returned by the next read.
+ * - "NO CHANGE" when nothing was appended.
+ * 
+ * Supported additional_params (String):
+ * - The full absolute path to the file.
+ * 
+ * Example additional_params:
+ * "/var/log/app/server.log"
+ */
+public class TailFullPathFile extends ReadFullPathFile {
+
+	// Chunk size when read_file.max_result_bytes is unlimited
+	private static final int DEFAULT_CHUNK = 64 * 1024 * 1024;
+
+	// offset to save once the result is delivered
+	private String offsetKey;
+	private FileOffsetStore.Entry nextOffset;
+
+	public TailFullPathFile(JSONObject command) {
+		super(command);
+	}
+
+	@Override
+	public int execute() {
+
+		try {
+
+			resultVo = getAppended(getFileFullName());
+
+		}catch (Exception e) {
+			getConfig().getLogger().log(Level.WARNING, e.getMessage(), e);
+		}
+		return 1;
+	}
+
+	private ResultVO getAppended(String file_full_name) {
+
+		String result = "";
+		String result_hash = "";
+
+		ResultVO rv = new ResultVO();
+
+		rv.setOk(false);
+		rv.setHostName(commandVo.getHostName());
+		rv.setTargetFilePath(commandVo.getTargetFilePath());
+		rv.setTargetFileName(getFileName());
+
+		try {
+
+			if (file_full_name == null) {
+				throw new FileNotFoundException("File name is not available");
+			}
+
+			Path path = Paths.get(file_full_name);
+			String key = commandVo.getCommandId() + "|" + file_full_name;
+			FileOffsetStore store = getOffsetStore();
+
+			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+
+				String fileKey = getFileKey(path);
+				long size = channel.size();
+				long maxBytes = getConfig().getReadFileMaxResultBytes();
+				int limit = (int) (maxBytes > 0 ? Math.min(maxBytes, DEFAULT_CHUNK) : DEFAULT_CHUNK);
+
+				FileOffsetStore.Entry prev = store.get(key);
+				long offset;
+				if (prev == null) {
+					offset = Math.max(0, size - limit);
+				} else if (!prev.getFileKey().equals(fileKey)) {
+					getConfig().getLogger().info("File rotated, reading from start : " + file_full_name);
+					offset = 0;
+				} else if (size < prev.getOffset()) {
+					getConfig().getLogger().info("File truncated, reading from start : " + file_full_name);
+					offset = 0;
+				} else {
+					offset = prev.getOffset();
+				}
+
+				long available = size - offset;
+
+				if (available == 0) {
+					result = NO_CHANGE;
+				} else {
+					byte[] buf = new byte[(int) Math.min(available, limit)];
+					int n = readFully(channel, buf, offset);
+
+					if (n < available) {
+						int lastLineEnd = lastIndexOf(buf, n, (byte) '\n');
+						n = lastLineEnd >= 0 ? lastLineEnd + 1 : utf8Boundary(buf, n);
+						rv.setTruncated(true);
+						rv.setOriginalSize(available);
+					}
+
+					result = new String(buf, 0, n, StandardCharsets.UTF_8);
+					MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+					messageDigest.update(buf, 0, n);
+					result_hash = toHex(messageDigest.digest());
+					offset += n;
+				}
+
+				offsetKey = key;
+				nextOffset = new FileOffsetStore.Entry(offset, fileKey);
+			}
+
+			getConfig().getLogger().fine(result);
+			rv.setOk(true);
+
+		}catch(FileNotFoundException | NoSuchFileException e){
+			getConfig().getLogger().log(Level.WARNING, e.getMessage(), e);
+			result = "Error:FileNotFoundException";
+		}catch(IOException e){
+			getConfig().getLogger().log(Level.WARNING, e.getMessage(), e);
+			result = "Error:IOException";
+		}catch(NoSuchAlgorithmException e){
+			getConfig().getLogger().log(Level.WARNING, e.getMessage(), e);
+			result = "Error:NoSuchAlgorithmException";
+		}
+
+		rv.setResult(result);
+		rv.setResultHash(result_hash);
+
+		return rv;
+
+	}
+
+	@Override
+	public void sendResults() throws IOException {
+
+		if (nextOffset == null) {
+			super.sendResults();
+			return;
+		}
+		String key = offsetKey;
+		FileOffsetStore.Entry entry = nextOffset;
+		FileOffsetStore store = getOffsetStore();
+		sendResult(resultVo, whenDelivered(() -> store.put(key, entry)));
+	}
+
+	@Override
+	protected boolean isResultCacheable() {
+		// results are deltas, the same chunk may legitimately repeat
+		return false;
+	}
+
+	protected FileOffsetStore getOffsetStore() {
+		return FileOffsetStore.getInstance();
+	}
+
+	/**
+	 * File identity used to detect rotation: inode on Unix, creation time where no file key exists.
+	 */
+	private static String getFileKey(Path path) throws IOException {
+		BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+		Object fileKey = attrs.fileKey();
+		return fileKey != null ? fileKey.toString() : "ctime:" + attrs.creationTime().toMillis();
+	}
+
+	private static int lastIndexOf(byte[] bytes, int len, byte b) {
+		for (int i = len - 1; i >= 0; i--) {
+			if (bytes[i] == b) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+}
@@ -2,39 +2,131 @@ package mwagent.service;
 
 import static mwagent.common.Config.getConfig;
 
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiFunction;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.json.simple.JSONObject;
 
-import mwagent.OrderCallerThread;
 import mwagent.lifecycle.AgentLifecycle;
 import mwagent.lifecycle.LifecycleState;
+import mwagent.metrics.AgentMetrics;
+import mwagent.metrics.MetricsRegistry;
+import mwagent.order.OrderCaller;
 
 /**
  * 명령 실행을 관리하는 서비스
  *
- * - ExecutorService를 사용하여 명령을 비동기로 실행
+ * - 고정 크기 worker pool 에서 명령을 비동기로 실행
+ * - 크기가 제한된 대기열, 가득 차면 명령을 거부하고 서버에 실패 결과로 보고
+ * - command_class 별 우선순위 lane (HIGH / NORMAL / LOW), 오래 기다린 명령은 우선 실행 (aging)
+ * - command_class 별 동시 실행 수 제한
+ * - 대기열 깊이, 대기 시간 metric
  * - Graceful shutdown 지원
  */
 public class CommandExecutorService implements AgentLifecycle {
 
+    public enum Priority { HIGH, NORMAL, LOW }
+
+    public static final String REJECT_MESSAGE = "Error:Rejected - agent command queue is full";
+
+    private static final String ORDER_PACKAGE = "mwagent.order.";
+
+    private static volatile CommandExecutorService active;
+
     private final Logger logger;
     private LifecycleState state;
     private ExecutorService executorService;
     private final int shutdownTimeoutSeconds;
 
+    private final int poolSize;
+    private final int queueCapacity;
+    private final long agingMs;
+    private final Map<String, Priority> priorities;
+    private final Map<String, Integer> classLimits;
+    private final BiFunction<String, JSONObject, Integer> orderRunner;
+    private final BiFunction<String, JSONObject, Integer> rejectionReporter;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final EnumMap<Priority, ArrayDeque<QueuedCommand>> lanes = new EnumMap<>(Priority.class);
+    private final Map<String, Integer> runningByClass = new HashMap<>();
+    private int queued = 0;
+    private volatile boolean accepting = false;
+
+    // metrics
+    private final AtomicInteger activeCount = new AtomicInteger();
+    private long submittedCount = 0;
+    private long rejectedCount = 0;
+    private long completedCount = 0;
+    private long totalWaitMs = 0;
+    private long maxWaitMs = 0;
+
     public CommandExecutorService() {
         this(30); // Default 30초 timeout
     }
 
     public CommandExecutorService(int shutdownTimeoutSeconds) {
+        this(shutdownTimeoutSeconds,
+             getConfig().getCommandExecutorPoolSize(),
+             getConfig().getCommandExecutorQueueCapacity(),
+             getConfig().getCommandExecutorAgingMs(),
+             getConfig().getCommandExecutorPriorities(),
+             getConfig().getCommandExecutorClassLimits(),
+             OrderCaller::executeOrder,
+             (orderedClass, command) -> OrderCaller.rejectOrder(orderedClass, command, REJECT_MESSAGE));
+    }
+
+    /**
+     * Constructor for dependency injection (테스트 용이성)
+     *
+     * @param priorities command_class -> HIGH/NORMAL/LOW (설정되지 않은 class 는 기본 우선순위)
+     * @param classLimits command_class -> 최대 동시 실행 수 (0: 제한 없음)
+     */
+    CommandExecutorService(int shutdownTimeoutSeconds, int poolSize, int queueCapacity, long agingMs,
+                           Map<String, String> priorities, Map<String, Integer> classLimits,
+                           BiFunction<String, JSONObject, Integer> orderRunner,
+                           BiFunction<String, JSONObject, Integer> rejectionReporter) {
         this.logger = getConfig().getLogger();
         this.state = LifecycleState.CREATED;
         this.shutdownTimeoutSeconds = shutdownTimeoutSeconds;
+        this.poolSize = Math.max(1, poolSize);
+        this.queueCapacity = Math.max(0, queueCapacity);
+        this.agingMs = agingMs;
+        this.orderRunner = orderRunner;
+        this.rejectionReporter = rejectionReporter;
+
+        this.priorities = new HashMap<>();
+        for (Map.Entry<String, String> e : priorities.entrySet()) {
+            try {
+                this.priorities.put(e.getKey(), Priority.valueOf(e.getValue()));
+            } catch (IllegalArgumentException ex) {
+                logger.warning("Unknown priority for " + e.getKey() + " : " + e.getValue());
+            }
+        }
+
+        // 스크립트/다운로드는 기본적으로 pool 의 절반까지만 사용
+        this.classLimits = new HashMap<>();
+        int heavyLimit = Math.max(1, this.poolSize / 2);
+        for (String heavy : new String[] {"ExeText", "ExeScript", "ExeShell", "DownloadFile"}) {
+            this.classLimits.put(heavy, heavyLimit);
+        }
+        this.classLimits.putAll(classLimits);
+
+        for (Priority p : Priority.values()) {
+            lanes.put(p, new ArrayDeque<>());
+        }
     }
 
     @Override
@@ -43,11 +135,22 @@ public class CommandExecutorService implements AgentLifecycle {
             throw new IllegalStateException("Cannot start from state: " + state);
         }
 
-        logger.info("Starting CommandExecutor service...");
+        logger.info("Starting CommandExecutor service (pool_size=" + poolSize + ", queue_capacity=" + queueCapacity + ")");
         state = LifecycleState.STARTING;
 
         try {
-            executorService = Executors.newCachedThreadPool();
+            AtomicInteger seq = new AtomicInteger();
+            executorService = Executors.newFixedThreadPool(poolSize, r -> {
+                Thread t = new Thread(r, "CommandWorker-" + seq.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+            accepting = true;
+            for (int i = 0; i < poolSize; i++) {
+                executorService.submit(this::workerLoop);
+            }
+            active = this;
+            registerGauges();
             state = LifecycleState.RUNNING;
             logger.info("CommandExecutor service started successfully");
 
@@ -70,7 +173,14 @@ public class CommandExecutorService implements AgentLifecycle {
 
         try {
             if (executorService != null) {
-                // 1. Stop accepting new tasks
+                // 1. Stop accepting new tasks (workers exit when the queue is drained)
+                lock.lock();
+                try {
+                    accepting = false;
+                    changed.signalAll();
+                } finally {
+                    lock.unlock();
+                }
                 executorService.shutdown();
                 logger.info("ExecutorService shutdown initiated, waiting for running tasks to complete...");
 
@@ -79,7 +189,7 @@ public class CommandExecutorService implements AgentLifecycle {
 
                 if (!terminated) {
                     // 3. Force shutdown if timeout
-                    logger.warning("ExecutorService did not terminate in time. Forcing shutdown...");
+                    logger.warning("ExecutorService did not terminate in time. Forcing shutdown... (queued=" + getQueueDepth() + ")");
                     executorService.shutdownNow();
 
                     // Wait a bit more for forced shutdown
@@ -91,6 +201,9 @@ public class CommandExecutorService implements AgentLifecycle {
                 logger.info("CommandExecutor service stopped successfully");
             }
 
+            if (active == this) {
+                active = null;
+            }
             state = LifecycleState.STOPPED;
 
         } catch (InterruptedException e) {
@@ -112,12 +225,27 @@ public class CommandExecutorService implements AgentLifecycle {
     }
 
     /**
-     * 명령을 비동기로 실행합니다.
+     * 명령을 대기열에 추가합니다.
+     * 대기열이 가득 차면 명령을 거부하고 실패 결과를 서버에 보고합니다.
      *
      * @param command 실행할 명령 (JSON)
+     * @return true: 대기열에 추가됨, false: 거부됨
      * @throws IllegalStateException 서비스가 RUNNING 상태가 아닐 때
      */
-    public void executeCommand(JSONObject command) {
+    public boolean executeCommand(JSONObject command) {
+        return executeCommand(command, null);
+    }
+
+    /**
+     * 명령을 대기열에 추가합니다.
+     *
+     * @param command 실행할 명령 (JSON)
+     * @param onComplete 실행 완료, 거부, 또는 잘못된 명령으로 버려진 후 호출 (null 가능).
+     *                   강제 종료로 실행되지 못한 명령에는 호출되지 않음
+     * @return true: 대기열에 추가됨, false: 거부됨
+     * @throws IllegalStateException 서비스가 RUNNING 상태가 아닐 때
+     */
+    public boolean executeCommand(JSONObject command, Runnable onComplete) {
         if (state != LifecycleState.RUNNING) {
             throw new IllegalStateException("CommandExecutor is not running: " + state);
         }
@@ -126,30 +254,262 @@ public class CommandExecutorService implements AgentLifecycle {
 
         if (commandClass == null) {
             logger.warning("Command_class not found: " + command.toJSONString());
-            return;
+            complete(onComplete);
+            return false;
+        }
+
+        Priority priority = getPriority(commandClass);
+
+        lock.lock();
+        try {
+            if (accepting && queued < queueCapacity) {
+                lanes.get(priority).addLast(new QueuedCommand(commandClass, command, System.currentTimeMillis(), onComplete));
+                queued++;
+                submittedCount++;
+                changed.signal();
+                logger.info("Submitted command: " + commandClass + " (" + priority + ", queued=" + queued + ") with data: " + command.toJSONString());
+                return true;
+            }
+            rejectedCount++;
+        } finally {
+            lock.unlock();
         }
 
+        logger.warning("Command queue is full (" + queueCapacity + "), rejecting: " + commandClass);
         try {
-            OrderCallerThread thread = new OrderCallerThread("mwagent.order." + commandClass, command);
-            executorService.submit(thread);
-            logger.info("Submitted command: " + commandClass + " with data: " + command.toJSONString());
+            rejectionReporter.apply(ORDER_PACKAGE + commandClass, command);
+        } catch (Exception e) {
+            logger.log(Level.SEVERE, "Failed to report rejected command: " + commandClass, e);
+        }
+        complete(onComplete);
+        return false;
+    }
 
+    private void complete(Runnable onComplete) {
+        if (onComplete == null) {
+            return;
+        }
+        try {
+            onComplete.run();
         } catch (Exception e) {
-            logger.log(Level.SEVERE, "Failed to submit command: " + commandClass, e);
+            logger.log(Level.WARNING, "Error in command completion callback", e);
+        }
+    }
+
+    private void workerLoop() {
+        while (true) {
+            QueuedCommand cmd;
+
+            lock.lock();
+            try {
+                while ((cmd = pollEligible()) == null) {
+                    if (!accepting && queued == 0) {
+                        return;
+                    }
+                    changed.await();
+                }
+                long waitMs = System.currentTimeMillis() - cmd.enqueuedAt;
+                totalWaitMs += waitMs;
+                maxWaitMs = Math.max(maxWaitMs, waitMs);
+                AgentMetrics.commandQueueWait(cmd.commandClass).recordMillis(waitMs);
+                runningByClass.merge(cmd.commandClass, 1, Integer::sum);
+                activeCount.incrementAndGet();
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+
+            } finally {
+                lock.unlock();
+            }
+
+            long startNanos = System.nanoTime();
+            try {
+                orderRunner.apply(ORDER_PACKAGE + cmd.commandClass, cmd.command);
+            } catch (Exception e) {
+                logger.log(Level.SEVERE, "Failed to execute command: " + cmd.commandClass, e);
+            } finally {
+                AgentMetrics.commandExecution(cmd.commandClass).recordSince(startNanos);
+                lock.lock();
+                try {
+                    runningByClass.merge(cmd.commandClass, -1, Integer::sum);
+                    activeCount.decrementAndGet();
+                    completedCount++;
+                    // 동시 실행 제한으로 대기하던 명령이 실행 가능해질 수 있음
+                    changed.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+                complete(cmd.onComplete);
+            }
+        }
+    }
+
+    /**
+     * 실행할 명령 선택 (lock 보유 상태에서 호출)
+     *
+     * aging 시간을 넘긴 명령이 있으면 가장 오래 기다린 명령을, 없으면 높은 우선순위부터 선택.
+     * 동시 실행 제한에 걸린 class 는 건너뜁니다.
+     */
+    private QueuedCommand pollEligible() {
+        if (queued == 0) {
+            return null;
+        }
+
+        long now = System.currentTimeMillis();
+        QueuedCommand chosen = null;
+        Iterator<QueuedCommand> chosenIt = null;
+        QueuedCommand aged = null;
+        Iterator<QueuedCommand> agedIt = null;
+
+        for (ArrayDeque<QueuedCommand> lane : lanes.values()) {
+            Iterator<QueuedCommand> it = lane.iterator();
+            while (it.hasNext()) {
+                QueuedCommand cmd = it.next();
+                if (!hasCapacity(cmd.commandClass)) {
+                    continue;
+                }
+                if (chosen == null) {
+                    chosen = cmd;
+                    chosenIt = it;
+                }
+                if (agingMs > 0 && now - cmd.enqueuedAt >= agingMs
+                        && (aged == null || cmd.enqueuedAt < aged.enqueuedAt)) {
+                    aged = cmd;
+                    agedIt = it;
+                }
+                // lane 내에서는 먼저 들어온 명령이 먼저 실행 가능한 명령
+                break;
+            }
+        }
+
+        if (aged != null) {
+            chosen = aged;
+            chosenIt = agedIt;
+        }
+        if (chosen != null) {
+            chosenIt.remove();
+            queued--;
+        }
+        return chosen;
+    }
+
+    private boolean hasCapacity(String commandClass) {
+        Integer limit = classLimits.get(commandClass);
+        if (limit == null || limit <= 0) {
+            return true;
+        }
+        return runningByClass.getOrDefault(commandClass, 0) < limit;
+    }
+
+    /**
+     * command_class 의 우선순위 lane (설정 > 기본값)
+     */
+    Priority getPriority(String commandClass) {
+        Priority p = priorities.get(commandClass);
+        if (p != null) {
+            return p;
+        }
+        switch (commandClass) {
+            case "ReadPlainFile":
+            case "ReadFile":
+            case "ReadFullPathFile":
+            case "TailFullPathFile":
+            case "ExeAgentFunc":
+            case "GetRefreshToken":
+                return Priority.HIGH;
+            case "ExeText":
+            case "ExeScript":
+            case "ExeShell":
+            case "DownloadFile":
+                return Priority.LOW;
+            default:
+                return Priority.NORMAL;
         }
     }
 
     /**
      * 실행 중인 태스크 개수 반환 (테스트/모니터링용)
-     * ExecutorService의 내부 상태를 확인하기 어려우므로 근사치
      */
     public int getActiveTaskCount() {
         if (executorService == null || executorService.isShutdown()) {
             return 0;
         }
-        // CachedThreadPool은 정확한 active count를 제공하지 않으므로
-        // Thread.activeCount()를 사용 (근사치)
-        return Thread.activeCount();
+        return activeCount.get();
+    }
+
+    /**
+     * 대기 중인 명령 개수
+     */
+    public int getQueueDepth() {
+        lock.lock();
+        try {
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 대기열에 더 넣을 수 있는 명령 개수 (backpressure 용, 종료 중이면 0)
+     */
+    public int getRemainingCapacity() {
+        lock.lock();
+        try {
+            return accepting ? queueCapacity - queued : 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 대기열 / 실행 / 대기 시간 metric
+     */
+    @SuppressWarnings("unchecked")
+    public JSONObject getStats() {
+        JSONObject json = new JSONObject();
+        lock.lock();
+        try {
+            json.put("pool_size", poolSize);
+            json.put("queue_capacity", queueCapacity);
+            json.put("queue_depth", queued);
+            for (Map.Entry<Priority, ArrayDeque<QueuedCommand>> e : lanes.entrySet()) {
+                json.put("queue_depth_" + e.getKey().name().toLowerCase(), e.getValue().size());
+            }
+            json.put("active", activeCount.get());
+            json.put("submitted", submittedCount);
+            json.put("rejected", rejectedCount);
+            json.put("completed", completedCount);
+            long started = submittedCount - queued;
+            json.put("avg_wait_ms", started > 0 ? totalWaitMs / started : 0);
+            json.put("max_wait_ms", maxWaitMs);
+            json.put("running_by_class", new JSONObject(new HashMap<>(runningByClass)));
+        } finally {
+            lock.unlock();
+        }
+        return json;
+    }
+
+    /**
+     * 대기열 깊이 / 실행 중 명령 수 gauge (현재 실행 중인 서비스 기준)
+     */
+    private static void registerGauges() {
+        MetricsRegistry registry = MetricsRegistry.getInstance();
+        registry.gauge("mwagent_command_queue_depth", "Commands waiting in the executor queue", () -> {
+            CommandExecutorService s = active;
+            return s != null ? s.getQueueDepth() : 0;
+        });
+        registry.gauge("mwagent_command_active", "Commands being executed", () -> {
+            CommandExecutorService s = active;
+            return s != null ? s.getActiveTaskCount() : 0;
+        });
+    }
+
+    /**
+     * 현재 실행 중인 CommandExecutorService (없으면 null, ExeAgentFunc 조회용)
+     */
+    public static CommandExecutorService getActive() {
+        return active;
     }
 
     /**
@@ -165,4 +525,18 @@ public class CommandExecutorService implements AgentLifecycle {
     public boolean isTerminated() {
         return executorService != null && executorService.isTerminated();
     }
+
+    private static class QueuedCommand {
+        private final String commandClass;
+        private final JSONObject command;
+        private final long enqueuedAt;
+        private final Runnable onComplete;
+
+        QueuedCommand(String commandClass, JSONObject command, long enqueuedAt, Runnable onComplete) {
+            this.commandClass = commandClass;
+            this.command = command;
+            this.enqueuedAt = enqueuedAt;
+            this.onComplete = onComplete;
+        }
+    }
 }
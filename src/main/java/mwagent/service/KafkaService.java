@@ -26,6 +26,7 @@ public class KafkaService implements AgentLifecycle {
     private String brokerAddress;
     private MwConsumerThread consumerThread;
     private MwHealthCheckThread healthCheckThread;
+    private CommandExecutorService commandExecutor;
     private boolean producerInitialized = false;
 
     public KafkaService() {
@@ -45,6 +46,14 @@ public class KafkaService implements AgentLifecycle {
         getConfig().setKafka_broker_address(brokerAddress);
     }
 
+    /**
+     * Kafka 로 수신한 명령을 실행할 Executor 설정
+     * 설정하지 않으면 명령마다 Thread 를 생성 (legacy)
+     */
+    public void setCommandExecutor(CommandExecutorService commandExecutor) {
+        this.commandExecutor = commandExecutor;
+    }
+
     @Override
     public void start() throws Exception {
         if (!state.canTransitionTo(LifecycleState.STARTING)) {
@@ -62,7 +71,7 @@ public class KafkaService implements AgentLifecycle {
 
         try {
             // 1. Start Consumer Thread
-            consumerThread = new MwConsumerThread(brokerAddress, "t_" + getConfig().getAgent_id());
+            consumerThread = new MwConsumerThread(brokerAddress, "t_" + getConfig().getAgent_id(), commandExecutor);
             consumerThread.setDaemon(true);
             consumerThread.setName("MwConsumer");
             consumerThread.start();
@@ -103,6 +112,7 @@ public class KafkaService implements AgentLifecycle {
         try {
             // Stop consumer thread
             if (consumerThread != null && consumerThread.isAlive()) {
+                consumerThread.stop_thread();
                 consumerThread.interrupt();
                 consumerThread.join(5000); // Wait max 5 seconds
                 logger.info("Kafka consumer thread stopped");
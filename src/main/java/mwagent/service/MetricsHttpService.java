@@ -0,0 +1,140 @@
+package mwagent.service;
+
+import static mwagent.common.Config.getConfig;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import mwagent.lifecycle.AgentLifecycle;
+import mwagent.lifecycle.LifecycleState;
+import mwagent.metrics.MetricsRegistry;
+
+/**
+ * Agent metric 을 Prometheus text 형식으로 노출하는 HTTP endpoint
+ *
+ * - 기본적으로 localhost 에만 bind (GET /metrics)
+ * - scrape 요청은 단일 스레드에서 처리
+ */
+public class MetricsHttpService implements AgentLifecycle {
+
+    static final String PATH = "/metrics";
+    static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private final Logger logger;
+    private LifecycleState state;
+
+    private final String bindAddress;
+    private final int port;
+    private final MetricsRegistry registry;
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public MetricsHttpService() {
+        this(getConfig().getMetricsHttpBindAddress(), getConfig().getMetricsHttpPort(), MetricsRegistry.getInstance());
+    }
+
+    /**
+     * Constructor for dependency injection (테스트 용이성)
+     *
+     * @param port 0 이면 임의의 빈 port
+     */
+    MetricsHttpService(String bindAddress, int port, MetricsRegistry registry) {
+        this.logger = getConfig().getLogger();
+        this.state = LifecycleState.CREATED;
+        this.bindAddress = bindAddress;
+        this.port = port;
+        this.registry = registry;
+    }
+
+    @Override
+    public void start() throws Exception {
+        if (!state.canTransitionTo(LifecycleState.STARTING)) {
+            throw new IllegalStateException("Cannot start from state: " + state);
+        }
+
+        state = LifecycleState.STARTING;
+        try {
+            server = HttpServer.create(new InetSocketAddress(bindAddress, port), 0);
+            server.createContext(PATH, this::handle);
+            executor = Executors.newSingleThreadExecutor(r -> {
+                Thread t = new Thread(r, "MetricsHttp");
+                t.setDaemon(true);
+                return t;
+            });
+            server.setExecutor(executor);
+            server.start();
+
+            state = LifecycleState.RUNNING;
+            logger.info("Metrics endpoint started : http://" + bindAddress + ":" + getPort() + PATH);
+
+        } catch (IOException e) {
+            state = LifecycleState.FAILED;
+            logger.log(Level.SEVERE, "Failed to start metrics endpoint on " + bindAddress + ":" + port, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public void stop() throws Exception {
+        if (!state.canTransitionTo(LifecycleState.STOPPING)) {
+            logger.warning("Cannot stop from state: " + state);
+            return;
+        }
+
+        state = LifecycleState.STOPPING;
+        if (server != null) {
+            server.stop(0);
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        state = LifecycleState.STOPPED;
+        logger.info("Metrics endpoint stopped");
+    }
+
+    @Override
+    public LifecycleState getState() {
+        return state;
+    }
+
+    /**
+     * 실제 listen 중인 port
+     */
+    public int getPort() {
+        return server != null ? server.getAddress().getPort() : port;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            // 0 : chunked, 본문을 만들면서 바로 전송
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream os = exchange.getResponseBody();
+                 Writer w = new OutputStreamWriter(os, StandardCharsets.UTF_8)) {
+                registry.writePrometheus(w);
+            }
+
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.WARNING, "Metrics scrape failed", e);
+        } finally {
+            exchange.close();
+        }
+    }
+}
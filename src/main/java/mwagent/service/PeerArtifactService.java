@@ -0,0 +1,276 @@
+package mwagent.service;
+
+import static mwagent.common.Config.getConfig;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import mwagent.common.ArtifactCache;
+import mwagent.common.BandwidthThrottle;
+import mwagent.common.PeerAuth;
+import mwagent.lifecycle.AgentLifecycle;
+import mwagent.lifecycle.LifecycleState;
+import mwagent.metrics.AgentMetrics;
+
+/**
+ * 같은 망의 다른 Agent 에게 artifact cache 의 파일을 byte range 로 제공하는 HTTP endpoint
+ *
+ * - GET|HEAD /p2p/artifacts/<sha256>, Range: bytes=<start>-[<end>] 지원 (206)
+ * - X-Peer-Auth (공유 secret 의 HMAC, PeerAuth) 가 없거나 틀리면 401, secret 이 없으면 시작하지 않음
+ * - 동시 전송 수를 넘으면 503 : 받는 쪽은 다른 peer 나 서버에서 받음
+ * - 전송 대역폭은 p2p.max_upload_bytes_per_sec 로 제한
+ */
+public class PeerArtifactService implements AgentLifecycle {
+
+    static final String PATH = "/p2p/artifacts/";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Logger logger;
+    private LifecycleState state;
+
+    private final String bindAddress;
+    private final int port;
+    private final String secret;
+    private final long authWindowSec;
+    private final int maxUploads;
+    private final ArtifactCache cache;
+    private final BandwidthThrottle throttle;
+    private final AtomicInteger uploads = new AtomicInteger();
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public PeerArtifactService() {
+        this(getConfig().getP2pBindAddress(), getConfig().getP2pPort(), getConfig().getP2pSecret(),
+                getConfig().getP2pAuthWindowSec(), getConfig().getP2pMaxUploads(), ArtifactCache.getInstance(),
+                new BandwidthThrottle(getConfig().getP2pMaxUploadBytesPerSec()));
+    }
+
+    /**
+     * Constructor for dependency injection (테스트 용이성)
+     *
+     * @param port 0 이면 임의의 빈 port
+     */
+    PeerArtifactService(String bindAddress, int port, String secret, long authWindowSec, int maxUploads,
+            ArtifactCache cache, BandwidthThrottle throttle) {
+        this.logger = getConfig().getLogger();
+        this.state = LifecycleState.CREATED;
+        this.bindAddress = bindAddress;
+        this.port = port;
+        this.secret = secret;
+        this.authWindowSec = authWindowSec;
+        this.maxUploads = Math.max(1, maxUploads);
+        this.cache = cache;
+        this.throttle = throttle;
+    }
+
+    @Override
+    public void start() throws Exception {
+        if (!state.canTransitionTo(LifecycleState.STARTING)) {
+            throw new IllegalStateException("Cannot start from state: " + state);
+        }
+        if (secret == null || secret.isEmpty()) {
+            state = LifecycleState.FAILED;
+            throw new IllegalStateException("p2p.secret is required to serve artifacts to peers");
+        }
+
+        state = LifecycleState.STARTING;
+        try {
+            server = HttpServer.create(new InetSocketAddress(bindAddress, port), 0);
+            server.createContext(PATH, this::handle);
+            // 한도를 넘는 요청에 503 을 보낼 수 있도록 전송 수보다 하나 더
+            AtomicInteger seq = new AtomicInteger();
+            executor = Executors.newFixedThreadPool(maxUploads + 1, r -> {
+                Thread t = new Thread(r, "PeerArtifact-" + seq.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+            server.setExecutor(executor);
+            server.start();
+
+            state = LifecycleState.RUNNING;
+            logger.info("Peer artifact endpoint started : http://" + bindAddress + ":" + getPort() + PATH);
+
+        } catch (IOException e) {
+            state = LifecycleState.FAILED;
+            logger.log(Level.SEVERE, "Failed to start peer artifact endpoint on " + bindAddress + ":" + port, e);
+            throw e;
+        }
+    }
+
+    @Override
+    public void stop() throws Exception {
+        if (!state.canTransitionTo(LifecycleState.STOPPING)) {
+            logger.warning("Cannot stop from state: " + state);
+            return;
+        }
+
+        state = LifecycleState.STOPPING;
+        if (server != null) {
+            server.stop(0);
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        state = LifecycleState.STOPPED;
+        logger.info("Peer artifact endpoint stopped");
+    }
+
+    @Override
+    public LifecycleState getState() {
+        return state;
+    }
+
+    /**
+     * 실제 listen 중인 port
+     */
+    public int getPort() {
+        return server != null ? server.getAddress().getPort() : port;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        boolean counted = false;
+        try {
+            String method = exchange.getRequestMethod();
+            if (!"GET".equals(method) && !"HEAD".equals(method)) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            String sha256 = exchange.getRequestURI().getPath().substring(PATH.length()).toLowerCase();
+            if (!sha256.matches("[0-9a-f]{64}")) {
+                exchange.sendResponseHeaders(400, -1);
+                return;
+            }
+            if (!PeerAuth.verify(secret, sha256, exchange.getRequestHeaders().getFirst(PeerAuth.HEADER),
+                    System.currentTimeMillis() / 1000, authWindowSec)) {
+                logger.warning("Peer artifact request rejected (authentication) from " + exchange.getRemoteAddress());
+                exchange.sendResponseHeaders(401, -1);
+                return;
+            }
+
+            counted = true;
+            if (uploads.incrementAndGet() > maxUploads) {
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+
+            Path blob = cache.get(sha256);
+            if (blob == null) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+
+            // 전송 중에 cache 에서 지워져도 열린 파일은 끝까지 읽을 수 있음
+            try (FileChannel channel = FileChannel.open(blob, StandardOpenOption.READ)) {
+                long total = channel.size();
+                long start = 0;
+                long end = total - 1;
+                String range = exchange.getRequestHeaders().getFirst("Range");
+
+                exchange.getResponseHeaders().set("Content-Type", "application/octet-stream");
+                exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+                exchange.getResponseHeaders().set("ETag", "\"" + sha256 + "\"");
+                exchange.getResponseHeaders().set("X-Checksum-Sha256", sha256);
+
+                if (range != null) {
+                    long[] r = parseRange(range, total);
+                    if (r == null) {
+                        exchange.getResponseHeaders().set("Content-Range", "bytes */" + total);
+                        exchange.sendResponseHeaders(416, -1);
+                        return;
+                    }
+                    start = r[0];
+                    end = r[1];
+                    exchange.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + end + "/" + total);
+                }
+
+                long length = end - start + 1;
+                int status = range != null ? 206 : 200;
+                if ("HEAD".equals(method)) {
+                    exchange.getResponseHeaders().set("Content-Length", String.valueOf(length));
+                    exchange.sendResponseHeaders(status, -1);
+                    return;
+                }
+                // 길이 0 은 chunked 를 뜻하므로 빈 파일은 본문 없음 (-1)
+                exchange.sendResponseHeaders(status, length == 0 ? -1 : length);
+                send(channel, start, length, exchange.getResponseBody());
+            }
+
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.FINE, "Peer artifact transfer ended : " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (counted) {
+                uploads.decrementAndGet();
+            }
+            exchange.close();
+        }
+    }
+
+    private void send(FileChannel channel, long start, long length, OutputStream out) throws IOException, InterruptedException {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        long pos = start;
+        long end = start + length;
+        try (OutputStream os = out) {
+            while (pos < end) {
+                // Buffer casts keep the Java 8 method signatures
+                ((Buffer) buffer).clear();
+                ((Buffer) buffer).limit((int) Math.min(BUFFER_SIZE, end - pos));
+                int n = channel.read(buffer, pos);
+                if (n < 0) {
+                    throw new IOException("Artifact shorter than expected");
+                }
+                os.write(buffer.array(), 0, n);
+                pos += n;
+                AgentMetrics.P2P_SENT_BYTES.add(n);
+                throttle.acquire(n);
+            }
+        }
+    }
+
+    /**
+     * 단일 range "bytes=<start>-[<end>]" 또는 "bytes=-<suffix>", 만족할 수 없으면 null
+     */
+    static long[] parseRange(String header, long total) {
+        if (!header.startsWith("bytes=") || header.indexOf(',') >= 0 || total == 0) {
+            return null;
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        try {
+            long start;
+            long end;
+            if (dash == 0) {
+                long suffix = Long.parseLong(spec.substring(1));
+                start = Math.max(0, total - suffix);
+                end = total - 1;
+            } else {
+                start = Long.parseLong(spec.substring(0, dash));
+                end = dash == spec.length() - 1 ? total - 1 : Math.min(total - 1, Long.parseLong(spec.substring(dash + 1)));
+            }
+            return start <= end && start < total ? new long[] { start, end } : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
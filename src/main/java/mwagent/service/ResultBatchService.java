@@ -0,0 +1,366 @@
+package mwagent.service;
+
+import static mwagent.common.Config.getConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import mwagent.common.Common;
+import mwagent.common.JsonContent;
+import mwagent.infrastructure.http.JsonEntity;
+import mwagent.lifecycle.AgentLifecycle;
+import mwagent.lifecycle.LifecycleState;
+import mwagent.order.Order;
+import mwagent.vo.MwResponseVO;
+
+/**
+ * 명령 실행 결과를 모아서 한 번의 POST 로 전송하는 서비스
+ *
+ * - 여러 Order 의 결과(JSON)를 linger 시간 / 건수 / 크기 기준으로 묶어 JSON 배열로 전송
+ * - 결과는 문자열로 만들지 않고 보관했다가 전송 시 UTF-8 application/json 본문에 직접 기록
+ * - 서버가 batch endpoint 를 지원하지 않으면 (404/405/501) 건별 endpoint 로 fallback
+ * - batch 단위 재시도, 전송 대기 중인 전체 크기(in-flight bytes) 제한
+ * - 결과별 전송 결과(서버 확인 / 포기)를 호출자에게 통보
+ */
+public class ResultBatchService implements AgentLifecycle {
+
+    private static volatile ResultBatchService instance;
+
+    private final Logger logger;
+    private LifecycleState state;
+
+    private final String batchPath;
+    private final String singlePath;
+    private final int maxBatchSize;
+    private final int maxBatchBytes;
+    private final long lingerMs;
+    private final int maxRetries;
+    private final BiFunction<String, JsonContent, MwResponseVO> poster;
+
+    private final Object lock = new Object();
+    private final List<JsonContent> pending = new ArrayList<>();
+    private final List<Integer> pendingSizes = new ArrayList<>();
+    private final List<Consumer<Boolean>> pendingCallbacks = new ArrayList<>();
+    private int pendingBytes = 0;
+    private long firstPendingAt = 0;
+    private final Semaphore inFlight;
+
+    private volatile boolean batchSupported = true;
+    private Thread flushThread;
+
+    public static ResultBatchService getInstance() {
+        if (instance == null) {
+            synchronized (ResultBatchService.class) {
+                if (instance == null) {
+                    instance = new ResultBatchService();
+                }
+            }
+        }
+        return instance;
+    }
+
+    private ResultBatchService() {
+        this(getConfig().getResultBatchUri(),
+             Order.RESULT_PATH,
+             getConfig().getResultBatchMaxSize(),
+             getConfig().getResultBatchMaxBytes(),
+             getConfig().getResultBatchLingerMs(),
+             getConfig().getResultBatchMaxInFlightBytes(),
+             getConfig().getResultBatchMaxRetries(),
+             (path, data) -> Common.httpPOST(path, getConfig().getAccess_token(), new JsonEntity(data)));
+    }
+
+    /**
+     * Constructor for dependency injection (테스트 용이성)
+     */
+    ResultBatchService(String batchPath, String singlePath, int maxBatchSize, int maxBatchBytes,
+                       long lingerMs, int maxInFlightBytes, int maxRetries,
+                       BiFunction<String, JsonContent, MwResponseVO> poster) {
+        this.logger = getConfig().getLogger();
+        this.state = LifecycleState.CREATED;
+        this.batchPath = batchPath;
+        this.singlePath = singlePath;
+        this.maxBatchSize = maxBatchSize;
+        this.maxBatchBytes = maxBatchBytes;
+        this.lingerMs = lingerMs;
+        this.maxRetries = maxRetries;
+        this.poster = poster;
+        this.inFlight = new Semaphore(maxInFlightBytes);
+    }
+
+    @Override
+    public void start() throws Exception {
+        if (!state.canTransitionTo(LifecycleState.STARTING)) {
+            throw new IllegalStateException("Cannot start from state: " + state);
+        }
+
+        logger.info("Starting ResultBatch service (max_size=" + maxBatchSize + ", linger_ms=" + lingerMs + ")");
+        state = LifecycleState.STARTING;
+
+        flushThread = new Thread(this::flushLoop, "ResultBatchFlusher");
+        flushThread.setDaemon(true);
+        flushThread.start();
+
+        state = LifecycleState.RUNNING;
+        logger.info("ResultBatch service started successfully");
+    }
+
+    @Override
+    public void stop() throws Exception {
+        if (!state.canTransitionTo(LifecycleState.STOPPING)) {
+            logger.warning("Cannot stop from state: " + state);
+            return;
+        }
+
+        logger.info("Stopping ResultBatch service...");
+        state = LifecycleState.STOPPING;
+
+        if (flushThread != null && flushThread.isAlive()) {
+            flushThread.interrupt();
+            flushThread.join(5000);
+        }
+
+        // 남은 결과를 모두 전송
+        Batch rest;
+        while (!(rest = drain()).items.isEmpty()) {
+            ship(rest);
+        }
+
+        state = LifecycleState.STOPPED;
+        logger.info("ResultBatch service stopped successfully");
+    }
+
+    @Override
+    public LifecycleState getState() {
+        return state;
+    }
+
+    /**
+     * 결과 한 건을 batch 에 추가합니다.
+     * 서비스가 실행 중이 아니거나 in-flight 제한을 넘으면 즉시 건별 전송합니다.
+     *
+     * @param data 결과 JSON (Order.jsonResult)
+     * @return 전송 방식 (1: batch 대기열, 2: 즉시 전송)
+     */
+    public int submit(JsonContent data) {
+        return submit(data, null);
+    }
+
+    /**
+     * 결과 한 건을 batch 에 추가하고, 서버가 받았는지(true) 재시도 후 포기했는지(false) 통보받습니다.
+     *
+     * @param delivered 전송 결과 통보 (flush thread 에서 호출될 수 있음, null 가능)
+     * @return 전송 방식 (1: batch 대기열, 2: 즉시 전송)
+     */
+    public int submit(JsonContent data, Consumer<Boolean> delivered) {
+        long length = data.byteLength();
+        int bytes = (int) Math.min(Integer.MAX_VALUE, length);
+
+        if (state != LifecycleState.RUNNING || bytes > maxBatchBytes) {
+            report(delivered, sendSingle(data));
+            return 2;
+        }
+
+        try {
+            if (!inFlight.tryAcquire(bytes, lingerMs, TimeUnit.MILLISECONDS)) {
+                logger.warning("ResultBatch in-flight bytes limit reached, sending directly");
+                report(delivered, sendSingle(data));
+                return 2;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            report(delivered, sendSingle(data));
+            return 2;
+        }
+
+        synchronized (lock) {
+            if (pending.isEmpty()) {
+                firstPendingAt = System.currentTimeMillis();
+            }
+            pending.add(data);
+            pendingSizes.add(bytes);
+            pendingCallbacks.add(delivered);
+            pendingBytes += bytes;
+
+            if (pending.size() >= maxBatchSize || pendingBytes >= maxBatchBytes) {
+                lock.notifyAll();
+            }
+        }
+        return 1;
+    }
+
+    private void flushLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Batch batch;
+                synchronized (lock) {
+                    while (!isBatchReady()) {
+                        long waitMs = pending.isEmpty() ? lingerMs
+                                : Math.max(1, firstPendingAt + lingerMs - System.currentTimeMillis());
+                        lock.wait(waitMs);
+                    }
+                    batch = drainLocked();
+                }
+                ship(batch);
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+
+            } catch (Exception e) {
+                logger.log(Level.SEVERE, "Error in ResultBatch flush loop", e);
+            }
+        }
+    }
+
+    private boolean isBatchReady() {
+        if (pending.isEmpty()) {
+            return false;
+        }
+        return pending.size() >= maxBatchSize
+                || pendingBytes >= maxBatchBytes
+                || System.currentTimeMillis() - firstPendingAt >= lingerMs;
+    }
+
+    private Batch drain() {
+        synchronized (lock) {
+            return drainLocked();
+        }
+    }
+
+    private Batch drainLocked() {
+        Batch batch = new Batch();
+        int count = 0;
+        while (count < pending.size() && count < maxBatchSize
+                && (count == 0 || batch.bytes + pendingSizes.get(count) <= maxBatchBytes)) {
+            batch.items.add(pending.get(count));
+            batch.callbacks.add(pendingCallbacks.get(count));
+            batch.bytes += pendingSizes.get(count);
+            count++;
+        }
+        pending.subList(0, count).clear();
+        pendingSizes.subList(0, count).clear();
+        pendingCallbacks.subList(0, count).clear();
+        pendingBytes -= batch.bytes;
+        firstPendingAt = System.currentTimeMillis();
+        return batch;
+    }
+
+    /**
+     * batch 전송 (재시도 및 건별 fallback 포함)
+     */
+    private void ship(Batch batch) {
+        try {
+            if (batchSupported && sendBatch(batch.items)) {
+                for (Consumer<Boolean> delivered : batch.callbacks) {
+                    report(delivered, true);
+                }
+                return;
+            }
+
+            for (int i = 0; i < batch.items.size(); i++) {
+                report(batch.callbacks.get(i), sendSingle(batch.items.get(i)));
+            }
+
+        } finally {
+            inFlight.release(batch.bytes);
+        }
+    }
+
+    private boolean sendBatch(List<JsonContent> batch) {
+        // 결과들을 이어 붙인 문자열 없이 JSON 배열로 바로 기록
+        JsonContent data = w -> {
+            w.beginArray();
+            for (JsonContent result : batch) {
+                w.element(result);
+            }
+            w.endArray();
+        };
+
+        for (int attempt = 1; attempt <= maxRetries; attempt++) {
+            MwResponseVO mwrv = poster.apply(batchPath, data);
+            int statusCode = mwrv.getStatusCode();
+
+            if (statusCode >= 200 && statusCode < 300) {
+                logger.fine("ResultBatch sent : " + batch.size() + " results");
+                return true;
+            }
+
+            if (statusCode == 404 || statusCode == 405 || statusCode == 501) {
+                logger.warning("Batch result endpoint not supported (" + statusCode + "), falling back to " + singlePath);
+                batchSupported = false;
+                return false;
+            }
+
+            logger.warning("ResultBatch send failed (attempt " + attempt + "/" + maxRetries + ") : " + statusCode);
+
+            try {
+                Thread.sleep(500L * attempt);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return 서버가 받은 경우 (2xx) true
+     */
+    private boolean sendSingle(JsonContent data) {
+        MwResponseVO mwrv = poster.apply(singlePath, data);
+
+        if (mwrv.getResponse() != null) {
+            logger.fine("sendPOST result:" + mwrv.getResponse().get("message"));
+        } else {
+            logger.warning("sendPOST Error");
+        }
+        return mwrv.getStatusCode() >= 200 && mwrv.getStatusCode() < 300;
+    }
+
+    private void report(Consumer<Boolean> delivered, boolean ok) {
+        if (delivered == null) {
+            return;
+        }
+        try {
+            delivered.accept(ok);
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "ResultBatch delivery callback failed", e);
+        }
+    }
+
+    /**
+     * 서버의 batch endpoint 지원 여부 (fallback 이후 false)
+     */
+    public boolean isBatchSupported() {
+        return batchSupported;
+    }
+
+    /**
+     * 대기 중인 결과 건수 (테스트/모니터링용)
+     */
+    public int getPendingCount() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * 사용 가능한 in-flight 바이트 (테스트/모니터링용)
+     */
+    public int getAvailableInFlightBytes() {
+        return inFlight.availablePermits();
+    }
+
+    private static class Batch {
+        private final List<JsonContent> items = new ArrayList<>();
+        private final List<Consumer<Boolean>> callbacks = new ArrayList<>();
+        private int bytes = 0;
+    }
+}
@@ -15,6 +15,10 @@ public class CommandVO {
 	private JSONObject additionalParamsJson = null;
 	private String resultReceiver = null;
 	private String targetObject = null;
+	// 0 : use exec.timeout_sec
+	private long timeoutSec = 0;
+	// ship process output as partial results while it runs
+	private boolean streamOutput = false;
 	
 	public String getCommandId() {
 		return commandId;
@@ -87,6 +91,18 @@ public class CommandVO {
 	public void setTargetObject(String targetObject) {
 		this.targetObject = targetObject;
 	}
+	public long getTimeoutSec() {
+		return timeoutSec;
+	}
+	public void setTimeoutSec(long timeoutSec) {
+		this.timeoutSec = timeoutSec;
+	}
+	public boolean isStreamOutput() {
+		return streamOutput;
+	}
+	public void setStreamOutput(boolean streamOutput) {
+		this.streamOutput = streamOutput;
+	}
 	
 	@Override
 	public String toString() {
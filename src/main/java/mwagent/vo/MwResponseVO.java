@@ -8,6 +8,8 @@ public class MwResponseVO {
 	private int statusCode;
 	private String fileName = "";
 	private String fileLocation = "";
+	private String sha256;
+	private boolean cached;
 	
 	
 	public JSONObject getResponse() {
@@ -34,6 +36,18 @@ public class MwResponseVO {
 	public void setFileLocation(String fileLocation) {
 		this.fileLocation = fileLocation;
 	}
+	public String getSha256() {
+		return sha256;
+	}
+	public void setSha256(String sha256) {
+		this.sha256 = sha256;
+	}
+	public boolean isCached() {
+		return cached;
+	}
+	public void setCached(boolean cached) {
+		this.cached = cached;
+	}
 	@Override
 	public String toString() {
 		return "MwResponseVO [response=" + response + ", statusCode=" + statusCode + ", fileName=" + fileName
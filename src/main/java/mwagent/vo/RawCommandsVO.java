@@ -6,6 +6,8 @@ public class RawCommandsVO {
 	
 	JSONArray commands;
 	long returnCode;
+	long longPollTimeout;
+	int commandCount;
 	
 	public JSONArray getCommands() {
 		return commands;
@@ -19,4 +21,16 @@ public class RawCommandsVO {
 	public void setReturnCode(long returnCode) {
 		this.returnCode = returnCode;
 	}
+	public long getLongPollTimeout() {
+		return longPollTimeout;
+	}
+	public void setLongPollTimeout(long longPollTimeout) {
+		this.longPollTimeout = longPollTimeout;
+	}
+	public int getCommandCount() {
+		return commandCount;
+	}
+	public void setCommandCount(int commandCount) {
+		this.commandCount = commandCount;
+	}
 }
@@ -9,6 +9,14 @@ public class ResultVO {
 	private String objectAggregationKey = "";
 	private String resultHash = "";
 	private boolean isOk = false;
+	private boolean truncated = false;
+	private long originalSize = 0;
+	// process orders only (ExeText, ExeScript)
+	private Integer exitCode = null;
+	private long durationMs = 0;
+	private boolean timedOut = false;
+	// partial results shipped before this one, -1 : not streamed
+	private long chunkCount = -1;
 
 	public String getResult() {
 		return result;
@@ -54,11 +62,49 @@ public class ResultVO {
 		this.targetFilePath = targetFilePath;
 	}
 
+	public boolean isTruncated() {
+		return truncated;
+	}
+	public void setTruncated(boolean truncated) {
+		this.truncated = truncated;
+	}
+	public long getOriginalSize() {
+		return originalSize;
+	}
+	public void setOriginalSize(long originalSize) {
+		this.originalSize = originalSize;
+	}
+
+	public Integer getExitCode() {
+		return exitCode;
+	}
+	public void setExitCode(Integer exitCode) {
+		this.exitCode = exitCode;
+	}
+	public long getDurationMs() {
+		return durationMs;
+	}
+	public void setDurationMs(long durationMs) {
+		this.durationMs = durationMs;
+	}
+	public boolean isTimedOut() {
+		return timedOut;
+	}
+	public void setTimedOut(boolean timedOut) {
+		this.timedOut = timedOut;
+	}
+	public long getChunkCount() {
+		return chunkCount;
+	}
+	public void setChunkCount(long chunkCount) {
+		this.chunkCount = chunkCount;
+	}
+
 	@Override
 	public String toString() {
 		return "ResultVO [targetFileName=" + targetFileName + ", hostName=" + hostName + ", targetFilePath="
 				+ targetFilePath + ", result=" + result + ", objectAggregationKey=" + objectAggregationKey
-				+ ", resultHash=" + resultHash + ", isOk=" + isOk + "]";
+				+ ", resultHash=" + resultHash + ", isOk=" + isOk + ", truncated=" + truncated + "]";
 	}
 
 }
@@ -46,6 +46,26 @@ class AgentFuncFactoryTest {
         assertThat(func).isInstanceOf(SSLCertiFileFunc.class);
     }
 
+    @Test
+    void testGetAgentFuncSSLCertiScanFunc() {
+        // When
+        AgentFunc func = AgentFuncFactory.getAgentFunc("scan_ssl_certi");
+
+        // Then
+        assertThat(func).isNotNull();
+        assertThat(func).isInstanceOf(SSLCertiScanFunc.class);
+    }
+
+    @Test
+    void testGetAgentFuncJmxMetricsFunc() {
+        // When
+        AgentFunc func = AgentFuncFactory.getAgentFunc("get_jmx_metrics");
+
+        // Then
+        assertThat(func).isNotNull();
+        assertThat(func).isInstanceOf(JmxMetricsFunc.class);
+    }
+
     @Test
     void testGetAgentFuncDownloadNUnzipFunc() {
         // When
@@ -56,6 +76,36 @@ class AgentFuncFactoryTest {
         assertThat(func).isInstanceOf(DownloadNUnzipFunc.class);
     }
 
+    @Test
+    void testGetAgentFuncHttpPoolStatFunc() {
+        // When
+        AgentFunc func = AgentFuncFactory.getAgentFunc("get_http_pool_stat");
+
+        // Then
+        assertThat(func).isNotNull();
+        assertThat(func).isInstanceOf(HttpPoolStatFunc.class);
+    }
+
+    @Test
+    void testGetAgentFuncExecutorStatFunc() {
+        // When
+        AgentFunc func = AgentFuncFactory.getAgentFunc("get_executor_stat");
+
+        // Then
+        assertThat(func).isNotNull();
+        assertThat(func).isInstanceOf(ExecutorStatFunc.class);
+    }
+
+    @Test
+    void testGetAgentFuncKafkaProducerStatFunc() {
+        // When
+        AgentFunc func = AgentFuncFactory.getAgentFunc("get_kafka_producer_stat");
+
+        // Then
+        assertThat(func).isNotNull();
+        assertThat(func).isInstanceOf(KafkaProducerStatFunc.class);
+    }
+
     @Test
     void testGetAgentFuncUnknownType() {
         // When - Invalid function type
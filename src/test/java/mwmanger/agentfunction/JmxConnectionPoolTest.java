@@ -0,0 +1,232 @@
+package mwagent.agentfunction;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.net.ConnectException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+import javax.management.InstanceNotFoundException;
+import javax.management.MBeanException;
+import javax.management.MBeanServerConnection;
+import javax.management.MalformedObjectNameException;
+import javax.management.remote.JMXConnector;
+import javax.management.remote.JMXConnectorFactory;
+import javax.management.remote.JMXConnectorServer;
+import javax.management.remote.JMXConnectorServerFactory;
+import javax.management.remote.JMXServiceURL;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import mwagent.common.Config;
+
+class JmxConnectionPoolTest {
+
+    private JMXConnectorServer server;
+    private final List<JMXConnector> opened = Collections.synchronizedList(new ArrayList<>());
+    private JmxConnectionPool pool;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Config.getConfig().setLogger(Logger.getLogger("TestLogger"));
+        server = JMXConnectorServerFactory.newJMXConnectorServer(
+                new JMXServiceURL("service:jmx:rmi://127.0.0.1"), null, ManagementFactory.getPlatformMBeanServer());
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (pool != null) {
+            pool.closeAll();
+        }
+        server.stop();
+    }
+
+    private JMXConnector open() throws IOException {
+        JMXConnector c = JMXConnectorFactory.connect(server.getAddress());
+        opened.add(c);
+        return c;
+    }
+
+    @Test
+    void get_SameKey_ShouldReuseConnection() throws Exception {
+        pool = new JmxConnectionPool(60_000, 60_000, 2);
+
+        MBeanServerConnection a = pool.get("url", "admin", "pw", "t1", this::open);
+        MBeanServerConnection b = pool.get("url", "admin", "pw", "t1", this::open);
+        MBeanServerConnection c = pool.get("url", "admin", "pw", "t2", this::open);
+
+        assertThat(b).isSameAs(a);
+        assertThat(c).isNotSameAs(a);
+        assertThat(opened).hasSize(2);
+        assertThat(pool.size()).isEqualTo(2);
+        assertThat(a.getMBeanCount()).isPositive();
+    }
+
+    @Test
+    void get_HealthCheckFails_ShouldReconnect() throws Exception {
+        pool = new JmxConnectionPool(60_000, 0, 2);
+
+        MBeanServerConnection a = pool.get("url", "admin", "pw", "t1", this::open);
+        opened.get(0).close();
+
+        MBeanServerConnection b = pool.get("url", "admin", "pw", "t1", this::open);
+
+        assertThat(b).isNotSameAs(a);
+        assertThat(opened).hasSize(2);
+        assertThat(b.getMBeanCount()).isPositive();
+    }
+
+    @Test
+    void get_PasswordChanged_ShouldReconnect() throws Exception {
+        pool = new JmxConnectionPool(60_000, 60_000, 2);
+
+        pool.get("url", "admin", "old", "t1", this::open);
+        pool.get("url", "admin", "new", "t1", this::open);
+
+        assertThat(opened).hasSize(2);
+        assertThat(pool.size()).isEqualTo(1);
+    }
+
+    @Test
+    void invalidate_ShouldCloseConnection() throws Exception {
+        pool = new JmxConnectionPool(60_000, 60_000, 2);
+
+        MBeanServerConnection a = pool.get("url", "admin", "pw", "t1", this::open);
+        pool.invalidate("url", "admin", "t1");
+
+        assertThat(pool.size()).isZero();
+        assertThatThrownBy(a::getMBeanCount).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void evictIdle_ShouldCloseIdleConnections() throws Exception {
+        pool = new JmxConnectionPool(10, 60_000, 2);
+
+        pool.get("url", "admin", "pw", "t1", this::open);
+        Thread.sleep(30);
+        pool.evictIdle();
+
+        assertThat(pool.size()).isZero();
+    }
+
+    @Test
+    void get_OpenFails_ShouldNotPool() throws Exception {
+        pool = new JmxConnectionPool(60_000, 60_000, 2);
+
+        assertThatThrownBy(() -> pool.get("url", "admin", "pw", "t1", () -> {
+            throw new IOException("refused");
+        })).hasMessage("refused");
+
+        MBeanServerConnection a = pool.get("url", "admin", "pw", "t1", this::open);
+        assertThat(a.getMBeanCount()).isPositive();
+    }
+
+    @Test
+    void get_ConcurrentEviction_ShouldNotLeakConnections() throws Exception {
+        pool = new JmxConnectionPool(0, 60_000, 2);
+        List<AtomicBoolean> closed = Collections.synchronizedList(new ArrayList<>());
+        JmxConnectionPool.Opener opener = () -> {
+            AtomicBoolean c = new AtomicBoolean();
+            closed.add(c);
+            return fakeConnector(c);
+        };
+
+        AtomicBoolean done = new AtomicBoolean();
+        Thread evictor = new Thread(() -> {
+            while (!done.get()) {
+                pool.evictIdle();
+            }
+        });
+        evictor.start();
+        List<Thread> callers = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread t = new Thread(() -> {
+                try {
+                    for (int n = 0; n < 2000; n++) {
+                        pool.get("url", "admin", "pw", "t1", opener);
+                    }
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            t.start();
+            callers.add(t);
+        }
+        for (Thread t : callers) {
+            t.join();
+        }
+        done.set(true);
+        evictor.join();
+        pool.closeAll();
+
+        // a connection opened into an entry the evictor had already dropped would never be closed
+        assertThat(closed).isNotEmpty().allMatch(AtomicBoolean::get);
+    }
+
+    @Test
+    void isConnectionFailure_ShouldOnlyMatchConnectionErrors() {
+        assertThat(JmxConnectionPool.isConnectionFailure(new IOException("reset"))).isTrue();
+        assertThat(JmxConnectionPool.isConnectionFailure(
+                new InvocationTargetException(new UndeclaredThrowableException(new ConnectException("refused"))))).isTrue();
+        assertThat(JmxConnectionPool.isConnectionFailure(new javax.naming.ServiceUnavailableException())).isTrue();
+
+        assertThat(JmxConnectionPool.isConnectionFailure(
+                new InvocationTargetException(new UndeclaredThrowableException(new InstanceNotFoundException("jeus:x"))))).isFalse();
+        assertThat(JmxConnectionPool.isConnectionFailure(new MalformedObjectNameException("bad"))).isFalse();
+        assertThat(JmxConnectionPool.isConnectionFailure(new MBeanException(new IOException("inside the MBean")))).isFalse();
+        assertThat(JmxConnectionPool.isConnectionFailure(new NoSuchMethodException("getServerState"))).isFalse();
+    }
+
+    private static JMXConnector fakeConnector(AtomicBoolean closed) {
+        MBeanServerConnection connection = (MBeanServerConnection) Proxy.newProxyInstance(
+                JmxConnectionPoolTest.class.getClassLoader(), new Class<?>[] { MBeanServerConnection.class },
+                (proxy, method, args) -> method.getName().equals("getMBeanCount") ? 1 : null);
+        return (JMXConnector) Proxy.newProxyInstance(
+                JmxConnectionPoolTest.class.getClassLoader(), new Class<?>[] { JMXConnector.class },
+                (proxy, method, args) -> {
+                    if (method.getName().equals("close")) {
+                        closed.set(true);
+                    }
+                    return method.getName().equals("getMBeanServerConnection") ? connection : null;
+                });
+    }
+
+    @Test
+    void queryStates_ShouldKeepServerOrder() throws Exception {
+        pool = new JmxConnectionPool(60_000, 60_000, 4);
+        JmxStatFunc func = new JmxStatFunc(pool);
+
+        List<String> servers = Arrays.asList("s1", "s2", "s3", "s4", "s5");
+        List<String> states = func.queryStates(servers, s -> {
+            Thread.sleep(s.equals("s1") ? 50 : 0);
+            return "RUNNING-" + s;
+        });
+
+        assertThat(states).containsExactly("RUNNING-s1", "RUNNING-s2", "RUNNING-s3", "RUNNING-s4", "RUNNING-s5");
+    }
+
+    @Test
+    void queryStates_QueryFails_ShouldPropagateFailure() {
+        pool = new JmxConnectionPool(60_000, 60_000, 4);
+        JmxStatFunc func = new JmxStatFunc(pool);
+
+        assertThatThrownBy(() -> func.queryStates(Arrays.asList("s1", "s2"), s -> {
+            if (s.equals("s2")) {
+                throw new IOException("connection lost");
+            }
+            return "RUNNING";
+        })).isInstanceOf(IOException.class).hasMessage("connection lost");
+    }
+}
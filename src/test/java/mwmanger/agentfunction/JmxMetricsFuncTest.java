@@ -0,0 +1,180 @@
+package mwagent.agentfunction;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.remote.JMXConnectorServer;
+import javax.management.remote.JMXConnectorServerFactory;
+import javax.management.remote.JMXServiceURL;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import mwagent.common.Config;
+import mwagent.vo.CommandVO;
+import mwagent.vo.ResultVO;
+
+class JmxMetricsFuncTest {
+
+    public interface SampleMBean {
+        long getCount();
+        String getName();
+    }
+
+    public static class Sample implements SampleMBean {
+        volatile long count;
+        private final String name;
+
+        Sample(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public long getCount() {
+            return count;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+    }
+
+    private final MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+    private JMXConnectorServer server;
+    private JmxConnectionPool pool;
+    private final Sample a = new Sample("a");
+    private final Sample b = new Sample("b");
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Config.getConfig().setLogger(Logger.getLogger("TestLogger"));
+        mbs.registerMBean(a, new ObjectName("mwagent.test:type=Sample,name=a"));
+        mbs.registerMBean(b, new ObjectName("mwagent.test:type=Sample,name=b"));
+        server = JMXConnectorServerFactory.newJMXConnectorServer(
+                new JMXServiceURL("service:jmx:rmi://127.0.0.1"), null, mbs);
+        server.start();
+        pool = new JmxConnectionPool(60_000, 60_000, 4);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        pool.closeAll();
+        server.stop();
+        for (ObjectName n : mbs.queryNames(new ObjectName("mwagent.test:*"), null)) {
+            mbs.unregisterMBean(n);
+        }
+    }
+
+    private JSONObject collect(String queries) throws Exception {
+        CommandVO command = new CommandVO();
+        command.setAdditionalParams("{\"jmx_url\":\"" + server.getAddress() + "\",\"queries\":" + queries + "}");
+
+        ArrayList<ResultVO> results = new JmxMetricsFunc(pool).exeCommand(command);
+        assertThat(results.get(0).isOk()).as(results.get(0).getResult()).isTrue();
+        return (JSONObject) new JSONParser().parse(results.get(0).getResult());
+    }
+
+    @Test
+    void exeCommand_Pattern_ShouldCollectFlattenedCompositeValues() throws Exception {
+        JSONObject result = collect("[{\"object_name\":\"mwagent.test:type=Sample,*\"},"
+                + "{\"object_name\":\"java.lang:type=Memory\",\"attributes\":[\"HeapMemoryUsage\"]}]");
+
+        JSONObject mbeans = (JSONObject) result.get("mbeans");
+        assertThat(result.get("full")).isEqualTo(true);
+        assertThat(mbeans).containsKeys("mwagent.test:name=a,type=Sample", "mwagent.test:name=b,type=Sample");
+        assertThat((JSONObject) mbeans.get("mwagent.test:name=a,type=Sample")).containsEntry("Name", "a").containsEntry("Count", 0L);
+        assertThat((JSONObject) mbeans.get("java.lang:type=Memory")).containsKeys("HeapMemoryUsage.used", "HeapMemoryUsage.max");
+    }
+
+    @Test
+    void exeCommand_Repeated_ShouldSendOnlyChangedValuesBetweenFullResults() throws Exception {
+        String queries = "[{\"object_name\":\"mwagent.test:type=Sample,*\",\"attributes\":[\"Count\",\"Name\"]}]";
+
+        JSONObject first = collect(queries);
+        a.count = 5;
+        JSONObject second = collect(queries);
+        mbs.unregisterMBean(new ObjectName("mwagent.test:type=Sample,name=b"));
+        JSONObject third = collect(queries);
+
+        assertThat(first.get("full")).isEqualTo(true);
+        assertThat(second.get("full")).isEqualTo(false);
+        assertThat((long) second.get("seq")).isEqualTo((long) first.get("seq") + 1);
+
+        JSONObject changed = (JSONObject) second.get("mbeans");
+        assertThat(changed).containsOnlyKeys("mwagent.test:name=a,type=Sample");
+        assertThat((JSONObject) changed.get("mwagent.test:name=a,type=Sample")).containsOnlyKeys("Count").containsEntry("Count", 5L);
+
+        assertThat((JSONObject) third.get("mbeans")).isEmpty();
+        assertThat((JSONArray) third.get("removed")).containsExactly("mwagent.test:name=b,type=Sample");
+    }
+
+    @Test
+    void encode_ShouldSendFullResultPeriodically() {
+        JmxMetricsFunc.Snapshot snapshot = new JmxMetricsFunc.Snapshot();
+        Map<String, Map<String, Object>> values = new LinkedHashMap<>();
+        values.put("x:type=A", new LinkedHashMap<>());
+        values.get("x:type=A").put("v", 1L);
+
+        assertThat(snapshot.encode(values, true, 3).get("full")).isEqualTo(true);
+        assertThat(snapshot.encode(values, true, 3).get("full")).isEqualTo(false);
+        assertThat(snapshot.encode(values, true, 3).get("full")).isEqualTo(false);
+        assertThat(snapshot.encode(values, true, 3).get("full")).isEqualTo(true);
+        assertThat(snapshot.encode(values, false, 3).get("full")).isEqualTo(true);
+
+        snapshot.reset();
+        assertThat(snapshot.encode(values, true, 3).get("full")).isEqualTo(true);
+    }
+
+    @Test
+    void snapshot_OverMaxSnapshots_ShouldDropLeastRecentlyUsed() {
+        int max = Config.getConfig().getJmxMetricsMaxSnapshots();
+        Config.getConfig().setJmxMetricsMaxSnapshots(2);
+        try {
+            String prefix = "lru_" + System.nanoTime() + "|";
+            JmxMetricsFunc.Snapshot a = JmxMetricsFunc.snapshot(prefix + "a");
+            JmxMetricsFunc.Snapshot b = JmxMetricsFunc.snapshot(prefix + "b");
+            JmxMetricsFunc.snapshot(prefix + "a");
+            JmxMetricsFunc.snapshot(prefix + "c");
+
+            assertThat(JmxMetricsFunc.snapshot(prefix + "a")).isSameAs(a);
+            assertThat(JmxMetricsFunc.snapshot(prefix + "b")).isNotSameAs(b);
+        } finally {
+            Config.getConfig().setJmxMetricsMaxSnapshots(max);
+        }
+    }
+
+    @Test
+    void exeCommand_ConnectionError_ShouldReportIt() throws Exception {
+        CommandVO command = new CommandVO();
+        command.setAdditionalParams("{\"jmx_url\":\"service:jmx:rmi:///jndi/rmi://127.0.0.1:1/jmxrmi\","
+                + "\"queries\":[{\"object_name\":\"java.lang:type=Memory\"}]}");
+
+        ResultVO rv = new JmxMetricsFunc(pool).exeCommand(command).get(0);
+
+        assertThat(rv.isOk()).isFalse();
+        assertThat(rv.getResult()).startsWith("jmx connection error");
+    }
+
+    @Test
+    void exeCommand_InvalidParams_ShouldReject() throws Exception {
+        CommandVO command = new CommandVO();
+        command.setAdditionalParams("{\"queries\":[]}");
+
+        ResultVO rv = new JmxMetricsFunc(pool).exeCommand(command).get(0);
+
+        assertThat(rv.isOk()).isFalse();
+        assertThat(rv.getResult()).isEqualTo("params parsing error");
+    }
+}
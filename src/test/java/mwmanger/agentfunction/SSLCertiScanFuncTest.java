@@ -0,0 +1,138 @@
+package mwagent.agentfunction;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import mwagent.common.Config;
+import mwagent.vo.CommandVO;
+import mwagent.vo.ResultVO;
+
+class SSLCertiScanFuncTest {
+
+    private final List<Socket> accepted = new ArrayList<>();
+    private ServerSocket silentServer;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Config.getConfig().setLogger(Logger.getLogger("TestLogger"));
+        // accepts connections but never answers the TLS handshake
+        silentServer = new ServerSocket(0);
+        Thread t = new Thread(() -> {
+            try {
+                while (true) {
+                    accepted.add(silentServer.accept());
+                }
+            } catch (Exception e) {
+                // closed
+            }
+        });
+        t.setDaemon(true);
+        t.start();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        silentServer.close();
+        for (Socket s : accepted) {
+            s.close();
+        }
+    }
+
+    private static int closedPort() throws Exception {
+        try (ServerSocket s = new ServerSocket(0)) {
+            return s.getLocalPort();
+        }
+    }
+
+    private static JSONObject params(String json) throws Exception {
+        return (JSONObject) new JSONParser().parse(json);
+    }
+
+    @Test
+    void parseTargets_ShouldAcceptStringsAndObjects() throws Exception {
+        List<SSLCertiScanFunc.Target> targets = SSLCertiScanFunc.parseTargets(params(
+                "{\"targets\":[\"example.com\",\"api.example.com:8443\","
+                + "{\"host\":\"10.0.0.5\",\"port\":9443,\"sni\":\"www.example.com\"},{\"sni\":\"b.example.com\"}]}"));
+
+        assertThat(targets).extracting(t -> t.host + "|" + t.port + "|" + t.sni).containsExactly(
+                "example.com|443|example.com",
+                "api.example.com|8443|api.example.com",
+                "10.0.0.5|9443|www.example.com",
+                "b.example.com|443|b.example.com");
+    }
+
+    @Test
+    void parseTargets_WithConnectHost_ShouldConnectThroughIt() throws Exception {
+        List<SSLCertiScanFunc.Target> targets = SSLCertiScanFunc.parseTargets(params(
+                "{\"connect_host\":\"127.0.0.1\",\"targets\":[\"example.com:8443\"]}"));
+
+        assertThat(targets.get(0).host).isEqualTo("127.0.0.1");
+        assertThat(targets.get(0).sni).isEqualTo("example.com");
+    }
+
+    @Test
+    void parseTargets_WithoutArray_ShouldThrow() {
+        assertThatThrownBy(() -> SSLCertiScanFunc.parseTargets(params("{\"targets\":\"example.com\"}")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void scan_ShouldReportPerTargetErrorsWithinTimeouts() throws Exception {
+        List<SSLCertiScanFunc.Target> targets = new ArrayList<>();
+        targets.add(new SSLCertiScanFunc.Target("127.0.0.1", closedPort(), "refused.example.com"));
+        for (int i = 0; i < 4; i++) {
+            targets.add(new SSLCertiScanFunc.Target("127.0.0.1", silentServer.getLocalPort(), "silent" + i + ".example.com"));
+        }
+
+        long start = System.currentTimeMillis();
+        JSONArray results = new SSLCertiScanFunc().scan(targets, 8, 1000, 500);
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertThat(results).hasSize(5);
+        assertThat(((JSONObject) results.get(0)).get("sni")).isEqualTo("refused.example.com");
+        assertThat((String) ((JSONObject) results.get(0)).get("error")).contains("ConnectException");
+        for (int i = 1; i < 5; i++) {
+            assertThat((String) ((JSONObject) results.get(i)).get("error")).contains("SocketTimeoutException");
+        }
+        // the silent targets time out concurrently, not one after another
+        assertThat(elapsed).isLessThan(1500);
+    }
+
+    @Test
+    void exeCommand_ShouldReturnOneAggregatedResult() throws Exception {
+        CommandVO command = new CommandVO();
+        command.setAdditionalParams("{\"targets\":[\"127.0.0.1:" + closedPort() + "\"],\"connect_timeout_ms\":500}");
+
+        ArrayList<ResultVO> rvs = new SSLCertiScanFunc().exeCommand(command);
+
+        assertThat(rvs).hasSize(1);
+        assertThat(rvs.get(0).isOk()).isTrue();
+        JSONObject json = params(rvs.get(0).getResult());
+        assertThat(json.get("total")).isEqualTo(1L);
+        assertThat(json.get("failed")).isEqualTo(1L);
+    }
+
+    @Test
+    void exeCommand_WithInvalidParams_ShouldFail() throws Exception {
+        CommandVO command = new CommandVO();
+        command.setAdditionalParams("example.com");
+
+        ArrayList<ResultVO> rvs = new SSLCertiScanFunc().exeCommand(command);
+
+        assertThat(rvs.get(0).isOk()).isFalse();
+        assertThat(rvs.get(0).getResult()).isEqualTo("params parsing error");
+    }
+
+}
@@ -0,0 +1,237 @@
+package mwagent.common;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Logger;
+
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import mwagent.vo.MwResponseVO;
+
+class ArtifactCacheTest {
+
+    @TempDir
+    Path tmp;
+
+    private Path cacheDir;
+    private HttpServer server;
+    private CloseableHttpClient client;
+    private volatile byte[] content;
+    private volatile String etag = "\"v1\"";
+
+    // "200", "206" or "304" per request
+    private final List<String> answers = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Config.getConfig().setLogger(Logger.getLogger("TestLogger"));
+        content = random(200_000, 3);
+        cacheDir = tmp.resolve("cache");
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/files/", this::serve);
+        server.start();
+        client = HttpClients.createDefault();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        client.close();
+        server.stop(0);
+    }
+
+    private void serve(HttpExchange ex) throws IOException {
+        ex.getResponseHeaders().set("ETag", etag);
+        if (etag.equals(ex.getRequestHeaders().getFirst("If-None-Match"))) {
+            answers.add("304");
+            ex.sendResponseHeaders(304, -1);
+            ex.close();
+            return;
+        }
+        byte[] body = content;
+        if ("bytes=0-0".equals(ex.getRequestHeaders().getFirst("Range"))) {
+            answers.add("206");
+            ex.getResponseHeaders().set("Content-Range", "bytes 0-0/" + body.length);
+            ex.sendResponseHeaders(206, 1);
+            try (OutputStream os = ex.getResponseBody()) {
+                os.write(body, 0, 1);
+            }
+            return;
+        }
+        answers.add("200");
+        ex.sendResponseHeaders(200, body.length);
+        try (OutputStream os = ex.getResponseBody()) {
+            os.write(body);
+        }
+    }
+
+    private static byte[] random(int size, long seed) {
+        byte[] b = new byte[size];
+        new Random(seed).nextBytes(b);
+        return b;
+    }
+
+    private static String sha256(byte[] b) throws Exception {
+        return FileDownloader.hex(MessageDigest.getInstance("SHA-256").digest(b));
+    }
+
+    private String url(String name) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/files/" + name;
+    }
+
+    private MwResponseVO download(ArtifactCache cache, String name, Path dir, String sha256) throws IOException {
+        Files.createDirectories(dir);
+        return new FileDownloader(client, 0, 0).cache(cache).download(url(name), null, dir.toString(), sha256);
+    }
+
+    @Test
+    void download_UnchangedFile_ShouldServeFromCacheAfterConditionalRequest() throws Exception {
+        ArtifactCache cache = new ArtifactCache(cacheDir, 0, true);
+
+        MwResponseVO first = download(cache, "patch.zip", tmp.resolve("a"), null);
+        MwResponseVO second = download(cache, "patch.zip", tmp.resolve("b"), null);
+
+        assertThat(first.isCached()).isFalse();
+        assertThat(second.getStatusCode()).isEqualTo(200);
+        assertThat(second.isCached()).isTrue();
+        assertThat(second.getSha256()).isEqualTo(sha256(content));
+        assertThat(Files.readAllBytes(tmp.resolve("b/patch.zip"))).isEqualTo(content);
+        assertThat(answers).containsExactly("200", "304");
+        assertThat(cache.totalBytes()).isEqualTo(content.length);
+    }
+
+    @Test
+    void download_KnownChecksum_ShouldServeWithoutRequest() throws Exception {
+        ArtifactCache cache = new ArtifactCache(cacheDir, 0, true);
+        download(cache, "patch.zip", tmp.resolve("a"), null);
+
+        MwResponseVO r = download(cache, "patch.zip", tmp.resolve("b"), sha256(content).toUpperCase());
+
+        assertThat(r.isCached()).isTrue();
+        assertThat(answers).containsExactly("200");
+        // hard linked, not copied
+        assertThat(Files.isSameFile(tmp.resolve("a/patch.zip"), tmp.resolve("b/patch.zip"))).isTrue();
+    }
+
+    @Test
+    void download_SameDirectoryAgain_ShouldLeaveNoPartFile() throws Exception {
+        ArtifactCache cache = new ArtifactCache(cacheDir, 0, true);
+        download(cache, "patch.zip", tmp.resolve("a"), null);
+
+        MwResponseVO r = download(cache, "patch.zip", tmp.resolve("a"), sha256(content));
+
+        assertThat(r.isCached()).isTrue();
+        try (java.util.stream.Stream<Path> s = Files.list(tmp.resolve("a"))) {
+            assertThat(s.map(p -> p.getFileName().toString())).containsExactly("patch.zip");
+        }
+    }
+
+    @Test
+    void download_ChangedFile_ShouldDownloadAgain() throws Exception {
+        ArtifactCache cache = new ArtifactCache(cacheDir, 0, false);
+        download(cache, "patch.zip", tmp.resolve("a"), null);
+
+        content = random(150_000, 4);
+        etag = "\"v2\"";
+        MwResponseVO r = download(cache, "patch.zip", tmp.resolve("b"), null);
+
+        assertThat(r.isCached()).isFalse();
+        assertThat(Files.readAllBytes(tmp.resolve("b/patch.zip"))).isEqualTo(content);
+        assertThat(answers).containsExactly("200", "206", "200");
+        assertThat(cache.lookup(url("patch.zip")).getEtag()).isEqualTo("\"v2\"");
+    }
+
+    @Test
+    void put_OverMaxBytes_ShouldEvictLeastRecentlyUsed() throws Exception {
+        ArtifactCache cache = new ArtifactCache(cacheDir, 450_000, false);
+
+        download(cache, "one.zip", tmp.resolve("a"), null);
+        String one = sha256(content);
+        content = random(200_000, 5);
+        download(cache, "two.zip", tmp.resolve("a"), null);
+        Thread.sleep(5);
+        // one.zip used again : two.zip is now the least recently used
+        assertThat(cache.materialize(one, tmp.resolve("one.copy"))).isTrue();
+        content = random(200_000, 6);
+        download(cache, "three.zip", tmp.resolve("a"), null);
+
+        assertThat(cache.lookup(url("one.zip"))).isNotNull();
+        assertThat(cache.lookup(url("two.zip"))).isNull();
+        assertThat(cache.lookup(url("three.zip"))).isNotNull();
+        assertThat(cache.totalBytes()).isEqualTo(400_000);
+    }
+
+    @Test
+    void lookup_BlobModifiedThroughLink_ShouldNotServe() throws Exception {
+        ArtifactCache cache = new ArtifactCache(cacheDir, 0, true);
+        download(cache, "patch.zip", tmp.resolve("a"), null);
+        String sha = sha256(content);
+
+        Files.write(tmp.resolve("a/patch.zip"), new byte[] { 1, 2, 3 });
+
+        assertThat(cache.contains(sha)).isFalse();
+        MwResponseVO r = download(cache, "patch.zip", tmp.resolve("b"), sha);
+        assertThat(r.isCached()).isFalse();
+        assertThat(Files.readAllBytes(tmp.resolve("b/patch.zip"))).isEqualTo(content);
+    }
+
+    @Test
+    void detach_HardLinkedFile_ShouldNoLongerShareBlob() throws Exception {
+        ArtifactCache cache = new ArtifactCache(cacheDir, 0, true);
+        download(cache, "patch.zip", tmp.resolve("a"), null);
+        Path deployed = tmp.resolve("a/patch.zip");
+        String sha = sha256(content);
+        assertThat(Files.isSameFile(deployed, cache.get(sha))).isTrue();
+
+        assertThat(ArtifactCache.detach(deployed)).isTrue();
+        deployed.toFile().setExecutable(true, true);
+
+        assertThat(Files.isSameFile(deployed, cache.get(sha))).isFalse();
+        assertThat(cache.get(sha).toFile().canExecute()).isFalse();
+        assertThat(Files.readAllBytes(deployed)).isEqualTo(content);
+        assertThat(ArtifactCache.detach(deployed)).isFalse();
+    }
+
+    @Test
+    void materialize_Default_ShouldCopy() throws Exception {
+        ArtifactCache cache = new ArtifactCache(cacheDir, 0, Config.getConfig().isArtifactCacheHardlink());
+        download(cache, "patch.zip", tmp.resolve("a"), null);
+
+        download(cache, "patch.zip", tmp.resolve("b"), sha256(content));
+
+        assertThat(Files.isSameFile(tmp.resolve("a/patch.zip"), tmp.resolve("b/patch.zip"))).isFalse();
+        assertThat(Files.isSameFile(tmp.resolve("b/patch.zip"), cache.get(sha256(content)))).isFalse();
+    }
+
+    @Test
+    void download_PresignedUrls_ShouldShareOneEntry() throws Exception {
+        ArtifactCache cache = new ArtifactCache(cacheDir, 0, true);
+        Files.createDirectories(tmp.resolve("a"));
+        Files.createDirectories(tmp.resolve("b"));
+
+        new FileDownloader(client, 0, 0).cache(cache).cacheIgnoringQuery()
+                .download(url("patch.zip?X-Amz-Signature=1"), null, tmp.resolve("a").toString(), null);
+        MwResponseVO r = new FileDownloader(client, 0, 0).cache(cache).cacheIgnoringQuery()
+                .download(url("patch.zip?X-Amz-Signature=2"), null, tmp.resolve("b").toString(), null);
+
+        assertThat(r.isCached()).isTrue();
+        assertThat(answers).containsExactly("200", "304");
+    }
+}
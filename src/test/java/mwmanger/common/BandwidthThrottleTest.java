@@ -0,0 +1,49 @@
+package mwagent.common;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+class BandwidthThrottleTest {
+
+    @Test
+    void acquire_WithinRate_ShouldNotWait() throws Exception {
+        AtomicLong clock = new AtomicLong();
+        BandwidthThrottle throttle = new BandwidthThrottle(1000, clock::get);
+
+        long start = System.nanoTime();
+        throttle.acquire(600);
+        throttle.acquire(400);
+
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(100);
+    }
+
+    @Test
+    void acquire_OverRate_ShouldWaitForTheDebt() throws Exception {
+        AtomicLong clock = new AtomicLong();
+        BandwidthThrottle throttle = new BandwidthThrottle(1000, clock::get);
+
+        throttle.acquire(1000);
+        long start = System.nanoTime();
+        throttle.acquire(200);
+
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isBetween(150L, 1000L);
+    }
+
+    @Test
+    void acquire_AfterLongIdle_ShouldRefillWithoutOverflow() throws Exception {
+        AtomicLong clock = new AtomicLong();
+        // 100 MB/s : elapsed nanos * rate exceeds a long after about 92 seconds
+        BandwidthThrottle throttle = new BandwidthThrottle(100_000_000L, clock::get);
+        throttle.acquire(100_000_000L);
+
+        clock.addAndGet(TimeUnit.HOURS.toNanos(1));
+        long start = System.nanoTime();
+        throttle.acquire(50_000_000L);
+
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(100);
+    }
+}
@@ -0,0 +1,120 @@
+package mwagent.common;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CertificateCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        Config.getConfig().setLogger(Logger.getLogger("TestLogger"));
+    }
+
+    private X509Certificate[] loadChain() {
+        loads.incrementAndGet();
+        return new X509Certificate[0];
+    }
+
+    private X509Certificate loadFile() {
+        loads.incrementAndGet();
+        return null;
+    }
+
+    @Test
+    void endpoint_WithinTtl_ShouldNotReload() throws Exception {
+        CertificateCache cache = new CertificateCache(10, 60000);
+
+        cache.endpoint("a.example.com", "127.0.0.1", 443, this::loadChain);
+        cache.endpoint("a.example.com", "127.0.0.1", 443, this::loadChain);
+        cache.endpoint("b.example.com", "127.0.0.1", 443, this::loadChain);
+
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    void endpoint_AfterTtl_ShouldReload() throws Exception {
+        CertificateCache cache = new CertificateCache(10, 0);
+
+        cache.endpoint("a.example.com", "127.0.0.1", 443, this::loadChain);
+        Thread.sleep(5);
+        cache.endpoint("a.example.com", "127.0.0.1", 443, this::loadChain);
+
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    void endpoint_Failure_ShouldNotBeCached() {
+        CertificateCache cache = new CertificateCache(10, 60000);
+
+        for (int i = 0; i < 2; i++) {
+            assertThatThrownBy(() -> cache.endpoint("a.example.com", "127.0.0.1", 443, () -> {
+                loads.incrementAndGet();
+                throw new IOException("refused");
+            })).isInstanceOf(IOException.class);
+        }
+
+        assertThat(loads.get()).isEqualTo(2);
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void file_ShouldReloadOnlyWhenChanged() throws Exception {
+        CertificateCache cache = new CertificateCache(10, 60000);
+        Path pem = tempDir.resolve("server.pem");
+        Files.write(pem, "cert".getBytes());
+
+        cache.file(pem, this::loadFile);
+        cache.file(pem, this::loadFile);
+        assertThat(loads.get()).isEqualTo(1);
+
+        Files.setLastModifiedTime(pem, FileTime.fromMillis(Files.getLastModifiedTime(pem).toMillis() + 10000));
+        cache.file(pem, this::loadFile);
+        assertThat(loads.get()).isEqualTo(2);
+
+        Files.write(pem, "longer cert".getBytes());
+        Files.setLastModifiedTime(pem, FileTime.fromMillis(Files.getLastModifiedTime(pem).toMillis() + 10000));
+        cache.file(pem, this::loadFile);
+        assertThat(loads.get()).isEqualTo(3);
+    }
+
+    @Test
+    void file_Missing_ShouldAlwaysLoad() throws Exception {
+        CertificateCache cache = new CertificateCache(10, 60000);
+        Path missing = tempDir.resolve("missing.pem");
+
+        cache.file(missing, this::loadFile);
+        cache.file(missing, this::loadFile);
+
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    void size_ShouldBeBounded() throws Exception {
+        CertificateCache cache = new CertificateCache(3, 60000);
+
+        for (int i = 0; i < 10; i++) {
+            cache.endpoint("h" + i, "127.0.0.1", 443, this::loadChain);
+        }
+        cache.endpoint("h9", "127.0.0.1", 443, this::loadChain);
+
+        assertThat(cache.size()).isEqualTo(3);
+        assertThat(loads.get()).isEqualTo(10);
+    }
+
+}
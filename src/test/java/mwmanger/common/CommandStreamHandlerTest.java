@@ -0,0 +1,133 @@
+package mwagent.common;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+import mwagent.vo.MwResponseVO;
+
+class CommandStreamHandlerTest {
+
+    private final List<JSONObject> received = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        Config.getConfig().setLogger(Logger.getLogger("TestLogger"));
+        received.clear();
+    }
+
+    private CommandStreamHandler parse(String json) throws Exception {
+        CommandStreamHandler handler = new CommandStreamHandler(received::add);
+        new JSONParser().parse(new StringReader(json), handler);
+        return handler;
+    }
+
+    @Test
+    void commands_ShouldBeDeliveredOneByOneAndNotKept() throws Exception {
+        CommandStreamHandler handler = parse("{\"return_code\":1,\"data\":["
+                + "{\"command_id\":\"C1\",\"command_class\":\"ExeText\",\"additional_params\":\"echo [1,2] {a}\"},"
+                + "{\"command_id\":\"C2\",\"nested\":{\"list\":[1,{\"x\":true}]}}"
+                + "],\"long_poll_timeout\":30}");
+
+        assertThat(handler.getCommandCount()).isEqualTo(2);
+        assertThat(received).extracting(c -> c.get("command_id")).containsExactly("C1", "C2");
+        assertThat(received.get(0).get("additional_params")).isEqualTo("echo [1,2] {a}");
+        JSONArray list = (JSONArray) ((JSONObject) received.get(1).get("nested")).get("list");
+        assertThat(list).hasSize(2);
+
+        assertThat(handler.getResponse().get("return_code")).isEqualTo(1L);
+        assertThat(handler.getResponse().get("long_poll_timeout")).isEqualTo(30L);
+        assertThat(handler.getResponse().containsKey("data")).isFalse();
+    }
+
+    @Test
+    void negativeReturnCodeBeforeData_ShouldSkipCommands() throws Exception {
+        CommandStreamHandler handler = parse("{\"return_code\":-1,\"data\":[{\"command_id\":\"C1\"}]}");
+
+        assertThat(received).isEmpty();
+        assertThat(handler.getCommandCount()).isZero();
+        assertThat(handler.getSkippedCount()).isEqualTo(1);
+        assertThat(handler.getResponse().get("return_code")).isEqualTo(-1L);
+    }
+
+    @Test
+    void nonObjectEntries_ShouldBeSkipped() throws Exception {
+        CommandStreamHandler handler = parse("{\"data\":[\"x\",[1],{\"command_id\":\"C1\"}],\"return_code\":1}");
+
+        assertThat(handler.getCommandCount()).isEqualTo(1);
+        assertThat(handler.getSkippedCount()).isEqualTo(2);
+    }
+
+    @Test
+    void nestedDataKey_ShouldNotBeStreamed() throws Exception {
+        CommandStreamHandler handler = parse("{\"return_code\":1,\"meta\":{\"data\":[{\"a\":1}]},\"data\":[]}");
+
+        assertThat(received).isEmpty();
+        JSONObject meta = (JSONObject) handler.getResponse().get("meta");
+        assertThat((JSONArray) meta.get("data")).hasSize(1);
+    }
+
+    @Test
+    void httpGET_WithHandler_ShouldStreamCommandsFromResponse() throws Exception {
+        StringBuilder body = new StringBuilder("{\"return_code\":1,\"data\":[");
+        for (int i = 0; i < 500; i++) {
+            body.append(i > 0 ? "," : "").append("{\"command_id\":\"C").append(i).append("\",\"additional_params\":\"한글 스크립트\"}");
+        }
+        body.append("]}");
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/cmd", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(bytes);
+            }
+        });
+        server.start();
+        String serverUrl = Config.getConfig().getServer_url();
+        try {
+            Config.getConfig().setServer_url("http://127.0.0.1:" + server.getAddress().getPort());
+            CommandStreamHandler handler = new CommandStreamHandler(received::add);
+
+            MwResponseVO mrvo = Common.httpGET("/cmd", "token", 0, handler);
+
+            assertThat(mrvo.getStatusCode()).isEqualTo(200);
+            assertThat(mrvo.getResponse().get("return_code")).isEqualTo(1L);
+            assertThat(handler.getCommandCount()).isEqualTo(500);
+            assertThat(received.get(499).get("additional_params")).isEqualTo("한글 스크립트");
+        } finally {
+            Config.getConfig().setServer_url(serverUrl);
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void abbreviate_ShouldLimitLoggedBody() {
+        int maxChars = Config.getConfig().getHttpResponseLogMaxChars();
+        try {
+            Config.getConfig().setHttpResponseLogMaxChars(10);
+
+            assertThat(Common.abbreviate("short", 5)).isEqualTo("short");
+            assertThat(Common.abbreviate("0123456789abcdef", 16)).isEqualTo("0123456789...(16 chars)");
+            assertThat(Common.abbreviate("0123456789", 5000)).isEqualTo("0123456789...(5000 chars)");
+        } finally {
+            Config.getConfig().setHttpResponseLogMaxChars(maxChars);
+        }
+    }
+
+}
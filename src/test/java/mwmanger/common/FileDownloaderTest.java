@@ -0,0 +1,228 @@
+package mwagent.common;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import mwagent.vo.MwResponseVO;
+
+class FileDownloaderTest {
+
+    private static final String ETAG = "\"v1\"";
+
+    @TempDir
+    Path dir;
+
+    private HttpServer server;
+    private CloseableHttpClient client;
+    private byte[] content;
+    private String sha256;
+
+    // request headers seen by the server, "Range" value or "-"
+    private final List<String> ranges = new CopyOnWriteArrayList<>();
+    private volatile int failAfterBytes = -1;
+    private volatile int stallAfterBytes = -1;
+    private final CountDownLatch released = new CountDownLatch(1);
+    private volatile boolean supportRange = true;
+    private volatile String checksumHeader;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Config.getConfig().setLogger(Logger.getLogger("TestLogger"));
+        content = new byte[300_000];
+        new Random(7).nextBytes(content);
+        sha256 = FileDownloader.hex(MessageDigest.getInstance("SHA-256").digest(content));
+        checksumHeader = sha256;
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/files/patch.bin", this::serve);
+        // a stalled response must not hold up the next request
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        client = HttpClients.createDefault();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        released.countDown();
+        client.close();
+        server.stop(0);
+    }
+
+    private void serve(HttpExchange ex) throws IOException {
+        String range = ex.getRequestHeaders().getFirst("Range");
+        String ifRange = ex.getRequestHeaders().getFirst("If-Range");
+        ranges.add(range != null ? range : "-");
+
+        long start = 0;
+        if (supportRange && range != null && (ifRange == null || ifRange.equals(ETAG))) {
+            start = Long.parseLong(range.substring("bytes=".length(), range.indexOf('-')));
+        }
+
+        ex.getResponseHeaders().set("ETag", ETAG);
+        if (checksumHeader != null) {
+            ex.getResponseHeaders().set("X-Checksum-Sha256", checksumHeader);
+        }
+        int length = (int) (content.length - start);
+        if (start > 0) {
+            ex.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + (content.length - 1) + "/" + content.length);
+            ex.sendResponseHeaders(206, length);
+        } else {
+            ex.sendResponseHeaders(200, length);
+        }
+
+        OutputStream os = ex.getResponseBody();
+        int limit = failAfterBytes;
+        if (limit >= 0) {
+            // only once: drop the connection in the middle of the body
+            failAfterBytes = -1;
+            os.write(content, (int) start, limit);
+            os.flush();
+            throw new IOException("connection dropped");
+        }
+        int stall = stallAfterBytes;
+        if (stall >= 0) {
+            // only once: keep the connection open without sending anything
+            stallAfterBytes = -1;
+            os.write(content, (int) start, stall);
+            os.flush();
+            try {
+                released.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new IOException("connection stalled");
+        }
+        os.write(content, (int) start, length);
+        os.close();
+    }
+
+    private String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/files/patch.bin";
+    }
+
+    private FileDownloader downloader(int retries) {
+        return new FileDownloader(client, retries, 0);
+    }
+
+    private List<String> listDir() throws IOException {
+        try (Stream<Path> s = Files.list(dir)) {
+            return s.map(p -> p.getFileName().toString()).sorted().collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    void download_ShouldVerifyAndRename() throws Exception {
+        MwResponseVO r = downloader(0).download(url(), null, dir.toString(), null);
+
+        assertThat(r.getStatusCode()).isEqualTo(200);
+        assertThat(r.getFileName()).isEqualTo("patch.bin");
+        assertThat(r.getSha256()).isEqualTo(sha256);
+        assertThat(Files.readAllBytes(dir.resolve("patch.bin"))).isEqualTo(content);
+        assertThat(listDir()).containsExactly("patch.bin");
+    }
+
+    @Test
+    void download_DroppedConnection_ShouldResumeWithRange() throws Exception {
+        failAfterBytes = 100_000;
+
+        MwResponseVO r = downloader(2).download(url(), null, dir.toString(), null);
+
+        assertThat(r.getStatusCode()).isEqualTo(206);
+        assertThat(Files.readAllBytes(dir.resolve("patch.bin"))).isEqualTo(content);
+        assertThat(ranges).hasSize(2);
+        assertThat(ranges.get(0)).isEqualTo("-");
+        assertThat(ranges.get(1)).startsWith("bytes=").endsWith("-").isNotEqualTo("bytes=0-");
+        assertThat(listDir()).containsExactly("patch.bin");
+    }
+
+    @Test
+    void download_StalledConnection_ShouldTimeOutAndResume() throws Exception {
+        stallAfterBytes = 100_000;
+
+        long start = System.currentTimeMillis();
+        MwResponseVO r = downloader(2).readTimeout(500).download(url(), null, dir.toString(), null);
+
+        assertThat(System.currentTimeMillis() - start).isLessThan(5000);
+        assertThat(r.getStatusCode()).isEqualTo(206);
+        assertThat(Files.readAllBytes(dir.resolve("patch.bin"))).isEqualTo(content);
+        assertThat(ranges).hasSize(2);
+        assertThat(ranges.get(1)).startsWith("bytes=").isNotEqualTo("bytes=0-");
+    }
+
+    @Test
+    void download_RetriesExhausted_ShouldKeepPartFileForNextDownload() throws Exception {
+        failAfterBytes = 100_000;
+
+        MwResponseVO failed = downloader(0).download(url(), null, dir.toString(), null);
+        assertThat(failed.getStatusCode()).isEqualTo(FileDownloader.IO_ERROR);
+        assertThat(listDir()).doesNotContain("patch.bin").anyMatch(n -> n.endsWith(".part"));
+
+        // e.g. after an agent restart
+        MwResponseVO r = downloader(0).download(url(), null, dir.toString(), null);
+
+        assertThat(r.getStatusCode()).isEqualTo(206);
+        assertThat(Files.readAllBytes(dir.resolve("patch.bin"))).isEqualTo(content);
+        assertThat(listDir()).containsExactly("patch.bin");
+    }
+
+    @Test
+    void download_ServerIgnoresRange_ShouldRestart() throws Exception {
+        failAfterBytes = 100_000;
+        supportRange = false;
+
+        MwResponseVO r = downloader(1).download(url(), null, dir.toString(), null);
+
+        assertThat(r.getStatusCode()).isEqualTo(200);
+        assertThat(Files.readAllBytes(dir.resolve("patch.bin"))).isEqualTo(content);
+    }
+
+    @Test
+    void download_ChecksumMismatch_ShouldLeaveNoFile() throws Exception {
+        MwResponseVO r = downloader(0).download(url(), null, dir.toString(), "00" + sha256.substring(2));
+
+        assertThat(r.getStatusCode()).isEqualTo(FileDownloader.CHECKSUM_MISMATCH);
+        assertThat(listDir()).isEmpty();
+    }
+
+    @Test
+    void download_ServerChecksum_ShouldBeVerified() throws Exception {
+        checksumHeader = "ff" + sha256.substring(2);
+
+        MwResponseVO r = downloader(0).download(url(), null, dir.toString(), null);
+
+        assertThat(r.getStatusCode()).isEqualTo(FileDownloader.CHECKSUM_MISMATCH);
+        assertThat(listDir()).isEmpty();
+    }
+
+    @Test
+    void download_MissingDirectory_ShouldReportNotFound() {
+        MwResponseVO r = downloader(0).download(url(), null, dir.resolve("missing").toString(), null);
+
+        assertThat(r.getStatusCode()).isEqualTo(FileDownloader.NOT_FOUND);
+    }
+}
@@ -0,0 +1,51 @@
+package mwagent.common;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.util.logging.Logger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FileOffsetStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() {
+        Config.getConfig().setLogger(Logger.getLogger("TestLogger"));
+    }
+
+    @Test
+    void get_UnknownKey_ShouldReturnNull() {
+        FileOffsetStore store = new FileOffsetStore(tempDir.resolve("offsets.properties"));
+
+        assertThat(store.get("CMD|/var/log/a.log")).isNull();
+    }
+
+    @Test
+    void put_ShouldPersistAcrossInstances() {
+        Path file = tempDir.resolve("offsets.properties");
+        FileOffsetStore store = new FileOffsetStore(file);
+        store.put("CMD|/var/log/a.log", new FileOffsetStore.Entry(1234, "(dev=803,ino=42)"));
+
+        FileOffsetStore.Entry entry = new FileOffsetStore(file).get("CMD|/var/log/a.log");
+
+        assertThat(entry.getOffset()).isEqualTo(1234);
+        assertThat(entry.getFileKey()).isEqualTo("(dev=803,ino=42)");
+    }
+
+    @Test
+    void remove_ShouldDeleteEntry() {
+        Path file = tempDir.resolve("offsets.properties");
+        FileOffsetStore store = new FileOffsetStore(file);
+        store.put("k", new FileOffsetStore.Entry(1, "f"));
+
+        store.remove("k");
+
+        assertThat(new FileOffsetStore(file).get("k")).isNull();
+    }
+}
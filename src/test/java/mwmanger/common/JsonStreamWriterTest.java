@@ -0,0 +1,78 @@
+package mwagent.common;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
+import org.json.simple.parser.JSONParser;
+import org.junit.jupiter.api.Test;
+
+class JsonStreamWriterTest {
+
+    @Test
+    void escape_ShouldMatchJsonSimple() throws Exception {
+        String s = "quote\" back\\ slash/ \b\f\n\r\t \u0001 \u007F \u0085   한글 😀 end";
+
+        StringWriter sw = new StringWriter();
+        JsonStreamWriter.escape(s, sw);
+
+        assertThat(sw.toString()).isEqualTo(JSONValue.escape(s));
+    }
+
+    @Test
+    void escape_RandomStrings_ShouldMatchJsonSimple() throws Exception {
+        Random random = new Random(42);
+        for (int n = 0; n < 200; n++) {
+            char[] chars = new char[random.nextInt(300)];
+            for (int i = 0; i < chars.length; i++) {
+                chars[i] = (char) random.nextInt(0x2200);
+            }
+            String s = new String(chars);
+
+            StringWriter sw = new StringWriter();
+            JsonStreamWriter.escape(s, sw);
+
+            assertThat(sw.toString()).isEqualTo(JSONValue.escape(s));
+        }
+    }
+
+    @Test
+    void fields_ShouldProduceParsableObject() throws Exception {
+        StringWriter sw = new StringWriter();
+        new JsonStreamWriter(sw).beginObject()
+                .field("s", "a\"b")
+                .field("n", (String) null)
+                .field("b", true)
+                .field("l", 42L)
+                .endObject()
+                .flush();
+
+        JSONObject json = (JSONObject) new JSONParser().parse(sw.toString());
+
+        assertThat(json.get("s")).isEqualTo("a\"b");
+        assertThat(json.containsKey("n")).isTrue();
+        assertThat(json.get("n")).isNull();
+        assertThat(json.get("b")).isEqualTo(true);
+        assertThat(json.get("l")).isEqualTo(42L);
+    }
+
+    @Test
+    void jsonContent_BytesLengthAndStreamShouldAgree() {
+        String text = "line 한글 😀\n";
+        JsonContent content = w -> w.beginObject().field("result_text", text).endObject();
+
+        byte[] expected = content.toJsonString().getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        content.write(out);
+
+        assertThat(content.byteLength()).isEqualTo(expected.length);
+        assertThat(content.toBytes()).isEqualTo(expected);
+        assertThat(out.toByteArray()).isEqualTo(expected);
+    }
+
+}
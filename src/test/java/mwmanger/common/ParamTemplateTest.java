@@ -0,0 +1,103 @@
+package mwagent.common;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ParamTemplateTest {
+
+    private Map<String, String> env;
+
+    @BeforeEach
+    void setUp() {
+        Config.getConfig().setLogger(Logger.getLogger("TestLogger"));
+        ParamTemplate.clearCache();
+        env = new HashMap<>();
+        env.put("HOME", "/home/agent");
+        env.put("APP", "order");
+    }
+
+    @Test
+    void render_WithoutPlaceholder_ShouldReturnSameInstance() {
+        String text = "/var/log/app.log";
+
+        assertThat(ParamTemplate.render(text, env)).isSameAs(text);
+        assertThat(ParamTemplate.render(null, env)).isNull();
+        assertThat(ParamTemplate.getCacheSize()).isZero();
+    }
+
+    @Test
+    void render_ShouldReplaceBothSyntaxes() {
+        assertThat(ParamTemplate.render("<<HOME>>/{{APP}}/app.log", env)).isEqualTo("/home/agent/order/app.log");
+        assertThat(ParamTemplate.render("<<HOME>><<APP>>", env)).isEqualTo("/home/agentorder");
+    }
+
+    @Test
+    void render_UnknownKey_ShouldBeEmpty() {
+        assertThat(ParamTemplate.render("a<<NONE>>b", env)).isEqualTo("ab");
+    }
+
+    @Test
+    void render_UnclosedOrMultiLinePlaceholder_ShouldStayLiteral() {
+        assertThat(ParamTemplate.render("a << b", env)).isEqualTo("a << b");
+        assertThat(ParamTemplate.render("{{HOME\n}}", env)).isEqualTo("{{HOME\n}}");
+        assertThat(ParamTemplate.render("x <<<HOME>>", env)).isEqualTo("x ");
+        assertThat(ParamTemplate.render("x << <<HOME>>", env)).isEqualTo("x ");
+    }
+
+    @Test
+    void render_ValueWithSpecialCharacters_ShouldBeLiteral() {
+        env.put("PRICE", "$1\\2");
+
+        assertThat(ParamTemplate.render("<<PRICE>>", env)).isEqualTo("$1\\2");
+    }
+
+    @Test
+    void render_NestedPlaceholders_ShouldBeExpanded() {
+        env.put("LOG", "<<HOME>>/logs");
+        env.put("FILE", "{{LOG}}/{{APP}}.log");
+
+        assertThat(ParamTemplate.render("<<FILE>>", env)).isEqualTo("/home/agent/logs/order.log");
+    }
+
+    @Test
+    void render_CircularReference_ShouldStopAndLeaveEmpty() {
+        env.put("A", "a<<B>>");
+        env.put("B", "b<<A>>");
+        env.put("SELF", "x<<SELF>>");
+
+        assertThat(ParamTemplate.render("<<A>>", env)).isEqualTo("ab");
+        assertThat(ParamTemplate.render("<<SELF>>-<<SELF>>", env)).isEqualTo("x-x");
+    }
+
+    @Test
+    void render_SameKeyTwiceInValue_ShouldNotBeTreatedAsCycle() {
+        env.put("PAIR", "<<APP>>:<<APP>>");
+
+        assertThat(ParamTemplate.render("<<PAIR>>/<<PAIR>>", env)).isEqualTo("order:order/order:order");
+    }
+
+    @Test
+    void render_ShouldCacheTemplateAndUseCurrentValues() {
+        assertThat(ParamTemplate.render("<<APP>>", env)).isEqualTo("order");
+        env.put("APP", "billing");
+
+        assertThat(ParamTemplate.render("<<APP>>", env)).isEqualTo("billing");
+        assertThat(ParamTemplate.getCacheSize()).isEqualTo(1);
+    }
+
+    @Test
+    void compile_ShouldBoundCacheSize() {
+        for (int i = 0; i <= ParamTemplate.MAX_CACHED_TEMPLATES; i++) {
+            ParamTemplate.render("<<APP>>" + i, env);
+        }
+
+        assertThat(ParamTemplate.getCacheSize()).isLessThanOrEqualTo(ParamTemplate.MAX_CACHED_TEMPLATES);
+    }
+
+}
@@ -0,0 +1,91 @@
+package mwagent.common;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.logging.Logger;
+
+import org.junit.jupiter.api.Test;
+
+class PollingPolicyTest {
+
+    private static final Logger LOGGER = Logger.getLogger("TestLogger");
+
+    @Test
+    void intervalMode_ShouldKeepPathAndSleepCycle() {
+        PollingPolicy policy = new PollingPolicy(false, 60000, 30, LOGGER);
+
+        assertThat(policy.buildPath("/api/v1/command/getCommands/a1")).isEqualTo("/api/v1/command/getCommands/a1");
+        assertThat(policy.getSocketTimeoutMs()).isZero();
+        assertThat(policy.nextDelayMs(1, false, 10, 0)).isEqualTo(60000);
+        assertThat(policy.nextDelayMs(-104, false, 10, 0)).isEqualTo(60000);
+    }
+
+    @Test
+    void longPollMode_ShouldAddWaitParamAndSocketTimeout() {
+        PollingPolicy policy = new PollingPolicy(true, 60000, 30, LOGGER);
+
+        assertThat(policy.buildPath("/cmd/a1")).isEqualTo("/cmd/a1?wait=30");
+        assertThat(policy.buildPath("/cmd/a1?x=1")).isEqualTo("/cmd/a1?x=1&wait=30");
+        assertThat(policy.getSocketTimeoutMs()).isEqualTo(30000 + (int) PollingPolicy.SOCKET_TIMEOUT_MARGIN_MS);
+    }
+
+    @Test
+    void heldRequest_ShouldRepollImmediately() {
+        PollingPolicy policy = new PollingPolicy(true, 60000, 30, LOGGER);
+
+        policy.buildPath("/cmd/a1");
+        long delay = policy.nextDelayMs(1, false, 30000, 0);
+
+        assertThat(delay).isBetween(0L, PollingPolicy.RECONNECT_JITTER_MS);
+        assertThat(policy.isLongPolling()).isTrue();
+    }
+
+    @Test
+    void serverSpecifiedTimeout_ShouldBeUsedForNextRequest() {
+        PollingPolicy policy = new PollingPolicy(true, 60000, 30, LOGGER);
+
+        policy.buildPath("/cmd/a1");
+        policy.nextDelayMs(1, true, 200, 45);
+
+        assertThat(policy.getWaitSec()).isEqualTo(45);
+        assertThat(policy.buildPath("/cmd/a1")).isEqualTo("/cmd/a1?wait=45");
+    }
+
+    @Test
+    void earlyEmptyResponses_ShouldFallbackToIntervalAndProbeAgain() {
+        PollingPolicy policy = new PollingPolicy(true, 60000, 30, LOGGER);
+
+        for (int i = 0; i < PollingPolicy.MAX_EARLY_RETURNS; i++) {
+            policy.buildPath("/cmd/a1");
+            assertThat(policy.nextDelayMs(1, false, 50, 0)).isEqualTo(60000);
+        }
+        assertThat(policy.isLongPolling()).isFalse();
+        assertThat(policy.buildPath("/cmd/a1")).isEqualTo("/cmd/a1");
+
+        for (int i = 0; i < PollingPolicy.FALLBACK_POLLS; i++) {
+            if (i > 0) {
+                policy.buildPath("/cmd/a1");
+            }
+            policy.nextDelayMs(1, false, 50, 0);
+        }
+        assertThat(policy.isLongPolling()).isTrue();
+    }
+
+    @Test
+    void errors_ShouldBackOffWithJitterUpToInterval() {
+        PollingPolicy policy = new PollingPolicy(true, 8000, 30, LOGGER);
+
+        policy.buildPath("/cmd/a1");
+        assertThat(policy.nextDelayMs(-110, false, 5, 0)).isBetween(500L, 1000L);
+        assertThat(policy.nextDelayMs(-110, false, 5, 0)).isBetween(1000L, 2000L);
+        assertThat(policy.nextDelayMs(-110, false, 5, 0)).isBetween(2000L, 4000L);
+        for (int i = 0; i < 10; i++) {
+            assertThat(policy.nextDelayMs(-110, false, 5, 0)).isBetween(4000L, 8000L);
+        }
+
+        // Successful poll resets the backoff
+        policy.buildPath("/cmd/a1");
+        policy.nextDelayMs(1, false, 30000, 0);
+        assertThat(policy.nextDelayMs(-110, false, 5, 0)).isBetween(500L, 1000L);
+    }
+}
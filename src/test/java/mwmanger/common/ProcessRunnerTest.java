@@ -0,0 +1,133 @@
+package mwagent.common;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.logging.Logger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+
+class ProcessRunnerTest {
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() {
+        Config.getConfig().setLogger(Logger.getLogger("TestLogger"));
+    }
+
+    private static ProcessBuilder bash(String script) {
+        return new ProcessBuilder("/bin/bash", "-c", script);
+    }
+
+    @Test
+    @EnabledOnOs({OS.LINUX, OS.MAC})
+    void run_ShouldCaptureStdoutStderrAndExitCode() throws Exception {
+        ProcessRunner.Result pr = new ProcessRunner(10000, 4096).run(bash("echo out; echo err >&2; exit 3"));
+
+        assertThat(pr.getExitCode()).isEqualTo(3);
+        assertThat(pr.isTimedOut()).isFalse();
+        assertThat(pr.getStdout()).isEqualTo("out\n");
+        assertThat(pr.getStderr()).isEqualTo("err\n");
+        assertThat(pr.getOutput()).isEqualTo("out\nERROR: err" + System.getProperty("line.separator"));
+        assertThat(pr.isTruncated()).isFalse();
+    }
+
+    @Test
+    @EnabledOnOs({OS.LINUX, OS.MAC})
+    void run_LargeStderrBeforeStdout_ShouldNotDeadlock() throws Exception {
+        // 2MB on stderr fills the pipe buffer long before stdout is written
+        ProcessRunner.Result pr = new ProcessRunner(20000, 1024)
+                .run(bash("head -c 2097152 /dev/zero | tr '\\0' 'e' >&2; echo done"));
+
+        assertThat(pr.isTimedOut()).isFalse();
+        assertThat(pr.getExitCode()).isZero();
+        assertThat(pr.getStdout()).isEqualTo("done\n");
+        assertThat(pr.isTruncated()).isTrue();
+        assertThat(pr.getTotalBytes()).isEqualTo(2097152 + 5);
+        assertThat(pr.getStderr()).contains("bytes omitted");
+    }
+
+    @Test
+    @EnabledOnOs(OS.LINUX)
+    void run_Timeout_ShouldKillProcessTree() throws Exception {
+        Path pidFile = tempDir.resolve("child.pid");
+
+        ProcessRunner.Result pr = new ProcessRunner(500, 4096)
+                .run(bash("sleep 60 & echo $! > " + pidFile + "; wait"));
+
+        assertThat(pr.isTimedOut()).isTrue();
+        assertThat(pr.getDurationMs()).isLessThan(10000);
+
+        String childPid = new String(Files.readAllBytes(pidFile), StandardCharsets.UTF_8).trim();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (Files.exists(Paths.get("/proc", childPid)) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertThat(Paths.get("/proc", childPid)).doesNotExist();
+    }
+
+    @Test
+    void descendants_ShouldIncludeGrandchildren() {
+        String ps = "    1     0\n  100     1\n  200   100\n  300   200\n  301   200\n  400     1\n";
+
+        assertThat(ProcessRunner.descendants(100, ps)).containsExactly(200L, 300L, 301L);
+        assertThat(ProcessRunner.descendants(400, ps)).isEmpty();
+    }
+
+    @Test
+    @EnabledOnOs(OS.LINUX)
+    void killDescendantsByPid_ShouldKillGrandchildren() throws Exception {
+        Path pidFile = tempDir.resolve("shell.pid");
+        Path grandchildFile = tempDir.resolve("grandchild.pid");
+        Process proc = bash("echo $$ > " + pidFile + "; bash -c 'sleep 60 & echo $! > " + grandchildFile + "; wait' & wait").start();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!(Files.exists(grandchildFile) && Files.size(grandchildFile) > 0) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        long shellPid = Long.parseLong(new String(Files.readAllBytes(pidFile), StandardCharsets.UTF_8).trim());
+        String grandchildPid = new String(Files.readAllBytes(grandchildFile), StandardCharsets.UTF_8).trim();
+
+        ProcessRunner.killDescendantsByPid(shellPid);
+        proc.destroyForcibly().waitFor();
+
+        deadline = System.currentTimeMillis() + 5000;
+        while (Files.exists(Paths.get("/proc", grandchildPid)) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertThat(Paths.get("/proc", grandchildPid)).doesNotExist();
+    }
+
+    @Test
+    void boundedOutput_ShouldKeepHeadAndTail() {
+        ProcessRunner.BoundedOutput out = new ProcessRunner.BoundedOutput(8);
+        byte[] data = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+        for (int i = 0; i < data.length; i += 3) {
+            out.write(data, i, Math.min(3, data.length - i));
+        }
+
+        String ls = System.getProperty("line.separator");
+        assertThat(out.getTotal()).isEqualTo(16);
+        assertThat(out.isTruncated()).isTrue();
+        assertThat(out.toString()).isEqualTo("0123" + ls + "... [8 bytes omitted] ..." + ls + "cdef");
+    }
+
+    @Test
+    void boundedOutput_WithinLimit_ShouldKeepEverything() {
+        ProcessRunner.BoundedOutput out = new ProcessRunner.BoundedOutput(8);
+        byte[] data = "한글ab".getBytes(StandardCharsets.UTF_8);
+        out.write(data, 0, data.length);
+
+        assertThat(out.isTruncated()).isFalse();
+        assertThat(out.toString()).isEqualTo("한글ab");
+    }
+
+}
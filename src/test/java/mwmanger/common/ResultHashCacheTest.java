@@ -0,0 +1,91 @@
+package mwagent.common;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.util.logging.Logger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ResultHashCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() {
+        Config.getConfig().setLogger(Logger.getLogger("TestLogger"));
+    }
+
+    @Test
+    void isUnchanged_ShouldDetectRepeatedHash() {
+        ResultHashCache cache = new ResultHashCache(10, 60000, null);
+        String key = ResultHashCache.key("CMD-1", "file", "/path");
+
+        assertThat(cache.isUnchanged(key, "AAA")).isFalse();
+        cache.recordSent(key, "AAA");
+        assertThat(cache.isUnchanged(key, "AAA")).isTrue();
+        assertThat(cache.isUnchanged(key, "BBB")).isFalse();
+        cache.recordSent(key, "BBB");
+        assertThat(cache.isUnchanged(key, "BBB")).isTrue();
+    }
+
+    @Test
+    void isUnchanged_WithoutRecordSent_ShouldNotRemember() {
+        ResultHashCache cache = new ResultHashCache(10, 60000, null);
+
+        cache.isUnchanged("k", "AAA");
+
+        assertThat(cache.isUnchanged("k", "AAA")).isFalse();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void isUnchanged_AfterMaxAge_ShouldResend() throws Exception {
+        ResultHashCache cache = new ResultHashCache(10, 1, null);
+
+        cache.recordSent("k", "AAA");
+        Thread.sleep(5);
+
+        assertThat(cache.isUnchanged("k", "AAA")).isFalse();
+    }
+
+    @Test
+    void put_OverMaxEntries_ShouldEvictLeastRecentlyUsed() {
+        ResultHashCache cache = new ResultHashCache(2, 60000, null);
+
+        cache.recordSent("k1", "A");
+        cache.recordSent("k2", "B");
+        cache.isUnchanged("k1", "A"); // touch k1
+        cache.recordSent("k3", "C"); // evicts k2
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(cache.isUnchanged("k1", "A")).isTrue();
+        assertThat(cache.isUnchanged("k2", "B")).isFalse();
+    }
+
+    @Test
+    void invalidate_ShouldForceFullResult() {
+        ResultHashCache cache = new ResultHashCache(10, 60000, null);
+        cache.recordSent("k", "A");
+
+        cache.invalidate("k");
+
+        assertThat(cache.isUnchanged("k", "A")).isFalse();
+    }
+
+    @Test
+    void save_ShouldPersistAcrossInstances() {
+        Path file = tempDir.resolve("result_cache.properties");
+        ResultHashCache cache = new ResultHashCache(10, 60000, file);
+        cache.recordSent(ResultHashCache.key("CMD|1", "a", "b"), "HASH");
+        cache.save();
+
+        ResultHashCache reloaded = new ResultHashCache(10, 60000, file);
+
+        assertThat(reloaded.size()).isEqualTo(1);
+        assertThat(reloaded.isUnchanged(ResultHashCache.key("CMD|1", "a", "b"), "HASH")).isTrue();
+    }
+}
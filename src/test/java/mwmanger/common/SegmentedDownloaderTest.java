@@ -0,0 +1,221 @@
+package mwagent.common;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import mwagent.vo.MwResponseVO;
+
+class SegmentedDownloaderTest {
+
+    private static final int SEGMENT = 64 * 1024;
+
+    @TempDir
+    Path dir;
+
+    private HttpServer server;
+    private CloseableHttpClient client;
+    private byte[] content;
+    private String sha256;
+
+    private final List<String> ranges = new CopyOnWriteArrayList<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private volatile boolean supportRange = true;
+    private volatile long failingStart = -1;
+    private final AtomicInteger busyAnswers = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Config.getConfig().setLogger(Logger.getLogger("TestLogger"));
+        content = new byte[SEGMENT * 10 + 123];
+        new Random(11).nextBytes(content);
+        sha256 = FileDownloader.hex(MessageDigest.getInstance("SHA-256").digest(content));
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/dist/jeus.zip", this::serve);
+        server.setExecutor(Executors.newFixedThreadPool(8));
+        server.start();
+        client = HttpClients.custom().setMaxConnPerRoute(8).setMaxConnTotal(8).build();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        client.close();
+        server.stop(0);
+    }
+
+    private void serve(HttpExchange ex) throws IOException {
+        int now = inFlight.incrementAndGet();
+        maxInFlight.accumulateAndGet(now, Math::max);
+        try {
+            String range = ex.getRequestHeaders().getFirst("Range");
+            ex.getResponseHeaders().set("ETag", "\"d1\"");
+            ex.getResponseHeaders().set("X-Checksum-Sha256", sha256);
+
+            if (!supportRange || range == null) {
+                ranges.add("-");
+                ex.sendResponseHeaders(200, content.length);
+                try (OutputStream os = ex.getResponseBody()) {
+                    os.write(content);
+                }
+                return;
+            }
+
+            String[] se = range.substring("bytes=".length()).split("-");
+            long start = Long.parseLong(se[0]);
+            long end = se.length > 1 && !se[1].isEmpty() ? Math.min(Long.parseLong(se[1]), content.length - 1) : content.length - 1;
+            ranges.add(start + "-" + end);
+
+            if (start == failingStart) {
+                ex.sendResponseHeaders(500, -1);
+                return;
+            }
+            if (start > 0 && busyAnswers.getAndDecrement() > 0) {
+                ex.sendResponseHeaders(503, -1);
+                return;
+            }
+
+            // give the other connections a chance to overlap
+            Thread.sleep(start > 0 ? 20 : 0);
+            ex.getResponseHeaders().set("Content-Range", "bytes " + start + "-" + end + "/" + content.length);
+            ex.sendResponseHeaders(206, end - start + 1);
+            try (OutputStream os = ex.getResponseBody()) {
+                os.write(content, (int) start, (int) (end - start + 1));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            inFlight.decrementAndGet();
+            ex.close();
+        }
+    }
+
+    private String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/dist/jeus.zip";
+    }
+
+    private FileDownloader downloader(int segments, int retries) {
+        return new FileDownloader(client, retries, 0).segmented(segments, SEGMENT);
+    }
+
+    private List<String> listDir() throws IOException {
+        try (Stream<Path> s = Files.list(dir)) {
+            return s.map(p -> p.getFileName().toString()).sorted().collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    void download_ShouldFetchRangesConcurrently() throws Exception {
+        MwResponseVO r = downloader(4, 0).download(url(), null, dir.toString(), null);
+
+        assertThat(r.getStatusCode()).isEqualTo(206);
+        assertThat(r.getSha256()).isEqualTo(sha256);
+        assertThat(Files.readAllBytes(dir.resolve("jeus.zip"))).isEqualTo(content);
+        assertThat(listDir()).containsExactly("jeus.zip");
+        // probe + chunks, more chunks than connections
+        assertThat(ranges.size()).isGreaterThan(5);
+        assertThat(maxInFlight.get()).isGreaterThan(1);
+    }
+
+    @Test
+    void download_Interrupted_ShouldResumeOnlyMissingChunks() throws Exception {
+        // 2 connections, 4 chunks each
+        long chunk = (content.length + 7) / 8;
+        failingStart = chunk * 2;
+
+        MwResponseVO failed = downloader(2, 0).download(url(), null, dir.toString(), null);
+        assertThat(failed.getStatusCode()).isEqualTo(FileDownloader.IO_ERROR);
+        assertThat(listDir()).doesNotContain("jeus.zip").anyMatch(n -> n.endsWith(".seg"));
+
+        failingStart = -1;
+        int before = ranges.size();
+        MwResponseVO r = downloader(2, 0).download(url(), null, dir.toString(), null);
+
+        assertThat(r.getStatusCode()).isEqualTo(206);
+        assertThat(Files.readAllBytes(dir.resolve("jeus.zip"))).isEqualTo(content);
+        // the probe and the chunks not finished before the failure, at least the failed one
+        List<String> resumed = ranges.subList(before, ranges.size());
+        assertThat(resumed).contains(chunk * 2 + "-" + (chunk * 3 - 1));
+        assertThat(resumed.size()).isLessThan(1 + 8);
+        assertThat(listDir()).containsExactly("jeus.zip");
+    }
+
+    @Test
+    void download_ServerBusy_ShouldContinueWithFewerConnections() throws Exception {
+        busyAnswers.set(3);
+
+        MwResponseVO r = downloader(4, 3).download(url(), null, dir.toString(), null);
+
+        assertThat(r.getStatusCode()).isEqualTo(206);
+        assertThat(Files.readAllBytes(dir.resolve("jeus.zip"))).isEqualTo(content);
+    }
+
+    @Test
+    void download_NoRangeSupport_ShouldFallBackToOneStream() throws Exception {
+        supportRange = false;
+
+        MwResponseVO r = downloader(4, 0).download(url(), null, dir.toString(), null);
+
+        assertThat(r.getStatusCode()).isEqualTo(200);
+        assertThat(Files.readAllBytes(dir.resolve("jeus.zip"))).isEqualTo(content);
+        assertThat(listDir()).containsExactly("jeus.zip");
+    }
+
+    @Test
+    void download_SmallFile_ShouldUseOneStream() throws Exception {
+        MwResponseVO r = new FileDownloader(client, 0, 0).segmented(4, content.length)
+                .download(url(), null, dir.toString(), null);
+
+        assertThat(r.getStatusCode()).isEqualTo(200);
+        assertThat(Files.readAllBytes(dir.resolve("jeus.zip"))).isEqualTo(content);
+    }
+
+    @Test
+    void download_ExistingFile_ShouldBackItUp() throws Exception {
+        Files.write(dir.resolve("jeus.zip"), new byte[] { 1, 2, 3 });
+
+        MwResponseVO r = downloader(4, 0).backupExisting(true).download(url(), null, dir.toString(), null);
+
+        assertThat(r.getStatusCode()).isEqualTo(206);
+        assertThat(listDir()).hasSize(2).anyMatch(n -> n.startsWith("jeus.zip_") && n.endsWith(".bak"));
+    }
+
+    @Test
+    void download_WithThrottle_ShouldLimitRate() throws Exception {
+        BandwidthThrottle throttle = new BandwidthThrottle(1024 * 1024);
+
+        long start = System.nanoTime();
+        // the first second worth of bytes is available at once
+        for (int i = 0; i < 24; i++) {
+            throttle.acquire(64 * 1024);
+        }
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertThat(elapsedMs).isGreaterThanOrEqualTo(400);
+        assertThat(new BandwidthThrottle(0).isUnlimited()).isTrue();
+    }
+}
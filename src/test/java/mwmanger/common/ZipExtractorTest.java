@@ -0,0 +1,166 @@
+package mwagent.common;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ZipExtractorTest {
+
+    @TempDir
+    Path tmp;
+
+    @BeforeEach
+    void setUp() {
+        Config.getConfig().setLogger(Logger.getLogger("TestLogger"));
+    }
+
+    private Path zip(Map<String, byte[]> entries) throws IOException {
+        Path zip = tmp.resolve("archive.zip");
+        try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(zip))) {
+            for (Map.Entry<String, byte[]> e : entries.entrySet()) {
+                zos.putNextEntry(new ZipEntry(e.getKey()));
+                if (e.getValue() != null) {
+                    zos.write(e.getValue());
+                }
+                zos.closeEntry();
+            }
+        }
+        return zip;
+    }
+
+    private Map<String, byte[]> manyEntries() {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        Random random = new Random(1);
+        entries.put("app/", null);
+        for (int i = 0; i < 200; i++) {
+            byte[] b = new byte[random.nextInt(20_000)];
+            random.nextBytes(b);
+            entries.put("app/lib" + (i % 7) + "/file" + i + ".bin", b);
+        }
+        entries.put("app/conf/empty.txt", new byte[0]);
+        return entries;
+    }
+
+    private void assertExtracted(Path dest, Map<String, byte[]> entries) throws IOException {
+        for (Map.Entry<String, byte[]> e : entries.entrySet()) {
+            Path p = dest.resolve(e.getKey());
+            if (e.getValue() == null) {
+                assertThat(p).isDirectory();
+            } else {
+                assertThat(Files.readAllBytes(p)).as(e.getKey()).isEqualTo(e.getValue());
+            }
+        }
+    }
+
+    @Test
+    void extract_ManyFiles_ShouldUseSeveralThreads() throws Exception {
+        Map<String, byte[]> entries = manyEntries();
+
+        ZipExtractor.Result r = new ZipExtractor(4, 64 * 1024).extract(zip(entries), tmp.resolve("out"));
+
+        assertThat(r.getFiles()).isEqualTo(201);
+        assertThat(r.getBytes()).isEqualTo(entries.values().stream().filter(b -> b != null).mapToLong(b -> b.length).sum());
+        assertExtracted(tmp.resolve("out"), entries);
+    }
+
+    @Test
+    void extract_FewFiles_ShouldExtractOnCallingThread() throws Exception {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put("readme.txt", "hello".getBytes(StandardCharsets.UTF_8));
+        entries.put("bin/start.sh", "#!/bin/sh".getBytes(StandardCharsets.UTF_8));
+
+        ZipExtractor.Result r = new ZipExtractor(4, 64 * 1024).extract(zip(entries), tmp.resolve("out"));
+
+        assertThat(r.getFiles()).isEqualTo(2);
+        assertExtracted(tmp.resolve("out"), entries);
+    }
+
+    @Test
+    void extract_ExistingFiles_ShouldOverwrite() throws Exception {
+        Files.createDirectories(tmp.resolve("out"));
+        Files.write(tmp.resolve("out/readme.txt"), new byte[100]);
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put("readme.txt", "new".getBytes(StandardCharsets.UTF_8));
+
+        new ZipExtractor(1, 0).extract(zip(entries), tmp.resolve("out"));
+
+        assertExtracted(tmp.resolve("out"), entries);
+    }
+
+    @Test
+    void extract_HardLinkedTarget_ShouldNotWriteThroughLink() throws Exception {
+        Files.createDirectories(tmp.resolve("out"));
+        Path cached = tmp.resolve("cached.txt");
+        Files.write(cached, "cached".getBytes(StandardCharsets.UTF_8));
+        Files.createLink(tmp.resolve("out/readme.txt"), cached);
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put("readme.txt", "new".getBytes(StandardCharsets.UTF_8));
+
+        new ZipExtractor(1, 0).extract(zip(entries), tmp.resolve("out"));
+
+        assertExtracted(tmp.resolve("out"), entries);
+        assertThat(new String(Files.readAllBytes(cached), StandardCharsets.UTF_8)).isEqualTo("cached");
+    }
+
+    @Test
+    void extract_ZipSlip_ShouldRejectBeforeWritingAnything() throws Exception {
+        Map<String, byte[]> entries = manyEntries();
+        entries.put("app/../../evil.sh", "rm -rf /".getBytes(StandardCharsets.UTF_8));
+
+        assertThatThrownBy(() -> new ZipExtractor(4, 0).extract(zip(entries), tmp.resolve("out")))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("outside of the target directory");
+
+        assertThat(tmp.resolve("evil.sh")).doesNotExist();
+        try (Stream<Path> s = Files.list(tmp.resolve("out"))) {
+            assertThat(s).isEmpty();
+        }
+    }
+
+    @Test
+    void target_AbsoluteName_ShouldBeRejected() {
+        Path dest = tmp.resolve("out").toAbsolutePath();
+
+        assertThatThrownBy(() -> ZipExtractor.target(dest, "/etc/passwd")).isInstanceOf(IOException.class);
+        assertThatThrownBy(() -> ZipExtractor.target(dest, "C:\\Windows\\win.ini")).isInstanceOf(IOException.class);
+        assertThatThrownBy(() -> ZipExtractor.target(dest, "..\\evil.bat")).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    void target_NameInside_ShouldBeAccepted() throws Exception {
+        Path dest = tmp.resolve("out").toAbsolutePath();
+
+        assertThat(ZipExtractor.target(dest, "a/../b.txt")).isEqualTo(dest.resolve("b.txt"));
+        assertThat(ZipExtractor.target(dest, "dir\\sub\\c.txt")).isEqualTo(dest.resolve("dir/sub/c.txt"));
+        assertThat(ZipExtractor.target(dest, "./")).isEqualTo(dest);
+    }
+
+    @Test
+    void extract_EmptyArchive_ShouldCreateOnlyDestination() throws Exception {
+        // an empty archive creates only the destination
+        Path zip = tmp.resolve("empty.zip");
+        try (OutputStream out = Files.newOutputStream(zip); ZipOutputStream zos = new ZipOutputStream(out)) {
+            zos.setComment("empty");
+        }
+
+        ZipExtractor.Result r = new ZipExtractor(4, 0).extract(zip, tmp.resolve("out"));
+
+        assertThat(r.getFiles()).isZero();
+        assertThat(tmp.resolve("out")).isDirectory();
+    }
+}
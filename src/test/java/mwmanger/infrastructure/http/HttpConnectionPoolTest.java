@@ -0,0 +1,82 @@
+package mwagent.infrastructure.http;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.util.EntityUtils;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests for HttpConnectionPool against an in-process HTTP server.
+ */
+class HttpConnectionPoolTest {
+
+    private HttpServer server;
+    private HttpConnectionPool pool;
+    private String baseUrl;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/ping", exchange -> {
+            byte[] body = "{\"return_code\":1}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+
+        pool = new HttpConnectionPool("test", null, 4, 2, 30, 2000, 5000, 5000);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        pool.close();
+        server.stop(0);
+    }
+
+    @Test
+    void consumedResponse_ShouldReturnConnectionToPool() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            try (CloseableHttpResponse response = pool.getClient().execute(new HttpGet(baseUrl + "/ping"))) {
+                assertThat(response.getStatusLine().getStatusCode()).isEqualTo(200);
+                EntityUtils.consume(response.getEntity());
+            }
+        }
+
+        // Sequential requests reuse one keep-alive connection
+        assertThat(pool.getTotalStats().getLeased()).isZero();
+        assertThat(pool.getTotalStats().getAvailable()).isEqualTo(1);
+        assertThat(pool.getTotalStats().getMax()).isEqualTo(4);
+    }
+
+    @Test
+    void getStatsJson_ShouldReportTotalsAndRoutes() throws Exception {
+        try (CloseableHttpResponse response = pool.getClient().execute(new HttpGet(baseUrl + "/ping"))) {
+            EntityUtils.consume(response.getEntity());
+        }
+
+        JSONObject stats = pool.getStatsJson();
+
+        assertThat(stats.get("pool")).isEqualTo("test");
+        assertThat(stats.get("leased")).isEqualTo(0);
+        assertThat(stats.get("max")).isEqualTo(4);
+        JSONArray routes = (JSONArray) stats.get("routes");
+        assertThat(routes).hasSize(1);
+        assertThat(((JSONObject) routes.get(0)).get("route")).isEqualTo(baseUrl);
+        assertThat(((JSONObject) routes.get(0)).get("max")).isEqualTo(2);
+    }
+}
@@ -0,0 +1,44 @@
+package mwagent.infrastructure.http;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.http.util.EntityUtils;
+import org.junit.jupiter.api.Test;
+
+import mwagent.common.JsonContent;
+
+class JsonEntityTest {
+
+    private final JsonContent content = w -> w.beginObject()
+            .field("agent_id", "a1")
+            .field("result_text", "한글\n\"x\"")
+            .endObject();
+
+    @Test
+    void writeTo_ShouldStreamDocumentWithExactLength() throws Exception {
+        JsonEntity entity = new JsonEntity(content);
+        byte[] expected = content.toJsonString().getBytes(StandardCharsets.UTF_8);
+
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        entity.writeTo(first);
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        entity.writeTo(second);
+
+        assertThat(entity.getContentLength()).isEqualTo(expected.length);
+        assertThat(entity.isRepeatable()).isTrue();
+        assertThat(first.toByteArray()).isEqualTo(expected);
+        assertThat(second.toByteArray()).isEqualTo(expected);
+        assertThat(entity.getContentType().getValue()).startsWith("application/json");
+    }
+
+    @Test
+    void getContent_ShouldReturnSameBytes() throws Exception {
+        JsonEntity entity = new JsonEntity(content);
+
+        assertThat(EntityUtils.toString(entity, StandardCharsets.UTF_8)).isEqualTo(content.toJsonString());
+    }
+
+}
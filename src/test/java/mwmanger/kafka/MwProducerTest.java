@@ -0,0 +1,112 @@
+package mwagent.kafka;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import mwagent.common.Config;
+
+class MwProducerTest {
+
+    @BeforeEach
+    void setUp() {
+        Config.getConfig().setLogger(Logger.getLogger("TestLogger"));
+    }
+
+    @Test
+    void buildProperties_ShouldApplyTuning() {
+        Config config = Config.getConfig();
+
+        Properties prop = MwProducer.buildProperties(config);
+
+        assertThat(prop.getProperty(ProducerConfig.LINGER_MS_CONFIG)).isEqualTo(Integer.toString(config.getKafkaProducerLingerMs()));
+        assertThat(prop.getProperty(ProducerConfig.BATCH_SIZE_CONFIG)).isEqualTo(Integer.toString(config.getKafkaProducerBatchSize()));
+        assertThat(prop.getProperty(ProducerConfig.COMPRESSION_TYPE_CONFIG)).isEqualTo("lz4");
+        assertThat(prop.getProperty(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG)).isEqualTo("true");
+        assertThat(prop.getProperty(ProducerConfig.ACKS_CONFIG)).isEqualTo("all");
+        assertThat(prop.getProperty(ProducerConfig.BUFFER_MEMORY_CONFIG)).isEqualTo(Long.toString(config.getKafkaProducerBufferMemory()));
+        assertThat(prop.getProperty(ProducerConfig.MAX_BLOCK_MS_CONFIG)).isEqualTo(Long.toString(config.getKafkaProducerMaxBlockMs()));
+    }
+
+    @Test
+    void sendMessage_WithoutProducer_ShouldRunFallbackAndCountFailure() {
+        String topic = "t_test_" + System.nanoTime();
+        AtomicInteger fallbackCalls = new AtomicInteger();
+
+        int rtn = MwProducer.sendMessage(topic, "agent", "{\"result_text\":\"x\"}", fallbackCalls::incrementAndGet);
+
+        assertThat(rtn).isEqualTo(-1);
+        assertThat(fallbackCalls.get()).isEqualTo(1);
+
+        JSONObject stats = findTopic(MwProducer.getStats(), topic);
+        assertThat(stats.get("failed")).isEqualTo(1L);
+        assertThat(stats.get("fallback")).isEqualTo(1L);
+        assertThat(stats.get("sent")).isEqualTo(0L);
+    }
+
+    @Test
+    void sendMessage_FallbackQueueFull_ShouldReportFailureAndCountDrop() throws Exception {
+        String topic = "t_test_" + System.nanoTime();
+        CountDownLatch release = new CountDownLatch(1);
+        // one busy thread and no queue : the next fallback is rejected
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new SynchronousQueue<>());
+        executor.execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        MwProducer.setFallbackExecutor(executor);
+        List<Boolean> delivered = new ArrayList<>();
+        AtomicInteger fallbackCalls = new AtomicInteger();
+        try {
+            MwProducer.sendMessage(topic, "agent", w -> w.beginObject().endObject(), fallbackCalls::incrementAndGet,
+                    delivered::add);
+        } finally {
+            release.countDown();
+            executor.shutdown();
+            MwProducer.setFallbackExecutor(null);
+        }
+
+        assertThat(fallbackCalls.get()).isZero();
+        assertThat(delivered).containsExactly(false);
+        JSONObject stats = findTopic(MwProducer.getStats(), topic);
+        assertThat(stats.get("dropped")).isEqualTo(1L);
+        assertThat(stats.get("fallback")).isEqualTo(0L);
+    }
+
+    @Test
+    void sendMessage_WithFallback_ShouldLeaveReportToFallback() {
+        String topic = "t_test_" + System.nanoTime();
+        List<Boolean> delivered = new ArrayList<>();
+
+        MwProducer.sendMessage(topic, "agent", w -> w.beginObject().endObject(), () -> delivered.add(true), delivered::add);
+
+        assertThat(delivered).containsExactly(true);
+    }
+
+    private static JSONObject findTopic(JSONArray stats, String topic) {
+        for (Object o : stats) {
+            JSONObject json = (JSONObject) o;
+            if (topic.equals(json.get("topic"))) {
+                return json;
+            }
+        }
+        throw new AssertionError("topic not found : " + topic);
+    }
+}
@@ -0,0 +1,60 @@
+package mwagent.kafka;
+
+import static org.assertj.core.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class PartitionOffsetTrackerTest {
+
+    @Test
+    void pollCommittable_NothingDone_ShouldReturnMinusOne() {
+        PartitionOffsetTracker tracker = new PartitionOffsetTracker();
+        tracker.track(10);
+        tracker.track(11);
+
+        assertThat(tracker.pollCommittable()).isEqualTo(-1);
+        assertThat(tracker.size()).isEqualTo(2);
+    }
+
+    @Test
+    void pollCommittable_ShouldOnlyCommitContiguousCompletedOffsets() {
+        PartitionOffsetTracker tracker = new PartitionOffsetTracker();
+        tracker.track(10);
+        tracker.track(11);
+        tracker.track(12);
+
+        // 11 and 12 finish before 10
+        tracker.markDone(11);
+        tracker.markDone(12);
+        assertThat(tracker.pollCommittable()).isEqualTo(-1);
+
+        tracker.markDone(10);
+        assertThat(tracker.pollCommittable()).isEqualTo(13);
+        assertThat(tracker.size()).isZero();
+    }
+
+    @Test
+    void pollCommittable_ShouldStopAtFirstUnfinishedOffset() {
+        PartitionOffsetTracker tracker = new PartitionOffsetTracker();
+        tracker.track(1);
+        tracker.track(2);
+        tracker.track(3);
+        tracker.markDone(1);
+        tracker.markDone(3);
+
+        assertThat(tracker.pollCommittable()).isEqualTo(2);
+        assertThat(tracker.pollCommittable()).isEqualTo(-1);
+
+        tracker.markDone(2);
+        assertThat(tracker.pollCommittable()).isEqualTo(4);
+    }
+
+    @Test
+    void markDone_UntrackedOffset_ShouldBeIgnored() {
+        PartitionOffsetTracker tracker = new PartitionOffsetTracker();
+        tracker.markDone(5);
+
+        assertThat(tracker.size()).isZero();
+        assertThat(tracker.pollCommittable()).isEqualTo(-1);
+    }
+}
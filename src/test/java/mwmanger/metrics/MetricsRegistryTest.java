@@ -0,0 +1,105 @@
+package mwagent.metrics;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.StringWriter;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.json.simple.JSONObject;
+import org.junit.jupiter.api.Test;
+
+class MetricsRegistryTest {
+
+    private final MetricsRegistry registry = new MetricsRegistry();
+
+    @Test
+    void counter_SameNameAndLabel_ShouldReturnSameInstance() {
+        Counter a = registry.counter("t_total", "help", "kind", "a");
+
+        assertThat(registry.counter("t_total", "help", "kind", "a")).isSameAs(a);
+        assertThat(registry.counter("t_total", "help", "kind", "b")).isNotSameAs(a);
+    }
+
+    @Test
+    void counter_ShouldCountConcurrentIncrements() throws Exception {
+        Counter c = registry.counter("t_concurrent_total", "help");
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        for (int t = 0; t < 4; t++) {
+            pool.execute(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    c.inc();
+                }
+            });
+        }
+        pool.shutdown();
+        assertThat(pool.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(c.get()).isEqualTo(40000);
+    }
+
+    @Test
+    void typeConflict_ShouldThrow() {
+        registry.counter("t_conflict", "help");
+
+        assertThatThrownBy(() -> registry.histogram("t_conflict", "help"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void bucketOf_ShouldBeMonotonicAndMatchLowerBound() {
+        int last = -1;
+        for (long v = 0; v < 100000; v++) {
+            int b = LatencyHistogram.bucketOf(v);
+            assertThat(b).isGreaterThanOrEqualTo(last);
+            assertThat(LatencyHistogram.lowerBound(b)).isLessThanOrEqualTo(v);
+            assertThat(LatencyHistogram.lowerBound(b + 1)).isGreaterThan(v);
+            last = b;
+        }
+        assertThat(LatencyHistogram.bucketOf(Long.MAX_VALUE)).isEqualTo(LatencyHistogram.BUCKETS - 1);
+    }
+
+    @Test
+    void quantile_ShouldBeWithinBucketPrecision() {
+        LatencyHistogram h = registry.histogram("t_seconds", "help");
+        for (long i = 1; i <= 1000; i++) {
+            h.recordMillis(i);
+        }
+
+        assertThat(h.getCount()).isEqualTo(1000);
+        assertThat(h.getMaxMicros()).isEqualTo(1000000);
+        assertThat(h.quantileMicros(0.5)).isBetween(500000L, 562500L);
+        assertThat(h.quantileMicros(0.99)).isBetween(990000L, 1000000L);
+        assertThat(h.quantileMicros(1.0)).isEqualTo(1000000);
+    }
+
+    @Test
+    void writePrometheus_ShouldExposeAllTypes() throws Exception {
+        registry.counter("t_requests_total", "Requests", "method", "GET").add(3);
+        registry.histogram("t_latency_seconds", "Latency").recordMillis(250);
+        registry.gauge("t_queue_depth", "Queue", () -> 7);
+
+        StringWriter out = new StringWriter();
+        registry.writePrometheus(out);
+
+        assertThat(out.toString())
+                .contains("# TYPE t_requests_total counter\nt_requests_total{method=\"GET\"} 3\n")
+                .contains("# TYPE t_latency_seconds summary\n")
+                .contains("t_latency_seconds{quantile=\"1.0\"} 0.25\n")
+                .contains("t_latency_seconds_count 1\n")
+                .contains("# TYPE t_queue_depth gauge\nt_queue_depth 7\n");
+    }
+
+    @Test
+    void snapshotIfDue_ShouldReturnOncePerInterval() {
+        registry.counter("t_snap_total", "help").inc();
+
+        JSONObject first = registry.snapshotIfDue(60000);
+
+        assertThat(first).containsEntry("t_snap_total", 1L);
+        assertThat(registry.snapshotIfDue(60000)).isNull();
+        assertThat(registry.snapshotIfDue(0)).isNotNull();
+    }
+
+}
@@ -0,0 +1,64 @@
+package mwagent.order;
+
+import static mwagent.common.Config.getConfig;
+import static org.assertj.core.api.Assertions.*;
+
+import java.util.logging.Logger;
+
+import org.json.simple.JSONObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+
+import mwagent.vo.ResultVO;
+
+@EnabledOnOs(OS.LINUX)
+class ExeTextTest {
+
+    @BeforeEach
+    void setUp() {
+        getConfig().setLogger(Logger.getLogger("TestLogger"));
+        getConfig().setHostName("test-host");
+    }
+
+    private static ExeText order(String script, Long timeoutSec) {
+        JSONObject command = new JSONObject();
+        command.put("command_id", "CMD-TEXT");
+        command.put("target_file_name", "inline");
+        command.put("target_file_path", "");
+        command.put("additional_params", script);
+        if (timeoutSec != null) {
+            command.put("timeout_sec", timeoutSec);
+        }
+        return new ExeText(command);
+    }
+
+    @Test
+    void execute_ShouldReportOutputAndExitCode() {
+        ExeText exeText = order("echo hello\necho oops >&2\nexit 2", null);
+
+        exeText.execute();
+        ResultVO rv = exeText.getResultVo();
+
+        assertThat(rv.isOk()).isFalse();
+        assertThat(rv.getExitCode()).isEqualTo(2);
+        assertThat(rv.isTimedOut()).isFalse();
+        assertThat(rv.getResult()).startsWith("hello\n").contains("ERROR: oops");
+    }
+
+    @Test
+    void execute_WithCommandTimeout_ShouldKillScript() {
+        ExeText exeText = order("echo started\nsleep 30", 1L);
+
+        long start = System.currentTimeMillis();
+        exeText.execute();
+        ResultVO rv = exeText.getResultVo();
+
+        assertThat(System.currentTimeMillis() - start).isLessThan(15000);
+        assertThat(rv.isOk()).isFalse();
+        assertThat(rv.isTimedOut()).isTrue();
+        assertThat(rv.getResult()).startsWith("started").contains("Error:Timeout");
+    }
+
+}
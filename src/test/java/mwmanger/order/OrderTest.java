@@ -1,13 +1,23 @@
 package mwagent.order;
 
+import mwagent.common.Config;
 import mwagent.vo.CommandVO;
+import mwagent.vo.ResultVO;
 import org.json.simple.JSONObject;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
 import java.security.NoSuchAlgorithmException;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+import com.sun.net.httpserver.HttpServer;
 
 import static org.assertj.core.api.Assertions.*;
 
@@ -38,10 +48,19 @@ class OrderTest {
         public CommandVO getCommandVo() {
             return commandVo;
         }
+
+        public Consumer<Boolean> testApplyResultCache(ResultVO rv) {
+            return applyResultCache(rv);
+        }
+
+        public void setResultVo(ResultVO rv) {
+            resultVo = rv;
+        }
     }
 
     @BeforeEach
     void setUp() {
+        Config.getConfig().setLogger(Logger.getLogger("TestLogger"));
         JSONObject command = new JSONObject();
         command.put("command_id", "CMD-123");
         command.put("repetition_seq", 1L);
@@ -190,4 +209,169 @@ class OrderTest {
         assertThat(commandVO.getTargetFileName()).isNull();
         assertThat(commandVO.getTargetFilePath()).isNull();
     }
+
+    private static ResultVO okResult(String text) {
+        ResultVO rv = new ResultVO();
+        rv.setOk(true);
+        rv.setTargetFileName("test.sh");
+        rv.setTargetFilePath("/scripts/");
+        rv.setResult(text);
+        return rv;
+    }
+
+    @Test
+    void testApplyResultCache_RepeatedResultShouldBecomeNoChange() {
+        boolean enabled = Config.getConfig().isResultCacheEnabled();
+        Config.getConfig().setResultCacheEnabled(true);
+        try {
+            JSONObject command = new JSONObject();
+            command.put("command_id", "CMD-CACHE-" + System.nanoTime());
+            TestOrder order = new TestOrder(command);
+
+            ResultVO first = okResult("same output");
+            order.testApplyResultCache(first).accept(true);
+            ResultVO second = okResult("same output");
+            order.testApplyResultCache(second);
+            ResultVO changed = okResult("other output");
+            order.testApplyResultCache(changed);
+
+            assertThat(first.getResult()).isEqualTo("same output");
+            assertThat(first.getResultHash()).isNotEmpty();
+            assertThat(second.getResult()).isEqualTo(Order.NO_CHANGE);
+            assertThat(second.getResultHash()).isEqualTo(first.getResultHash());
+            assertThat(changed.getResult()).isEqualTo("other output");
+        } finally {
+            Config.getConfig().setResultCacheEnabled(enabled);
+        }
+    }
+
+    @Test
+    void testApplyResultCache_ServerHashDiffersShouldSendFullResult() {
+        boolean enabled = Config.getConfig().isResultCacheEnabled();
+        Config.getConfig().setResultCacheEnabled(true);
+        try {
+            JSONObject command = new JSONObject();
+            command.put("command_id", "CMD-CACHE-" + System.nanoTime());
+            TestOrder order = new TestOrder(command);
+            ResultVO first = okResult("same output");
+            order.testApplyResultCache(first).accept(true);
+
+            command.put("result_hash", "0000");
+            TestOrder stale = new TestOrder(command);
+            ResultVO rv = okResult("same output");
+            stale.testApplyResultCache(rv);
+
+            command.put("result_hash", first.getResultHash());
+            TestOrder current = new TestOrder(command);
+            ResultVO same = okResult("same output");
+            current.testApplyResultCache(same);
+
+            assertThat(rv.getResult()).isEqualTo("same output");
+            assertThat(same.getResult()).isEqualTo(Order.NO_CHANGE);
+        } finally {
+            Config.getConfig().setResultCacheEnabled(enabled);
+        }
+    }
+
+    @Test
+    void sendResults_FailedFirstSendShouldNotBeCached() throws Exception {
+        boolean enabled = Config.getConfig().isResultCacheEnabled();
+        String serverUrl = Config.getConfig().getServer_url();
+
+        List<String> bodies = new CopyOnWriteArrayList<>();
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext(Order.RESULT_PATH, exchange -> {
+            bodies.add(new String(readAll(exchange.getRequestBody()), StandardCharsets.UTF_8));
+            // the first result is rejected
+            int status = bodies.size() == 1 ? 500 : 200;
+            byte[] body = "{\"message\":\"ok\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+
+        Config.getConfig().setResultCacheEnabled(true);
+        Config.getConfig().setServer_url("http://127.0.0.1:" + server.getAddress().getPort());
+        try {
+            JSONObject command = new JSONObject();
+            command.put("command_id", "CMD-CACHE-" + System.nanoTime());
+            command.put("result_receiver", "SERVER");
+            TestOrder order = new TestOrder(command);
+
+            for (int i = 0; i < 3; i++) {
+                order.setResultVo(okResult("same output"));
+                order.sendResults();
+            }
+
+            assertThat(bodies).hasSize(3);
+            assertThat(bodies.get(0)).contains("same output");
+            assertThat(bodies.get(1)).contains("same output");
+            assertThat(bodies.get(2)).contains(Order.NO_CHANGE);
+        } finally {
+            server.stop(0);
+            Config.getConfig().setServer_url(serverUrl);
+            Config.getConfig().setResultCacheEnabled(enabled);
+        }
+    }
+
+    private static byte[] readAll(java.io.InputStream in) throws java.io.IOException {
+        java.io.ByteArrayOutputStream out = new java.io.ByteArrayOutputStream();
+        byte[] buf = new byte[4096];
+        int n;
+        while ((n = in.read(buf)) != -1) {
+            out.write(buf, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    void testApplyResultCache_DisabledOrFailedShouldSendFullResult() {
+        boolean enabled = Config.getConfig().isResultCacheEnabled();
+        JSONObject command = new JSONObject();
+        command.put("command_id", "CMD-CACHE-" + System.nanoTime());
+        TestOrder order = new TestOrder(command);
+
+        Config.getConfig().setResultCacheEnabled(false);
+        order.testApplyResultCache(okResult("x"));
+        ResultVO disabled = okResult("x");
+        order.testApplyResultCache(disabled);
+        assertThat(disabled.getResult()).isEqualTo("x");
+
+        Config.getConfig().setResultCacheEnabled(true);
+        try {
+            ResultVO failed = okResult("Error:IOException");
+            failed.setOk(false);
+            order.testApplyResultCache(failed);
+            order.testApplyResultCache(failed);
+            assertThat(failed.getResult()).isEqualTo("Error:IOException");
+        } finally {
+            Config.getConfig().setResultCacheEnabled(enabled);
+        }
+    }
+    @Test
+    void getJsonResult_ShouldContainResultFields() throws Exception {
+        Config.getConfig().setAgent_id("agent_01");
+        ResultVO rv = new ResultVO();
+        rv.setHostName("host1");
+        rv.setTargetFileName("test.sh");
+        rv.setTargetFilePath("/scripts/");
+        rv.setOk(true);
+        rv.setResult("out \"quoted\"\n한글");
+        rv.setResultHash("ABC");
+
+        JSONObject json = (JSONObject) new org.json.simple.parser.JSONParser().parse(testOrder.getJsonResult(false, rv));
+
+        assertThat(json.get("agent_id")).isEqualTo("agent_01");
+        assertThat(json.get("command_id")).isEqualTo("CMD-123");
+        assertThat(json.get("repetition_seq")).isEqualTo("1");
+        assertThat(json.get("key_value1")).isEqualTo("test.sh");
+        assertThat(json.get("is_normal")).isEqualTo(true);
+        assertThat(json.get("result_text")).isEqualTo("out \"quoted\"\n한글");
+        assertThat(json.get("result_hash")).isEqualTo("ABC");
+        assertThat(json.containsKey("truncated")).isFalse();
+        assertThat(testOrder.jsonResult(rv).toBytes())
+                .isEqualTo(testOrder.getJsonResult(false, rv).getBytes(java.nio.charset.StandardCharsets.UTF_8));
+    }
+
 }
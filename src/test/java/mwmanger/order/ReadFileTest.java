@@ -0,0 +1,156 @@
+package mwagent.order;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.logging.Logger;
+
+import org.json.simple.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import mwagent.common.Config;
+
+class ReadFileTest {
+
+    @TempDir
+    Path tempDir;
+
+    private boolean pathCheck;
+    private long maxResultBytes;
+
+    @BeforeEach
+    void setUp() {
+        Config.getConfig().setLogger(Logger.getLogger("TestLogger"));
+        pathCheck = Config.getConfig().isSecurityPathTraversalCheck();
+        maxResultBytes = Config.getConfig().getReadFileMaxResultBytes();
+        Config.getConfig().setSecurityPathTraversalCheck(false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        Config.getConfig().setSecurityPathTraversalCheck(pathCheck);
+        Config.getConfig().setReadFileMaxResultBytes(maxResultBytes);
+    }
+
+    private static ReadFullPathFile order(Path file, String resultHash) {
+        JSONObject command = new JSONObject();
+        command.put("command_id", "CMD-1");
+        command.put("target_file_name", file.getFileName().toString());
+        command.put("target_file_path", "");
+        command.put("result_hash", resultHash);
+        command.put("additional_params", file.toString());
+        return new ReadFullPathFile(command);
+    }
+
+    @Test
+    void hashChannel_FileShrunk_ShouldReturnBytesCopied() throws Exception {
+        byte[] content = "0123456789".getBytes(StandardCharsets.UTF_8);
+        Path file = Files.write(tempDir.resolve("shrunk.log"), content);
+        byte[] head = new byte[20];
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+
+        // size taken before the file was truncated to 10 bytes
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            assertThat(order(file, "").hashChannel(channel, 20, digest, head)).isEqualTo(10);
+        }
+        assertThat(Order.toHex(digest.digest())).isEqualTo(sha256(content));
+    }
+
+    private static String sha256(byte[] bytes) throws Exception {
+        return Order.toHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+    }
+
+    @Test
+    void execute_ShouldReturnContentAndHashOfBytes() throws Exception {
+        byte[] content = "line1\nline2 한글\n".getBytes(StandardCharsets.UTF_8);
+        Path file = Files.write(tempDir.resolve("a.log"), content);
+
+        ReadFullPathFile order = order(file, "");
+        order.execute();
+
+        assertThat(order.getResultVo().isOk()).isTrue();
+        assertThat(order.getResultVo().getResult()).isEqualTo("line1\nline2 한글\n");
+        assertThat(order.getResultVo().getResultHash()).isEqualTo(sha256(content));
+        assertThat(order.getResultVo().isTruncated()).isFalse();
+    }
+
+    @Test
+    void execute_WithMatchingHash_ShouldReturnNoChange() throws Exception {
+        byte[] content = "unchanged".getBytes(StandardCharsets.UTF_8);
+        Path file = Files.write(tempDir.resolve("b.log"), content);
+
+        ReadFullPathFile order = order(file, sha256(content));
+        order.execute();
+
+        assertThat(order.getResultVo().getResult()).isEqualTo("NO CHANGE");
+        assertThat(order.getResultVo().getResultHash()).isEqualTo(sha256(content));
+    }
+
+    @Test
+    void execute_WithChangedHash_ShouldReturnContent() throws Exception {
+        Path file = Files.write(tempDir.resolve("c.log"), "new".getBytes(StandardCharsets.UTF_8));
+
+        ReadFullPathFile order = order(file, "OLDHASH");
+        order.execute();
+
+        assertThat(order.getResultVo().getResult()).isEqualTo("new");
+    }
+
+    @Test
+    void execute_OverMaxResultBytes_ShouldTruncateWithMetadata() throws Exception {
+        Config.getConfig().setReadFileMaxResultBytes(8);
+        byte[] content = "abcdef한글ghij".getBytes(StandardCharsets.UTF_8);
+        Path file = Files.write(tempDir.resolve("d.log"), content);
+
+        ReadFullPathFile order = order(file, "");
+        order.execute();
+
+        // 8 bytes would split the second Hangul character
+        assertThat(order.getResultVo().getResult()).isEqualTo("abcdef");
+        assertThat(order.getResultVo().isTruncated()).isTrue();
+        assertThat(order.getResultVo().getOriginalSize()).isEqualTo(content.length);
+        assertThat(order.getResultVo().getResultHash()).isEqualTo(sha256(content));
+    }
+
+    @Test
+    void execute_LargeFile_ShouldHashThroughMemoryMap() throws Exception {
+        Config.getConfig().setReadFileMaxResultBytes(16);
+        byte[] content = new byte[20 * 1024 * 1024];
+        Arrays.fill(content, (byte) 'x');
+        Path file = Files.write(tempDir.resolve("big.log"), content);
+
+        ReadFullPathFile order = order(file, "");
+        order.execute();
+
+        assertThat(order.getResultVo().getResult()).isEqualTo("xxxxxxxxxxxxxxxx");
+        assertThat(order.getResultVo().getResultHash()).isEqualTo(sha256(content));
+    }
+
+    @Test
+    void execute_MissingFile_ShouldReturnError() {
+        ReadFullPathFile order = order(tempDir.resolve("missing.log"), "");
+        order.execute();
+
+        assertThat(order.getResultVo().isOk()).isFalse();
+        assertThat(order.getResultVo().getResult()).isEqualTo("Error:FileNotFoundException");
+    }
+
+    @Test
+    void utf8Boundary_ShouldNotSplitCharacters() {
+        byte[] bytes = "a한".getBytes(StandardCharsets.UTF_8); // 1 + 3 bytes
+
+        assertThat(ReadFile.utf8Boundary(bytes, 4)).isEqualTo(4);
+        assertThat(ReadFile.utf8Boundary(bytes, 3)).isEqualTo(1);
+        assertThat(ReadFile.utf8Boundary(bytes, 2)).isEqualTo(1);
+        assertThat(ReadFile.utf8Boundary(bytes, 1)).isEqualTo(1);
+    }
+}
@@ -0,0 +1,219 @@
+package mwagent.order;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+
+import mwagent.common.Config;
+import mwagent.common.ProcessRunner;
+import mwagent.vo.ResultVO;
+
+class ResultStreamerTest {
+
+    private final List<String[]> chunks = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        Config.getConfig().setLogger(Logger.getLogger("TestLogger"));
+        chunks.clear();
+    }
+
+    private ResultStreamer streamer(int chunkBytes, long intervalMs) {
+        return new ResultStreamer(chunkBytes, intervalMs, 16, (seq, stream, text) -> {
+            chunks.add(new String[] {Long.toString(seq), stream, text});
+            return true;
+        });
+    }
+
+    private static void write(ResultStreamer s, boolean stderr, String text) {
+        byte[] b = text.getBytes(StandardCharsets.UTF_8);
+        s.onOutput(stderr, b, 0, b.length);
+    }
+
+    private void awaitChunks(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (chunks.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(chunks).hasSizeGreaterThanOrEqualTo(count);
+    }
+
+    @Test
+    void onOutput_ShouldShipFullChunksInOrder() throws Exception {
+        ResultStreamer s = streamer(4, 60000);
+
+        write(s, false, "abcdefghij");
+        write(s, true, "xy");
+
+        awaitChunks(2);
+        assertThat(chunks).extracting(c -> c[0] + c[1] + c[2])
+                .containsExactly("1stdoutabcd", "2stdoutefgh");
+
+        assertThat(s.finish()).isEqualTo(4);
+        assertThat(chunks).extracting(c -> c[0] + c[1] + c[2])
+                .containsExactly("1stdoutabcd", "2stdoutefgh", "3stdoutij", "4stderrxy");
+    }
+
+    @Test
+    void onTick_ShouldShipPendingOutputAfterInterval() throws Exception {
+        ResultStreamer s = streamer(1024, 0);
+
+        write(s, false, "line1\n");
+        assertThat(chunks).isEmpty();
+
+        s.onTick();
+        awaitChunks(1);
+        assertThat(chunks).extracting(c -> c[2]).containsExactly("line1\n");
+
+        s.onTick();
+        assertThat(chunks).hasSize(1);
+        assertThat(s.finish()).isEqualTo(1);
+    }
+
+    @Test
+    void onOutput_ShouldNotSplitMultiByteCharacter() throws Exception {
+        ResultStreamer s = streamer(4, 60000);
+
+        // "a" + 3-byte character + "b" : the first chunk ends before the character
+        write(s, false, "ab한c");
+        s.finish();
+
+        assertThat(chunks).extracting(c -> c[2]).containsExactly("ab", "한c");
+    }
+
+    @Test
+    void send_ReturningFalse_ShouldStopStreaming() throws Exception {
+        ResultStreamer s = new ResultStreamer(2, 60000, 16, (seq, stream, text) -> {
+            chunks.add(new String[] {Long.toString(seq), stream, text});
+            return false;
+        });
+
+        write(s, false, "abcdef");
+
+        assertThat(s.finish()).isEqualTo(1);
+        assertThat(s.isStopped()).isTrue();
+        assertThat(chunks).hasSize(1);
+    }
+
+    @Test
+    void blockedSender_ShouldNotBlockOutputAndStopWhenQueueIsFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ResultStreamer s = new ResultStreamer(2, 0, 3, (seq, stream, text) -> {
+            try {
+                // a receiver that does not answer
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            chunks.add(new String[] {Long.toString(seq), stream, text});
+            return true;
+        });
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 100; i++) {
+            write(s, false, "ab");
+            s.onTick();
+        }
+
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(1000);
+        assertThat(s.isStopped()).isTrue();
+
+        release.countDown();
+        long count = s.finish();
+
+        // the chunk being sent and the queued ones, in order and without gaps
+        assertThat(count).isEqualTo(chunks.size()).isBetween(3L, 4L);
+        for (int i = 0; i < chunks.size(); i++) {
+            assertThat(chunks.get(i)[0]).isEqualTo(Long.toString(i + 1));
+        }
+    }
+
+    @Test
+    void finish_HangingSender_ShouldGiveUpInTime() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ResultStreamer s = new ResultStreamer(2, 0, 16, (seq, stream, text) -> {
+            try {
+                // a chunk request that never returns
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return true;
+        });
+        write(s, false, "abcdef");
+
+        long start = System.nanoTime();
+        long count = s.finish();
+
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start))
+                .isGreaterThanOrEqualTo(ResultStreamer.MIN_FINISH_WAIT_MS - 100)
+                .isLessThan(ResultStreamer.MIN_FINISH_WAIT_MS + 2000);
+        assertThat(s.isStopped()).isTrue();
+        assertThat(count).isEqualTo(1);
+        release.countDown();
+    }
+
+    @Test
+    @EnabledOnOs(OS.LINUX)
+    void run_WithStreamer_ShouldShipAllOutputWhileBoundingResult() throws Exception {
+        ResultStreamer s = streamer(1000, 60000);
+        ProcessRunner runner = new ProcessRunner(30000, 100);
+
+        ProcessRunner.Result pr = runner.run(new ProcessBuilder("sh", "-c", "seq 1 2000"), s);
+        long count = s.finish();
+
+        StringBuilder streamed = new StringBuilder();
+        for (String[] c : chunks) {
+            streamed.append(c[2]);
+        }
+        StringBuilder expected = new StringBuilder();
+        for (int i = 1; i <= 2000; i++) {
+            expected.append(i).append('\n');
+        }
+
+        assertThat(streamed.toString()).isEqualTo(expected.toString());
+        assertThat(count).isEqualTo(chunks.size()).isGreaterThan(1);
+        assertThat(pr.isTruncated()).isTrue();
+    }
+
+    @Test
+    void jsonChunk_ShouldDescribeCommandAndSequence() throws Exception {
+        JSONObject command = new JSONObject();
+        command.put("command_id", "CMD-STREAM");
+        command.put("target_file_name", "inline");
+        command.put("target_file_path", "");
+        command.put("stream_output", true);
+        ExeText order = new ExeText(command);
+
+        assertThat(order.getCommandVo().isStreamOutput()).isTrue();
+
+        ResultVO rv = new ResultVO();
+        rv.setTargetFileName("inline");
+        JSONObject json = (JSONObject) new JSONParser().parse(
+                order.jsonChunk(rv, 3, ResultStreamer.STDERR, "oops\n").toJsonString());
+
+        assertThat(json.get("command_id")).isEqualTo("CMD-STREAM");
+        assertThat(json.get("chunk_seq")).isEqualTo(3L);
+        assertThat(json.get("stream")).isEqualTo("stderr");
+        assertThat(json.get("is_final")).isEqualTo(false);
+        assertThat(json.get("result_text")).isEqualTo("oops\n");
+
+        rv.setChunkCount(3);
+        JSONObject last = (JSONObject) new JSONParser().parse(order.getJsonResult(false, rv));
+        assertThat(last.get("chunk_count")).isEqualTo(3L);
+        assertThat(last.get("is_final")).isEqualTo(true);
+    }
+
+}
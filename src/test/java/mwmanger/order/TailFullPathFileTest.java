@@ -0,0 +1,162 @@
+package mwagent.order;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+import org.json.simple.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import mwagent.common.Config;
+import mwagent.common.FileOffsetStore;
+import mwagent.vo.ResultVO;
+
+class TailFullPathFileTest {
+
+    @TempDir
+    Path tempDir;
+
+    private boolean pathCheck;
+    private long maxResultBytes;
+    private FileOffsetStore store;
+    private Path log;
+
+    @BeforeEach
+    void setUp() {
+        Config.getConfig().setLogger(Logger.getLogger("TestLogger"));
+        pathCheck = Config.getConfig().isSecurityPathTraversalCheck();
+        maxResultBytes = Config.getConfig().getReadFileMaxResultBytes();
+        Config.getConfig().setSecurityPathTraversalCheck(false);
+        store = new FileOffsetStore(tempDir.resolve("offsets.properties"));
+        log = tempDir.resolve("app.log");
+    }
+
+    @AfterEach
+    void tearDown() {
+        Config.getConfig().setSecurityPathTraversalCheck(pathCheck);
+        Config.getConfig().setReadFileMaxResultBytes(maxResultBytes);
+    }
+
+    private ResultVO tail() throws Exception {
+        return tail(true);
+    }
+
+    /**
+     * @param delivered what the receiver reports for the result
+     */
+    private ResultVO tail(boolean delivered) throws Exception {
+        JSONObject command = new JSONObject();
+        command.put("command_id", "CMD-TAIL");
+        command.put("target_file_name", "app.log");
+        command.put("result_hash", "");
+        command.put("additional_params", log.toString());
+        TailFullPathFile order = new TailFullPathFile(command) {
+            @Override
+            protected FileOffsetStore getOffsetStore() {
+                return store;
+            }
+
+            @Override
+            protected int sendResult(ResultVO rv, Consumer<Boolean> callback) {
+                if (callback != null) {
+                    callback.accept(delivered);
+                }
+                return 1;
+            }
+        };
+        order.execute();
+        order.sendResults();
+        return order.getResultVo();
+    }
+
+    private void append(String text) throws Exception {
+        Files.write(log, text.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    @Test
+    void execute_ShouldReturnOnlyAppendedBytes() throws Exception {
+        append("first\n");
+        assertThat(tail().getResult()).isEqualTo("first\n");
+
+        append("second\nthird\n");
+        assertThat(tail().getResult()).isEqualTo("second\nthird\n");
+
+        assertThat(tail().getResult()).isEqualTo("NO CHANGE");
+    }
+
+    @Test
+    void execute_AfterTruncation_ShouldReadFromStart() throws Exception {
+        append("0123456789\n");
+        tail();
+
+        Files.write(log, "new\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.TRUNCATE_EXISTING);
+
+        assertThat(tail().getResult()).isEqualTo("new\n");
+    }
+
+    @Test
+    void execute_AfterRotation_ShouldReadNewFileFromStart() throws Exception {
+        append("old line that is long enough\n");
+        tail();
+
+        Files.move(log, tempDir.resolve("app.log.1"));
+        append("rotated\n");
+
+        assertThat(tail().getResult()).isEqualTo("rotated\n");
+    }
+
+    @Test
+    void execute_OverMaxResultBytes_ShouldCutAtLineAndContinue() throws Exception {
+        append("x\n");
+        tail();
+
+        Config.getConfig().setReadFileMaxResultBytes(10);
+        append("aaaa\nbbbb\ncccc\n");
+
+        ResultVO first = tail();
+        assertThat(first.getResult()).isEqualTo("aaaa\nbbbb\n");
+        assertThat(first.isTruncated()).isTrue();
+        assertThat(first.getOriginalSize()).isEqualTo(15);
+
+        assertThat(tail().getResult()).isEqualTo("cccc\n");
+    }
+
+    @Test
+    void execute_ShouldResumeFromPersistedOffset() throws Exception {
+        append("before restart\n");
+        tail();
+        append("after restart\n");
+
+        // new store instance reads the saved table
+        store = new FileOffsetStore(tempDir.resolve("offsets.properties"));
+
+        assertThat(tail().getResult()).isEqualTo("after restart\n");
+    }
+
+    @Test
+    void sendResults_FailedSend_ShouldReturnSameBytesAgain() throws Exception {
+        append("first\n");
+        tail();
+        append("second\n");
+
+        assertThat(tail(false).getResult()).isEqualTo("second\n");
+        assertThat(tail().getResult()).isEqualTo("second\n");
+        assertThat(tail().getResult()).isEqualTo("NO CHANGE");
+    }
+
+    @Test
+    void execute_MissingFile_ShouldReturnError() throws Exception {
+        ResultVO rv = tail();
+
+        assertThat(rv.isOk()).isFalse();
+        assertThat(rv.getResult()).isEqualTo("Error:FileNotFoundException");
+    }
+}
@@ -2,6 +2,14 @@ package mwagent.service;
 
 import static org.assertj.core.api.Assertions.*;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 import org.json.simple.JSONObject;
@@ -21,7 +29,7 @@ class CommandExecutorServiceTest {
     @BeforeEach
     void setUp() {
         // Initialize Config for testing
-        mwmanger.common.Config.getConfig().setLogger(Logger.getLogger("TestLogger"));
+        mwagent.common.Config.getConfig().setLogger(Logger.getLogger("TestLogger"));
         service = new CommandExecutorService(5); // 5 second timeout for tests
     }
 
@@ -129,4 +137,150 @@ class CommandExecutorServiceTest {
         // Then - no exception, just warning logged
         assertThat(service.getState()).isEqualTo(LifecycleState.STOPPED);
     }
+
+    // ========== Scheduler ==========
+
+    private static JSONObject command(String commandClass) {
+        JSONObject command = new JSONObject();
+        command.put("command_class", commandClass);
+        return command;
+    }
+
+    @Test
+    void executeCommand_WhenQueueFull_ShouldRejectAndReport() throws Exception {
+        // Given - one worker blocked, queue of 1
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        List<String> rejected = Collections.synchronizedList(new ArrayList<>());
+        service = new CommandExecutorService(5, 1, 1, 0, new HashMap<>(), new HashMap<>(),
+            (cls, cmd) -> { started.countDown(); await(release); return 1; },
+            (cls, cmd) -> { rejected.add(cls); return 1; });
+        service.start();
+
+        // When
+        assertThat(service.executeCommand(command("ReadPlainFile"))).isTrue();
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(service.executeCommand(command("ReadPlainFile"))).isTrue();
+        boolean third = service.executeCommand(command("ExeText"));
+
+        // Then
+        assertThat(third).isFalse();
+        assertThat(rejected).containsExactly("mwagent.order.ExeText");
+        assertThat(service.getQueueDepth()).isEqualTo(1);
+        assertThat(service.getStats().get("rejected")).isEqualTo(1L);
+
+        release.countDown();
+    }
+
+    @Test
+    void worker_ShouldRunHigherPriorityFirst() throws Exception {
+        // Given - single worker blocked while commands are queued
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(4);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        service = new CommandExecutorService(5, 1, 10, 0, new HashMap<>(), new HashMap<>(),
+            (cls, cmd) -> {
+                if (cls.endsWith("Blocker")) { started.countDown(); await(release); }
+                else { order.add(cls.substring("mwagent.order.".length())); }
+                done.countDown();
+                return 1;
+            },
+            (cls, cmd) -> 1);
+        service.start();
+
+        service.executeCommand(command("Blocker"));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // When
+        service.executeCommand(command("ExeText"));
+        service.executeCommand(command("SomeOrder"));
+        service.executeCommand(command("ReadPlainFile"));
+        release.countDown();
+
+        // Then
+        assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(order).containsExactly("ReadPlainFile", "SomeOrder", "ExeText");
+    }
+
+    @Test
+    void worker_ShouldRespectPerClassConcurrencyLimit() throws Exception {
+        // Given - 4 workers, ExeText limited to 1
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch readDone = new CountDownLatch(1);
+        AtomicInteger runningExe = new AtomicInteger();
+        AtomicInteger maxRunningExe = new AtomicInteger();
+        Map<String, Integer> limits = new HashMap<>();
+        limits.put("ExeText", 1);
+        service = new CommandExecutorService(5, 4, 10, 0, new HashMap<>(), limits,
+            (cls, cmd) -> {
+                if (cls.endsWith("ExeText")) {
+                    maxRunningExe.accumulateAndGet(runningExe.incrementAndGet(), Math::max);
+                    await(release);
+                    runningExe.decrementAndGet();
+                } else {
+                    readDone.countDown();
+                }
+                return 1;
+            },
+            (cls, cmd) -> 1);
+        service.start();
+
+        // When
+        service.executeCommand(command("ExeText"));
+        service.executeCommand(command("ExeText"));
+        service.executeCommand(command("ExeText"));
+        service.executeCommand(command("ReadPlainFile"));
+
+        // Then - read is not starved by scripts, scripts run one at a time
+        assertThat(readDone.await(5, TimeUnit.SECONDS)).isTrue();
+        release.countDown();
+        service.stop();
+        assertThat(maxRunningExe.get()).isEqualTo(1);
+        assertThat(service.getStats().get("completed")).isEqualTo(4L);
+    }
+
+    @Test
+    void executeCommand_ShouldCallOnCompleteAfterExecutionOrRejection() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch completed = new CountDownLatch(3);
+        service = new CommandExecutorService(5, 1, 1, 0, new HashMap<>(), new HashMap<>(),
+            (cls, cmd) -> { await(release); return 1; }, (cls, cmd) -> 1);
+        service.start();
+
+        service.executeCommand(command("ReadPlainFile"), completed::countDown);
+        // wait until the first command left the queue
+        for (int i = 0; i < 100 && service.getQueueDepth() > 0; i++) {
+            Thread.sleep(10);
+        }
+        service.executeCommand(command("ReadPlainFile"), completed::countDown);
+        assertThat(service.getRemainingCapacity()).isZero();
+
+        // rejected : completes immediately
+        service.executeCommand(command("ReadPlainFile"), completed::countDown);
+        assertThat(completed.getCount()).isEqualTo(2);
+
+        release.countDown();
+        assertThat(completed.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void getPriority_ShouldUseConfiguredOverride() {
+        Map<String, String> priorities = new HashMap<>();
+        priorities.put("ExeText", "HIGH");
+        service = new CommandExecutorService(5, 1, 1, 0, priorities, new HashMap<>(), (c, m) -> 1, (c, m) -> 1);
+
+        assertThat(service.getPriority("ExeText")).isEqualTo(CommandExecutorService.Priority.HIGH);
+        assertThat(service.getPriority("ExeScript")).isEqualTo(CommandExecutorService.Priority.LOW);
+        assertThat(service.getPriority("ReadFile")).isEqualTo(CommandExecutorService.Priority.HIGH);
+        assertThat(service.getPriority("Unknown")).isEqualTo(CommandExecutorService.Priority.NORMAL);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 }
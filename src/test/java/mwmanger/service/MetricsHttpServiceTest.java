@@ -0,0 +1,77 @@
+package mwagent.service;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.logging.Logger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import mwagent.common.Config;
+import mwagent.lifecycle.LifecycleState;
+import mwagent.metrics.MetricsRegistry;
+
+class MetricsHttpServiceTest {
+
+    private MetricsHttpService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Config.getConfig().setLogger(Logger.getLogger("TestLogger"));
+        MetricsRegistry.getInstance().counter("mwagent_test_scrapes_total", "Test counter").inc();
+        service = new MetricsHttpService("127.0.0.1", 0, MetricsRegistry.getInstance());
+        service.start();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        service.stop();
+    }
+
+    private HttpURLConnection open(String method) throws Exception {
+        URL url = new URL("http://127.0.0.1:" + service.getPort() + MetricsHttpService.PATH);
+        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+        conn.setRequestMethod(method);
+        return conn;
+    }
+
+    @Test
+    void get_ShouldReturnPrometheusText() throws Exception {
+        HttpURLConnection conn = open("GET");
+
+        assertThat(conn.getResponseCode()).isEqualTo(200);
+        assertThat(conn.getContentType()).startsWith("text/plain");
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream in = conn.getInputStream()) {
+            byte[] buf = new byte[4096];
+            int n;
+            while ((n = in.read(buf)) >= 0) {
+                body.write(buf, 0, n);
+            }
+        }
+        assertThat(new String(body.toByteArray(), StandardCharsets.UTF_8))
+                .contains("# TYPE mwagent_test_scrapes_total counter");
+    }
+
+    @Test
+    void post_ShouldBeRejected() throws Exception {
+        assertThat(open("POST").getResponseCode()).isEqualTo(405);
+    }
+
+    @Test
+    void stop_ShouldReleasePort() throws Exception {
+        service.stop();
+
+        assertThat(service.getState()).isEqualTo(LifecycleState.STOPPED);
+        service = new MetricsHttpService("127.0.0.1", 0, MetricsRegistry.getInstance());
+        service.start();
+    }
+
+}
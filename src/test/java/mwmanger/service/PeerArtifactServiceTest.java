@@ -0,0 +1,302 @@
+package mwagent.service;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import mwagent.common.ArtifactCache;
+import mwagent.common.BandwidthThrottle;
+import mwagent.common.Config;
+import mwagent.common.FileDownloader;
+import mwagent.common.PeerAuth;
+import mwagent.lifecycle.LifecycleState;
+import mwagent.vo.MwResponseVO;
+
+/**
+ * Several agents (artifact cache + peer endpoint each) and a stub server on one machine
+ */
+class PeerArtifactServiceTest {
+
+    private static final String SECRET = "fleet-secret";
+    private static final int SEGMENT = 64 * 1024;
+
+    @TempDir
+    Path tmp;
+
+    private byte[] content;
+    private String sha256;
+
+    private HttpServer origin;
+    private final AtomicLong originBodyBytes = new AtomicLong();
+    private CloseableHttpClient client;
+    private final List<PeerArtifactService> services = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Config.getConfig().setLogger(Logger.getLogger("TestLogger"));
+        content = new byte[SEGMENT * 12 + 77];
+        new Random(21).nextBytes(content);
+        sha256 = FileDownloader.hex(MessageDigest.getInstance("SHA-256").digest(content));
+
+        origin = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        origin.createContext("/api/v1/agent/download/", this::serveOrigin);
+        origin.setExecutor(Executors.newFixedThreadPool(8));
+        origin.start();
+        client = HttpClients.custom().setMaxConnPerRoute(8).setMaxConnTotal(32).build();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (PeerArtifactService s : services) {
+            s.stop();
+        }
+        client.close();
+        origin.stop(0);
+    }
+
+    private void serveOrigin(HttpExchange ex) throws IOException {
+        try {
+            String range = ex.getRequestHeaders().getFirst("Range");
+            ex.getResponseHeaders().set("ETag", "\"o1\"");
+            ex.getResponseHeaders().set("X-Checksum-Sha256", sha256);
+            long[] r = range != null ? PeerArtifactService.parseRange(range, content.length) : new long[] { 0, content.length - 1 };
+            int length = (int) (r[1] - r[0] + 1);
+            if (range != null) {
+                ex.getResponseHeaders().set("Content-Range", "bytes " + r[0] + "-" + r[1] + "/" + content.length);
+            }
+            ex.sendResponseHeaders(range != null ? 206 : 200, length);
+            try (OutputStream os = ex.getResponseBody()) {
+                os.write(content, (int) r[0], length);
+            }
+            originBodyBytes.addAndGet(length);
+        } finally {
+            ex.close();
+        }
+    }
+
+    private String originUrl() {
+        return "http://127.0.0.1:" + origin.getAddress().getPort() + "/api/v1/agent/download/patch/jeus.zip";
+    }
+
+    /**
+     * An agent holding the artifact in its cache, serving peers
+     */
+    private PeerArtifactService seeder(String name, String secret, boolean holdsArtifact) throws Exception {
+        return seeder(name, secret, holdsArtifact ? content : null);
+    }
+
+    /**
+     * @param held bytes cached under the SHA-256 of the artifact, null for none
+     */
+    private PeerArtifactService seeder(String name, String secret, byte[] held) throws Exception {
+        ArtifactCache cache = new ArtifactCache(tmp.resolve(name + "-cache"), 0, true);
+        if (held != null) {
+            Path deployed = Files.createDirectories(tmp.resolve(name + "-deploy")).resolve("jeus.zip");
+            Files.write(deployed, held);
+            cache.put(originUrl(), new ArtifactCache.Entry(sha256, "\"o1\"", null, "jeus.zip"), deployed);
+        }
+        PeerArtifactService service = new PeerArtifactService("127.0.0.1", 0, secret, 300, 4, cache, new BandwidthThrottle(0));
+        service.start();
+        services.add(service);
+        return service;
+    }
+
+    private static String peer(PeerArtifactService s) {
+        return "127.0.0.1:" + s.getPort();
+    }
+
+    private MwResponseVO downloadWithPeers(ArtifactCache cache, List<String> peers) throws IOException {
+        return downloadWithPeers(cache, peers, 5000);
+    }
+
+    private MwResponseVO downloadWithPeers(ArtifactCache cache, List<String> peers, int timeoutMs) throws IOException {
+        Path dir = Files.createDirectories(tmp.resolve("target"));
+        return new FileDownloader(client, 1, 0).segmented(1, SEGMENT).cache(cache)
+                .peers(client, peers, SECRET, 4, timeoutMs)
+                .download(originUrl(), null, dir.toString(), null);
+    }
+
+    private HttpURLConnection get(PeerArtifactService s, String sha, String auth, String range) throws Exception {
+        HttpURLConnection conn = (HttpURLConnection) new URL("http://" + peer(s) + PeerArtifactService.PATH + sha).openConnection();
+        if (auth != null) {
+            conn.setRequestProperty(PeerAuth.HEADER, auth);
+        }
+        if (range != null) {
+            conn.setRequestProperty("Range", range);
+        }
+        return conn;
+    }
+
+    private static byte[] body(HttpURLConnection conn) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = conn.getInputStream()) {
+            byte[] buf = new byte[8192];
+            int n;
+            while ((n = in.read(buf)) >= 0) {
+                out.write(buf, 0, n);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    void download_WithPeers_ShouldFetchChunksFromPeersAndOnlyProbeServer() throws Exception {
+        PeerArtifactService a = seeder("a", SECRET, true);
+        PeerArtifactService b = seeder("b", SECRET, true);
+        ArtifactCache own = new ArtifactCache(tmp.resolve("own-cache"), 0, true);
+
+        MwResponseVO r = downloadWithPeers(own, Arrays.asList(peer(a), peer(b)));
+
+        assertThat(r.getStatusCode()).isEqualTo(206);
+        assertThat(r.getSha256()).isEqualTo(sha256);
+        assertThat(Files.readAllBytes(tmp.resolve("target/jeus.zip"))).isEqualTo(content);
+        assertThat(originBodyBytes.get()).isEqualTo(1);
+        // the downloader now holds the artifact and can seed in turn
+        assertThat(own.get(sha256)).isNotNull();
+    }
+
+    @Test
+    void download_PeerMissingChunks_ShouldFetchThemFromServer() throws Exception {
+        PeerArtifactService empty = seeder("empty", SECRET, false);
+        PeerArtifactService otherSecret = seeder("other", "another-secret", true);
+        PeerArtifactService good = seeder("good", SECRET, true);
+
+        MwResponseVO r = downloadWithPeers(null, Arrays.asList(peer(empty), peer(otherSecret), peer(good), "127.0.0.1:1"));
+
+        assertThat(r.getStatusCode()).isEqualTo(206);
+        assertThat(Files.readAllBytes(tmp.resolve("target/jeus.zip"))).isEqualTo(content);
+        assertThat(originBodyBytes.get()).isLessThan(content.length);
+    }
+
+    @Test
+    void download_WrongBytesFromPeer_ShouldDownloadAgainFromServer() throws Exception {
+        byte[] corrupt = content.clone();
+        corrupt[SEGMENT * 5] ^= 0x5a;
+        PeerArtifactService bad = seeder("bad", SECRET, corrupt);
+        ArtifactCache own = new ArtifactCache(tmp.resolve("own-cache"), 0, true);
+
+        MwResponseVO r = downloadWithPeers(own, Arrays.asList(peer(bad)));
+
+        assertThat(r.getStatusCode()).isBetween(200, 299);
+        assertThat(r.getSha256()).isEqualTo(sha256);
+        assertThat(Files.readAllBytes(tmp.resolve("target/jeus.zip"))).isEqualTo(content);
+        assertThat(originBodyBytes.get()).isGreaterThanOrEqualTo(content.length);
+        assertThat(own.get(sha256)).isNotNull();
+    }
+
+    @Test
+    void download_StalledPeer_ShouldTimeOutAndUseServer() throws Exception {
+        HttpServer stalled = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        stalled.createContext(PeerArtifactService.PATH, ex -> {
+            try {
+                Thread.sleep(60000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            ex.close();
+        });
+        ExecutorService stalledThreads = Executors.newCachedThreadPool();
+        stalled.setExecutor(stalledThreads);
+        stalled.start();
+        try {
+            long start = System.nanoTime();
+            MwResponseVO r = downloadWithPeers(null, Arrays.asList("127.0.0.1:" + stalled.getAddress().getPort()), 300);
+
+            assertThat(r.getStatusCode()).isEqualTo(206);
+            assertThat(Files.readAllBytes(tmp.resolve("target/jeus.zip"))).isEqualTo(content);
+            assertThat(System.nanoTime() - start).isLessThan(30_000_000_000L);
+        } finally {
+            stalled.stop(0);
+            stalledThreads.shutdownNow();
+        }
+    }
+
+    @Test
+    void download_WithoutPeers_ShouldUseServerOnly() throws Exception {
+        MwResponseVO r = downloadWithPeers(null, Arrays.asList("127.0.0.1:1"));
+
+        assertThat(r.getStatusCode()).isEqualTo(206);
+        assertThat(Files.readAllBytes(tmp.resolve("target/jeus.zip"))).isEqualTo(content);
+        assertThat(originBodyBytes.get()).isEqualTo(content.length + 1);
+    }
+
+    @Test
+    void handle_AuthenticatedPeer_ShouldServeRanges() throws Exception {
+        PeerArtifactService a = seeder("a", SECRET, true);
+
+        HttpURLConnection conn = get(a, sha256, PeerAuth.sign(SECRET, sha256), "bytes=10-19");
+        assertThat(conn.getResponseCode()).isEqualTo(206);
+        assertThat(conn.getHeaderField("Content-Range")).isEqualTo("bytes 10-19/" + content.length);
+        assertThat(body(conn)).isEqualTo(Arrays.copyOfRange(content, 10, 20));
+
+        HttpURLConnection whole = get(a, sha256, PeerAuth.sign(SECRET, sha256), null);
+        assertThat(whole.getResponseCode()).isEqualTo(200);
+        assertThat(body(whole)).isEqualTo(content);
+
+        HttpURLConnection beyond = get(a, sha256, PeerAuth.sign(SECRET, sha256), "bytes=" + content.length + "-");
+        assertThat(beyond.getResponseCode()).isEqualTo(416);
+
+        String unknown = sha256.replace(sha256.charAt(0), sha256.charAt(0) == 'a' ? 'b' : 'a');
+        assertThat(get(a, unknown, PeerAuth.sign(SECRET, unknown), null).getResponseCode()).isEqualTo(404);
+    }
+
+    @Test
+    void handle_Unauthenticated_ShouldReject() throws Exception {
+        PeerArtifactService a = seeder("a", SECRET, true);
+        long now = System.currentTimeMillis() / 1000;
+
+        assertThat(get(a, sha256, null, null).getResponseCode()).isEqualTo(401);
+        assertThat(get(a, sha256, PeerAuth.sign("wrong", sha256), null).getResponseCode()).isEqualTo(401);
+        // expired, and signed for another artifact
+        assertThat(get(a, sha256, PeerAuth.sign(SECRET, sha256, now - 3600), null).getResponseCode()).isEqualTo(401);
+        assertThat(get(a, sha256, PeerAuth.sign(SECRET, "00" + sha256.substring(2)), null).getResponseCode()).isEqualTo(401);
+        assertThat(get(a, "../../etc/passwd", PeerAuth.sign(SECRET, sha256), null).getResponseCode()).isIn(400, 404);
+    }
+
+    @Test
+    void start_WithoutSecret_ShouldFail() {
+        PeerArtifactService s = new PeerArtifactService("127.0.0.1", 0, "", 300, 4,
+                new ArtifactCache(tmp.resolve("c"), 0, true), new BandwidthThrottle(0));
+
+        assertThatThrownBy(s::start).isInstanceOf(IllegalStateException.class);
+        assertThat(s.getState()).isEqualTo(LifecycleState.FAILED);
+    }
+
+    @Test
+    void parseRange_ShouldParseSingleRanges() {
+        assertThat(PeerArtifactService.parseRange("bytes=0-0", 10)).containsExactly(0, 0);
+        assertThat(PeerArtifactService.parseRange("bytes=5-", 10)).containsExactly(5, 9);
+        assertThat(PeerArtifactService.parseRange("bytes=5-100", 10)).containsExactly(5, 9);
+        assertThat(PeerArtifactService.parseRange("bytes=-3", 10)).containsExactly(7, 9);
+        assertThat(PeerArtifactService.parseRange("bytes=10-", 10)).isNull();
+        assertThat(PeerArtifactService.parseRange("bytes=0-1,3-4", 10)).isNull();
+        assertThat(PeerArtifactService.parseRange("items=0-1", 10)).isNull();
+    }
+}
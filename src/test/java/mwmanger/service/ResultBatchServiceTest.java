@@ -0,0 +1,179 @@
+package mwagent.service;
+
+import static org.assertj.core.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Logger;
+
+import org.json.simple.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import mwagent.common.JsonContent;
+import mwagent.infrastructure.http.JsonEntity;
+import mwagent.lifecycle.LifecycleState;
+import mwagent.vo.MwResponseVO;
+
+/**
+ * ResultBatchService 테스트
+ */
+class ResultBatchServiceTest {
+
+    // path, body as sent (UTF-8), content type
+    private final List<String[]> posts = new CopyOnWriteArrayList<>();
+    private volatile int batchStatusCode = 200;
+    private ResultBatchService service;
+
+    @BeforeEach
+    void setUp() {
+        mwagent.common.Config.getConfig().setLogger(Logger.getLogger("TestLogger"));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (service != null && service.getState() == LifecycleState.RUNNING) {
+            service.stop();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private ResultBatchService createService(int maxBatchSize, long lingerMs) {
+        return new ResultBatchService("/batch", "/single", maxBatchSize, 1024 * 1024,
+                lingerMs, 4 * 1024 * 1024, 2, (path, data) -> {
+                    posts.add(new String[]{path, body(new JsonEntity(data)), new JsonEntity(data).getContentType().getValue()});
+                    MwResponseVO mrvo = new MwResponseVO();
+                    mrvo.setStatusCode(path.equals("/batch") ? batchStatusCode : 200);
+                    JSONObject response = new JSONObject();
+                    response.put("message", "ok");
+                    mrvo.setResponse(response);
+                    return mrvo;
+                });
+    }
+
+    @Test
+    void submit_WhenNotRunning_ShouldSendDirectly() {
+        service = createService(10, 1000);
+
+        int rtn = service.submit(result("1"));
+
+        assertThat(rtn).isEqualTo(2);
+        assertThat(posts).hasSize(1);
+        assertThat(posts.get(0)[0]).isEqualTo("/single");
+    }
+
+    @Test
+    void submit_ShouldCoalesceResultsIntoOneArray() throws Exception {
+        service = createService(3, 60000);
+        service.start();
+
+        service.submit(result("1"));
+        service.submit(result("2"));
+        service.submit(result("3"));
+
+        waitForPosts(1);
+        assertThat(posts.get(0)[0]).isEqualTo("/batch");
+        assertThat(posts.get(0)[1]).isEqualTo("[{\"command_id\":\"1\"},{\"command_id\":\"2\"},{\"command_id\":\"3\"}]");
+        assertThat(service.getPendingCount()).isZero();
+    }
+
+    @Test
+    void submit_ShouldFlushAfterLinger() throws Exception {
+        service = createService(100, 50);
+        service.start();
+
+        service.submit(result("1"));
+
+        waitForPosts(1);
+        assertThat(posts.get(0)[1]).isEqualTo("[{\"command_id\":\"1\"}]");
+    }
+
+    @Test
+    void batchAndSingleBodies_ShouldBeUtf8Json() throws Exception {
+        batchStatusCode = 500;
+        service = createService(2, 60000);
+        service.start();
+
+        service.submit(result("1", "디스크 사용량 정상"));
+        service.submit(result("2", "日本語 ✓"));
+
+        // the batch and its retry are rejected, then each result is sent alone
+        waitForPosts(4);
+        assertThat(posts.get(0)[0]).isEqualTo("/batch");
+        assertThat(posts.get(0)[1]).isEqualTo(
+                "[{\"command_id\":\"1\",\"result_text\":\"디스크 사용량 정상\"},{\"command_id\":\"2\",\"result_text\":\"日本語 ✓\"}]");
+        assertThat(posts.get(0)[2]).startsWith("application/json").contains("UTF-8");
+        assertThat(posts.get(2)[0]).isEqualTo("/single");
+        assertThat(posts.get(2)[1]).isEqualTo("{\"command_id\":\"1\",\"result_text\":\"디스크 사용량 정상\"}");
+        assertThat(posts.get(3)[1]).contains("日本語 ✓");
+    }
+
+    @Test
+    void unsupportedBatchEndpoint_ShouldFallbackToSingleResults() throws Exception {
+        batchStatusCode = 404;
+        service = createService(2, 60000);
+        service.start();
+
+        service.submit(result("1"));
+        service.submit(result("2"));
+
+        waitForPosts(3);
+        assertThat(posts.get(1)[0]).isEqualTo("/single");
+        assertThat(posts.get(2)[0]).isEqualTo("/single");
+        assertThat(service.isBatchSupported()).isFalse();
+    }
+
+    @Test
+    void stop_ShouldFlushPendingResultsAndReleaseInFlightBytes() throws Exception {
+        service = createService(100, 60000);
+        service.start();
+        int available = service.getAvailableInFlightBytes();
+
+        service.submit(result("1"));
+        assertThat(service.getAvailableInFlightBytes()).isLessThan(available);
+
+        service.stop();
+
+        assertThat(posts).hasSize(1);
+        assertThat(service.getAvailableInFlightBytes()).isEqualTo(available);
+        assertThat(service.getState()).isEqualTo(LifecycleState.STOPPED);
+    }
+
+    private static JsonContent result(String commandId) {
+        return result(commandId, null);
+    }
+
+    private static JsonContent result(String commandId, String text) {
+        return w -> {
+            w.beginObject().field("command_id", commandId);
+            if (text != null) {
+                w.field("result_text", text);
+            }
+            w.endObject();
+        };
+    }
+
+    private static String body(JsonEntity entity) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            entity.writeTo(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        assertThat((long) out.size()).isEqualTo(entity.getContentLength());
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private void waitForPosts(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (posts.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(posts).hasSizeGreaterThanOrEqualTo(count);
+    }
+}